@@ -398,6 +398,7 @@ public class Activator extends BaseActivator implements ManagedService {
                 case "javax/management/MBeanServer/UNREGISTERMBEAN":
                 case "javax/management/MBeanServer/GETOBJECTINSTANCE":
                 case "javax/management/MBeanServer/QUERYMBEANS":
+                case "javax/management/MBeanServer/QUERYNAMES":
                 case "javax/management/MBeanServer/ISREGISTERED":
                 case "javax/management/MBeanServer/GETMBEANCOUNT":
                 case "javax/management/MBeanServer/GETATTRIBUTE":
@@ -408,12 +409,15 @@ public class Activator extends BaseActivator implements ManagedService {
                 case "javax/management/MBeanServer/GETDEFAULTDOMAIN":
                 case "javax/management/MBeanServer/GETDOMAINS":
                 case "javax/management/MBeanServer/ADDNOTIFICATIONLISTENER":
+                case "javax/management/MBeanServer/REMOVENOTIFICATIONLISTENER":
                 case "javax/management/MBeanServer/GETMBEANINFO":
                 case "javax/management/MBeanServer/ISINSTANCEOF":
                 case "javax/management/MBeanServer/INSTANTIATE":
                 case "javax/management/MBeanServer/DESERIALIZE":
                 case "javax/management/MBeanServer/GETCLASSLOADERFOR":
                 case "javax/management/MBeanServer/GETCLASSLOADER":
+                case "javax/management/MBeanServer/SUMMARY":
+                case "javax/management/MBeanServer/DROPPED":
                     return TYPE_JMX;
                 case "org/osgi/framework/FrameworkEvent/STARTED":
                 case "org/osgi/framework/FrameworkEvent/ERROR":
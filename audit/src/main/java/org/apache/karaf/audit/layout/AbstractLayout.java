@@ -93,6 +93,9 @@ public abstract class AbstractLayout implements EventLayout {
                 append(event, "params");
                 append(event, "result");
                 append(event, "exception");
+                // read summaries and dropped calls
+                append(event, "domain");
+                append(event, "count");
                 break;
             }
             case Event.TYPE_LOG: {
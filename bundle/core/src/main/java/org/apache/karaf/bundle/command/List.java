@@ -61,6 +61,15 @@ public class List extends BundlesCommand {
     @Option(name = "--no-ellipsis")
     boolean noEllipsis;
 
+    @Option(name = "--tsv", description = "Print the raw values separated by tabs, one bundle per line", required = false, multiValued = false)
+    boolean tsv;
+
+    @Option(name = "--json", description = "Print one JSON object per bundle", required = false, multiValued = false)
+    boolean json;
+
+    @Option(name = "--stream", description = "Print the bundles as they are read, the column sizes being computed from the first bundles", required = false, multiValued = false)
+    boolean stream;
+
     @Reference
     BundleContext bundleContext;
 
@@ -84,7 +93,7 @@ public class List extends BundlesCommand {
         
         // Display active start level.
         FrameworkStartLevel fsl = this.bundleContext.getBundle(0).adapt(FrameworkStartLevel.class);
-        if (fsl != null) {
+        if (fsl != null && !tsv && !json) {
             System.out.println("START LEVEL " + fsl.getStartLevel() + " , List Threshold: " + bundleLevelThreshold);
         }
 
@@ -92,6 +101,11 @@ public class List extends BundlesCommand {
         if (!noEllipsis && terminal != null && terminal.getWidth() > 0) {
             table.size(terminal.getWidth() - 1);
         }
+        if (tsv) {
+            table.mode(ShellTable.Mode.TSV);
+        } else if (json) {
+            table.mode(ShellTable.Mode.JSON);
+        }
         table.column("ID").alignRight();
         table.column("State");
         table.column("Lvl").alignRight();
@@ -136,6 +150,10 @@ public class List extends BundlesCommand {
             table.column("Revisions");
         }
 
+        // the raw formats don't depend on the other rows, a table only when asked as its widths may differ
+        if (tsv || json || stream) {
+            table.stream(System.out, !noFormat);
+        }
         for (Bundle bundle : bundles) {
             BundleInfo info = this.bundleService.getInfo(bundle);
             if (info.getStartLevel() >= bundleLevelThreshold) {
@@ -21,7 +21,10 @@ import org.apache.felix.utils.properties.TypedProperties;
 import org.apache.karaf.util.config.PropertiesLoader;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.Map;
 
@@ -39,6 +42,9 @@ public class ClientConfig {
     private int retryDelay;
     private long idleTimeout;
     private boolean batch;
+    private boolean split;
+    private boolean daemon;
+    private boolean stopDaemon;
     private String file = null;
     private String keyFile = null;
     private String command;
@@ -169,6 +175,15 @@ public class ClientConfig {
                             idleTimeout = Long.parseLong(args[i]);
                         }
                         break;
+                    case "--split":
+                        split = true;
+                        break;
+                    case "--daemon":
+                        daemon = true;
+                        break;
+                    case "--stop-daemon":
+                        stopDaemon = true;
+                        break;
                     case "--help":
                         showHelp();
                         break;
@@ -229,6 +244,11 @@ public class ClientConfig {
         System.out.println("  -f [file]     read commands from the specified file");
         System.out.println("  -k [keyFile]  specify the private keyFile location when using key login, need have BouncyCastle registered as security provider using this flag");
         System.out.println("  -t [timeout]  define the client idle timeout (in milliseconds)");
+        System.out.println("  --split       with -b or -f, run each line as a separate command and print the exit status of");
+        System.out.println("                each command on the standard error, as: index<TAB>status<TAB>command");
+        System.out.println("  --daemon      keep the SSH session open and run the commands of the next clients started with");
+        System.out.println("                the same user, host and port on it");
+        System.out.println("  --stop-daemon stop the daemon started with the same user, host and port");
         System.out.println("  [commands] [--]   commands to run");
         System.out.println("If no commands are specified, the client will be put in an interactive mode");
         System.exit(0);
@@ -328,10 +348,41 @@ public class ClientConfig {
         this.command = command;
     }
 
+    /**
+     * Return the commands to run: each non empty line which is not a comment in split mode, else the whole command.
+     *
+     * @return The commands.
+     */
+    public List<String> getCommands() {
+        if (!split) {
+            return Collections.singletonList(command);
+        }
+        List<String> commands = new ArrayList<>();
+        for (String line : command.split("\\r?\\n")) {
+            String trimmed = line.trim();
+            if (!trimmed.isEmpty() && !trimmed.startsWith("#")) {
+                commands.add(trimmed);
+            }
+        }
+        return commands;
+    }
+
     public boolean isBatch() {
         return batch;
     }
 
+    public boolean isSplit() {
+        return split;
+    }
+
+    public boolean isDaemon() {
+        return daemon;
+    }
+
+    public boolean isStopDaemon() {
+        return stopDaemon;
+    }
+
     public String getFile() {
         return file;
     }
@@ -0,0 +1,518 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.client;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.AclEntry;
+import java.nio.file.attribute.AclEntryFlag;
+import java.nio.file.attribute.AclEntryPermission;
+import java.nio.file.attribute.AclEntryType;
+import java.nio.file.attribute.AclFileAttributeView;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sshd.client.session.ClientSession;
+import org.apache.sshd.common.session.Session;
+import org.apache.sshd.common.session.SessionListener;
+
+/**
+ * <p>Keeps one authenticated SSH session open and runs the commands sent by the other client processes on it,
+ * each command in its own exec channel multiplexed on the session. The clients thus skip the key exchange and
+ * the login.</p>
+ * <p>The daemon listens on a loopback port. The port and a random token are written in a file of the
+ * <code>~/.karaf</code> directory, both accessible by the owner only, and each request must start with the token.
+ * The clients ignore a daemon file which is not owned by the current user or which others may access.</p>
+ * <p>A daemon doesn't start while another one is running for the same user, host and port, and only deletes the
+ * daemon file it wrote. A connection must send the token within {@link #READ_TIMEOUT} milliseconds, and at most
+ * {@link #MAX_CONNECTIONS} connections are served concurrently.</p>
+ */
+public class ClientDaemon implements Closeable {
+
+    private static final byte REQUEST_COMMAND = 'C';
+    private static final byte REQUEST_STOP = 'S';
+    private static final byte RESPONSE_OUTPUT = 'O';
+    private static final byte RESPONSE_EXIT = 'X';
+
+    private static final int TOKEN_LENGTH = 32;
+    private static final int READ_TIMEOUT = 10000;
+    private static final int MAX_CONNECTIONS = 16;
+
+    private static final Set<PosixFilePermission> OWNER_ONLY_FILE = PosixFilePermissions.fromString("rw-------");
+    private static final Set<PosixFilePermission> OWNER_ONLY_DIRECTORY = PosixFilePermissions.fromString("rwx------");
+
+    private final ClientSession session;
+    private final File file;
+    private final ServerSocket serverSocket;
+    private final byte[] token;
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(0, MAX_CONNECTIONS, 60, TimeUnit.SECONDS,
+            new SynchronousQueue<>(), r -> {
+                Thread thread = new Thread(r, "Karaf client daemon");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    public ClientDaemon(ClientSession session, File file) throws IOException {
+        this.session = session;
+        this.file = file;
+        if (isRunning(file)) {
+            throw new IOException("A client daemon is already running, see " + file);
+        }
+        this.serverSocket = new ServerSocket();
+        this.serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        byte[] random = new byte[16];
+        new SecureRandom().nextBytes(random);
+        StringBuilder sb = new StringBuilder();
+        for (byte b : random) {
+            sb.append(String.format("%02x", b));
+        }
+        this.token = sb.toString().getBytes(StandardCharsets.UTF_8);
+        try {
+            writeDaemonFile(serverSocket.getLocalPort(), sb.toString());
+        } catch (IOException e) {
+            serverSocket.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Return the file describing the daemon connected to the host and port of the configuration with its user.
+     *
+     * @param config The client configuration.
+     * @return The daemon file.
+     */
+    public static File getDaemonFile(ClientConfig config) {
+        String name = "karaf-client-" + config.getUser() + "@" + config.getHost() + "-" + config.getPort() + ".daemon";
+        return new File(getDaemonDirectory(), name.replaceAll("[^A-Za-z0-9@._-]", "_"));
+    }
+
+    /**
+     * Check whether a daemon is listening on the port of a daemon file.
+     *
+     * @param file The daemon file.
+     * @return {@code True} if the file is trusted and its daemon accepts connections.
+     */
+    public static boolean isRunning(File file) {
+        if (!Files.exists(file.toPath(), LinkOption.NOFOLLOW_LINKS) || !isSecure(file)) {
+            return false;
+        }
+        try {
+            List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+            try (Socket s = new Socket()) {
+                s.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(lines.get(0).trim())), READ_TIMEOUT);
+            }
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return The directory of the daemon files, only accessible by the current user.
+     */
+    static File getDaemonDirectory() {
+        return new File(System.getProperty("user.home"), ".karaf");
+    }
+
+    /**
+     * Serve the requests until the SSH session is closed or a stop request is received.
+     */
+    public void run() throws IOException {
+        session.addSessionListener(new SessionListener() {
+            @Override
+            public void sessionClosed(Session s) {
+                close();
+            }
+        });
+        try {
+            while (!serverSocket.isClosed()) {
+                Socket socket;
+                try {
+                    socket = serverSocket.accept();
+                } catch (SocketException e) {
+                    // closed
+                    break;
+                }
+                try {
+                    executor.execute(() -> handle(socket));
+                } catch (RejectedExecutionException e) {
+                    // too many connections, or closed
+                    try {
+                        socket.close();
+                    } catch (IOException ignore) {
+                        // Ignore
+                    }
+                }
+            }
+        } finally {
+            close();
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            // Ignore
+        }
+        executor.shutdownNow();
+        deleteDaemonFile();
+    }
+
+    private void handle(Socket socket) {
+        try (Socket s = socket) {
+            // nothing but the token is read before the client is authenticated
+            s.setSoTimeout(READ_TIMEOUT);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+            byte[] received = new byte[TOKEN_LENGTH];
+            in.readFully(received);
+            if (!MessageDigest.isEqual(token, received)) {
+                return;
+            }
+            byte request = in.readByte();
+            if (request == REQUEST_STOP) {
+                close();
+                return;
+            }
+            if (request != REQUEST_COMMAND) {
+                return;
+            }
+            String command = new String(readBytes(in), StandardCharsets.UTF_8);
+            int status;
+            try {
+                status = Main.executeCommand(session, command, new FrameOutputStream(out));
+            } catch (Exception e) {
+                byte[] msg = (e.getMessage() + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+                new FrameOutputStream(out).write(msg, 0, msg.length);
+                status = 1;
+            }
+            synchronized (out) {
+                out.writeByte(RESPONSE_EXIT);
+                out.writeInt(status);
+                out.flush();
+            }
+        } catch (IOException e) {
+            // the client went away
+        }
+    }
+
+    /**
+     * Run commands through the daemon connected to the host and port of the configuration, if any.
+     *
+     * @param config The client configuration.
+     * @param commands The commands to run.
+     * @param out The stream receiving the output of the commands.
+     * @param listener The listener notified of the exit status of each command, may be {@code null}.
+     * @return The exit status of the last command, the first non zero one, or {@code null} if no daemon is running.
+     * @throws IOException If the connection to the daemon is lost while a command runs.
+     */
+    public static Integer execute(ClientConfig config, List<String> commands, OutputStream out, Main.CommandListener listener) throws IOException {
+        File file = getDaemonFile(config);
+        if (config.getUser() == null || !Files.exists(file.toPath(), LinkOption.NOFOLLOW_LINKS)) {
+            return null;
+        }
+        if (!isSecure(file)) {
+            System.err.println("Ignoring the client daemon file " + file
+                    + " as it is not owned by the current user or may be accessed by others");
+            return null;
+        }
+        List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        if (lines.size() < 2) {
+            return null;
+        }
+        int port = Integer.parseInt(lines.get(0).trim());
+        byte[] token = lines.get(1).trim().getBytes(StandardCharsets.UTF_8);
+        Integer exitStatus = null;
+        for (int i = 0; i < commands.size(); i++) {
+            String command = commands.get(i);
+            int status;
+            Socket socket;
+            try {
+                socket = new Socket(InetAddress.getLoopbackAddress(), port);
+            } catch (IOException e) {
+                if (i == 0) {
+                    // stale daemon file
+                    return null;
+                }
+                throw e;
+            }
+            try (Socket s = socket) {
+                DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+                dos.write(token);
+                dos.writeByte(REQUEST_COMMAND);
+                writeBytes(dos, command.getBytes(StandardCharsets.UTF_8));
+                dos.flush();
+                DataInputStream dis = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+                status = readResponse(dis, out);
+            }
+            if (listener != null) {
+                listener.executed(i, command, status);
+            }
+            if (exitStatus == null || exitStatus == 0) {
+                exitStatus = status;
+            }
+        }
+        return exitStatus != null ? exitStatus : 0;
+    }
+
+    /**
+     * Stop the daemon connected to the host and port of the configuration, if any.
+     *
+     * @param config The client configuration.
+     * @return {@code True} if a daemon was stopped.
+     */
+    public static boolean stop(ClientConfig config) {
+        File file = getDaemonFile(config);
+        try {
+            if (!isSecure(file)) {
+                return false;
+            }
+            List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+            try (Socket s = new Socket(InetAddress.getLoopbackAddress(), Integer.parseInt(lines.get(0).trim()))) {
+                DataOutputStream dos = new DataOutputStream(s.getOutputStream());
+                dos.write(lines.get(1).trim().getBytes(StandardCharsets.UTF_8));
+                dos.writeByte(REQUEST_STOP);
+                dos.flush();
+                // wait for the daemon to close the connection
+                s.getInputStream().read();
+            }
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static int readResponse(DataInputStream in, OutputStream out) throws IOException {
+        while (true) {
+            byte type = in.readByte();
+            if (type == RESPONSE_OUTPUT) {
+                byte[] data = readBytes(in);
+                out.write(data);
+                out.flush();
+            } else if (type == RESPONSE_EXIT) {
+                return in.readInt();
+            } else {
+                throw new IOException("Unexpected response from the client daemon: " + type);
+            }
+        }
+    }
+
+    private void writeDaemonFile(int port, String token) throws IOException {
+        Path directory = file.getParentFile().toPath();
+        if (!Files.exists(directory, LinkOption.NOFOLLOW_LINKS)) {
+            Files.createDirectories(directory, ownerOnly(directory, true));
+        }
+        if (!isOwnerOnly(directory, true)) {
+            throw new IOException("The directory " + directory + " must be owned by the current user and not writable by others");
+        }
+        // the file is created with its permissions, it is never readable by others, even temporarily
+        Path tmp = directory.resolve(file.getName() + "." + port + ".tmp");
+        Files.deleteIfExists(tmp);
+        Files.createFile(tmp, ownerOnly(tmp, false));
+        try {
+            Files.write(tmp, (port + "\n" + token + "\n").getBytes(StandardCharsets.UTF_8));
+            // the file of a daemon which didn't stop cleanly
+            Files.deleteIfExists(file.toPath());
+            // a link fails if another daemon started meanwhile, where a move would replace its file
+            Files.createLink(file.toPath(), tmp);
+        } catch (FileAlreadyExistsException e) {
+            throw new IOException("A client daemon is already running, see " + file);
+        } catch (UnsupportedOperationException e) {
+            Files.move(tmp, file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Delete the daemon file, unless it has been replaced by the file of another daemon.
+     */
+    private void deleteDaemonFile() {
+        try {
+            List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+            if (lines.size() >= 2
+                    && lines.get(0).trim().equals(Integer.toString(serverSocket.getLocalPort()))
+                    && MessageDigest.isEqual(token, lines.get(1).trim().getBytes(StandardCharsets.UTF_8))) {
+                Files.delete(file.toPath());
+            }
+        } catch (IOException e) {
+            // already deleted
+        }
+    }
+
+    /**
+     * Check that a daemon file and its directory can be trusted: both must be owned by the current user, the file
+     * must only be accessible by its owner and the directory must not be writable by others.
+     *
+     * @param file The daemon file.
+     * @return {@code True} if the file can be trusted.
+     */
+    static boolean isSecure(File file) {
+        try {
+            Path path = file.toPath();
+            return Files.isRegularFile(path, LinkOption.NOFOLLOW_LINKS)
+                    && isOwnerOnly(path, false)
+                    && isOwnerOnly(path.getParent(), true);
+        } catch (IOException | UnsupportedOperationException e) {
+            return false;
+        }
+    }
+
+    private static boolean isOwnerOnly(Path path, boolean directory) throws IOException {
+        UserPrincipal owner = Files.getOwner(path, LinkOption.NOFOLLOW_LINKS);
+        if (!owner.equals(getCurrentUser(path))) {
+            return false;
+        }
+        if (isPosix(path)) {
+            Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(path, LinkOption.NOFOLLOW_LINKS);
+            if (directory) {
+                // other users may see the directory but not add or replace files in it
+                return !permissions.contains(PosixFilePermission.GROUP_WRITE)
+                        && !permissions.contains(PosixFilePermission.OTHERS_WRITE);
+            }
+            return permissions.equals(OWNER_ONLY_FILE);
+        }
+        AclFileAttributeView view = Files.getFileAttributeView(path, AclFileAttributeView.class, LinkOption.NOFOLLOW_LINKS);
+        if (view == null) {
+            return false;
+        }
+        for (AclEntry entry : view.getAcl()) {
+            if (entry.type() == AclEntryType.ALLOW && !entry.principal().equals(owner)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return the attribute restricting the access of a new file or directory to the current user.
+     */
+    private static FileAttribute<?> ownerOnly(Path path, boolean directory) throws IOException {
+        if (isPosix(path)) {
+            return PosixFilePermissions.asFileAttribute(directory ? OWNER_ONLY_DIRECTORY : OWNER_ONLY_FILE);
+        }
+        AclEntry entry = AclEntry.newBuilder()
+                .setType(AclEntryType.ALLOW)
+                .setPrincipal(getCurrentUser(path))
+                .setPermissions(EnumSet.allOf(AclEntryPermission.class))
+                .setFlags(directory
+                        ? EnumSet.of(AclEntryFlag.FILE_INHERIT, AclEntryFlag.DIRECTORY_INHERIT)
+                        : EnumSet.noneOf(AclEntryFlag.class))
+                .build();
+        List<AclEntry> acl = Collections.singletonList(entry);
+        return new FileAttribute<List<AclEntry>>() {
+            @Override
+            public String name() {
+                return "acl:acl";
+            }
+
+            @Override
+            public List<AclEntry> value() {
+                return acl;
+            }
+        };
+    }
+
+    private static boolean isPosix(Path path) {
+        return path.getFileSystem().supportedFileAttributeViews().contains("posix");
+    }
+
+    private static UserPrincipal getCurrentUser(Path path) throws IOException {
+        return path.getFileSystem().getUserPrincipalLookupService().lookupPrincipalByName(System.getProperty("user.name"));
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > 16 * 1024 * 1024) {
+            throw new IOException("Invalid length " + length);
+        }
+        byte[] data = new byte[length];
+        in.readFully(data);
+        return data;
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] data) throws IOException {
+        out.writeInt(data.length);
+        out.write(data);
+    }
+
+    /**
+     * Sends the command output to the client as frames, stdout and stderr are written concurrently by the channel.
+     */
+    private static class FrameOutputStream extends OutputStream {
+        private final DataOutputStream out;
+
+        FrameOutputStream(DataOutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return;
+            }
+            synchronized (out) {
+                out.writeByte(RESPONSE_OUTPUT);
+                out.writeInt(len);
+                out.write(b, off, len);
+                out.flush();
+            }
+        }
+
+        @Override
+        public void close() {
+            // the socket is closed by the daemon once the exit status is sent
+        }
+    }
+
+}
@@ -23,6 +23,7 @@ import java.io.FileInputStream;
 import java.io.IOError;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.lang.reflect.Proxy;
 import java.nio.charset.Charset;
@@ -91,6 +92,33 @@ public class Main {
             config.setCommand(sb.toString());
         }
 
+        if (config.isStopDaemon()) {
+            if (!ClientDaemon.stop(config)) {
+                System.err.println("No client daemon is running for " + config.getUser() + "@" + config.getHost() + ":" + config.getPort());
+                System.exit(1);
+            }
+            System.exit(0);
+        }
+
+        if (config.isDaemon() && ClientDaemon.isRunning(ClientDaemon.getDaemonFile(config))) {
+            System.err.println("A client daemon is already running for " + config.getUser() + "@" + config.getHost() + ":" + config.getPort());
+            System.exit(1);
+        }
+
+        if (!config.isDaemon() && config.getCommand().length() > 0) {
+            // reuse the session of a running client daemon if any
+            try {
+                CommandListener listener = config.isSplit() ? Main::printStatus : null;
+                Integer exitStatus = ClientDaemon.execute(config, config.getCommands(), System.out, listener);
+                if (exitStatus != null) {
+                    System.exit(exitStatus);
+                }
+            } catch (IOException e) {
+                System.err.println(e.getMessage());
+                System.exit(1);
+            }
+        }
+
         try (SshClient client = ClientBuilder.builder().build()) {
             FilePasswordProvider passwordProvider = null;
             final Console console = System.console();
@@ -171,6 +199,16 @@ public class Main {
             }
             session.auth().verify();
 
+            if (config.isDaemon()) {
+                try (ClientDaemon daemon = new ClientDaemon(session, ClientDaemon.getDaemonFile(config))) {
+                    if (console != null) {
+                        console.printf("Client daemon started for %s@%s:%d\n", config.getUser(), config.getHost(), config.getPort());
+                    }
+                    daemon.run();
+                }
+                System.exit(0);
+            }
+
             int exitStatus = 0;
             String type = System.getProperty(TerminalBuilder.PROP_TYPE);
             if (type == null) {
@@ -184,7 +222,18 @@ public class Main {
                         .type(type)
                         .signalHandler(Terminal.SignalHandler.SIG_IGN)
                         .build()) {
-                if (config.getCommand().length() > 0) {
+                if (config.getCommand().length() > 0 && config.isSplit()) {
+                    // one exec channel per command on the authenticated session
+                    NoCloseOutputStream output = new NoCloseOutputStream(terminal.output());
+                    List<String> commands = config.getCommands();
+                    for (int i = 0; i < commands.size(); i++) {
+                        int status = executeCommand(session, commands.get(i), output);
+                        printStatus(i, commands.get(i), status);
+                        if (exitStatus == 0) {
+                            exitStatus = status;
+                        }
+                    }
+                } else if (config.getCommand().length() > 0) {
                     ChannelExec channel = session.createExecChannel(config.getCommand() + "\n");
                     channel.setIn(new ByteArrayInputStream(new byte[0]));
                     if (!config.isBatch()) {
@@ -336,6 +385,39 @@ public class Main {
         }
     }
 
+    /**
+     * Run a command in a new exec channel of the session.
+     *
+     * @param session The authenticated session.
+     * @param command The command.
+     * @param output The stream receiving the standard and error outputs of the command.
+     * @return The exit status of the command.
+     * @throws IOException If the channel fails.
+     */
+    static int executeCommand(ClientSession session, String command, OutputStream output) throws IOException {
+        try (ChannelExec channel = session.createExecChannel(command + "\n")) {
+            channel.setIn(new ByteArrayInputStream(new byte[0]));
+            channel.setAgentForwarding(true);
+            NoCloseOutputStream out = new NoCloseOutputStream(output);
+            channel.setOut(out);
+            channel.setErr(out);
+            channel.open().verify();
+            channel.waitFor(EnumSet.of(ClientChannelEvent.CLOSED), 0);
+            return channel.getExitStatus() != null ? channel.getExitStatus() : 0;
+        }
+    }
+
+    private static void printStatus(int index, String command, int status) {
+        System.err.println((index + 1) + "\t" + status + "\t" + command);
+    }
+
+    /**
+     * Notified of the exit status of each command run in split mode.
+     */
+    public interface CommandListener {
+        void executed(int index, String command, int status);
+    }
+
     private static int getFlag(Attributes attributes, InputFlag flag) {
         return attributes.getInputFlag(flag) ? 1 : 0;
     }
@@ -16,6 +16,9 @@
  */
 package org.apache.karaf.client;
 
+import java.util.Arrays;
+import java.util.Collections;
+
 import org.junit.Test;
 
 import static org.hamcrest.CoreMatchers.equalTo;
@@ -44,4 +47,41 @@ public class ClientConfigTest {
         }
     }
 
+    @Test
+    public void testCommandsWithoutSplit() throws Exception {
+        ClientConfig cc = createConfig("-b");
+        cc.setCommand("bundle:list\nfeature:list -i\n");
+        assertThat(cc.isSplit(), equalTo(false));
+        assertThat(cc.getCommands(), equalTo(Collections.singletonList("bundle:list\nfeature:list -i\n")));
+    }
+
+    @Test
+    public void testCommandsWithSplit() throws Exception {
+        ClientConfig cc = createConfig("-b", "--split");
+        cc.setCommand("bundle:list\r\n  feature:list -i  \n\n   \n# a comment\n  #another one\nshell:echo done");
+        assertThat(cc.isSplit(), equalTo(true));
+        assertThat(cc.getCommands(), equalTo(Arrays.asList("bundle:list", "feature:list -i", "shell:echo done")));
+    }
+
+    @Test
+    public void testCommandsWithSplitAndNoCommand() throws Exception {
+        ClientConfig cc = createConfig("-b", "--split");
+        cc.setCommand("\n# only a comment\n");
+        assertThat(cc.getCommands(), equalTo(Collections.<String>emptyList()));
+    }
+
+    private static ClientConfig createConfig(String... args) throws Exception {
+        String etc = System.getProperty("karaf.etc");
+        System.setProperty("karaf.etc", "src/test/resources/etc1");
+        try {
+            return new ClientConfig(args);
+        } finally {
+            if (etc != null) {
+                System.setProperty("karaf.etc", etc);
+            } else {
+                System.clearProperty("karaf.etc");
+            }
+        }
+    }
+
 }
@@ -50,7 +50,7 @@ public class EventDisplayCommand implements Action {
     @Override
     public Object execute() throws Exception {
         EventPrinter printer = new EventPrinter(session.getConsole(), verbose);
-        collector.getEvents().filter(matchTopic(topicFilter)).forEach(printer);
+        collector.getEvents(matchTopic(topicFilter)).forEach(printer);
         return null;
     }
 
@@ -18,9 +18,6 @@ package org.apache.karaf.event.command;
 
 import static org.apache.karaf.event.service.TopicPredicate.matchTopic;
 
-import java.util.function.Consumer;
-import java.util.function.Predicate;
-
 import org.apache.karaf.event.service.EventCollector;
 import org.apache.karaf.shell.api.action.Action;
 import org.apache.karaf.shell.api.action.Argument;
@@ -30,7 +27,6 @@ import org.apache.karaf.shell.api.action.lifecycle.Reference;
 import org.apache.karaf.shell.api.action.lifecycle.Service;
 import org.apache.karaf.shell.api.console.Session;
 import org.osgi.framework.BundleContext;
-import org.osgi.service.event.Event;
 
 @Command(scope = "event", name = "tail", description = "Shows events and listens for incoming events")
 @Service
@@ -54,19 +50,14 @@ public class EventTailCommand implements Action {
     @Override
     public Object execute() throws Exception {
         EventPrinter printer = new EventPrinter(session.getConsole(), verbose);
-        Consumer<Event> filteredPrinter = executeIf(matchTopic(topicFilter), printer);
-        collector.addConsumer(filteredPrinter);
+        collector.addConsumer(matchTopic(topicFilter), printer);
         try {
             waitTillInterrupted();
         } catch (InterruptedException e) {
-            collector.removeConsumer(filteredPrinter);
+            collector.removeConsumer(printer);
         }
         return null;
     }
-    
-    private <T> Consumer<T> executeIf(Predicate<T> pred, Consumer<T> consumer) {
-        return t -> {if (pred.test(t)) consumer.accept(t);};
-    }
 
     private void waitTillInterrupted() throws InterruptedException {
         while (true) {
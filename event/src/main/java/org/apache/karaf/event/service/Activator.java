@@ -18,6 +18,9 @@ package org.apache.karaf.event.service;
 
 import java.util.Dictionary;
 import java.util.Hashtable;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.osgi.framework.BundleActivator;
 import org.osgi.framework.BundleContext;
@@ -25,9 +28,26 @@ import org.osgi.service.event.EventHandler;
 
 public class Activator implements BundleActivator {
 
+    /**
+     * Number of threads draining the consumers. A consumer has at most one
+     * drain queued or running at a time, so the queue never holds more tasks
+     * than there are consumers (typically a few event:tail sessions), and a
+     * few threads are enough to keep a slow console from delaying the others.
+     */
+    private static final int THREADS = 4;
+
+    private ThreadPoolExecutor executor;
+
     @Override
     public void start(BundleContext context) throws Exception {
-        EventCollector collector = new EventCollector();
+        executor = new ThreadPoolExecutor(THREADS, THREADS, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "karaf-event-collector");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // the threads are only needed while someone is tailing the events
+        executor.allowCoreThreadTimeOut(true);
+        EventCollector collector = new EventCollector(100, executor);
         Dictionary<String, String> props = new Hashtable<>();
         props.put("event.topics", "*");
         String[] ifAr = new String[]{EventHandler.class.getName(), EventCollector.class.getName()};
@@ -36,6 +56,7 @@ public class Activator implements BundleActivator {
 
     @Override
     public void stop(BundleContext context) throws Exception {
+        executor.shutdownNow();
     }
 
 }
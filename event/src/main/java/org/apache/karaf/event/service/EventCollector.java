@@ -16,47 +16,219 @@
  */
 package org.apache.karaf.event.service;
 
-import java.util.Deque;
-import java.util.HashSet;
-import java.util.Set;
-import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.stream.Stream;
 
 import org.osgi.service.event.Event;
 import org.osgi.service.event.EventHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+/**
+ * Keeps the last events in a fixed size ring and forwards incoming events to
+ * the registered consumers.
+ * <p>
+ * Publishing an event is lock free: it claims the next sequence number, stores
+ * the event in its slot (overwriting the oldest one) and signals the consumers.
+ * Each consumer has its own cursor in the ring and is drained on the executor,
+ * so a slow consumer (like a console printing events) never delays the event
+ * admin. A consumer lagging more than the ring size skips the overwritten events.
+ */
 public class EventCollector implements EventHandler {
-    private Deque<Event> events;
-    private int maxSize;
-    private Set<Consumer<Event>> consumers;
-    
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventCollector.class);
+
+    private static final int DEFAULT_MAX_SIZE = 100;
+
+    private final int maxSize;
+    private final AtomicReferenceArray<Slot> ring;
+    private final AtomicLong sequence = new AtomicLong();
+    private final Executor executor;
+    private final Map<Consumer<Event>, Cursor> consumers = new ConcurrentHashMap<>();
+
+    /**
+     * Create a collector delivering the events to the consumers in the
+     * publishing thread.
+     */
     public EventCollector() {
-        events = new ConcurrentLinkedDeque<>();
-        maxSize = 100;
-        consumers = new HashSet<>();
+        this(DEFAULT_MAX_SIZE, Runnable::run);
+    }
+
+    /**
+     * Create a collector.
+     *
+     * @param maxSize the number of events to keep.
+     * @param executor the executor used to drain the consumers.
+     */
+    public EventCollector(int maxSize, Executor executor) {
+        this.maxSize = maxSize;
+        this.ring = new AtomicReferenceArray<>(maxSize);
+        this.executor = executor;
     }
 
     @Override
-    public synchronized void handleEvent(Event event) {
-        events.addLast(event);
-        if (events.size() > maxSize) {
-            events.removeFirst();
+    public void handleEvent(Event event) {
+        long seq = sequence.getAndIncrement();
+        ring.set(index(seq), new Slot(seq, event));
+        for (Cursor cursor : consumers.values()) {
+            cursor.signal();
         }
-        consumers.forEach(c -> c.accept(event));
     }
 
     public Stream<Event> getEvents() {
-        return events.stream();
+        long end = sequence.get();
+        long start = Math.max(0, end - maxSize);
+        Stream.Builder<Event> builder = Stream.builder();
+        for (long seq = start; seq < end; seq++) {
+            Slot slot = ring.get(index(seq));
+            if (slot != null && slot.seq == seq) {
+                builder.add(slot.event);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Get the kept events matching the filter, for example a {@link TopicPredicate}.
+     *
+     * @param filter the events filter.
+     * @return the matching events, oldest first.
+     */
+    public Stream<Event> getEvents(Predicate<Event> filter) {
+        return getEvents().filter(filter);
+    }
+
+    /**
+     * Replay the kept events to the consumer, then forward the incoming ones.
+     *
+     * @param eventConsumer the consumer.
+     */
+    public void addConsumer(Consumer<Event> eventConsumer) {
+        addConsumer(event -> true, eventConsumer);
+    }
+
+    /**
+     * Replay the kept events matching the filter to the consumer, then forward
+     * the incoming matching ones. The filter is evaluated in the consumer drain,
+     * not in the publishing thread.
+     *
+     * @param filter the events filter, for example a {@link TopicPredicate}.
+     * @param eventConsumer the consumer.
+     */
+    public void addConsumer(Predicate<Event> filter, Consumer<Event> eventConsumer) {
+        Cursor cursor = new Cursor(filter, eventConsumer, Math.max(0, sequence.get() - maxSize));
+        Cursor previous = consumers.put(eventConsumer, cursor);
+        if (previous != null) {
+            previous.close();
+        }
+        cursor.signal();
+    }
+
+    public void removeConsumer(Consumer<Event> eventConsumer) {
+        Cursor cursor = consumers.remove(eventConsumer);
+        if (cursor != null) {
+            cursor.close();
+        }
     }
-    
-    public synchronized void addConsumer(Consumer<Event> eventConsumer) {
-        events.forEach(eventConsumer);
-        consumers.add(eventConsumer);
+
+    private int index(long seq) {
+        return (int) (seq % maxSize);
+    }
+
+    private static class Slot {
+        final long seq;
+        final Event event;
+
+        Slot(long seq, Event event) {
+            this.seq = seq;
+            this.event = event;
+        }
     }
-    
-    public synchronized void removeConsumer(Consumer<Event> eventConsumer) {
-        consumers.remove(eventConsumer);
+
+    /**
+     * Position of a consumer in the ring. Only one drain runs at a time for
+     * a given cursor, so the events are delivered in order.
+     */
+    private class Cursor implements Runnable {
+        private final Predicate<Event> filter;
+        private final Consumer<Event> consumer;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private volatile boolean closed;
+        private long next;
+
+        Cursor(Predicate<Event> filter, Consumer<Event> consumer, long next) {
+            this.filter = filter;
+            this.consumer = consumer;
+            this.next = next;
+        }
+
+        void signal() {
+            if (!closed && scheduled.compareAndSet(false, true)) {
+                executor.execute(this);
+            }
+        }
+
+        void close() {
+            closed = true;
+        }
+
+        @Override
+        public void run() {
+            do {
+                try {
+                    drain();
+                } finally {
+                    scheduled.set(false);
+                }
+                // an event published while we were releasing the flag has seen
+                // scheduled == true and did not reschedule, so check again
+            } while (!closed && hasPending() && scheduled.compareAndSet(false, true));
+        }
+
+        private boolean hasPending() {
+            long seq = next;
+            if (seq >= sequence.get()) {
+                return false;
+            }
+            Slot slot = ring.get(index(seq));
+            return slot != null && slot.seq >= seq;
+        }
+
+        private void drain() {
+            while (!closed) {
+                long end = sequence.get();
+                if (next >= end) {
+                    return;
+                }
+                // skip the events overwritten since the last drain
+                next = Math.max(next, end - maxSize);
+                Slot slot = ring.get(index(next));
+                if (slot == null || slot.seq < next) {
+                    // claimed but not stored yet, its publisher will signal us again
+                    return;
+                }
+                if (slot.seq > next) {
+                    // overwritten while we were reading
+                    continue;
+                }
+                next++;
+                try {
+                    if (filter.test(slot.event)) {
+                        consumer.accept(slot.event);
+                    }
+                } catch (RuntimeException e) {
+                    // keep delivering the next events to this consumer
+                    LOGGER.warn("Error delivering event {} to {}", slot.event.getTopic(), consumer, e);
+                }
+            }
+        }
     }
 
 }
@@ -22,19 +22,44 @@ import java.util.regex.Pattern;
 import org.osgi.service.event.Event;
 
 public class TopicPredicate implements Predicate<Event> {
+    private static final String REGEX_CHARS = ".?+^$[](){}|\\";
+
     private Pattern pattern;
+    private String prefix;
+    private boolean exact;
 
     private TopicPredicate(String topicFilter) {
-        pattern = Pattern.compile(topicFilter.replace("*", ".*"));
+        // plain topics and prefix wildcards are matched without regex, as the
+        // predicate is evaluated for every collected event
+        int star = topicFilter.indexOf('*');
+        if (!containsRegexChars(topicFilter) && (star < 0 || star == topicFilter.length() - 1)) {
+            exact = star < 0;
+            prefix = exact ? topicFilter : topicFilter.substring(0, star);
+        } else {
+            pattern = Pattern.compile(topicFilter.replace("*", ".*"));
+        }
     }
     
     @Override
     public boolean test(Event event) {
-        return pattern.matcher(event.getTopic()).matches();
+        String topic = event.getTopic();
+        if (pattern != null) {
+            return pattern.matcher(topic).matches();
+        }
+        return exact ? topic.equals(prefix) : topic.startsWith(prefix);
     }
  
     public static Predicate<Event> matchTopic(String topicFilter) {
         return new TopicPredicate(topicFilter);
     }
 
+    private static boolean containsRegexChars(String topicFilter) {
+        for (int i = 0; i < topicFilter.length(); i++) {
+            if (REGEX_CHARS.indexOf(topicFilter.charAt(i)) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
 }
@@ -21,6 +21,12 @@ import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
 import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.stream.IntStream;
@@ -69,6 +75,90 @@ public class EventCollectorTest {
         assertThat(count.get(), equalTo(2));
     }
 
+    @Test
+    public void testFilteredConsumer() {
+        final AtomicInteger count = new AtomicInteger();
+        EventCollector collector = new EventCollector();
+        collector.handleEvent(event("my/first"));
+        collector.handleEvent(event("other"));
+        collector.addConsumer(TopicPredicate.matchTopic("my/*"), event -> count.incrementAndGet());
+        assertThat(count.get(), equalTo(1));
+
+        collector.handleEvent(event("my/second"));
+        collector.handleEvent(event("another"));
+        assertThat(count.get(), equalTo(2));
+        assertThat(collector.getEvents(TopicPredicate.matchTopic("my/*")).count(), equalTo(2l));
+    }
+
+    @Test
+    public void testAsyncConsumerKeepsOrder() throws Exception {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            EventCollector collector = new EventCollector(1000, executor);
+            List<String> topics = new CopyOnWriteArrayList<>();
+            CountDownLatch latch = new CountDownLatch(500);
+            collector.addConsumer(event -> {
+                topics.add(event.getTopic());
+                latch.countDown();
+            });
+            IntStream.range(0, 500).forEach(c -> collector.handleEvent(event("topic/" + c)));
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+            for (int i = 0; i < 500; i++) {
+                assertThat(topics.get(i), equalTo("topic/" + i));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testFailingConsumerKeepsReceivingEvents() throws Exception {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            EventCollector collector = new EventCollector(100, executor);
+            List<String> topics = new CopyOnWriteArrayList<>();
+            CountDownLatch latch = new CountDownLatch(10);
+            collector.addConsumer(event -> {
+                topics.add(event.getTopic());
+                latch.countDown();
+                if (topics.size() % 2 == 1) {
+                    throw new IllegalStateException("expected");
+                }
+            });
+            IntStream.range(0, 5).forEach(c -> collector.handleEvent(event("topic/" + c)));
+            Thread.sleep(100);
+            IntStream.range(5, 10).forEach(c -> collector.handleEvent(event("topic/" + c)));
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+            for (int i = 0; i < 10; i++) {
+                assertThat(topics.get(i), equalTo("topic/" + i));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testSlowConsumerDoesNotBlockPublisher() throws Exception {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            EventCollector collector = new EventCollector(10, executor);
+            CountDownLatch release = new CountDownLatch(1);
+            collector.addConsumer(event -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            IntStream.range(0, 100).forEach(c -> collector.handleEvent(event("topic/" + c)));
+            assertThat(collector.getEvents().count(), equalTo(10l));
+            assertThat(collector.getEvents().findFirst().get().getTopic(), equalTo("topic/90"));
+            release.countDown();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     private Event event(String topic) {
         return new Event(topic, new HashMap<>());
     }
@@ -51,6 +51,13 @@ public class TopicPredicateTest {
         assertFalse(matcher.test(event("my/other")));
     }
 
+    @Test
+    public void testMatchInnerWildcard() {
+        Predicate<Event> matcher = matchTopic("my*/test");
+        assertTrue(matcher.test(event("myTopic/test")));
+        assertFalse(matcher.test(event("myTopic/other")));
+    }
+
     private Event event(String topic) {
         return new Event(topic, new HashMap<String, String>());
     }
@@ -16,10 +16,12 @@
  */
 package org.apache.karaf.http.command;
 
+import org.apache.karaf.http.command.completers.BalancingPolicyCompleter;
 import org.apache.karaf.http.core.ProxyService;
 import org.apache.karaf.shell.api.action.Action;
 import org.apache.karaf.shell.api.action.Argument;
 import org.apache.karaf.shell.api.action.Command;
+import org.apache.karaf.shell.api.action.Completion;
 import org.apache.karaf.shell.api.action.Option;
 import org.apache.karaf.shell.api.action.lifecycle.Reference;
 import org.apache.karaf.shell.api.action.lifecycle.Service;
@@ -37,7 +39,8 @@ public class ProxyAddCommand implements Action {
     @Argument(index = 1, name = "proxyTo", description = "HTTP location to proxy on the prefix", required = true, multiValued = false)
     String proxyTo;
 
-    @Option(name = "-b", aliases = { "--lb" }, description = "Define the filter to the balancing service to use", required = false, multiValued = false)
+    @Option(name = "-b", aliases = { "--lb" }, description = "Define the balancing policy to use (random, round-robin, least-outstanding, ewma)", required = false, multiValued = false)
+    @Completion(BalancingPolicyCompleter.class)
     String balancingPolicy;
 
     @Override
@@ -26,4 +26,22 @@ public interface BalancingPolicy {
      */
     String selectHost(String[] targets);
 
+    /**
+     * Notify the policy that a request is sent to a host it selected.
+     *
+     * @param target the selected host.
+     */
+    default void requestStarted(String target) {
+    }
+
+    /**
+     * Notify the policy that a request sent to a host is completed.
+     *
+     * @param target the host.
+     * @param duration the time to get the response from the host in nanoseconds, or -1 if the request was not sent.
+     * @param failed true if the host could not be reached or replied it is not available.
+     */
+    default void requestCompleted(String target, long duration, boolean failed) {
+    }
+
 }
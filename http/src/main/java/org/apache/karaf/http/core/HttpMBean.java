@@ -54,4 +54,34 @@ public interface HttpMBean {
      */
     void removeProxy(String url) throws MBeanException;
 
+    /**
+     * Number of proxy requests answered from the response cache, without request to the target.
+     */
+    long getProxyCacheHits();
+
+    /**
+     * Number of proxy requests answered from the response cache after a revalidation by the target.
+     */
+    long getProxyCacheRevalidations();
+
+    /**
+     * Number of cacheable proxy requests sent to the target.
+     */
+    long getProxyCacheMisses();
+
+    /**
+     * Ratio of the cacheable proxy requests answered from the response cache.
+     */
+    double getProxyCacheHitRatio();
+
+    /**
+     * Number of responses in the proxy response cache.
+     */
+    int getProxyCacheEntries();
+
+    /**
+     * Clear the proxy response cache.
+     */
+    void clearProxyCache();
+
 }
@@ -34,6 +34,7 @@ import javax.management.openmbean.TabularDataSupport;
 import javax.management.openmbean.TabularType;
 
 import org.apache.karaf.http.core.*;
+import org.apache.karaf.http.core.internal.proxy.ProxyCache;
 
 /**
  * Implementation of the HTTP MBean.
@@ -41,9 +42,9 @@ import org.apache.karaf.http.core.*;
 public class HttpMBeanImpl extends StandardMBean implements HttpMBean {
 
     private ServletService servletService;
-    private ProxyService proxyService;
+    private ProxyServiceImpl proxyService;
 
-    public HttpMBeanImpl(ServletService servletService, ProxyService proxyService) throws NotCompliantMBeanException {
+    public HttpMBeanImpl(ServletService servletService, ProxyServiceImpl proxyService) throws NotCompliantMBeanException {
         super(HttpMBean.class);
         this.servletService = servletService;
         this.proxyService = proxyService;
@@ -103,4 +104,42 @@ public class HttpMBeanImpl extends StandardMBean implements HttpMBean {
         }
     }
 
+    @Override
+    public long getProxyCacheHits() {
+        ProxyCache cache = proxyService.getCache();
+        return cache != null ? cache.getHits() : 0;
+    }
+
+    @Override
+    public long getProxyCacheRevalidations() {
+        ProxyCache cache = proxyService.getCache();
+        return cache != null ? cache.getRevalidations() : 0;
+    }
+
+    @Override
+    public long getProxyCacheMisses() {
+        ProxyCache cache = proxyService.getCache();
+        return cache != null ? cache.getMisses() : 0;
+    }
+
+    @Override
+    public double getProxyCacheHitRatio() {
+        ProxyCache cache = proxyService.getCache();
+        return cache != null ? cache.getHitRatio() : 0;
+    }
+
+    @Override
+    public int getProxyCacheEntries() {
+        ProxyCache cache = proxyService.getCache();
+        return cache != null ? cache.getEntries() : 0;
+    }
+
+    @Override
+    public void clearProxyCache() {
+        ProxyCache cache = proxyService.getCache();
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
 }
@@ -19,7 +19,9 @@ package org.apache.karaf.http.core.internal;
 import org.apache.karaf.http.core.BalancingPolicy;
 import org.apache.karaf.http.core.Proxy;
 import org.apache.karaf.http.core.ProxyService;
+import org.apache.karaf.http.core.internal.proxy.ProxyCache;
 import org.apache.karaf.http.core.internal.proxy.ProxyServlet;
+import org.apache.karaf.http.core.internal.proxy.ProxyTarget;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.ServiceReference;
 import org.osgi.service.cm.Configuration;
@@ -28,6 +30,7 @@ import org.osgi.service.http.HttpService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.util.*;
 
 public class ProxyServiceImpl implements ProxyService {
@@ -36,11 +39,34 @@ public class ProxyServiceImpl implements ProxyService {
 
     protected static final String CONFIGURATION_PID = "org.apache.karaf.http";
     protected static final String CONFIGURATION_KEY = "proxies";
+    protected static final String ASYNC_KEY = "proxy.async";
+    protected static final String CONNECT_TIMEOUT_KEY = "proxy.connect.timeout";
+    protected static final String READ_TIMEOUT_KEY = "proxy.read.timeout";
+    protected static final String MAX_CONNECTIONS_KEY = "proxy.max.connections";
+    protected static final String FAILURE_THRESHOLD_KEY = "proxy.failure.threshold";
+    protected static final String RETRY_DELAY_KEY = "proxy.retry.delay";
+    protected static final String HEALTH_CHECK_PATH_KEY = "proxy.health.path";
+    protected static final String HEALTH_CHECK_INTERVAL_KEY = "proxy.health.interval";
+    protected static final String CACHE_ENABLED_KEY = "proxy.cache.enabled";
+    protected static final String CACHE_DIRECTORY_KEY = "proxy.cache.directory";
+    protected static final String CACHE_MEMORY_SIZE_KEY = "proxy.cache.memory.size";
+    protected static final String CACHE_DISK_SIZE_KEY = "proxy.cache.disk.size";
+    protected static final String CACHE_MAX_ENTRY_SIZE_KEY = "proxy.cache.max.entry.size";
 
     private ConfigurationAdmin configurationAdmin;
     private HttpService httpService;
     private BundleContext bundleContext;
     private Map<String, Proxy> proxies;
+    private boolean async = true;
+    private int connectTimeout = ProxyTarget.DEFAULT_CONNECT_TIMEOUT;
+    private int readTimeout = ProxyTarget.DEFAULT_READ_TIMEOUT;
+    private int maxConnections = ProxyTarget.DEFAULT_MAX_CONNECTIONS;
+    private int failureThreshold = ProxyTarget.DEFAULT_FAILURE_THRESHOLD;
+    private int retryDelay = ProxyTarget.DEFAULT_RETRY_DELAY;
+    private String healthCheckPath;
+    private int healthCheckInterval = ProxyServlet.DEFAULT_HEALTH_CHECK_INTERVAL;
+    private ProxyCache cache;
+    private boolean cacheEnabled;
 
     public ProxyServiceImpl(HttpService httpService, ConfigurationAdmin configurationAdmin, BundleContext bundleContext) {
         this.httpService = httpService;
@@ -74,6 +100,9 @@ public class ProxyServiceImpl implements ProxyService {
 
     @Override
     public void addProxy(String url, String proxyTo, String balancingProxy) throws Exception {
+        if (balancingProxy != null && !getBalancingPolicies().contains(balancingProxy)) {
+            throw new IllegalArgumentException("Unknown balancing policy " + balancingProxy + ", the available policies are " + getBalancingPolicies());
+        }
         Proxy proxy = new Proxy(url, proxyTo, balancingProxy);
         addProxyInternal(proxy);
         updateConfiguration();
@@ -93,6 +122,16 @@ public class ProxyServiceImpl implements ProxyService {
         if (properties == null) {
             return;
         }
+        // only applied to the proxies added from now on
+        async = getBoolean(properties, ASYNC_KEY, true);
+        connectTimeout = getInt(properties, CONNECT_TIMEOUT_KEY, ProxyTarget.DEFAULT_CONNECT_TIMEOUT);
+        readTimeout = getInt(properties, READ_TIMEOUT_KEY, ProxyTarget.DEFAULT_READ_TIMEOUT);
+        maxConnections = getInt(properties, MAX_CONNECTIONS_KEY, ProxyTarget.DEFAULT_MAX_CONNECTIONS);
+        failureThreshold = getInt(properties, FAILURE_THRESHOLD_KEY, ProxyTarget.DEFAULT_FAILURE_THRESHOLD);
+        retryDelay = getInt(properties, RETRY_DELAY_KEY, ProxyTarget.DEFAULT_RETRY_DELAY);
+        healthCheckPath = properties.get(HEALTH_CHECK_PATH_KEY) != null ? properties.get(HEALTH_CHECK_PATH_KEY).toString().trim() : null;
+        healthCheckInterval = getInt(properties, HEALTH_CHECK_INTERVAL_KEY, ProxyServlet.DEFAULT_HEALTH_CHECK_INTERVAL);
+        updateCache(properties);
         if (properties.get(CONFIGURATION_KEY) != null && (properties.get(CONFIGURATION_KEY) instanceof String[])) {
             String[] proxiesArray = (String[]) properties.get(CONFIGURATION_KEY);
             for (String proxyString : proxiesArray) {
@@ -122,6 +161,15 @@ public class ProxyServiceImpl implements ProxyService {
         try {
             ProxyServlet proxyServlet = new ProxyServlet();
             proxyServlet.setProxyTo(proxy.getProxyTo());
+            proxyServlet.setAsync(async);
+            proxyServlet.setConnectTimeout(connectTimeout);
+            proxyServlet.setReadTimeout(readTimeout);
+            proxyServlet.setMaxConnections(maxConnections);
+            proxyServlet.setFailureThreshold(failureThreshold);
+            proxyServlet.setRetryDelay(retryDelay);
+            proxyServlet.setHealthCheckPath(healthCheckPath);
+            proxyServlet.setHealthCheckInterval(healthCheckInterval);
+            proxyServlet.setCache(getCache());
             if (proxy.getBalancingPolicy() != null) {
                 Collection<ServiceReference<BalancingPolicy>> serviceReferences = bundleContext.getServiceReferences(BalancingPolicy.class, "(type=" + proxy.getBalancingPolicy() + ")");
                 if (serviceReferences != null && serviceReferences.size() == 1) {
@@ -136,6 +184,70 @@ public class ProxyServiceImpl implements ProxyService {
         }
     }
 
+    /**
+     * @return The proxy response cache, or {@code null} if it's disabled.
+     */
+    public synchronized ProxyCache getCache() {
+        return cacheEnabled ? cache : null;
+    }
+
+    private synchronized void updateCache(Dictionary<String, ?> properties) {
+        cacheEnabled = getBoolean(properties, CACHE_ENABLED_KEY, false);
+        if (!cacheEnabled) {
+            return;
+        }
+        long memorySize = getLong(properties, CACHE_MEMORY_SIZE_KEY, ProxyCache.DEFAULT_MEMORY_SIZE);
+        long diskSize = getLong(properties, CACHE_DISK_SIZE_KEY, ProxyCache.DEFAULT_DISK_SIZE);
+        long maxEntrySize = getLong(properties, CACHE_MAX_ENTRY_SIZE_KEY, ProxyCache.DEFAULT_MAX_ENTRY_SIZE);
+        if (cache == null) {
+            Object directory = properties.get(CACHE_DIRECTORY_KEY);
+            File cacheDirectory = directory != null
+                    ? new File(directory.toString().trim())
+                    : new File(System.getProperty("karaf.data", System.getProperty("java.io.tmpdir")), "cache/proxy");
+            cache = new ProxyCache(cacheDirectory, memorySize, diskSize, maxEntrySize);
+        } else {
+            cache.setLimits(memorySize, diskSize, maxEntrySize);
+        }
+    }
+
+    private static int getInt(Dictionary<String, ?> properties, String key, int def) {
+        Object value = properties.get(key);
+        if (value instanceof Number) {
+            return ((Number) value).intValue();
+        }
+        if (value != null) {
+            try {
+                return Integer.parseInt(value.toString().trim());
+            } catch (NumberFormatException e) {
+                LOG.warn("Invalid {} value: {}", key, value);
+            }
+        }
+        return def;
+    }
+
+    private static long getLong(Dictionary<String, ?> properties, String key, long def) {
+        Object value = properties.get(key);
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        if (value != null) {
+            try {
+                return Long.parseLong(value.toString().trim());
+            } catch (NumberFormatException e) {
+                LOG.warn("Invalid {} value: {}", key, value);
+            }
+        }
+        return def;
+    }
+
+    private static boolean getBoolean(Dictionary<String, ?> properties, String key, boolean def) {
+        Object value = properties.get(key);
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        return value != null ? Boolean.parseBoolean(value.toString().trim()) : def;
+    }
+
     private void updateConfiguration() {
         try {
             // get configuration
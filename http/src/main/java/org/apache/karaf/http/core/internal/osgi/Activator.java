@@ -23,6 +23,8 @@ import org.apache.karaf.http.core.internal.HttpMBeanImpl;
 import org.apache.karaf.http.core.internal.ProxyServiceImpl;
 import org.apache.karaf.http.core.internal.ServletEventHandler;
 import org.apache.karaf.http.core.internal.ServletServiceImpl;
+import org.apache.karaf.http.core.internal.proxy.EwmaBalancingPolicy;
+import org.apache.karaf.http.core.internal.proxy.LeastOutstandingBalancingPolicy;
 import org.apache.karaf.http.core.internal.proxy.RandomBalancingPolicy;
 import org.apache.karaf.http.core.internal.proxy.RoundRobinBalancingPolicy;
 import org.apache.karaf.util.tracker.BaseActivator;
@@ -55,7 +57,7 @@ public class Activator extends BaseActivator implements ManagedService {
 
     private BundleListener listener;
 
-    private ProxyService proxyService;
+    private ProxyServiceImpl proxyService;
 
     @Override
     protected void doStart() throws Exception {
@@ -94,6 +96,16 @@ public class Activator extends BaseActivator implements ManagedService {
         roundRobinBalancingPolicyProperties.put("type", "round-robin");
         register(BalancingPolicy.class, roundRobinBalancingPolicy, roundRobinBalancingPolicyProperties);
 
+        LeastOutstandingBalancingPolicy leastOutstandingBalancingPolicy = new LeastOutstandingBalancingPolicy();
+        Hashtable<String, String> leastOutstandingBalancingPolicyProperties = new Hashtable<>();
+        leastOutstandingBalancingPolicyProperties.put("type", "least-outstanding");
+        register(BalancingPolicy.class, leastOutstandingBalancingPolicy, leastOutstandingBalancingPolicyProperties);
+
+        EwmaBalancingPolicy ewmaBalancingPolicy = new EwmaBalancingPolicy();
+        Hashtable<String, String> ewmaBalancingPolicyProperties = new Hashtable<>();
+        ewmaBalancingPolicyProperties.put("type", "ewma");
+        register(BalancingPolicy.class, ewmaBalancingPolicy, ewmaBalancingPolicyProperties);
+
         proxyService = new ProxyServiceImpl(httpService, configurationAdmin, bundleContext);
         register(ProxyService.class, proxyService);
 
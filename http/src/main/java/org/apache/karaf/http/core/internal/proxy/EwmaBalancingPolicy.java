@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.http.core.internal.proxy;
+
+import org.apache.karaf.http.core.BalancingPolicy;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Select the host with the lowest expected latency.
+ * <p>
+ * The latency of each host is a peak exponentially weighted moving average of its response times: a slower
+ * response is taken into account at once, while faster responses lower the average over time. The cost of a
+ * host is its latency multiplied by the number of requests in progress plus one. The hosts without response yet
+ * are selected first, and a failed request counts as a slow response, so the traffic moves away from slow or
+ * failing hosts and comes back once they recover.
+ */
+public class EwmaBalancingPolicy implements BalancingPolicy {
+
+    static final long DECAY_TIME = TimeUnit.SECONDS.toNanos(10);
+    static final long FAILURE_PENALTY = TimeUnit.SECONDS.toNanos(1);
+
+    private final Map<String, Statistics> statistics = new ConcurrentHashMap<>();
+
+    @Override
+    public String selectHost(String[] targets) {
+        if (targets.length == 0) {
+            return null;
+        } else if (targets.length == 1) {
+            return targets[0];
+        }
+        long now = System.nanoTime();
+        int start = ThreadLocalRandom.current().nextInt(targets.length);
+        String selected = null;
+        double min = Double.MAX_VALUE;
+        for (int i = 0; i < targets.length; i++) {
+            String target = targets[(start + i) % targets.length];
+            Statistics stats = statistics.get(target);
+            double cost = stats != null ? stats.getCost(now) : 0;
+            if (cost < min) {
+                min = cost;
+                selected = target;
+            }
+        }
+        return selected;
+    }
+
+    @Override
+    public void requestStarted(String target) {
+        statistics.computeIfAbsent(target, t -> new Statistics()).started();
+    }
+
+    @Override
+    public void requestCompleted(String target, long duration, boolean failed) {
+        Statistics stats = statistics.get(target);
+        if (stats == null) {
+            return;
+        }
+        stats.completed(System.nanoTime(), duration >= 0 && failed ? Math.max(duration, FAILURE_PENALTY) : duration);
+    }
+
+    double getLatency(String target) {
+        Statistics stats = statistics.get(target);
+        return stats != null ? stats.getLatency(System.nanoTime()) : 0;
+    }
+
+    private static class Statistics {
+
+        private double latency;
+        private long timestamp;
+        private boolean sampled;
+        private int outstanding;
+
+        synchronized void started() {
+            outstanding++;
+        }
+
+        synchronized void completed(long now, long sample) {
+            outstanding--;
+            if (sample < 0) {
+                return;
+            }
+            if (!sampled || sample > latency) {
+                latency = sample;
+                sampled = true;
+            } else {
+                double weight = Math.exp(-(double) Math.max(now - timestamp, 0) / DECAY_TIME);
+                latency = latency * weight + sample * (1 - weight);
+            }
+            timestamp = now;
+        }
+
+        synchronized double getLatency(long now) {
+            if (!sampled) {
+                return 0;
+            }
+            // without new response, the latency decays so that the host is tried again
+            return latency * Math.exp(-(double) Math.max(now - timestamp, 0) / DECAY_TIME);
+        }
+
+        synchronized double getCost(long now) {
+            // one more nanosecond, so that the requests in progress count for the hosts without response yet
+            return (getLatency(now) + 1) * (outstanding + 1);
+        }
+    }
+
+}
@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.http.core.internal.proxy;
+
+import org.apache.karaf.http.core.BalancingPolicy;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Select the host with the least requests in progress. The ties are broken randomly, so that the hosts are
+ * evenly used when they are idle.
+ */
+public class LeastOutstandingBalancingPolicy implements BalancingPolicy {
+
+    private final Map<String, AtomicInteger> outstanding = new ConcurrentHashMap<>();
+
+    @Override
+    public String selectHost(String[] targets) {
+        if (targets.length == 0) {
+            return null;
+        } else if (targets.length == 1) {
+            return targets[0];
+        }
+        int start = ThreadLocalRandom.current().nextInt(targets.length);
+        String selected = null;
+        int min = Integer.MAX_VALUE;
+        for (int i = 0; i < targets.length; i++) {
+            String target = targets[(start + i) % targets.length];
+            int count = getOutstanding(target);
+            if (count < min) {
+                min = count;
+                selected = target;
+            }
+        }
+        return selected;
+    }
+
+    @Override
+    public void requestStarted(String target) {
+        outstanding.computeIfAbsent(target, t -> new AtomicInteger()).incrementAndGet();
+    }
+
+    @Override
+    public void requestCompleted(String target, long duration, boolean failed) {
+        AtomicInteger count = outstanding.get(target);
+        if (count != null) {
+            count.decrementAndGet();
+        }
+    }
+
+    int getOutstanding(String target) {
+        AtomicInteger count = outstanding.get(target);
+        return count != null ? count.get() : 0;
+    }
+
+}
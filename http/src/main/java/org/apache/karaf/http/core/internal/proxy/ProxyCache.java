@@ -0,0 +1,761 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.http.core.internal.proxy;
+
+import org.apache.http.Header;
+import org.apache.http.HeaderElement;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.NameValuePair;
+import org.apache.http.ProtocolVersion;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache of the responses of the proxy targets, shared by the proxy servlets.
+ * <p>
+ * Only the <code>GET</code> requests without credentials nor range are cached, and only the <code>200</code>
+ * responses allowing it: the <code>Cache-Control</code> (<code>s-maxage</code>, <code>max-age</code>,
+ * <code>no-cache</code>, <code>no-store</code>, <code>private</code>), <code>Expires</code> and <code>Vary</code>
+ * headers are honored, and the responses setting cookies are not cached. The stale responses having an
+ * <code>ETag</code> or a <code>Last-Modified</code> header are revalidated with a conditional request to the target,
+ * and the conditional requests of the clients are answered from the cache, or forwarded to the target when no
+ * response can be revalidated.
+ * <p>
+ * The responses are kept in memory, the least recently used ones being moved to disk, then removed, when the memory
+ * and disk sizes are exceeded. Concurrent misses on the same URL are coalesced: the first request is sent to the
+ * target, and the other ones wait for its response to be cached.
+ */
+public class ProxyCache {
+
+    public static final long DEFAULT_MEMORY_SIZE = 16 * 1024 * 1024;
+    public static final long DEFAULT_DISK_SIZE = 128 * 1024 * 1024;
+    public static final long DEFAULT_MAX_ENTRY_SIZE = 1024 * 1024;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProxyCache.class);
+
+    private static final long COALESCING_TIMEOUT = TimeUnit.SECONDS.toMillis(10);
+    private static final long MAX_HEURISTIC_LIFETIME = TimeUnit.DAYS.toMillis(1);
+    private static final String FILE_SUFFIX = ".cache";
+
+    /**
+     * Send a request to the target.
+     */
+    @FunctionalInterface
+    public interface Fetcher {
+        HttpResponse fetch(HttpRequest request) throws IOException;
+    }
+
+    private final File directory;
+    private final LinkedHashMap<String, Entry> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Entry> disk = new LinkedHashMap<>(16, 0.75f, true);
+    private final ConcurrentMap<String, CompletableFuture<Void>> pending = new ConcurrentHashMap<>();
+    private final AtomicLong fileCounter = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder revalidations = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private long memorySize;
+    private long diskSize;
+    private long maxEntrySize;
+    private long memoryUsed;
+    private long diskUsed;
+
+    /**
+     * @param directory The directory storing the responses moved to disk.
+     * @param memorySize The maximum size of the responses kept in memory, in bytes.
+     * @param diskSize The maximum size of the responses stored on disk, in bytes, 0 to disable the disk storage.
+     * @param maxEntrySize The maximum size of a cached response, in bytes.
+     */
+    public ProxyCache(File directory, long memorySize, long diskSize, long maxEntrySize) {
+        this.directory = directory;
+        setLimits(memorySize, diskSize, maxEntrySize);
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(FILE_SUFFIX));
+        if (files != null) {
+            // left by a previous run, the index is only kept in memory
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+
+    public void setLimits(long memorySize, long diskSize, long maxEntrySize) {
+        List<Entry> evicted;
+        synchronized (this) {
+            this.memorySize = memorySize;
+            this.diskSize = diskSize;
+            this.maxEntrySize = maxEntrySize;
+            evicted = evict();
+        }
+        spill(evicted);
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getRevalidations() {
+        return revalidations.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return The ratio of the cacheable requests answered with a cached response, revalidated or not.
+     */
+    public double getHitRatio() {
+        long served = getHits() + getRevalidations();
+        long total = served + getMisses();
+        return total > 0 ? (double) served / total : 0;
+    }
+
+    public synchronized int getEntries() {
+        return memory.size() + disk.size();
+    }
+
+    public synchronized long getMemoryUsed() {
+        return memoryUsed;
+    }
+
+    public synchronized long getDiskUsed() {
+        return diskUsed;
+    }
+
+    public synchronized void clear() {
+        for (Entry entry : disk.values()) {
+            entry.delete();
+        }
+        memory.clear();
+        disk.clear();
+        memoryUsed = 0;
+        diskUsed = 0;
+    }
+
+    /**
+     * Return the response to a request, from the cache or from the target.
+     *
+     * @param key The key of the requested resource.
+     * @param request The request to the target.
+     * @param fetcher Sends the requests to the target.
+     * @return The response.
+     */
+    public HttpResponse execute(String key, HttpRequest request, Fetcher fetcher) throws IOException {
+        if (!"GET".equalsIgnoreCase(request.getRequestLine().getMethod())
+                || request.containsHeader(HttpHeaders.AUTHORIZATION)
+                || request.containsHeader(HttpHeaders.RANGE)) {
+            return fetcher.fetch(request);
+        }
+        Map<String, String> directives = getDirectives(request.getHeaders(HttpHeaders.CACHE_CONTROL));
+        if (directives.containsKey("no-store")) {
+            return fetcher.fetch(request);
+        }
+        boolean noCache = directives.containsKey("no-cache") || hasElement(request.getHeaders("Pragma"), "no-cache");
+        long maxAge = getSeconds(directives, "max-age");
+
+        // the conditional requests of the client are answered from the cache
+        String ifNoneMatch = getValue(request, HttpHeaders.IF_NONE_MATCH);
+        String ifModifiedSince = getValue(request, HttpHeaders.IF_MODIFIED_SINCE);
+        request.removeHeaders(HttpHeaders.IF_NONE_MATCH);
+        request.removeHeaders(HttpHeaders.IF_MODIFIED_SINCE);
+
+        boolean coalesced = noCache;
+        while (true) {
+            Entry entry = get(key, request);
+            long now = System.currentTimeMillis();
+            if (entry != null && !noCache && entry.isFresh(now, maxAge)) {
+                HttpResponse response = entry.toResponse(now, ifNoneMatch, ifModifiedSince);
+                if (response != null) {
+                    hits.increment();
+                    return response;
+                }
+                remove(key, entry);
+                continue;
+            }
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            if (!coalesced) {
+                coalesced = true;
+                CompletableFuture<Void> other = pending.putIfAbsent(key, future);
+                if (other != null) {
+                    await(other);
+                    continue;
+                }
+            }
+            HttpResponse response = fetch(key, request, entry, fetcher, future, ifNoneMatch, ifModifiedSince);
+            if (response != null) {
+                return response;
+            }
+        }
+    }
+
+    private HttpResponse fetch(String key, HttpRequest request, Entry entry, Fetcher fetcher, CompletableFuture<Void> future,
+                               String ifNoneMatch, String ifModifiedSince) throws IOException {
+        boolean revalidate = entry != null && (entry.etag != null || entry.lastModified != null);
+        if (revalidate) {
+            if (entry.etag != null) {
+                request.setHeader(HttpHeaders.IF_NONE_MATCH, entry.etag);
+            }
+            if (entry.lastModified != null) {
+                request.setHeader(HttpHeaders.IF_MODIFIED_SINCE, entry.lastModified);
+            }
+        } else {
+            // nothing to answer them from, let the target check the validators of the client
+            if (ifNoneMatch != null) {
+                request.setHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+            }
+            if (ifModifiedSince != null) {
+                request.setHeader(HttpHeaders.IF_MODIFIED_SINCE, ifModifiedSince);
+            }
+        }
+        HttpResponse response;
+        try {
+            response = fetcher.fetch(request);
+        } catch (IOException | RuntimeException e) {
+            done(key, future);
+            throw e;
+        }
+        long now = System.currentTimeMillis();
+        if (revalidate && response.getStatusLine().getStatusCode() == HttpStatus.SC_NOT_MODIFIED) {
+            EntityUtils.consumeQuietly(response.getEntity());
+            Entry updated = entry.revalidated(response, now);
+            if (updated != null) {
+                put(key, updated);
+            } else {
+                remove(key, entry);
+            }
+            done(key, future);
+            HttpResponse cached = entry.toResponse(now, ifNoneMatch, ifModifiedSince);
+            if (cached != null) {
+                revalidations.increment();
+            } else {
+                // moved out of the disk meanwhile, fetch again
+                remove(key, entry);
+                request.removeHeaders(HttpHeaders.IF_NONE_MATCH);
+                request.removeHeaders(HttpHeaders.IF_MODIFIED_SINCE);
+            }
+            return cached;
+        }
+        misses.increment();
+        Entry candidate = Entry.create(key, request, response, now);
+        HttpEntity entity = response.getEntity();
+        if (candidate == null || entity == null || entity.getContentLength() > maxEntrySize) {
+            if (entry != null && response.getStatusLine().getStatusCode() < HttpStatus.SC_INTERNAL_SERVER_ERROR) {
+                // keep the cached response when the target fails
+                remove(key, entry);
+            }
+            done(key, future);
+            return response;
+        }
+        response.setEntity(new CachingEntity(entity, key, candidate, future));
+        return response;
+    }
+
+    private void await(CompletableFuture<Void> future) {
+        try {
+            future.get(COALESCING_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (TimeoutException e) {
+            LOGGER.debug("Timeout waiting for a concurrent request to the same URL");
+        } catch (Exception e) {
+            // the concurrent request failed
+        }
+    }
+
+    private void done(String key, CompletableFuture<Void> future) {
+        pending.remove(key, future);
+        future.complete(null);
+    }
+
+    private synchronized Entry get(String key, HttpRequest request) {
+        Entry entry = memory.get(key);
+        if (entry == null) {
+            entry = disk.get(key);
+        }
+        return entry != null && entry.matches(request) ? entry : null;
+    }
+
+    private void put(String key, Entry entry) {
+        List<Entry> evicted;
+        synchronized (this) {
+            Entry old = memory.remove(key);
+            if (old != null) {
+                memoryUsed -= old.size;
+            } else {
+                old = disk.remove(key);
+                if (old != null) {
+                    diskUsed -= old.size;
+                    if (old.file != entry.file) {
+                        old.delete();
+                    }
+                }
+            }
+            if (entry.file != null) {
+                disk.put(key, entry);
+                diskUsed += entry.size;
+            } else {
+                memory.put(key, entry);
+                memoryUsed += entry.size;
+            }
+            evicted = evict();
+        }
+        spill(evicted);
+    }
+
+    private synchronized void remove(String key, Entry entry) {
+        if (memory.remove(key, entry)) {
+            memoryUsed -= entry.size;
+        } else if (disk.remove(key, entry)) {
+            diskUsed -= entry.size;
+            entry.delete();
+        }
+    }
+
+    /**
+     * Remove the least recently used entries exceeding the sizes.
+     *
+     * @return The entries removed from memory, to move to disk.
+     */
+    private List<Entry> evict() {
+        List<Entry> evicted = Collections.emptyList();
+        for (Iterator<Entry> it = memory.values().iterator(); memoryUsed > memorySize && it.hasNext(); ) {
+            Entry entry = it.next();
+            it.remove();
+            memoryUsed -= entry.size;
+            if (diskSize > 0 && entry.size <= diskSize) {
+                if (evicted.isEmpty()) {
+                    evicted = new ArrayList<>();
+                }
+                evicted.add(entry);
+            }
+        }
+        for (Iterator<Entry> it = disk.values().iterator(); diskUsed > diskSize && it.hasNext(); ) {
+            Entry entry = it.next();
+            it.remove();
+            diskUsed -= entry.size;
+            entry.delete();
+        }
+        return evicted;
+    }
+
+    /**
+     * Move entries removed from memory to disk.
+     */
+    private void spill(List<Entry> entries) {
+        for (Entry entry : entries) {
+            File file = new File(directory, fileCounter.incrementAndGet() + FILE_SUFFIX);
+            try {
+                directory.mkdirs();
+                Files.write(file.toPath(), entry.body);
+            } catch (IOException e) {
+                LOGGER.warn("Can't write the proxy cache file {}", file, e);
+                file.delete();
+                continue;
+            }
+            Entry stored = entry.withFile(file);
+            List<Entry> evicted;
+            synchronized (this) {
+                if (memory.containsKey(entry.key) || disk.containsKey(entry.key)) {
+                    // a newer response was cached meanwhile
+                    file.delete();
+                    continue;
+                }
+                disk.put(entry.key, stored);
+                diskUsed += stored.size;
+                evicted = evict();
+            }
+            spill(evicted);
+        }
+    }
+
+    private static String getValue(HttpRequest request, String name) {
+        Header header = request.getFirstHeader(name);
+        return header != null ? header.getValue() : null;
+    }
+
+    private static Map<String, String> getDirectives(Header[] headers) {
+        Map<String, String> directives = new HashMap<>();
+        for (Header header : headers) {
+            for (HeaderElement element : header.getElements()) {
+                directives.put(element.getName().toLowerCase(), element.getValue());
+            }
+        }
+        return directives;
+    }
+
+    private static boolean hasElement(Header[] headers, String name) {
+        for (Header header : headers) {
+            for (HeaderElement element : header.getElements()) {
+                if (name.equalsIgnoreCase(element.getName())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return The value of a directive in seconds, or -1 if it's absent or invalid.
+     */
+    private static long getSeconds(Map<String, String> directives, String name) {
+        String value = directives.get(name);
+        if (value != null) {
+            try {
+                return Math.max(Long.parseLong(value.replace("\"", "").trim()), 0);
+            } catch (NumberFormatException e) {
+                // invalid
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * A cached response, in memory or on disk.
+     */
+    private static class Entry {
+
+        private final String key;
+        private final Map<String, String> vary;
+        private final ProtocolVersion version;
+        private final int status;
+        private final String reason;
+        private final Header[] headers;
+        private final long responseTime;
+        private final long initialAge;
+        private final long expires;
+        private final String etag;
+        private final String lastModified;
+        private final byte[] body;
+        private final File file;
+        private final long size;
+
+        private Entry(String key, Map<String, String> vary, ProtocolVersion version, int status, String reason,
+                      Header[] headers, long responseTime, long initialAge, long expires, byte[] body, File file, long size) {
+            this.key = key;
+            this.vary = vary;
+            this.version = version;
+            this.status = status;
+            this.reason = reason;
+            this.headers = headers;
+            this.responseTime = responseTime;
+            this.initialAge = initialAge;
+            this.expires = expires;
+            this.etag = getHeader(headers, HttpHeaders.ETAG);
+            this.lastModified = getHeader(headers, HttpHeaders.LAST_MODIFIED);
+            this.body = body;
+            this.file = file;
+            this.size = size;
+        }
+
+        /**
+         * Create the entry of a response, without its body.
+         *
+         * @return The entry, or {@code null} if the response can't be cached.
+         */
+        static Entry create(String key, HttpRequest request, HttpResponse response, long now) {
+            if (response.getStatusLine().getStatusCode() != HttpStatus.SC_OK
+                    || response.containsHeader("Set-Cookie") || response.containsHeader("Set-Cookie2")) {
+                return null;
+            }
+            Map<String, String> vary = new HashMap<>();
+            for (Header header : response.getHeaders(HttpHeaders.VARY)) {
+                for (HeaderElement element : header.getElements()) {
+                    if ("*".equals(element.getName())) {
+                        return null;
+                    }
+                    vary.put(element.getName().toLowerCase(), getHeader(request.getAllHeaders(), element.getName()));
+                }
+            }
+            Header[] headers = response.getAllHeaders();
+            long initialAge = getAge(headers);
+            long lifetime = getLifetime(headers, now);
+            if (lifetime < 0) {
+                return null;
+            }
+            return new Entry(key, vary, response.getStatusLine().getProtocolVersion(), response.getStatusLine().getStatusCode(),
+                    response.getStatusLine().getReasonPhrase(), headers, now, initialAge, now - initialAge + lifetime, null, null, 0);
+        }
+
+        /**
+         * Update the entry with the headers of a <code>304</code> response.
+         *
+         * @return The updated entry, or {@code null} if the response can't be cached anymore.
+         */
+        Entry revalidated(HttpResponse response, long now) {
+            List<Header> merged = new ArrayList<>();
+            for (Header header : headers) {
+                if (!response.containsHeader(header.getName())) {
+                    merged.add(header);
+                }
+            }
+            for (Header header : response.getAllHeaders()) {
+                if (!header.getName().equalsIgnoreCase(HttpHeaders.CONTENT_LENGTH)) {
+                    merged.add(header);
+                }
+            }
+            Header[] mergedHeaders = merged.toArray(new Header[0]);
+            long age = getAge(mergedHeaders);
+            long lifetime = getLifetime(mergedHeaders, now);
+            if (lifetime < 0) {
+                return null;
+            }
+            return new Entry(key, vary, version, status, reason, mergedHeaders, now, age, now - age + lifetime, body, file, size);
+        }
+
+        Entry withBody(byte[] body) {
+            return new Entry(key, vary, version, status, reason, headers, responseTime, initialAge, expires, body, null,
+                    body.length + getHeadersSize());
+        }
+
+        Entry withFile(File file) {
+            return new Entry(key, vary, version, status, reason, headers, responseTime, initialAge, expires, null, file, size);
+        }
+
+        boolean matches(HttpRequest request) {
+            for (Map.Entry<String, String> e : vary.entrySet()) {
+                String value = getHeader(request.getAllHeaders(), e.getKey());
+                if (value == null ? e.getValue() != null : !value.equals(e.getValue())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        boolean isFresh(long now, long maxAge) {
+            return now < expires && (maxAge < 0 || getAge(now) <= TimeUnit.SECONDS.toMillis(maxAge));
+        }
+
+        long getAge(long now) {
+            return Math.max(now - responseTime, 0) + initialAge;
+        }
+
+        /**
+         * Build the response to a client request.
+         *
+         * @return The response, or {@code null} if the entry was removed from disk.
+         */
+        HttpResponse toResponse(long now, String ifNoneMatch, String ifModifiedSince) {
+            BasicHttpResponse response = new BasicHttpResponse(version, status, reason);
+            response.setHeaders(headers);
+            response.setHeader("Age", Long.toString(TimeUnit.MILLISECONDS.toSeconds(getAge(now))));
+            if (isNotModified(ifNoneMatch, ifModifiedSince)) {
+                response.setStatusCode(HttpStatus.SC_NOT_MODIFIED);
+                response.setReasonPhrase("Not Modified");
+                return response;
+            }
+            if (body != null) {
+                response.setEntity(new ByteArrayEntity(body));
+            } else {
+                try {
+                    response.setEntity(new InputStreamEntity(new FileInputStream(file), file.length()));
+                } catch (FileNotFoundException e) {
+                    return null;
+                }
+            }
+            return response;
+        }
+
+        private boolean isNotModified(String ifNoneMatch, String ifModifiedSince) {
+            if (ifNoneMatch != null) {
+                for (String tag : ifNoneMatch.split(",")) {
+                    tag = tag.trim();
+                    if (tag.equals("*") || etag != null && weak(tag).equals(weak(etag))) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            if (ifModifiedSince != null && lastModified != null) {
+                Date since = DateUtils.parseDate(ifModifiedSince);
+                Date modified = DateUtils.parseDate(lastModified);
+                return since != null && modified != null && !modified.after(since);
+            }
+            return false;
+        }
+
+        void delete() {
+            if (file != null && !file.delete() && file.exists()) {
+                file.deleteOnExit();
+            }
+        }
+
+        private long getHeadersSize() {
+            long size = 0;
+            for (Header header : headers) {
+                size += header.getName().length() + header.getValue().length();
+            }
+            return size;
+        }
+
+        private static String weak(String tag) {
+            return tag.startsWith("W/") ? tag.substring(2) : tag;
+        }
+
+        private static String getHeader(Header[] headers, String name) {
+            for (Header header : headers) {
+                if (header.getName().equalsIgnoreCase(name)) {
+                    return header.getValue();
+                }
+            }
+            return null;
+        }
+
+        private static long getAge(Header[] headers) {
+            String age = getHeader(headers, "Age");
+            if (age != null) {
+                try {
+                    return TimeUnit.SECONDS.toMillis(Math.max(Long.parseLong(age.trim()), 0));
+                } catch (NumberFormatException e) {
+                    // invalid
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * @return The freshness lifetime of a response in milliseconds, 0 if it must be revalidated, or -1 if it
+         * can't be cached.
+         */
+        private static long getLifetime(Header[] headers, long now) {
+            Map<String, String> directives = new HashMap<>();
+            for (Header header : headers) {
+                if (header.getName().equalsIgnoreCase(HttpHeaders.CACHE_CONTROL)) {
+                    for (HeaderElement element : header.getElements()) {
+                        directives.put(element.getName().toLowerCase(), element.getValue());
+                    }
+                }
+            }
+            if (directives.containsKey("no-store") || directives.containsKey("private")) {
+                return -1;
+            }
+            boolean validators = getHeader(headers, HttpHeaders.ETAG) != null || getHeader(headers, HttpHeaders.LAST_MODIFIED) != null;
+            if (directives.containsKey("no-cache")) {
+                return validators ? 0 : -1;
+            }
+            long seconds = getSeconds(directives, "s-maxage");
+            if (seconds < 0) {
+                seconds = getSeconds(directives, "max-age");
+            }
+            if (seconds >= 0) {
+                return seconds > 0 || validators ? TimeUnit.SECONDS.toMillis(seconds) : -1;
+            }
+            Date date = parseDate(getHeader(headers, HttpHeaders.DATE));
+            long responseDate = date != null ? date.getTime() : now;
+            String expires = getHeader(headers, HttpHeaders.EXPIRES);
+            if (expires != null) {
+                // an invalid date means already expired
+                Date expiresDate = parseDate(expires);
+                long lifetime = expiresDate != null ? Math.max(expiresDate.getTime() - responseDate, 0) : 0;
+                return lifetime > 0 || validators ? lifetime : -1;
+            }
+            Date lastModified = parseDate(getHeader(headers, HttpHeaders.LAST_MODIFIED));
+            if (lastModified != null) {
+                // heuristic freshness: 10% of the time since the last modification
+                return Math.min(Math.max(responseDate - lastModified.getTime(), 0) / 10, MAX_HEURISTIC_LIFETIME);
+            }
+            return validators ? 0 : -1;
+        }
+
+        private static Date parseDate(String value) {
+            return value != null ? DateUtils.parseDate(value) : null;
+        }
+    }
+
+    /**
+     * Copies the body of a response to the cache while it is sent to the client.
+     */
+    private class CachingEntity extends HttpEntityWrapper {
+
+        private final String key;
+        private final Entry entry;
+        private final CompletableFuture<Void> future;
+
+        CachingEntity(HttpEntity entity, String key, Entry entry, CompletableFuture<Void> future) {
+            super(entity);
+            this.key = key;
+            this.entry = entry;
+            this.future = future;
+        }
+
+        @Override
+        public InputStream getContent() throws IOException {
+            // read by someone else, not cached
+            done(key, future);
+            return super.getContent();
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            boolean complete = false;
+            try (InputStream in = wrappedEntity.getContent()) {
+                byte[] bytes = new byte[8192];
+                int l;
+                while ((l = in.read(bytes)) >= 0) {
+                    out.write(bytes, 0, l);
+                    if (buffer != null) {
+                        if (buffer.size() + l > maxEntrySize) {
+                            buffer = null;
+                        } else {
+                            buffer.write(bytes, 0, l);
+                        }
+                    }
+                }
+                complete = true;
+            } finally {
+                if (complete && buffer != null) {
+                    put(key, entry.withBody(buffer.toByteArray()));
+                }
+                done(key, future);
+            }
+        }
+    }
+
+}
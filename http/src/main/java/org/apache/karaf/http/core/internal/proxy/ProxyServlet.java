@@ -17,26 +17,19 @@
 package org.apache.karaf.http.core.internal.proxy;
 
 import org.apache.http.*;
-import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.AbortableHttpRequest;
-import org.apache.http.client.params.ClientPNames;
-import org.apache.http.client.params.CookiePolicy;
-import org.apache.http.client.utils.URIUtils;
 import org.apache.http.cookie.SM;
 import org.apache.http.entity.InputStreamEntity;
-import org.apache.http.impl.client.DefaultHttpClient;
-import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
 import org.apache.http.message.BasicHeader;
 import org.apache.http.message.BasicHttpEntityEnclosingRequest;
 import org.apache.http.message.BasicHttpRequest;
 import org.apache.http.message.HeaderGroup;
-import org.apache.http.params.BasicHttpParams;
-import org.apache.http.params.HttpParams;
 import org.apache.http.util.EntityUtils;
 import org.apache.karaf.http.core.BalancingPolicy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.servlet.AsyncContext;
 import javax.servlet.ServletException;
 import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServlet;
@@ -45,27 +38,52 @@ import javax.servlet.http.HttpServletResponse;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.lang.reflect.Constructor;
 import java.net.HttpCookie;
-import java.net.URI;
+import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.Enumeration;
 import java.util.Formatter;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * This is a simple servlet acting as a HTTP reverse proxy/gateway. It works with any webcontainer as it's a regular servlet.
+ * <p>
+ * Each backend has its own pooled HTTP client, see {@link ProxyTarget}. In asynchronous mode (when the container
+ * supports it), the request is handed over to the backend pool and the container thread is released at once,
+ * so a slow backend only holds the threads of its own pool.
+ * <p>
+ * The backends failing or not answering to the health probes are skipped by the balancing, as long as at least one
+ * backend is available. When a {@link ProxyCache} is set, the cacheable responses are served from it.
  */
 public class ProxyServlet extends HttpServlet {
 
     private final static Logger LOGGER = LoggerFactory.getLogger(ProxyServlet.class);
 
+    public static final int DEFAULT_HEALTH_CHECK_INTERVAL = 10000;
+
     protected String proxyTo;
     protected boolean doForwardIP = true;
     protected boolean doSendUrlFragment = true;
     protected BalancingPolicy balancingPolicy;
+    protected boolean async = true;
+    protected int connectTimeout = ProxyTarget.DEFAULT_CONNECT_TIMEOUT;
+    protected int readTimeout = ProxyTarget.DEFAULT_READ_TIMEOUT;
+    protected int maxConnections = ProxyTarget.DEFAULT_MAX_CONNECTIONS;
+    protected int failureThreshold = ProxyTarget.DEFAULT_FAILURE_THRESHOLD;
+    protected int retryDelay = ProxyTarget.DEFAULT_RETRY_DELAY;
+    protected String healthCheckPath;
+    protected int healthCheckInterval = DEFAULT_HEALTH_CHECK_INTERVAL;
+
+    protected ProxyCache cache;
 
-    private HttpClient proxyClient;
+    private final Map<String, ProxyTarget> targets = new ConcurrentHashMap<>();
+    private ScheduledExecutorService healthChecker;
 
     public void setIPForwarding(boolean ipForwarding) {
         this.doForwardIP = ipForwarding;
@@ -79,87 +97,208 @@ public class ProxyServlet extends HttpServlet {
         this.balancingPolicy = balancingPolicy;
     }
 
+    public void setAsync(boolean async) {
+        this.async = async;
+    }
+
+    public void setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public void setReadTimeout(int readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    public void setFailureThreshold(int failureThreshold) {
+        this.failureThreshold = failureThreshold;
+    }
+
+    public void setRetryDelay(int retryDelay) {
+        this.retryDelay = retryDelay;
+    }
+
+    public void setHealthCheckPath(String healthCheckPath) {
+        this.healthCheckPath = healthCheckPath;
+    }
+
+    public void setHealthCheckInterval(int healthCheckInterval) {
+        this.healthCheckInterval = healthCheckInterval;
+    }
+
+    public void setCache(ProxyCache cache) {
+        this.cache = cache;
+    }
+
     @Override
     public String getServletInfo() {
         return "Apache Karaf Proxy Servlet";
     }
 
-    @Override
-    public void init() throws ServletException {
-        HttpParams hcParams = new BasicHttpParams();
-        hcParams.setParameter(ClientPNames.COOKIE_POLICY, CookiePolicy.IGNORE_COOKIES);
-        proxyClient = createHttpClient(hcParams);
+    /**
+     * Return the backend of the given URL, created on first use.
+     *
+     * @param location The backend URL.
+     * @return The backend.
+     */
+    protected ProxyTarget getTarget(String location) {
+        return targets.computeIfAbsent(location, l -> {
+            ProxyTarget target = new ProxyTarget(l, connectTimeout, readTimeout, maxConnections);
+            target.setFailureThreshold(failureThreshold);
+            target.setRetryDelay(retryDelay);
+            return target;
+        });
     }
 
-    protected HttpClient createHttpClient(HttpParams hcParams) {
-        try {
-            Class clientClazz = Class.forName("org.apache.http.impl.client.SystemDefaultHttpClient");
-            Constructor constructor = clientClazz.getConstructor(HttpParams.class);
-            return (HttpClient) constructor.newInstance(hcParams);
-        } catch (ClassNotFoundException e) {
-            // not a problem, we fallback on the "old" client
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+    @Override
+    public void init() throws ServletException {
+        if (healthCheckPath != null && !healthCheckPath.isEmpty() && healthCheckInterval > 0) {
+            healthChecker = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "Karaf proxy health check " + proxyTo);
+                thread.setDaemon(true);
+                return thread;
+            });
+            healthChecker.scheduleWithFixedDelay(() -> {
+                for (String location : proxyTo.split(",")) {
+                    getTarget(location).probe(healthCheckPath);
+                }
+            }, 0, healthCheckInterval, TimeUnit.MILLISECONDS);
         }
-
-        // fallback on using "old" client style
-        return new DefaultHttpClient(new ThreadSafeClientConnManager(), hcParams);
     }
 
     @Override
     public void destroy() {
-        // starting for HttpComponents 4.3, clients implements Closeable
-        if (proxyClient instanceof Closeable) {
-            try {
-                ((Closeable) proxyClient).close();
-            } catch (IOException e) {
-                log("Error occurred when closing HTTP client in the proxy servlet destroy", e);
-            }
-        } else {
-            // older HttpComponents version requires to close the client
-            if (proxyClient != null) {
-                proxyClient.getConnectionManager().shutdown();
-            }
+        if (healthChecker != null) {
+            healthChecker.shutdownNow();
+            healthChecker = null;
         }
+        for (ProxyTarget target : targets.values()) {
+            close(target);
+        }
+        targets.clear();
         super.destroy();
     }
 
     @Override
     protected void service(HttpServletRequest servletRequest, HttpServletResponse servletResponse) throws ServletException, IOException {
-        String[] proxyTos = proxyTo.split(",");
+        String[] proxyTos = getAvailableTargets(proxyTo.split(","));
         String actualProxy;
         if (balancingPolicy != null) {
             actualProxy = balancingPolicy.selectHost(proxyTos);
         } else {
             actualProxy = proxyTos[0];
         }
+        ProxyTarget target = getTarget(actualProxy);
 
-        URI locationUri = URI.create(actualProxy);
-        HttpHost host = URIUtils.extractHost(locationUri);
+        LOGGER.debug("Proxy to {} (host {})", actualProxy, target.getHost());
 
-        LOGGER.debug("Proxy to {} (host {})", locationUri, host);
+        if (balancingPolicy != null) {
+            balancingPolicy.requestStarted(actualProxy);
+        }
 
-        String method = servletRequest.getMethod();
-        String proxyRequestUri = rewriteUrlFromRequest(servletRequest, actualProxy);
-        HttpRequest proxyRequest;
-
-        // spec: RFC 2616, sec 4.3: either of these two headers means there is a message body
-        if (servletRequest.getHeader(HttpHeaders.CONTENT_LENGTH) != null || servletRequest.getHeader(HttpHeaders.TRANSFER_ENCODING) != null) {
-            HttpEntityEnclosingRequest entityProxyRequest = new BasicHttpEntityEnclosingRequest(method, proxyRequestUri);
-            entityProxyRequest.setEntity(new InputStreamEntity(servletRequest.getInputStream(), servletRequest.getContentLength()));
-            proxyRequest = entityProxyRequest;
-        } else {
-            proxyRequest = new BasicHttpRequest(method, proxyRequestUri);
+        // the balancing policy is told once per proxied request, even if the cache sends several backend requests
+        Outcome outcome = new Outcome();
+        boolean dispatched = false;
+        try {
+            if (!async || !servletRequest.isAsyncSupported()) {
+                proxy(servletRequest, servletResponse, target, outcome);
+                return;
+            }
+            AsyncContext asyncContext = servletRequest.startAsync();
+            // the backend timeouts are enforced by the client
+            asyncContext.setTimeout(0);
+            try {
+                target.execute(() -> {
+                    try {
+                        proxy((HttpServletRequest) asyncContext.getRequest(), (HttpServletResponse) asyncContext.getResponse(), target, outcome);
+                    } catch (Exception e) {
+                        LOGGER.warn("Error proxying {} to {}", servletRequest.getRequestURI(), target.getLocation(), e);
+                        sendErrorQuietly((HttpServletResponse) asyncContext.getResponse(), HttpServletResponse.SC_BAD_GATEWAY);
+                    } finally {
+                        requestCompleted(target, outcome);
+                        asyncContext.complete();
+                    }
+                });
+                dispatched = true;
+            } catch (RejectedExecutionException e) {
+                LOGGER.debug("Too many requests waiting for {}", target.getLocation());
+                sendErrorQuietly(servletResponse, HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                asyncContext.complete();
+            }
+        } finally {
+            if (!dispatched) {
+                requestCompleted(target, outcome);
+            }
+        }
+    }
+
+    /**
+     * Return the targets accepting requests, or all the targets if none does.
+     */
+    private String[] getAvailableTargets(String[] locations) {
+        if (locations.length == 1) {
+            return locations;
+        }
+        List<String> available = new ArrayList<>(locations.length);
+        for (String location : locations) {
+            if (getTarget(location).isAvailable()) {
+                available.add(location);
+            }
+        }
+        if (available.isEmpty() || available.size() == locations.length) {
+            return locations;
         }
+        return available.toArray(new String[0]);
+    }
 
-        copyRequestHeaders(servletRequest, proxyRequest, host);
+    private void sendErrorQuietly(HttpServletResponse servletResponse, int status) {
+        if (!servletResponse.isCommitted()) {
+            try {
+                servletResponse.sendError(status);
+            } catch (IOException e) {
+                // the client went away
+            }
+        }
+    }
 
-        setXForwardedForHeader(servletRequest, proxyRequest);
+    /**
+     * Send the request to the backend and copy its response.
+     */
+    protected void proxy(HttpServletRequest servletRequest, HttpServletResponse servletResponse, ProxyTarget target, Outcome outcome) throws ServletException, IOException {
+        String actualProxy = target.getLocation();
+        HttpHost host = target.getHost();
 
+        String method = servletRequest.getMethod();
+        HttpRequest proxyRequest = null;
         HttpResponse proxyResponse = null;
         try {
+            String proxyRequestUri = rewriteUrlFromRequest(servletRequest, actualProxy);
+
+            // spec: RFC 2616, sec 4.3: either of these two headers means there is a message body
+            if (servletRequest.getHeader(HttpHeaders.CONTENT_LENGTH) != null || servletRequest.getHeader(HttpHeaders.TRANSFER_ENCODING) != null) {
+                HttpEntityEnclosingRequest entityProxyRequest = new BasicHttpEntityEnclosingRequest(method, proxyRequestUri);
+                entityProxyRequest.setEntity(new InputStreamEntity(servletRequest.getInputStream(), servletRequest.getContentLength()));
+                proxyRequest = entityProxyRequest;
+            } else {
+                proxyRequest = new BasicHttpRequest(method, proxyRequestUri);
+            }
+
+            copyRequestHeaders(servletRequest, proxyRequest, host);
+
+            setXForwardedForHeader(servletRequest, proxyRequest);
+
             // execute the request
-            proxyResponse = proxyClient.execute(host, proxyRequest);
+            ProxyCache.Fetcher fetcher = request -> execute(target, request, outcome);
+            if (cache != null) {
+                String query = servletRequest.getQueryString();
+                String key = servletRequest.getRequestURI() + (query != null ? "?" + query : "");
+                proxyResponse = cache.execute(key, proxyRequest, fetcher);
+            } else {
+                proxyResponse = fetcher.fetch(proxyRequest);
+            }
 
             // process the response
             int statusCode = proxyResponse.getStatusLine().getStatusCode();
@@ -198,6 +337,48 @@ public class ProxyServlet extends HttpServlet {
         }
     }
 
+    private HttpResponse execute(ProxyTarget target, HttpRequest proxyRequest, Outcome outcome) throws IOException {
+        long start = System.nanoTime();
+        HttpResponse proxyResponse;
+        try {
+            proxyResponse = target.getClient().execute(target.getHost(), proxyRequest);
+        } catch (IOException | RuntimeException e) {
+            outcome.sent(target, System.nanoTime() - start, true);
+            throw e;
+        }
+        int statusCode = proxyResponse.getStatusLine().getStatusCode();
+        outcome.sent(target, System.nanoTime() - start, statusCode == HttpServletResponse.SC_BAD_GATEWAY
+                || statusCode == HttpServletResponse.SC_SERVICE_UNAVAILABLE
+                || statusCode == HttpServletResponse.SC_GATEWAY_TIMEOUT);
+        return proxyResponse;
+    }
+
+    private void requestCompleted(ProxyTarget target, Outcome outcome) {
+        if (balancingPolicy != null) {
+            balancingPolicy.requestCompleted(target.getLocation(), outcome.duration, outcome.failed);
+        }
+    }
+
+    /**
+     * The result of the backend requests sent for one proxied request.
+     */
+    protected static final class Outcome {
+
+        /**
+         * The duration of the last backend request in nanoseconds, -1 if no request was sent.
+         */
+        private long duration = -1;
+        private boolean failed;
+
+        private void sent(ProxyTarget target, long duration, boolean failed) {
+            // the health of the target is updated for each backend request
+            target.requestCompleted(failed);
+            this.duration = duration;
+            this.failed = failed;
+        }
+
+    }
+
     protected boolean doResponseRedirect(HttpServletRequest servletRequest, HttpServletResponse servletResponse, HttpResponse proxyResponse, int statusCode, String proxyTo) throws ServletException, IOException {
         // check if the proxy is a redirect
         if (statusCode >= HttpServletResponse.SC_MULTIPLE_CHOICES && statusCode < HttpServletResponse.SC_NOT_MODIFIED) {
@@ -0,0 +1,211 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.http.core.internal.proxy;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.CookieSpecs;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.utils.URIUtils;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.message.BasicHttpRequest;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A backend of a proxy, with its pooled HTTP client.
+ * <p>
+ * At most <code>maxConnections</code> requests are sent to the backend at the same time. The requests handled
+ * asynchronously are run by a pool of the same size, with a bounded queue: when it is full, the requests are
+ * rejected instead of piling up behind a slow backend.
+ * <p>
+ * The backend is considered unavailable (the circuit is open) after <code>failureThreshold</code> consecutive
+ * failed requests, during <code>retryDelay</code> milliseconds. Then the requests are sent again, and the circuit
+ * opens again at the first failure, until a request succeeds. When health probes are enabled, a failed probe also
+ * makes the backend unavailable, until a probe succeeds.
+ */
+public class ProxyTarget implements Closeable {
+
+    public static final int DEFAULT_CONNECT_TIMEOUT = 10000;
+    public static final int DEFAULT_READ_TIMEOUT = 60000;
+    public static final int DEFAULT_MAX_CONNECTIONS = 64;
+    public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+    public static final int DEFAULT_RETRY_DELAY = 30000;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProxyTarget.class);
+
+    private final String location;
+    private final HttpHost host;
+    private final CloseableHttpClient client;
+    private final ThreadPoolExecutor executor;
+    private final AtomicInteger failures = new AtomicInteger();
+    private int failureThreshold = DEFAULT_FAILURE_THRESHOLD;
+    private int retryDelay = DEFAULT_RETRY_DELAY;
+    private volatile long unavailableUntil;
+    private volatile boolean healthy = true;
+
+    /**
+     * @param location The backend URL.
+     * @param connectTimeout The timeout to connect to the backend or to get a pooled connection, in milliseconds.
+     * @param readTimeout The timeout waiting for data from the backend, in milliseconds.
+     * @param maxConnections The maximum number of concurrent requests to the backend.
+     */
+    public ProxyTarget(String location, int connectTimeout, int readTimeout, int maxConnections) {
+        this.location = location;
+        this.host = URIUtils.extractHost(URI.create(location));
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnections);
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(connectTimeout)
+                .setConnectionRequestTimeout(connectTimeout)
+                .setSocketTimeout(readTimeout)
+                .setCookieSpec(CookieSpecs.IGNORE_COOKIES)
+                .setRedirectsEnabled(false)
+                .build();
+        // the proxy forwards the cookies, redirects and encoded content as they are
+        this.client = HttpClients.custom()
+                .useSystemProperties()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .disableCookieManagement()
+                .disableRedirectHandling()
+                .disableContentCompression()
+                .build();
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(maxConnections, maxConnections, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(maxConnections * 4), r -> {
+                    Thread thread = new Thread(r, "Karaf proxy " + host + " " + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    public HttpHost getHost() {
+        return host;
+    }
+
+    public HttpClient getClient() {
+        return client;
+    }
+
+    public void setFailureThreshold(int failureThreshold) {
+        this.failureThreshold = failureThreshold;
+    }
+
+    public void setRetryDelay(int retryDelay) {
+        this.retryDelay = retryDelay;
+    }
+
+    /**
+     * @return {@code True} if the requests can be sent to the backend.
+     */
+    public boolean isAvailable() {
+        return healthy && System.currentTimeMillis() >= unavailableUntil;
+    }
+
+    /**
+     * Record the result of a request sent to the backend.
+     *
+     * @param failed {@code True} if the backend could not be reached or replied it is not available.
+     */
+    public void requestCompleted(boolean failed) {
+        if (!failed) {
+            failures.set(0);
+        } else if (failureThreshold > 0 && failures.incrementAndGet() >= failureThreshold) {
+            if (isAvailable()) {
+                LOGGER.warn("Proxy target {} is unavailable after {} failed requests", location, failures.get());
+            }
+            unavailableUntil = System.currentTimeMillis() + retryDelay;
+        }
+    }
+
+    /**
+     * Check the health of the backend with a <code>GET</code> request. The backend is healthy if the status of the
+     * response is lower than 500.
+     *
+     * @param path The path of the request on the backend host.
+     */
+    public void probe(String path) {
+        boolean success;
+        try {
+            HttpResponse response = client.execute(host, new BasicHttpRequest("GET", path));
+            EntityUtils.consumeQuietly(response.getEntity());
+            success = response.getStatusLine().getStatusCode() < 500;
+        } catch (IOException e) {
+            LOGGER.debug("Health probe of proxy target {} failed", location, e);
+            success = false;
+        }
+        if (success && !isAvailable()) {
+            LOGGER.info("Proxy target {} is available", location);
+            failures.set(0);
+            unavailableUntil = 0;
+        } else if (!success && healthy) {
+            LOGGER.warn("Proxy target {} is unavailable, the health probe failed", location);
+        }
+        healthy = success;
+    }
+
+    /**
+     * @return The number of requests being sent asynchronously to the backend.
+     */
+    public int getActiveRequests() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * @return The number of asynchronous requests waiting for a free connection to the backend.
+     */
+    public int getQueuedRequests() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Run an asynchronous request.
+     *
+     * @param request The request.
+     * @throws RejectedExecutionException If too many requests are already waiting for the backend.
+     */
+    public void execute(Runnable request) throws RejectedExecutionException {
+        executor.execute(request);
+    }
+
+    @Override
+    public void close() throws IOException {
+        executor.shutdownNow();
+        client.close();
+    }
+
+}
@@ -18,6 +18,8 @@ package org.apache.karaf.http.core.internal.proxy;
 
 import org.apache.karaf.http.core.BalancingPolicy;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * Select sequentially (round robin) the host in the proxy provided hosts.
  *
@@ -25,7 +27,7 @@ import org.apache.karaf.http.core.BalancingPolicy;
  */
 public class RoundRobinBalancingPolicy implements BalancingPolicy {
 
-    private int index = 0;
+    private final AtomicInteger index = new AtomicInteger();
 
     @Override
     public String selectHost(String[] targets) {
@@ -34,13 +36,7 @@ public class RoundRobinBalancingPolicy implements BalancingPolicy {
         } else if (targets.length == 1) {
             return targets[0];
         } else {
-            String host = targets[index];
-            // moving index
-            index++;
-            if (index >= targets.length) {
-                index = 0;
-            }
-            return host;
+            return targets[Math.floorMod(index.getAndIncrement(), targets.length)];
         }
     }
 
@@ -67,4 +67,48 @@ public class BalancingPoliciesTest {
         Assert.assertEquals("A", selected);
     }
 
+    @Test
+    public void testLeastOutstandingBalancingPolicy() throws Exception {
+        LeastOutstandingBalancingPolicy balancingPolicy = new LeastOutstandingBalancingPolicy();
+        String[] targets = proxyTo.split(",");
+        balancingPolicy.requestStarted("A");
+        balancingPolicy.requestStarted("A");
+        balancingPolicy.requestStarted("B");
+        Assert.assertEquals("C", balancingPolicy.selectHost(targets));
+        balancingPolicy.requestStarted("C");
+        balancingPolicy.requestStarted("C");
+        Assert.assertEquals("B", balancingPolicy.selectHost(targets));
+        balancingPolicy.requestCompleted("A", 10, false);
+        balancingPolicy.requestCompleted("A", 10, false);
+        Assert.assertEquals(0, balancingPolicy.getOutstanding("A"));
+        Assert.assertEquals("A", balancingPolicy.selectHost(targets));
+    }
+
+    @Test
+    public void testEwmaBalancingPolicy() throws Exception {
+        EwmaBalancingPolicy balancingPolicy = new EwmaBalancingPolicy();
+        String[] targets = proxyTo.split(",");
+        long ms = 1000000L;
+        for (int i = 0; i < 10; i++) {
+            balancingPolicy.requestStarted("A");
+            balancingPolicy.requestCompleted("A", 100 * ms, false);
+            balancingPolicy.requestStarted("B");
+            balancingPolicy.requestCompleted("B", 10 * ms, false);
+            balancingPolicy.requestStarted("C");
+            balancingPolicy.requestCompleted("C", 50 * ms, false);
+        }
+        Assert.assertEquals("B", balancingPolicy.selectHost(targets));
+        // a failure counts as a slow response
+        balancingPolicy.requestStarted("B");
+        balancingPolicy.requestCompleted("B", ms, true);
+        Assert.assertTrue(balancingPolicy.getLatency("B") > balancingPolicy.getLatency("C"));
+        // requests in progress increase the cost of a host
+        for (int i = 0; i < 3; i++) {
+            balancingPolicy.requestStarted("C");
+        }
+        Assert.assertEquals("A", balancingPolicy.selectHost(new String[] { "A", "C" }));
+        // an unknown host is tried first
+        Assert.assertEquals("D", balancingPolicy.selectHost(new String[] { "A", "B", "C", "D" }));
+    }
+
 }
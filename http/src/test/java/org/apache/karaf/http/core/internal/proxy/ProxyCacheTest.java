@@ -0,0 +1,207 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.http.core.internal.proxy;
+
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.HttpResponse;
+import org.apache.http.message.BasicHttpRequest;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ProxyCacheTest {
+
+    private HttpServer backend;
+    private ExecutorService backendExecutor;
+    private ProxyTarget target;
+    private File directory;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger notModified = new AtomicInteger();
+
+    @Before
+    public void setUp() throws Exception {
+        backend = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        backendExecutor = Executors.newCachedThreadPool();
+        backend.setExecutor(backendExecutor);
+        backend.createContext("/", exchange -> {
+            requests.incrementAndGet();
+            String path = exchange.getRequestURI().getPath();
+            if (path.startsWith("/slow")) {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (path.startsWith("/etag") && "\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModified.incrementAndGet();
+                exchange.getResponseHeaders().set("ETag", "\"v1\"");
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+            if (path.startsWith("/etag")) {
+                exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+                exchange.getResponseHeaders().set("ETag", "\"v1\"");
+            } else if (path.startsWith("/private")) {
+                exchange.getResponseHeaders().set("Cache-Control", "no-store");
+            } else {
+                exchange.getResponseHeaders().set("Cache-Control", "max-age=60");
+            }
+            byte[] body = ("content of " + path).getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        backend.start();
+        target = new ProxyTarget("http://localhost:" + backend.getAddress().getPort(), 5000, 5000, 16);
+        directory = Files.createTempDirectory("proxy-cache").toFile();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        target.close();
+        backend.stop(0);
+        backendExecutor.shutdownNow();
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    private String get(ProxyCache cache, String path, String... headers) throws Exception {
+        BasicHttpRequest request = new BasicHttpRequest("GET", path);
+        for (int i = 0; i < headers.length; i += 2) {
+            request.addHeader(headers[i], headers[i + 1]);
+        }
+        HttpResponse response = cache.execute(path, request, r -> target.getClient().execute(target.getHost(), r));
+        if (response.getEntity() == null) {
+            return Integer.toString(response.getStatusLine().getStatusCode());
+        }
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        response.getEntity().writeTo(baos);
+        return baos.toString("UTF-8");
+    }
+
+    @Test
+    public void testFreshResponse() throws Exception {
+        ProxyCache cache = new ProxyCache(directory, 1024 * 1024, 0, 1024 * 1024);
+        Assert.assertEquals("content of /a", get(cache, "/a"));
+        Assert.assertEquals("content of /a", get(cache, "/a"));
+        Assert.assertEquals(1, requests.get());
+        Assert.assertEquals(1, cache.getHits());
+        Assert.assertEquals(1, cache.getMisses());
+        // answered from the cache
+        Assert.assertEquals("304", get(cache, "/a", "If-Modified-Since", "Sat, 01 Jan 2050 00:00:00 GMT", "If-None-Match", "*"));
+        // forced revalidation without validator
+        Assert.assertEquals("content of /a", get(cache, "/a", "Cache-Control", "no-cache"));
+        Assert.assertEquals(2, requests.get());
+    }
+
+    @Test
+    public void testRevalidation() throws Exception {
+        ProxyCache cache = new ProxyCache(directory, 1024 * 1024, 0, 1024 * 1024);
+        Assert.assertEquals("content of /etag", get(cache, "/etag"));
+        Assert.assertEquals("content of /etag", get(cache, "/etag"));
+        Assert.assertEquals("304", get(cache, "/etag", "If-None-Match", "W/\"v1\""));
+        Assert.assertEquals(3, requests.get());
+        Assert.assertEquals(2, notModified.get());
+        Assert.assertEquals(2, cache.getRevalidations());
+    }
+
+    @Test
+    public void testConditionalRequestForwarded() throws Exception {
+        ProxyCache cache = new ProxyCache(directory, 1024 * 1024, 0, 1024 * 1024);
+        // nothing cached, the target checks the validator of the client
+        Assert.assertEquals("304", get(cache, "/etag", "If-None-Match", "\"v1\""));
+        Assert.assertEquals(1, notModified.get());
+        Assert.assertEquals(0, cache.getEntries());
+        Assert.assertEquals("content of /etag", get(cache, "/etag", "If-None-Match", "\"v0\""));
+        Assert.assertEquals(1, cache.getEntries());
+        Assert.assertEquals(2, requests.get());
+    }
+
+    @Test
+    public void testNotCacheable() throws Exception {
+        ProxyCache cache = new ProxyCache(directory, 1024 * 1024, 0, 1024 * 1024);
+        Assert.assertEquals("content of /private", get(cache, "/private"));
+        Assert.assertEquals("content of /private", get(cache, "/private"));
+        Assert.assertEquals("content of /b", get(cache, "/b", "Authorization", "Basic a2FyYWY6a2FyYWY="));
+        Assert.assertEquals("content of /b", get(cache, "/b", "Authorization", "Basic a2FyYWY6a2FyYWY="));
+        Assert.assertEquals(4, requests.get());
+        Assert.assertEquals(0, cache.getEntries());
+    }
+
+    @Test
+    public void testEvictionToDisk() throws Exception {
+        ProxyCache cache = new ProxyCache(directory, 200, 300, 1024);
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals("content of /" + i, get(cache, "/" + i));
+        }
+        Assert.assertTrue(cache.getMemoryUsed() <= 200);
+        Assert.assertTrue(cache.getDiskUsed() <= 300);
+        Assert.assertTrue(cache.getDiskUsed() > 0);
+        // the most recent responses are still cached, in memory or on disk
+        int before = requests.get();
+        for (int i = 9; i >= 7; i--) {
+            Assert.assertEquals("content of /" + i, get(cache, "/" + i));
+        }
+        Assert.assertEquals(before, requests.get());
+        // the oldest ones were evicted
+        Assert.assertEquals("content of /0", get(cache, "/0"));
+        Assert.assertEquals(before + 1, requests.get());
+        cache.clear();
+        Assert.assertEquals(0, cache.getEntries());
+        Assert.assertEquals(0, directory.listFiles().length);
+    }
+
+    @Test
+    public void testCoalescing() throws Exception {
+        ProxyCache cache = new ProxyCache(directory, 1024 * 1024, 0, 1024 * 1024);
+        ExecutorService executor = Executors.newFixedThreadPool(10);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                results.add(executor.submit(() -> get(cache, "/slow")));
+            }
+            for (Future<String> result : results) {
+                Assert.assertEquals("content of /slow", result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Assert.assertEquals(1, requests.get());
+        Assert.assertEquals(9, cache.getHits());
+    }
+
+}
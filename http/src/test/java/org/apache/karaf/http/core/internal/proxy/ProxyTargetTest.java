@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.http.core.internal.proxy;
+
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.HttpResponse;
+import org.apache.http.message.BasicHttpRequest;
+import org.apache.http.util.EntityUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ProxyTargetTest {
+
+    private static final int REQUESTS = 200;
+
+    private HttpServer backend;
+    private ExecutorService backendExecutor;
+    private final AtomicInteger concurrent = new AtomicInteger();
+    private final AtomicInteger maxConcurrent = new AtomicInteger();
+    private volatile CountDownLatch release = new CountDownLatch(0);
+
+    @Before
+    public void startBackend() throws Exception {
+        backend = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        backendExecutor = Executors.newCachedThreadPool();
+        backend.setExecutor(backendExecutor);
+        backend.createContext("/", exchange -> {
+            int current = concurrent.incrementAndGet();
+            maxConcurrent.accumulateAndGet(current, Math::max);
+            try {
+                release.await();
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                concurrent.decrementAndGet();
+            }
+            byte[] body = "hello".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        backend.start();
+    }
+
+    @After
+    public void stopBackend() {
+        release.countDown();
+        backend.stop(0);
+        backendExecutor.shutdownNow();
+    }
+
+    private String location() {
+        return "http://localhost:" + backend.getAddress().getPort() + "/";
+    }
+
+    @Test
+    public void testConcurrentRequests() throws Exception {
+        try (ProxyTarget target = new ProxyTarget(location(), 5000, 5000, 8)) {
+            CountDownLatch done = new CountDownLatch(REQUESTS);
+            AtomicInteger succeeded = new AtomicInteger();
+            for (int i = 0; i < REQUESTS; i++) {
+                while (true) {
+                    try {
+                        target.execute(() -> {
+                            try {
+                                HttpResponse response = target.getClient().execute(target.getHost(), new BasicHttpRequest("GET", "/"));
+                                if (response.getStatusLine().getStatusCode() == 200
+                                        && "hello".equals(EntityUtils.toString(response.getEntity()))) {
+                                    succeeded.incrementAndGet();
+                                }
+                            } catch (Exception e) {
+                                // counted as a failure
+                            } finally {
+                                done.countDown();
+                            }
+                        });
+                        break;
+                    } catch (RejectedExecutionException e) {
+                        // the queue is full, wait for the backend
+                        Thread.sleep(1);
+                    }
+                }
+            }
+            Assert.assertTrue(done.await(30, TimeUnit.SECONDS));
+            Assert.assertEquals(REQUESTS, succeeded.get());
+            Assert.assertTrue(maxConcurrent.get() <= 8);
+        }
+    }
+
+    @Test
+    public void testRejectWhenSaturated() throws Exception {
+        release = new CountDownLatch(1);
+        try (ProxyTarget target = new ProxyTarget(location(), 5000, 5000, 1)) {
+            Runnable request = () -> {
+                try {
+                    EntityUtils.consume(target.getClient().execute(target.getHost(), new BasicHttpRequest("GET", "/")).getEntity());
+                } catch (Exception e) {
+                    // Ignore
+                }
+            };
+            // one request running, four queued
+            for (int i = 0; i < 5; i++) {
+                target.execute(request);
+            }
+            try {
+                target.execute(request);
+                Assert.fail("The request should have been rejected");
+            } catch (RejectedExecutionException e) {
+                // expected
+            }
+            Assert.assertEquals(4, target.getQueuedRequests());
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void testCircuitBreaker() throws Exception {
+        try (ProxyTarget target = new ProxyTarget(location(), 5000, 5000, 1)) {
+            target.setFailureThreshold(2);
+            target.setRetryDelay(200);
+            target.requestCompleted(true);
+            target.requestCompleted(false);
+            target.requestCompleted(true);
+            Assert.assertTrue(target.isAvailable());
+            target.requestCompleted(true);
+            Assert.assertTrue(!target.isAvailable());
+            Thread.sleep(300);
+            Assert.assertTrue(target.isAvailable());
+            // the circuit opens again at the first failure
+            target.requestCompleted(true);
+            Assert.assertTrue(!target.isAvailable());
+            // a successful health probe closes it
+            target.probe("/health");
+            Assert.assertTrue(target.isAvailable());
+        }
+    }
+
+    @Test
+    public void testHealthProbe() throws Exception {
+        try (ProxyTarget target = new ProxyTarget("http://localhost:1/", 1000, 1000, 1)) {
+            target.probe("/health");
+            Assert.assertTrue(!target.isAvailable());
+        }
+    }
+
+}
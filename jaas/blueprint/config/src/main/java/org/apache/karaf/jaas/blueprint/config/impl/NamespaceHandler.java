@@ -53,6 +53,8 @@ public class NamespaceHandler implements org.apache.aries.blueprint.NamespaceHan
                 return getClass().getResource("/org/apache/karaf/jaas/blueprint/config/karaf-jaas-1.0.0.xsd");
             case "http://karaf.apache.org/xmlns/jaas/v1.1.0":
                 return getClass().getResource("/org/apache/karaf/jaas/blueprint/config/karaf-jaas-1.1.0.xsd");
+            case "http://karaf.apache.org/xmlns/jaas/v1.2.0":
+                return getClass().getResource("/org/apache/karaf/jaas/blueprint/config/karaf-jaas-1.2.0.xsd");
             default:
                 return null;
         }
@@ -89,6 +91,14 @@ public class NamespaceHandler implements org.apache.aries.blueprint.NamespaceHan
         if (rank != null && rank.length() > 0) {
             bean.addProperty("rank", createValue(context, rank));
         }
+        String parallel = element.getAttribute("parallel");
+        if (parallel != null && parallel.length() > 0) {
+            bean.addProperty("parallel", createValue(context, parallel));
+        }
+        String parallelTimeout = element.getAttribute("parallelTimeout");
+        if (parallelTimeout != null && parallelTimeout.length() > 0) {
+            bean.addProperty("parallelTimeout", createValue(context, parallelTimeout));
+        }
         NodeList childElements = element.getElementsByTagNameNS(element.getNamespaceURI(), "module");
         if (childElements != null && childElements.getLength() > 0) {
             MutableCollectionMetadata children = context.createMetadata(MutableCollectionMetadata.class);
@@ -93,5 +93,6 @@ public class Activator implements BundleActivator {
         keystoreInstanceServiceTracker.close();
         jaasRealmServiceTracker.close();
         osgiConfiguration.close();
+        ParallelLoginModule.shutdown();
     }
 }
@@ -16,24 +16,32 @@
  */
 package org.apache.karaf.jaas.config.impl;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import javax.security.auth.login.AppConfigurationEntry;
 
 import org.apache.karaf.jaas.boot.ProxyLoginModule;
 import org.apache.karaf.jaas.config.JaasRealm;
+import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.FrameworkUtil;
 
 /**
  * An implementation of JaasRealm which is created
  * by the spring namespace handler.
+ * In parallel mode, consecutive sufficient modules are evaluated
+ * concurrently by a {@link ParallelLoginModule}.
  */
 public class Config implements JaasRealm {
 
     private String name;
     private int rank;
     private Module[] modules;
+    private boolean parallel;
+    private long parallelTimeout;
     private BundleContext bundleContext;
     private transient AppConfigurationEntry[] entries;
 
@@ -62,6 +70,24 @@ public class Config implements JaasRealm {
         this.entries = null;
     }
 
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+        this.entries = null;
+    }
+
+    public long getParallelTimeout() {
+        return parallelTimeout;
+    }
+
+    public void setParallelTimeout(long parallelTimeout) {
+        this.parallelTimeout = parallelTimeout;
+        this.entries = null;
+    }
+
     public BundleContext getBundleContext() {
         return bundleContext;
     }
@@ -73,29 +99,61 @@ public class Config implements JaasRealm {
     public AppConfigurationEntry[] getEntries() {
         if (this.entries == null && this.modules != null) {
             Module[] modules = this.modules;
-            AppConfigurationEntry[] entries = new AppConfigurationEntry[modules.length];
-            for (int i = 0; i < modules.length; i++) {
-                Map<String,Object> options = new HashMap<>();
-                // put the bundle context in the options map
-                // it's required to be able to use the encryption service
-                // in the AbstractKarafLoginModule
-                options.put(BundleContext.class.getName(), bundleContext);
-                if (modules[i].getOptions() != null) {
-                    for (Map.Entry e : modules[i].getOptions().entrySet()) {
-                        options.put(e.getKey().toString(), e.getValue());
-                    }
+            List<AppConfigurationEntry> entries = new ArrayList<>();
+            List<Map<String, Object>> sufficient = new ArrayList<>();
+            for (Module module : modules) {
+                AppConfigurationEntry.LoginModuleControlFlag flag = getControlFlag(module.getFlags());
+                if (parallel && flag == AppConfigurationEntry.LoginModuleControlFlag.SUFFICIENT) {
+                    sufficient.add(getOptions(module));
+                    continue;
                 }
-                options.put(ProxyLoginModule.PROPERTY_MODULE, modules[i].getClassName());
-                options.put(ProxyLoginModule.PROPERTY_BUNDLE, Long.toString(bundleContext.getBundle().getBundleId()));
-                entries[i] = new AppConfigurationEntry(ProxyLoginModule.class.getName(),
-                                                       getControlFlag(modules[i].getFlags()),
-                                                       options);
+                addSufficient(entries, sufficient);
+                entries.add(new AppConfigurationEntry(ProxyLoginModule.class.getName(), flag, getOptions(module)));
             }
-            this.entries = entries;
+            addSufficient(entries, sufficient);
+            this.entries = entries.toArray(new AppConfigurationEntry[entries.size()]);
         }
         return this.entries;
     }
 
+    private Map<String, Object> getOptions(Module module) {
+        Map<String,Object> options = new HashMap<>();
+        // put the bundle context in the options map
+        // it's required to be able to use the encryption service
+        // in the AbstractKarafLoginModule
+        options.put(BundleContext.class.getName(), bundleContext);
+        if (module.getOptions() != null) {
+            for (Map.Entry e : module.getOptions().entrySet()) {
+                options.put(e.getKey().toString(), e.getValue());
+            }
+        }
+        options.put(ProxyLoginModule.PROPERTY_MODULE, module.getClassName());
+        options.put(ProxyLoginModule.PROPERTY_BUNDLE, Long.toString(bundleContext.getBundle().getBundleId()));
+        return options;
+    }
+
+    /**
+     * Add the pending consecutive sufficient modules, grouped in a parallel module if there are several of them.
+     */
+    private void addSufficient(List<AppConfigurationEntry> entries, List<Map<String, Object>> sufficient) {
+        if (sufficient.size() == 1) {
+            entries.add(new AppConfigurationEntry(ProxyLoginModule.class.getName(),
+                                                  AppConfigurationEntry.LoginModuleControlFlag.SUFFICIENT,
+                                                  sufficient.get(0)));
+        } else if (sufficient.size() > 1) {
+            Bundle bundle = FrameworkUtil.getBundle(ParallelLoginModule.class);
+            Map<String, Object> options = new HashMap<>();
+            options.put(ParallelLoginModule.MODULES, new ArrayList<>(sufficient));
+            options.put(ParallelLoginModule.TIMEOUT, Long.toString(parallelTimeout));
+            options.put(ProxyLoginModule.PROPERTY_MODULE, ParallelLoginModule.class.getName());
+            options.put(ProxyLoginModule.PROPERTY_BUNDLE, Long.toString(bundle.getBundleId()));
+            entries.add(new AppConfigurationEntry(ProxyLoginModule.class.getName(),
+                                                  AppConfigurationEntry.LoginModuleControlFlag.SUFFICIENT,
+                                                  options));
+        }
+        sufficient.clear();
+    }
+
     private AppConfigurationEntry.LoginModuleControlFlag getControlFlag(String flags) {
         if ("required".equalsIgnoreCase(flags)) {
             return AppConfigurationEntry.LoginModuleControlFlag.REQUIRED;
@@ -0,0 +1,267 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.jaas.config.impl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.security.auth.Subject;
+import javax.security.auth.callback.Callback;
+import javax.security.auth.callback.CallbackHandler;
+import javax.security.auth.callback.UnsupportedCallbackException;
+import javax.security.auth.login.LoginException;
+import javax.security.auth.spi.LoginModule;
+
+import org.apache.karaf.jaas.boot.ProxyLoginModule;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>Login module evaluating a group of consecutive <code>sufficient</code> login modules concurrently.</p>
+ * <p>As with sequential evaluation, the group succeeds when one of the modules succeeds, and only this module is
+ * committed, so the subject gets the principals of a single module. The group returns as soon as a module succeeds,
+ * when all the modules failed, or when the deadline expires, the modules still running being considered as failed.
+ * If no module succeeded, the error of the first failed module in configuration order is thrown. The other modules
+ * are aborted once their login completes.</p>
+ */
+public class ParallelLoginModule implements LoginModule {
+
+    public static final String MODULES = "org.apache.karaf.jaas.parallel.modules";
+    public static final String TIMEOUT = "org.apache.karaf.jaas.parallel.timeout";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ParallelLoginModule.class);
+
+    private static final AtomicInteger THREADS = new AtomicInteger();
+
+    // guarded by ParallelLoginModule.class
+    private static ExecutorService executor;
+
+    private LoginModule[] modules;
+    private long timeout;
+    private LoginModule selected;
+    private List<CompletableFuture<Boolean>> logins;
+
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newCachedThreadPool(r -> {
+                Thread thread = new Thread(r, "karaf-jaas-parallel-" + THREADS.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * Release the threads evaluating the login modules, called when the bundle stops. The logins in progress
+     * are completed.
+     */
+    static synchronized void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void initialize(Subject subject, CallbackHandler callbackHandler, Map<String, ?> sharedState, Map<String, ?> options) {
+        List<Map<String, ?>> moduleOptions = (List<Map<String, ?>>) options.get(MODULES);
+        if (moduleOptions == null) {
+            throw new IllegalStateException("Option " + MODULES + " must be set to the options of the parallel login modules");
+        }
+        Object timeoutOption = options.get(TIMEOUT);
+        timeout = timeoutOption != null ? Long.parseLong(timeoutOption.toString()) : 0;
+        // the modules share the callback handler and state, which are not expected to be used concurrently
+        CallbackHandler handler = new SynchronizedCallbackHandler(callbackHandler);
+        Map<String, ?> state = sharedState != null ? Collections.synchronizedMap((Map<String, Object>) sharedState) : null;
+        modules = new LoginModule[moduleOptions.size()];
+        for (int i = 0; i < modules.length; i++) {
+            modules[i] = createModule();
+            modules[i].initialize(subject, handler, state, moduleOptions.get(i));
+        }
+    }
+
+    LoginModule createModule() {
+        return new ProxyLoginModule();
+    }
+
+    @Override
+    public boolean login() throws LoginException {
+        CountDownLatch decided = new CountDownLatch(1);
+        ExecutorService executor = getExecutor();
+        logins = new ArrayList<>(modules.length);
+        for (LoginModule module : modules) {
+            logins.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return module.login();
+                } catch (LoginException e) {
+                    throw new LoginFailure(e);
+                }
+            }, executor));
+        }
+        AtomicReference<LoginModule> first = new AtomicReference<>();
+        for (int i = 0; i < modules.length; i++) {
+            LoginModule module = modules[i];
+            logins.get(i).whenComplete((r, t) -> {
+                if (t == null && r && first.compareAndSet(null, module) || isDone()) {
+                    decided.countDown();
+                }
+            });
+        }
+        try {
+            if (timeout > 0) {
+                if (!decided.await(timeout, TimeUnit.MILLISECONDS)) {
+                    LOGGER.debug("Deadline of {} ms expired, the login modules still running are considered failed", timeout);
+                }
+            } else {
+                decided.await();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abortAll();
+            throw new LoginException("Interrupted while waiting for the login modules");
+        }
+        selected = first.get();
+        LoginException error = null;
+        for (CompletableFuture<Boolean> login : logins) {
+            if (login.isCompletedExceptionally()) {
+                error = getError(login);
+                break;
+            }
+        }
+        // the modules not selected are aborted once their login completes
+        for (int i = 0; i < modules.length; i++) {
+            if (modules[i] != selected) {
+                abortWhenDone(modules[i], logins.get(i));
+            }
+        }
+        if (selected != null) {
+            return true;
+        }
+        if (error != null) {
+            throw error;
+        }
+        return false;
+    }
+
+    private boolean isDone() {
+        for (CompletableFuture<Boolean> login : logins) {
+            if (!login.isDone()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static LoginException getError(CompletableFuture<Boolean> login) {
+        try {
+            login.join();
+            return null;
+        } catch (RuntimeException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof LoginFailure) {
+                return ((LoginFailure) cause).getCause();
+            }
+            LoginException error = new LoginException(cause.toString());
+            error.initCause(cause);
+            return error;
+        }
+    }
+
+    private static void abortWhenDone(LoginModule module, CompletableFuture<Boolean> login) {
+        login.whenComplete((r, t) -> {
+            try {
+                module.abort();
+            } catch (Exception e) {
+                LOGGER.debug("Error aborting login module", e);
+            }
+        });
+    }
+
+    private void abortAll() {
+        if (logins != null) {
+            for (int i = 0; i < modules.length; i++) {
+                abortWhenDone(modules[i], logins.get(i));
+            }
+        }
+    }
+
+    @Override
+    public boolean commit() throws LoginException {
+        return selected != null && selected.commit();
+    }
+
+    @Override
+    public boolean abort() throws LoginException {
+        if (selected == null) {
+            return false;
+        }
+        try {
+            return selected.abort();
+        } finally {
+            selected = null;
+        }
+    }
+
+    @Override
+    public boolean logout() throws LoginException {
+        if (selected == null) {
+            return false;
+        }
+        try {
+            return selected.logout();
+        } finally {
+            selected = null;
+        }
+    }
+
+    private static class LoginFailure extends RuntimeException {
+        LoginFailure(LoginException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized LoginException getCause() {
+            return (LoginException) super.getCause();
+        }
+    }
+
+    private static class SynchronizedCallbackHandler implements CallbackHandler {
+        private final CallbackHandler handler;
+
+        SynchronizedCallbackHandler(CallbackHandler handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        public synchronized void handle(Callback[] callbacks) throws IOException, UnsupportedCallbackException {
+            handler.handle(callbacks);
+        }
+    }
+
+}
@@ -0,0 +1,232 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.jaas.config.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.security.auth.Subject;
+import javax.security.auth.callback.CallbackHandler;
+import javax.security.auth.login.FailedLoginException;
+import javax.security.auth.login.LoginException;
+import javax.security.auth.spi.LoginModule;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+public class ParallelLoginModuleTest {
+
+    @AfterClass
+    public static void shutdown() {
+        ParallelLoginModule.shutdown();
+    }
+
+    @Test
+    public void testFirstSuccessSelected() throws Exception {
+        TestModule failing = new TestModule(false, new FailedLoginException("failing"));
+        TestModule slow = new TestModule(true, null);
+        TestModule succeeding = new TestModule(true, null);
+        slow.release = new CountDownLatch(1);
+        LoginModule module = parallel(0, failing, slow, succeeding);
+
+        assertTrue(module.login());
+        assertTrue(module.commit());
+        assertTrue(succeeding.committed);
+        slow.release.countDown();
+
+        // the other modules are aborted once their login completes
+        assertTrue(failing.aborted.await(10, TimeUnit.SECONDS));
+        assertTrue(slow.aborted.await(10, TimeUnit.SECONDS));
+        assertFalse(failing.committed);
+        assertFalse(slow.committed);
+        assertEquals(1, succeeding.aborted.getCount());
+    }
+
+    @Test
+    public void testAllFail() throws Exception {
+        TestModule first = new TestModule(false, new FailedLoginException("first"));
+        TestModule second = new TestModule(false, new FailedLoginException("second"));
+        // the error of the first module in configuration order is reported, whatever the completion order
+        first.release = new CountDownLatch(1);
+        LoginModule module = parallel(0, first, second);
+        new Thread(() -> {
+            try {
+                second.done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            first.release.countDown();
+        }).start();
+
+        try {
+            module.login();
+            fail("The login should have failed");
+        } catch (FailedLoginException e) {
+            assertEquals("first", e.getMessage());
+        }
+        assertFalse(module.commit());
+        assertTrue(first.aborted.await(10, TimeUnit.SECONDS));
+        assertTrue(second.aborted.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testIgnoredModulesFail() throws Exception {
+        LoginModule module = parallel(0, new TestModule(false, null), new TestModule(false, null));
+        assertFalse(module.login());
+        assertFalse(module.commit());
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        TestModule hanging = new TestModule(true, null);
+        hanging.release = new CountDownLatch(1);
+        TestModule failing = new TestModule(false, new FailedLoginException("failing"));
+        LoginModule module = parallel(100, hanging, failing);
+
+        // the module still running at the deadline is considered failed
+        try {
+            module.login();
+            fail("The login should have failed");
+        } catch (FailedLoginException e) {
+            assertEquals("failing", e.getMessage());
+        }
+        assertFalse(module.commit());
+        assertFalse(hanging.committed);
+
+        // and aborted once it completes
+        hanging.release.countDown();
+        assertTrue(hanging.aborted.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testAbortPropagatedToAllModules() throws Exception {
+        TestModule failing = new TestModule(false, new FailedLoginException("failing"));
+        TestModule succeeding = new TestModule(true, null);
+        LoginModule module = parallel(0, failing, succeeding);
+
+        assertTrue(module.login());
+        // another module of the realm failed
+        assertTrue(module.abort());
+        assertEquals(0, succeeding.aborted.getCount());
+        assertTrue(failing.aborted.await(10, TimeUnit.SECONDS));
+        assertFalse(module.abort());
+    }
+
+    @Test
+    public void testLogoutSelectedModule() throws Exception {
+        TestModule failing = new TestModule(false, new FailedLoginException("failing"));
+        TestModule succeeding = new TestModule(true, null);
+        LoginModule module = parallel(0, failing, succeeding);
+
+        assertTrue(module.login());
+        assertTrue(module.commit());
+        assertTrue(module.logout());
+        assertTrue(succeeding.loggedOut);
+        // the module not selected never committed, it has been aborted instead
+        assertTrue(failing.aborted.await(10, TimeUnit.SECONDS));
+        assertFalse(failing.loggedOut);
+        assertFalse(module.logout());
+    }
+
+    private static LoginModule parallel(long timeout, TestModule... members) {
+        Deque<LoginModule> modules = new ArrayDeque<>(Arrays.asList(members));
+        ParallelLoginModule module = new ParallelLoginModule() {
+            @Override
+            LoginModule createModule() {
+                return modules.poll();
+            }
+        };
+        List<Map<String, ?>> moduleOptions = new ArrayList<>();
+        for (int i = 0; i < members.length; i++) {
+            moduleOptions.add(Collections.emptyMap());
+        }
+        Map<String, Object> options = new HashMap<>();
+        options.put(ParallelLoginModule.MODULES, moduleOptions);
+        options.put(ParallelLoginModule.TIMEOUT, Long.toString(timeout));
+        module.initialize(new Subject(), callbacks -> { }, new HashMap<>(), options);
+        return module;
+    }
+
+    private static class TestModule implements LoginModule {
+        private final boolean result;
+        private final LoginException error;
+        private final CountDownLatch done = new CountDownLatch(1);
+        private final CountDownLatch aborted = new CountDownLatch(1);
+        private volatile CountDownLatch release;
+        private volatile boolean committed;
+        private volatile boolean loggedOut;
+
+        TestModule(boolean result, LoginException error) {
+            this.result = result;
+            this.error = error;
+        }
+
+        @Override
+        public void initialize(Subject subject, CallbackHandler callbackHandler, Map<String, ?> sharedState, Map<String, ?> options) {
+        }
+
+        @Override
+        public boolean login() throws LoginException {
+            try {
+                if (release != null) {
+                    release.await();
+                }
+                if (error != null) {
+                    throw error;
+                }
+                return result;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new LoginException("interrupted");
+            } finally {
+                done.countDown();
+            }
+        }
+
+        @Override
+        public boolean commit() {
+            committed = true;
+            return true;
+        }
+
+        @Override
+        public boolean abort() {
+            aborted.countDown();
+            return true;
+        }
+
+        @Override
+        public boolean logout() {
+            loggedOut = true;
+            return true;
+        }
+    }
+
+}
@@ -0,0 +1,240 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.jaas.modules.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.Principal;
+import java.security.SecureRandom;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Cache of the successful authentications made through {@link CachingLoginModule}, shared by all the realms.</p>
+ * <p>An authentication is keyed by realm, user and a salted digest of the credential, so a cached entry is only used
+ * when the very same password is provided again before the entry expires. The cache holds at most one entry per realm
+ * and user, and is bounded to {@link #getMaxSize()} entries. The backing engines invalidate the entries of the users
+ * they change, and the entries of a realm are invalidated when the {@link #checkVersion(String, Object) version} of
+ * its data changes.</p>
+ */
+public class AuthenticationCache implements AuthenticationCacheMBean {
+
+    public static final int DEFAULT_MAX_SIZE = 1000;
+
+    private static final AuthenticationCache INSTANCE = new AuthenticationCache();
+
+    public static AuthenticationCache getInstance() {
+        return INSTANCE;
+    }
+
+    private final ConcurrentMap<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Object> versions = new ConcurrentHashMap<>();
+    private final byte[] salt = new byte[16];
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private volatile int maxSize = DEFAULT_MAX_SIZE;
+
+    AuthenticationCache() {
+        new SecureRandom().nextBytes(salt);
+    }
+
+    /**
+     * Return the principals of a cached authentication.
+     *
+     * @param realm The realm name.
+     * @param user The user name.
+     * @param credential The provided credential.
+     * @return The principals, or {@code null} if the authentication is not cached, expired or made with another
+     *         credential.
+     */
+    public Set<Principal> get(String realm, String user, String credential) {
+        Key key = new Key(realm, user);
+        Entry entry = entries.get(key);
+        if (entry != null && entry.expiry <= System.currentTimeMillis()) {
+            if (entries.remove(key, entry)) {
+                evictions.increment();
+            }
+            entry = null;
+        }
+        if (entry == null || !MessageDigest.isEqual(entry.digest, digest(realm, user, credential))) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.principals;
+    }
+
+    /**
+     * Cache a successful authentication.
+     *
+     * @param realm The realm name.
+     * @param user The user name.
+     * @param credential The provided credential.
+     * @param principals The principals of the authenticated user.
+     * @param ttl The time to live of the authentication in milliseconds.
+     */
+    public void put(String realm, String user, String credential, Set<Principal> principals, long ttl) {
+        if (ttl <= 0 || maxSize <= 0) {
+            return;
+        }
+        if (entries.size() >= maxSize) {
+            evict();
+        }
+        entries.put(new Key(realm, user), new Entry(digest(realm, user, credential),
+                Collections.unmodifiableSet(new HashSet<>(principals)), System.currentTimeMillis() + ttl));
+    }
+
+    private void evict() {
+        long now = System.currentTimeMillis();
+        Entry oldest = null;
+        Key oldestKey = null;
+        for (Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<Key, Entry> e = it.next();
+            if (e.getValue().expiry <= now) {
+                it.remove();
+                evictions.increment();
+            } else if (oldest == null || e.getValue().expiry < oldest.expiry) {
+                oldest = e.getValue();
+                oldestKey = e.getKey();
+            }
+        }
+        if (entries.size() >= maxSize && oldestKey != null && entries.remove(oldestKey, oldest)) {
+            evictions.increment();
+        }
+    }
+
+    /**
+     * Invalidate the cached authentications of a realm if the data it authenticates against changed since the last
+     * call, for instance when its users file was modified without going through a backing engine.
+     *
+     * @param realm The realm name.
+     * @param version The current version of the realm data, compared by identity.
+     */
+    public void checkVersion(String realm, Object version) {
+        Object previous = versions.put(realm, version);
+        if (previous != null && previous != version) {
+            entries.keySet().removeIf(k -> k.realm.equals(realm));
+        }
+    }
+
+    @Override
+    public void invalidate(String user) {
+        entries.keySet().removeIf(k -> k.user.equals(user));
+    }
+
+    @Override
+    public void invalidateAll() {
+        entries.clear();
+    }
+
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+        if (maxSize <= 0) {
+            invalidateAll();
+        }
+        while (entries.size() > maxSize) {
+            evict();
+        }
+    }
+
+    @Override
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    @Override
+    public int getSize() {
+        return entries.size();
+    }
+
+    @Override
+    public long getHits() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    private byte[] digest(String realm, String user, String credential) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            md.update(salt);
+            md.update(realm.getBytes(StandardCharsets.UTF_8));
+            md.update((byte) 0);
+            md.update(user.getBytes(StandardCharsets.UTF_8));
+            md.update((byte) 0);
+            return md.digest(credential.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class Key {
+        private final String realm;
+        private final String user;
+
+        Key(String realm, String user) {
+            this.realm = realm;
+            this.user = user;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return realm.equals(key.realm) && user.equals(key.user);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * realm.hashCode() + user.hashCode();
+        }
+    }
+
+    private static final class Entry {
+        private final byte[] digest;
+        private final Set<Principal> principals;
+        private final long expiry;
+
+        Entry(byte[] digest, Set<Principal> principals, long expiry) {
+            this.digest = digest;
+            this.principals = principals;
+            this.expiry = expiry;
+        }
+    }
+
+}
@@ -0,0 +1,210 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.jaas.modules.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.Principal;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.security.auth.Subject;
+import javax.security.auth.callback.Callback;
+import javax.security.auth.callback.CallbackHandler;
+import javax.security.auth.callback.NameCallback;
+import javax.security.auth.callback.PasswordCallback;
+import javax.security.auth.callback.UnsupportedCallbackException;
+import javax.security.auth.login.LoginException;
+import javax.security.auth.spi.LoginModule;
+
+import org.apache.karaf.jaas.modules.JAASUtils;
+import org.apache.karaf.jaas.modules.properties.PropertiesLoginModule;
+import org.apache.karaf.jaas.modules.properties.UsersFileIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>JAAS login module caching the successful user / password authentications of another login module in the
+ * {@link AuthenticationCache}.</p>
+ * <p>The wrapped login module is given by the <code>cache.module</code> option and gets all the other options. On a
+ * cache hit, the wrapped module is not called at all and the cached principals are added to the subject. The
+ * authentications are cached for <code>cache.ttl</code> milliseconds in the <code>cache.realm</code> realm.
+ * Authentications without a password (public keys for instance) are not cached.</p>
+ * <p>When the wrapped module is a {@link PropertiesLoginModule}, the modification time and size of its users file are
+ * checked on each login, and the cached authentications of the realm are dropped when the file changed.</p>
+ */
+public class CachingLoginModule implements LoginModule {
+
+    public static final String MODULE = "cache.module";
+    public static final String REALM = "cache.realm";
+    public static final String TTL = "cache.ttl";
+
+    public static final long DEFAULT_TTL = 60000;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CachingLoginModule.class);
+
+    private final AuthenticationCache cache;
+
+    private Subject subject;
+    private CallbackHandler callbackHandler;
+    private Map<String, ?> sharedState;
+    private Map<String, Object> options;
+    private String realm;
+    private long ttl;
+
+    private LoginModule delegate;
+    private String user;
+    private String password;
+    private Set<Principal> cached;
+    private boolean committed;
+
+    public CachingLoginModule() {
+        this(AuthenticationCache.getInstance());
+    }
+
+    CachingLoginModule(AuthenticationCache cache) {
+        this.cache = cache;
+    }
+
+    @Override
+    public void initialize(Subject subject, CallbackHandler callbackHandler, Map<String, ?> sharedState, Map<String, ?> options) {
+        this.subject = subject;
+        this.callbackHandler = callbackHandler;
+        this.sharedState = sharedState;
+        this.options = new HashMap<>(options);
+        String module = (String) this.options.remove(MODULE);
+        if (module == null) {
+            throw new IllegalStateException("Option " + MODULE + " must be set to the name of the cached login module");
+        }
+        String realmOption = JAASUtils.getString(options, REALM);
+        this.realm = realmOption != null ? realmOption : module;
+        String ttlOption = JAASUtils.getString(options, TTL);
+        this.ttl = ttlOption != null ? Long.parseLong(ttlOption) : DEFAULT_TTL;
+        try {
+            this.delegate = (LoginModule) getClass().getClassLoader().loadClass(module).newInstance();
+        } catch (Exception e) {
+            throw new IllegalStateException("Unable to load login module " + module, e);
+        }
+    }
+
+    @Override
+    public boolean login() throws LoginException {
+        NameCallback nameCallback = new NameCallback("Username: ");
+        PasswordCallback passwordCallback = new PasswordCallback("Password: ", false);
+        try {
+            callbackHandler.handle(new Callback[] { nameCallback, passwordCallback });
+            user = nameCallback.getName();
+            password = passwordCallback.getPassword() != null ? new String(passwordCallback.getPassword()) : null;
+        } catch (IOException | UnsupportedCallbackException | RuntimeException e) {
+            // not a user / password authentication, let the wrapped module deal with it
+            user = null;
+            password = null;
+        }
+        if (user != null && password != null && isUsersFileCurrent()) {
+            cached = cache.get(realm, user, password);
+            if (cached != null) {
+                LOGGER.debug("Authentication of {} in realm {} found in cache", user, realm);
+                return true;
+            }
+        }
+        CallbackHandler handler = user != null && password != null ? new ReplayCallbackHandler() : callbackHandler;
+        delegate.initialize(subject, handler, sharedState, options);
+        return delegate.login();
+    }
+
+    @Override
+    public boolean commit() throws LoginException {
+        if (cached != null) {
+            subject.getPrincipals().addAll(cached);
+            committed = true;
+            return true;
+        }
+        Set<Principal> before = new HashSet<>(subject.getPrincipals());
+        boolean result = delegate.commit();
+        if (result && user != null && password != null) {
+            Set<Principal> added = new HashSet<>(subject.getPrincipals());
+            added.removeAll(before);
+            if (!added.isEmpty()) {
+                cache.put(realm, user, password, added, ttl);
+            }
+        }
+        password = null;
+        return result;
+    }
+
+    @Override
+    public boolean abort() throws LoginException {
+        if (cached != null) {
+            return logout();
+        }
+        return delegate.abort();
+    }
+
+    @Override
+    public boolean logout() throws LoginException {
+        if (cached != null) {
+            if (committed) {
+                subject.getPrincipals().removeAll(cached);
+            }
+            cached = null;
+            committed = false;
+            return true;
+        }
+        return delegate.logout();
+    }
+
+    /**
+     * Check the users file of a wrapped {@link PropertiesLoginModule}, which may have been edited directly: the
+     * cached authentications of the realm are dropped when it has been reloaded.
+     *
+     * @return {@code false} if the file can't be read, so the wrapped module reports it.
+     */
+    private boolean isUsersFileCurrent() {
+        String usersFile = JAASUtils.getString(options, PropertiesLoginModule.USER_FILE);
+        if (!(delegate instanceof PropertiesLoginModule) || usersFile == null) {
+            return true;
+        }
+        try {
+            cache.checkVersion(realm, UsersFileIndex.get(new File(usersFile)));
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Give the name and password already read to the wrapped module, as the original callback handler may not be
+     * called twice.
+     */
+    private class ReplayCallbackHandler implements CallbackHandler {
+        @Override
+        public void handle(Callback[] callbacks) throws IOException, UnsupportedCallbackException {
+            for (Callback callback : callbacks) {
+                if (callback instanceof NameCallback) {
+                    ((NameCallback) callback).setName(user);
+                } else if (callback instanceof PasswordCallback) {
+                    ((PasswordCallback) callback).setPassword(password.toCharArray());
+                } else {
+                    callbackHandler.handle(new Callback[] { callback });
+                }
+            }
+        }
+    }
+
+}
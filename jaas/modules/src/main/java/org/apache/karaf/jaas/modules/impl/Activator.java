@@ -21,7 +21,10 @@ import java.util.Map;
 import org.apache.karaf.jaas.config.JaasRealm;
 import org.apache.karaf.jaas.modules.BackingEngineFactory;
 import org.apache.karaf.jaas.modules.EncryptionService;
+import org.apache.karaf.jaas.modules.cache.AuthenticationCache;
+import org.apache.karaf.jaas.modules.cache.CachingLoginModule;
 import org.apache.karaf.jaas.modules.encryption.BasicEncryptionService;
+import org.apache.karaf.jaas.modules.jdbc.JDBCCache;
 import org.apache.karaf.jaas.modules.ldap.LDAPCache;
 import org.apache.karaf.jaas.modules.properties.AutoEncryptionSupport;
 import org.apache.karaf.jaas.modules.properties.PropertiesBackingEngineFactory;
@@ -50,6 +53,10 @@ public class Activator extends BaseActivator implements ManagedService {
 
     private static final String EVENTADMIN_ENABLED = "eventadmin.enabled";
 
+    private static final String CACHE_ENABLED = "cache.enabled";
+    private static final String CACHE_TTL = "cache.ttl";
+    private static final String CACHE_SIZE = "cache.size";
+
     private KarafRealm karafRealm;
     private AutoEncryptionSupport autoEncryptionSupport;
 
@@ -66,6 +73,9 @@ public class Activator extends BaseActivator implements ManagedService {
 
         Map<String, Object> config = getConfig();
 
+        AuthenticationCache.getInstance().setMaxSize(getInt(CACHE_SIZE, AuthenticationCache.DEFAULT_MAX_SIZE));
+        registerMBean(AuthenticationCache.getInstance(), "type=jaas,cache=authentication");
+
         karafRealm = new KarafRealm(bundleContext, config);
         register(JaasRealm.class, karafRealm);
         if (Boolean.parseBoolean((String) config.get(ENCRYPTION_ENABLED))) {
@@ -80,11 +90,15 @@ public class Activator extends BaseActivator implements ManagedService {
         }
         super.doStop();
         LDAPCache.clear();
+        JDBCCache.clear();
+        AuthenticationCache.getInstance().invalidateAll();
     }
 
     @Override
     protected void reconfigure() {
         Map<String, Object> config = getConfig();
+        AuthenticationCache.getInstance().setMaxSize(getInt(CACHE_SIZE, AuthenticationCache.DEFAULT_MAX_SIZE));
+        AuthenticationCache.getInstance().invalidateAll();
         if (karafRealm != null) {
             karafRealm.updated(config);
         }
@@ -107,6 +121,8 @@ public class Activator extends BaseActivator implements ManagedService {
         populate(config, ENCRYPTION_ALGORITHM, "MD5");
         populate(config, ENCRYPTION_ENCODING, "hexadecimal");
         populate(config, EVENTADMIN_ENABLED, "true");
+        populate(config, CACHE_ENABLED, "false");
+        populate(config, CACHE_TTL, Long.toString(CachingLoginModule.DEFAULT_TTL));
         populate(config, "audit.file.enabled", "false");
         populate(config, "audit.file.file", System.getProperty("karaf.data") + "/security/audit.log");
         populate(config, "audit.log.enabled", "false");
@@ -22,6 +22,7 @@ import javax.security.auth.login.AppConfigurationEntry;
 
 import org.apache.karaf.jaas.boot.ProxyLoginModule;
 import org.apache.karaf.jaas.config.JaasRealm;
+import org.apache.karaf.jaas.modules.cache.CachingLoginModule;
 import org.osgi.framework.BundleContext;
 
 public class KarafRealm implements JaasRealm {
@@ -29,6 +30,7 @@ public class KarafRealm implements JaasRealm {
     private static final String KARAF_ETC = System.getProperty("karaf.etc");
     private static final String REALM = "karaf";
     private static final String PROPERTIES_MODULE = "org.apache.karaf.jaas.modules.properties.PropertiesLoginModule";
+    private static final String CACHING_MODULE = "org.apache.karaf.jaas.modules.cache.CachingLoginModule";
     private static final String PUBLIC_KEY_MODULE = "org.apache.karaf.jaas.modules.publickey.PublickeyLoginModule";
     private static final String FILE_AUDIT_MODULE = "org.apache.karaf.jaas.modules.audit.FileAuditLoginModule";
     private static final String LOG_AUDIT_MODULE = "org.apache.karaf.jaas.modules.audit.LogAuditLoginModule";
@@ -70,6 +72,12 @@ public class KarafRealm implements JaasRealm {
         propertiesOptions.put("encryption.suffix", properties.get("encryption.suffix"));
         propertiesOptions.put("encryption.algorithm", properties.get("encryption.algorithm"));
         propertiesOptions.put("encryption.encoding", properties.get("encryption.encoding"));
+        if (Boolean.parseBoolean((String) properties.get("cache.enabled"))) {
+            propertiesOptions.put(ProxyLoginModule.PROPERTY_MODULE, CACHING_MODULE);
+            propertiesOptions.put(CachingLoginModule.MODULE, PROPERTIES_MODULE);
+            propertiesOptions.put(CachingLoginModule.REALM, REALM);
+            propertiesOptions.put(CachingLoginModule.TTL, properties.get("cache.ttl"));
+        }
 
         Map<String, Object> publicKeyOptions = new HashMap<>();
         publicKeyOptions.put(BundleContext.class.getName(), bundleContext);
@@ -19,6 +19,7 @@ import org.apache.karaf.jaas.boot.principal.GroupPrincipal;
 import org.apache.karaf.jaas.boot.principal.RolePrincipal;
 import org.apache.karaf.jaas.boot.principal.UserPrincipal;
 import org.apache.karaf.jaas.modules.BackingEngine;
+import org.apache.karaf.jaas.modules.cache.AuthenticationCache;
 import org.apache.karaf.jaas.modules.encryption.EncryptionSupport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -277,6 +278,14 @@ public class JDBCBackingEngine implements BackingEngine {
 
     protected void rawUpdate(Connection connection, String query, String... params) throws SQLException {
         int rows = JDBCUtils.rawUpdate(connection, query, params);
+        // the first parameter of the statements is the user or group name, a group change may change any user
+        if (params.length > 0 && params[0].startsWith(GROUP_PREFIX)) {
+            AuthenticationCache.getInstance().invalidateAll();
+            JDBCCache.invalidate(params[0]);
+        } else if (params.length > 0) {
+            AuthenticationCache.getInstance().invalidate(params[0]);
+            JDBCCache.invalidate(params[0]);
+        }
         if (logger.isDebugEnabled()) {
             logger.debug(String.format("Executing [%s], params=%s. %d rows affected.", query, Arrays.toString(params), rows));
         }
@@ -0,0 +1,221 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.karaf.jaas.modules.jdbc;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.sql.DataSource;
+
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.Constants;
+import org.osgi.framework.SynchronousBundleListener;
+import org.osgi.util.tracker.ServiceTracker;
+
+/**
+ * <p>Cache of the datasource and of the roles used by the JDBC login modules, shared by all the modules using the
+ * same bundle context and datasource URL.</p>
+ * <p>An <code>osgi:</code> datasource is tracked with a {@link ServiceTracker} instead of being looked up on each
+ * login, and a <code>jndi:</code> datasource is looked up once until {@link #reset()}. Roles are only cached when the
+ * login module sets a time to live, and are dropped when the {@link JDBCBackingEngine} changes them. The caches
+ * of a bundle context are closed when its bundle stops.</p>
+ */
+public class JDBCCache {
+
+    private static final ConcurrentMap<List<Object>, JDBCCache> CACHES = new ConcurrentHashMap<>();
+
+    private static final int MAX_ROLES = 1000;
+
+    public static JDBCCache getCache(BundleContext bundleContext, String url) {
+        return CACHES.computeIfAbsent(Arrays.asList(bundleContext, url), k -> {
+            JDBCCache cache = new JDBCCache(k, bundleContext, url);
+            if (bundleContext != null) {
+                bundleContext.addBundleListener(cache.listener);
+            }
+            return cache;
+        });
+    }
+
+    /**
+     * Drop the cached roles of a user or group in all the caches.
+     *
+     * @param name The user or group name.
+     */
+    public static void invalidate(String name) {
+        for (JDBCCache cache : CACHES.values()) {
+            cache.roles.remove(name);
+        }
+    }
+
+    /**
+     * Drop the cached roles in all the caches.
+     */
+    public static void invalidateAll() {
+        for (JDBCCache cache : CACHES.values()) {
+            cache.roles.clear();
+        }
+    }
+
+    public static void clear() {
+        while (!CACHES.isEmpty()) {
+            List<Object> key = CACHES.keySet().iterator().next();
+            JDBCCache cache = CACHES.remove(key);
+            if (cache != null) {
+                cache.close();
+            }
+        }
+    }
+
+    private final BundleContext bundleContext;
+    private final String url;
+    private final ConcurrentMap<String, Roles> roles = new ConcurrentHashMap<>();
+    private ServiceTracker<Object, Object> tracker;
+    private volatile DataSource dataSource;
+    // close the cache when the bundle using it stops, its service tracker is not usable anymore
+    private final SynchronousBundleListener listener;
+
+    private JDBCCache(List<Object> key, BundleContext bundleContext, String url) {
+        this.bundleContext = bundleContext;
+        this.url = url != null ? url.trim() : null;
+        this.listener = event -> {
+            if (event.getType() == BundleEvent.STOPPING && event.getBundle() == bundleContext.getBundle()
+                    && CACHES.remove(key, this)) {
+                close();
+            }
+        };
+    }
+
+    public DataSource getDataSource() throws Exception {
+        if (url == null || !url.startsWith(JDBCUtils.OSGI)) {
+            DataSource ds = dataSource;
+            if (ds == null) {
+                ds = JDBCUtils.createDatasource(bundleContext, url);
+                dataSource = ds;
+            }
+            return ds;
+        }
+        Object ds = getTracker().getService();
+        if (ds == null) {
+            throw new Exception("Unable to find service reference for datasource: " + url.substring(JDBCUtils.OSGI.length()));
+        }
+        return DataSource.class.cast(ds);
+    }
+
+    private synchronized ServiceTracker<Object, Object> getTracker() throws Exception {
+        if (tracker == null) {
+            String[] tokens = url.substring(JDBCUtils.OSGI.length()).split("/", 2);
+            ServiceTracker<Object, Object> st;
+            if (tokens.length > 1 && !tokens[1].trim().isEmpty()) {
+                String filter = "(&(" + Constants.OBJECTCLASS + "=" + tokens[0] + ")" + tokens[1] + ")";
+                st = new ServiceTracker<>(bundleContext, bundleContext.createFilter(filter), null);
+            } else {
+                st = new ServiceTracker<>(bundleContext, tokens[0], null);
+            }
+            st.open();
+            tracker = st;
+        }
+        return tracker;
+    }
+
+    /**
+     * Return the roles of a user or group, loading them if they are not cached or expired.
+     *
+     * @param name The user or group name.
+     * @param ttl The time to live of the roles in milliseconds, no cache if zero or negative.
+     * @param loader The roles loader.
+     * @return The roles.
+     * @throws Exception If the roles can't be loaded.
+     */
+    public List<String> getRoles(String name, long ttl, RolesLoader loader) throws Exception {
+        if (ttl <= 0) {
+            return loader.load(name);
+        }
+        long now = System.currentTimeMillis();
+        Roles cached = roles.get(name);
+        if (cached != null && cached.expiry > now) {
+            return cached.roles;
+        }
+        List<String> loaded = Collections.unmodifiableList(loader.load(name));
+        store(name, loaded, now + ttl);
+        return loaded;
+    }
+
+    /**
+     * Cache the roles of a user loaded by another query.
+     *
+     * @param name The user name.
+     * @param ttl The time to live of the roles in milliseconds, no cache if zero or negative.
+     * @param loaded The roles.
+     */
+    public void putRoles(String name, List<String> loaded, long ttl) {
+        if (ttl > 0) {
+            store(name, Collections.unmodifiableList(loaded), System.currentTimeMillis() + ttl);
+        }
+    }
+
+    private void store(String name, List<String> loaded, long expiry) {
+        if (roles.size() >= MAX_ROLES) {
+            long now = System.currentTimeMillis();
+            roles.values().removeIf(r -> r.expiry <= now);
+            if (roles.size() >= MAX_ROLES) {
+                roles.clear();
+            }
+        }
+        roles.put(name, new Roles(loaded, expiry));
+    }
+
+    /**
+     * Drop the cached roles and the looked up JNDI datasource, for instance after a connection failure.
+     */
+    public void reset() {
+        roles.clear();
+        dataSource = null;
+    }
+
+    public synchronized void close() {
+        reset();
+        if (bundleContext != null) {
+            try {
+                bundleContext.removeBundleListener(listener);
+            } catch (IllegalStateException e) {
+                // the bundle is already stopped
+            }
+        }
+        if (tracker != null) {
+            tracker.close();
+            tracker = null;
+        }
+    }
+
+    public interface RolesLoader {
+        List<String> load(String name) throws Exception;
+    }
+
+    private static final class Roles {
+        private final List<String> roles;
+        private final long expiry;
+
+        Roles(List<String> roles, long expiry) {
+            this.roles = roles;
+            this.expiry = expiry;
+        }
+    }
+
+}
@@ -31,6 +31,9 @@ import javax.security.auth.login.LoginException;
 import javax.sql.DataSource;
 import java.io.IOException;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -42,6 +45,8 @@ public class JDBCLoginModule extends AbstractKarafLoginModule {
     public static final String PASSWORD_QUERY = "query.password";
     public static final String USER_QUERY = "query.user";
     public static final String ROLE_QUERY = "query.role";
+    public static final String LOGIN_QUERY = "query.login";
+    public static final String ROLE_CACHE_TTL = "role.cache.ttl";
     public static final String INSERT_USER_STATEMENT = "insert.user";
     public static final String INSERT_ROLE_STATEMENT = "insert.role";
     public static final String DELETE_ROLE_STATEMENT = "delete.role";
@@ -51,6 +56,8 @@ public class JDBCLoginModule extends AbstractKarafLoginModule {
     private String datasourceURL;
     protected String passwordQuery = "SELECT PASSWORD FROM USERS WHERE USERNAME=?";
     protected String roleQuery = "SELECT ROLE FROM ROLES WHERE USERNAME=?";
+    protected String loginQuery;
+    protected long roleCacheTtl;
 
     public void initialize(Subject subject, CallbackHandler callbackHandler, Map<String, ?> sharedState, Map<String, ?> options) {
         super.initialize(subject, callbackHandler, options);
@@ -66,6 +73,12 @@ public class JDBCLoginModule extends AbstractKarafLoginModule {
         if (options.containsKey(ROLE_QUERY)) {
             roleQuery = JAASUtils.getString(options, ROLE_QUERY);
         }
+        if (options.containsKey(LOGIN_QUERY)) {
+            loginQuery = JAASUtils.getString(options, LOGIN_QUERY);
+        }
+        if (options.containsKey(ROLE_CACHE_TTL)) {
+            roleCacheTtl = Long.parseLong(JAASUtils.getString(options, ROLE_CACHE_TTL));
+        }
     }
 
     public boolean login() throws LoginException {
@@ -91,18 +104,35 @@ public class JDBCLoginModule extends AbstractKarafLoginModule {
         String password = new String(tmpPassword);
         principals = new HashSet<>();
 
+        JDBCCache cache = JDBCCache.getCache(bundleContext, datasourceURL);
         try {
-            DataSource datasource = JDBCUtils.createDatasource(bundleContext, datasourceURL);
-            try (Connection connection = datasource.getConnection()) {
-                List<String> passwords = JDBCUtils.rawSelect(connection, passwordQuery, user);
-                if (passwords.isEmpty()) {
+            DataSource datasource = cache.getDataSource();
+            try (Connection connection = datasource.getConnection();
+                 RoleQuery roleStatement = new RoleQuery(connection)) {
+                String storedPassword;
+                List<String> roles = null;
+                if (loginQuery != null && !"".equals(loginQuery.trim())) {
+                    // password and roles of the user in a single round trip
+                    List<String[]> rows = JDBCUtils.rawSelect(connection, loginQuery, 2, user);
+                    storedPassword = rows.isEmpty() ? null : rows.get(0)[0];
+                    roles = new ArrayList<>();
+                    for (String[] row : rows) {
+                        if (row[1] != null) {
+                            roles.add(row[1]);
+                        }
+                    }
+                } else {
+                    List<String> passwords = JDBCUtils.rawSelect(connection, passwordQuery, user);
+                    storedPassword = passwords.isEmpty() ? null : passwords.get(0);
+                }
+                if (storedPassword == null) {
                     if (!this.detailedLoginExcepion) {
                         throw new LoginException("login failed");
                     } else {
                         throw new LoginException("User " + user + " does not exist");
                     }
                 }
-                if (!checkPassword(password, passwords.get(0))) {
+                if (!checkPassword(password, storedPassword)) {
                     if (!this.detailedLoginExcepion) {
                         throw new LoginException("login failed");
                     } else {
@@ -111,13 +141,20 @@ public class JDBCLoginModule extends AbstractKarafLoginModule {
                 }
                 principals.add(new UserPrincipal(user));
 
-                if (roleQuery != null && !"".equals(roleQuery.trim())) {
-                    List<String> roles = JDBCUtils.rawSelect(connection, roleQuery, user);
+                boolean hasRoleQuery = roleQuery != null && !"".equals(roleQuery.trim());
+                if (roles != null) {
+                    cache.putRoles(user, roles, roleCacheTtl);
+                } else if (hasRoleQuery) {
+                    roles = cache.getRoles(user, roleCacheTtl, roleStatement::select);
+                }
+                if (roles != null) {
                     for (String role : roles) {
                         if (role.startsWith(BackingEngine.GROUP_PREFIX)) {
                             principals.add(new GroupPrincipal(role.substring(BackingEngine.GROUP_PREFIX.length())));
-                            for (String r : JDBCUtils.rawSelect(connection, roleQuery, role)) {
-                                principals.add(new RolePrincipal(r));
+                            if (hasRoleQuery) {
+                                for (String r : cache.getRoles(role, roleCacheTtl, roleStatement::select)) {
+                                    principals.add(new RolePrincipal(r));
+                                }
                             }
                         } else {
                             principals.add(new RolePrincipal(role));
@@ -127,11 +164,42 @@ public class JDBCLoginModule extends AbstractKarafLoginModule {
                     LOGGER.debug("No roleQuery specified so no roles have been retrieved for the authenticated user");
                 }
             }
+        } catch (LoginException ex) {
+            throw new LoginException("Error has occurred while retrieving credentials from database:" + ex.getMessage());
         } catch (Exception ex) {
+            // the datasource may have been replaced, look it up again on the next login
+            cache.reset();
             throw new LoginException("Error has occurred while retrieving credentials from database:" + ex.getMessage());
         }
         succeeded = true;
         return true;
     }
 
+    /**
+     * The role query, prepared once per login on the first lookup and reused for the user and all its groups.
+     */
+    private class RoleQuery implements AutoCloseable {
+
+        private final Connection connection;
+        private PreparedStatement statement;
+
+        RoleQuery(Connection connection) {
+            this.connection = connection;
+        }
+
+        List<String> select(String name) throws SQLException {
+            if (statement == null) {
+                statement = connection.prepareStatement(roleQuery);
+            }
+            return JDBCUtils.rawSelect(statement, name);
+        }
+
+        @Override
+        public void close() throws SQLException {
+            if (statement != null) {
+                statement.close();
+            }
+        }
+    }
+
 }
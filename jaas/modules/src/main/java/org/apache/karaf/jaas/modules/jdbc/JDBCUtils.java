@@ -134,4 +134,37 @@ public final class JDBCUtils {
         return results;
     }
 
+    protected static List<String[]> rawSelect(Connection connection, String query, int columns, String... params) throws SQLException {
+        List<String[]> results = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(query)) {
+            for (int i = 0; i < params.length; i++) {
+                statement.setString(i + 1, params[i]);
+            }
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    String[] row = new String[columns];
+                    for (int i = 0; i < columns; i++) {
+                        row[i] = resultSet.getString(i + 1);
+                    }
+                    results.add(row);
+                }
+            }
+        }
+        return results;
+    }
+
+    protected static List<String> rawSelect(PreparedStatement statement, String... params) throws SQLException {
+        List<String> results = new ArrayList<>();
+        statement.clearParameters();
+        for (int i = 0; i < params.length; i++) {
+            statement.setString(i + 1, params[i]);
+        }
+        try (ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                results.add(resultSet.getString(1));
+            }
+        }
+        return results;
+    }
+
 }
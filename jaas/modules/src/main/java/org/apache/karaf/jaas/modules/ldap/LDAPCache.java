@@ -14,9 +14,13 @@
  */
 package org.apache.karaf.jaas.modules.ldap;
 
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import javax.naming.CommunicationException;
 import javax.naming.NamingEnumeration;
 import javax.naming.NamingException;
 import javax.naming.PartialResultException;
+import javax.naming.ServiceUnavailableException;
 import javax.naming.directory.Attribute;
 import javax.naming.directory.Attributes;
 import javax.naming.directory.DirContext;
@@ -30,31 +34,58 @@ import javax.naming.event.NamingExceptionEvent;
 import javax.naming.event.ObjectChangeListener;
 import java.io.Closeable;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.ServiceRegistration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class LDAPCache implements Closeable, NamespaceChangeListener, ObjectChangeListener {
+/**
+ * <p>Cache of the LDAP lookups made by the LDAP login modules, shared by all the modules using the same options.</p>
+ * <p>The lookups are made on a pool of connections, and concurrent lookups of the same entry share a single
+ * LDAP request. Unless disabled, the found users, roles and public keys are cached for {@link LDAPOptions#CACHE_TTL}
+ * and unknown users for {@link LDAPOptions#CACHE_NEGATIVE_TTL}, up to {@link LDAPOptions#CACHE_SIZE} entries per
+ * cache. The caches are also cleared when the LDAP server notifies a change of a user or role entry.</p>
+ * <p>If the connection listening to these changes is lost, the caches are cleared and the lookups aren't cached
+ * until it is opened again, which is retried on the next lookups with an exponential backoff.</p>
+ */
+public class LDAPCache implements Closeable, NamespaceChangeListener, ObjectChangeListener, LDAPCacheMBean {
 
     private static final ConcurrentMap<LDAPOptions, LDAPCache> CACHES = new ConcurrentHashMap<>();
 
+    private static final AtomicInteger IDS = new AtomicInteger();
+
     private static Logger LOGGER = LoggerFactory.getLogger(LDAPLoginModule.class);
 
+    private static final long MIN_RETRY_DELAY = 1000;
+    private static final long MAX_RETRY_DELAY = 60000;
+
     public static void clear() {
         while (!CACHES.isEmpty()) {
             LDAPOptions options = CACHES.keySet().iterator().next();
             LDAPCache cache = CACHES.remove(options);
             if (cache != null) {
-                cache.clearCache();
+                cache.unregister();
+                cache.close();
             }
         }
     }
@@ -62,35 +93,69 @@ public class LDAPCache implements Closeable, NamespaceChangeListener, ObjectChan
     public static LDAPCache getCache(LDAPOptions options) {
         LDAPCache cache = CACHES.get(options);
         if (cache == null) {
-            CACHES.putIfAbsent(options, new LDAPCache(options));
-            cache = CACHES.get(options);
+            LDAPCache created = new LDAPCache(options);
+            cache = CACHES.putIfAbsent(options, created);
+            if (cache == null) {
+                cache = created;
+                cache.register();
+            }
         }
         return cache;
     }
 
-    private final Map<String, String[]> userDnAndNamespace;
-    private final Map<String, String[]> userRoles;
-    private final Map<String, String[]> userPubkeys;
     private final LDAPOptions options;
-    private DirContext context;
+    private final boolean disableCache;
+    private final long ttl;
+    private final long negativeTtl;
+    private final int maxSize;
+    private final Cache userDnAndNamespace;
+    private final Cache userRoles;
+    private final Cache userPubkeys;
+    private final Pool pool;
+
+    // the context listening to the changes of the user and role entries
+    private final Object lock = new Object();
+    private volatile DirContext context;
+    // set when the listening context is lost, nothing is cached until it is opened again
+    private volatile boolean disconnected;
+    private long retryDelay;
+    private long retryAt;
+    // incremented when the caches are cleared, so a lookup started before doesn't fill them with stale data
+    private volatile long generation;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder negativeHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder sharedLookups = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private ServiceRegistration<?> registration;
 
     public LDAPCache(LDAPOptions options) {
         this.options = options;
-        userDnAndNamespace = new HashMap<>();
-        userRoles = new HashMap<>();
-        userPubkeys = new HashMap<>();
+        this.disableCache = options.getDisableCache();
+        this.ttl = options.getCacheTtl();
+        this.negativeTtl = options.getCacheNegativeTtl();
+        this.maxSize = options.getCacheSize();
+        userDnAndNamespace = new Cache();
+        userRoles = new Cache();
+        userPubkeys = new Cache();
+        pool = new Pool(options.getConnectionPoolSize());
     }
 
     @Override
-    public synchronized void close() {
+    public void close() {
         clearCache();
-        if (context != null) {
-            try {
-                context.close();
-            } catch (NamingException e) {
-                // Ignore
-            } finally {
-                context = null;
+        pool.close();
+        synchronized (lock) {
+            if (context != null) {
+                try {
+                    context.close();
+                } catch (NamingException e) {
+                    // Ignore
+                } finally {
+                    context = null;
+                }
             }
         }
     }
@@ -108,51 +173,105 @@ public class LDAPCache implements Closeable, NamespaceChangeListener, ObjectChan
         return alive;
     }
 
-    public synchronized DirContext open() throws NamingException {
-        if (isContextAlive()) {
-            return context;
-        }
-        clearCache();
-        context = new InitialDirContext(options.getEnv());
-
-        EventDirContext eventContext = ((EventDirContext) context.lookup(""));
+    public DirContext open() throws NamingException {
+        synchronized (lock) {
+            if (isContextAlive()) {
+                return context;
+            }
+            clearCache();
+            context = new InitialDirContext(options.getEnv());
 
-        final SearchControls constraints = new SearchControls();
-        constraints.setSearchScope(SearchControls.SUBTREE_SCOPE);
+            EventDirContext eventContext = ((EventDirContext) context.lookup(""));
 
-        if (!options.getDisableCache()) {
-            String filter = options.getUserFilter();
-            filter = filter.replaceAll(Pattern.quote("%u"), Matcher.quoteReplacement("*"));
-            filter = filter.replace("\\", "\\\\");
-            eventContext.addNamingListener(options.getUserBaseDn(), filter, constraints, this);
+            final SearchControls constraints = new SearchControls();
+            constraints.setSearchScope(SearchControls.SUBTREE_SCOPE);
 
-            filter = options.getRoleFilter();
-            if (filter != null) {
+            if (!disableCache) {
+                String filter = options.getUserFilter();
                 filter = filter.replaceAll(Pattern.quote("%u"), Matcher.quoteReplacement("*"));
-                filter = filter.replaceAll(Pattern.quote("%dn"), Matcher.quoteReplacement("*"));
-                filter = filter.replaceAll(Pattern.quote("%fqdn"), Matcher.quoteReplacement("*"));
                 filter = filter.replace("\\", "\\\\");
-                eventContext.addNamingListener(options.getRoleBaseDn(), filter, constraints, this);
+                eventContext.addNamingListener(options.getUserBaseDn(), filter, constraints, this);
+
+                filter = options.getRoleFilter();
+                if (filter != null) {
+                    filter = filter.replaceAll(Pattern.quote("%u"), Matcher.quoteReplacement("*"));
+                    filter = filter.replaceAll(Pattern.quote("%dn"), Matcher.quoteReplacement("*"));
+                    filter = filter.replaceAll(Pattern.quote("%fqdn"), Matcher.quoteReplacement("*"));
+                    filter = filter.replace("\\", "\\\\");
+                    eventContext.addNamingListener(options.getRoleBaseDn(), filter, constraints, this);
+                }
             }
+            disconnected = false;
+            retryDelay = 0;
+
+            return context;
         }
+    }
 
-        return context;
+    /**
+     * Make sure the naming listeners clearing the caches are registered, without checking the connection.
+     * If they can't be, the lookups go on uncached and the registration is retried after a growing delay.
+     */
+    private void listen() {
+        if (disableCache || context != null) {
+            return;
+        }
+        synchronized (lock) {
+            long now = System.currentTimeMillis();
+            if (context != null || now < retryAt) {
+                return;
+            }
+            try {
+                open();
+            } catch (NamingException | RuntimeException e) {
+                if (context != null) {
+                    try {
+                        context.close();
+                    } catch (NamingException ignore) {
+                        // Ignore
+                    }
+                    context = null;
+                }
+                disconnected = true;
+                clearCache();
+                retryDelay = retryDelay == 0 ? MIN_RETRY_DELAY : Math.min(retryDelay * 2, MAX_RETRY_DELAY);
+                retryAt = now + retryDelay;
+                LOGGER.debug("Unable to listen to the LDAP changes, not caching the lookups for {} ms", retryDelay, e);
+            }
+        }
     }
 
-    public synchronized String[] getUserDnAndNamespace(String user) throws Exception {
-        String[] result = userDnAndNamespace.get(user);
-        if (result == null) {
-            result = doGetUserDnAndNamespace(user);
-            if (result != null && !options.getDisableCache()) {
-                userDnAndNamespace.put(user, result);
+    /**
+     * Run a lookup on a pooled connection, retrying once on a new connection if the pooled one is broken.
+     */
+    private <T> T withContext(ContextAction<T> action) throws NamingException {
+        for (int attempt = 0; ; attempt++) {
+            DirContext ctx = pool.borrow();
+            boolean broken = false;
+            try {
+                return action.run(ctx);
+            } catch (CommunicationException | ServiceUnavailableException e) {
+                broken = true;
+                if (attempt > 0) {
+                    throw e;
+                }
+                LOGGER.debug("LDAP connection broken, retrying with a new connection", e);
+            } finally {
+                pool.release(ctx, broken);
             }
         }
-        return result;
+    }
+
+    public String[] getUserDnAndNamespace(String user) throws Exception {
+        return userDnAndNamespace.get(user, () -> doGetUserDnAndNamespace(user));
     }
 
     protected String[] doGetUserDnAndNamespace(String user) throws NamingException {
-        DirContext context = open();
+        listen();
+        return withContext(context -> searchUserDnAndNamespace(context, user));
+    }
 
+    private String[] searchUserDnAndNamespace(DirContext context, String user) throws NamingException {
         SearchControls controls = new SearchControls();
         if (options.getUserSearchSubtree()) {
             controls.setSearchScope(SearchControls.SUBTREE_SCOPE);
@@ -204,26 +323,12 @@ public class LDAPCache implements Closeable, NamespaceChangeListener, ObjectChan
         }
     }
 
-    public synchronized String[] getUserRoles(String user, String userDn, String userDnNamespace) throws Exception {
-        String[] result = userRoles.get(userDn);
-        if (result == null) {
-            result = doGetUserRoles(user, userDn, userDnNamespace);
-            if (!options.getDisableCache()) {
-                userRoles.put(userDn, result);
-            }
-        }
-        return result;
+    public String[] getUserRoles(String user, String userDn, String userDnNamespace) throws Exception {
+        return userRoles.get(userDn, () -> doGetUserRoles(user, userDn, userDnNamespace));
     }
 
-    public synchronized String[] getUserPubkeys(String userDn) throws NamingException {
-        String[] result = userPubkeys.get(userDn);
-        if (result == null) {
-            result = doGetUserPubkeys(userDn);
-            if (!options.getDisableCache()) {
-                userPubkeys.put(userDn, result);
-            }
-        }
-        return result;
+    public String[] getUserPubkeys(String userDn) throws NamingException {
+        return userPubkeys.get(userDn, () -> doGetUserPubkeys(userDn));
     }
 
 
@@ -245,8 +350,11 @@ public class LDAPCache implements Closeable, NamespaceChangeListener, ObjectChan
 
 
     private String[] doGetUserRoles(String user, String userDn, String userDnNamespace) throws NamingException {
-        DirContext context = open();
+        listen();
+        return withContext(context -> searchUserRoles(context, user, userDn, userDnNamespace));
+    }
 
+    private String[] searchUserRoles(DirContext context, String user, String userDn, String userDnNamespace) throws NamingException {
         SearchControls controls = new SearchControls();
         if (options.getRoleSearchSubtree()) {
             controls.setSearchScope(SearchControls.SUBTREE_SCOPE);
@@ -314,8 +422,11 @@ public class LDAPCache implements Closeable, NamespaceChangeListener, ObjectChan
     }
 
     private String[] doGetUserPubkeys(String userDn) throws NamingException {
-        DirContext context = open();
+        listen();
+        return withContext(context -> searchUserPubkeys(context, userDn));
+    }
 
+    private String[] searchUserPubkeys(DirContext context, String userDn) throws NamingException {
         String userPubkeyAttribute = options.getUserPubkeyAttribute();
         if (userPubkeyAttribute != null) {
             LOGGER.debug("Looking for public keys of user {} in attribute {}", userDn, userPubkeyAttribute);
@@ -362,12 +473,298 @@ public class LDAPCache implements Closeable, NamespaceChangeListener, ObjectChan
 
     @Override
     public void namingExceptionThrown(NamingExceptionEvent evt) {
+        LOGGER.debug("Lost the LDAP connection listening to the changes, not caching the lookups until it is reopened");
+        synchronized (lock) {
+            disconnected = true;
+            retryAt = 0;
+            if (context != null) {
+                try {
+                    context.close();
+                } catch (NamingException e) {
+                    // Ignore
+                } finally {
+                    context = null;
+                }
+            }
+        }
         clearCache();
     }
 
-    protected synchronized void clearCache() {
+    public void clearCache() {
+        generation++;
         userDnAndNamespace.clear();
         userRoles.clear();
         userPubkeys.clear();
     }
+
+    private void register() {
+        try {
+            Bundle bundle = FrameworkUtil.getBundle(LDAPCache.class);
+            BundleContext bundleContext = bundle != null ? bundle.getBundleContext() : null;
+            if (bundleContext != null) {
+                Hashtable<String, Object> props = new Hashtable<>();
+                props.put("jmx.objectname", "org.apache.karaf:type=jaas,name=" + System.getProperty("karaf.name", "root")
+                        + ",ldap=" + ObjectName.quote(String.valueOf(options.getConnectionURL())) + ",id=" + IDS.incrementAndGet());
+                registration = bundleContext.registerService(LDAPCacheMBean.class.getName(), new StandardMBean(this, LDAPCacheMBean.class), props);
+            }
+        } catch (Exception e) {
+            LOGGER.debug("Unable to register the LDAP cache MBean", e);
+        }
+    }
+
+    private void unregister() {
+        if (registration != null) {
+            try {
+                registration.unregister();
+            } catch (IllegalStateException e) {
+                // Ignore
+            }
+            registration = null;
+        }
+    }
+
+    @Override
+    public String getConnectionUrl() {
+        return options.getConnectionURL();
+    }
+
+    @Override
+    public int getCacheSize() {
+        return userDnAndNamespace.entries.size() + userRoles.entries.size() + userPubkeys.entries.size();
+    }
+
+    @Override
+    public long getCacheHits() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getCacheNegativeHits() {
+        return negativeHits.sum();
+    }
+
+    @Override
+    public long getCacheMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public long getCacheSharedLookups() {
+        return sharedLookups.sum();
+    }
+
+    @Override
+    public long getCacheEvictions() {
+        return evictions.sum();
+    }
+
+    @Override
+    public int getPoolActive() {
+        return pool.active.get();
+    }
+
+    @Override
+    public int getPoolIdle() {
+        return pool.idle.size();
+    }
+
+    @Override
+    public int getPoolMaxSize() {
+        return pool.maxSize;
+    }
+
+    @Override
+    public long getPoolCreated() {
+        return pool.created.sum();
+    }
+
+    @Override
+    public long getPoolWaits() {
+        return pool.waits.sum();
+    }
+
+    private interface ContextAction<T> {
+        T run(DirContext context) throws NamingException;
+    }
+
+    private interface Lookup {
+        String[] lookup() throws NamingException;
+    }
+
+    private static class Entry {
+        private final String[] value;
+        private final long expires;
+
+        Entry(String[] value, long expires) {
+            this.value = value;
+            this.expires = expires;
+        }
+    }
+
+    /**
+     * Bounded cache with expiry. A {@code null} value is an unknown user.
+     */
+    private class Cache {
+        private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+        private final ConcurrentMap<String, CompletableFuture<String[]>> lookups = new ConcurrentHashMap<>();
+
+        String[] get(String key, Lookup lookup) throws NamingException {
+            if (!disableCache && !disconnected) {
+                Entry entry = entries.get(key);
+                if (entry != null) {
+                    if (entry.expires == 0 || entry.expires > System.currentTimeMillis()) {
+                        hits.increment();
+                        if (entry.value == null) {
+                            negativeHits.increment();
+                        }
+                        return entry.value;
+                    }
+                    entries.remove(key, entry);
+                }
+            }
+
+            CompletableFuture<String[]> future = new CompletableFuture<>();
+            CompletableFuture<String[]> pending = lookups.putIfAbsent(key, future);
+            if (pending != null) {
+                sharedLookups.increment();
+                return await(pending);
+            }
+            misses.increment();
+            long gen = generation;
+            try {
+                String[] value = lookup.lookup();
+                if (!disableCache && !disconnected && gen == generation) {
+                    put(key, value);
+                }
+                future.complete(value);
+                return value;
+            } catch (NamingException | RuntimeException e) {
+                future.completeExceptionally(e);
+                throw e;
+            } finally {
+                lookups.remove(key, future);
+            }
+        }
+
+        private String[] await(CompletableFuture<String[]> pending) throws NamingException {
+            try {
+                return pending.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                NamingException ne = new NamingException("Interrupted while waiting for the LDAP lookup");
+                ne.setRootCause(e);
+                throw ne;
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof NamingException) {
+                    throw (NamingException) e.getCause();
+                }
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                NamingException ne = new NamingException("LDAP lookup failed");
+                ne.setRootCause(e.getCause());
+                throw ne;
+            }
+        }
+
+        private void put(String key, String[] value) {
+            long entryTtl = value != null ? ttl : negativeTtl;
+            if (value == null && entryTtl <= 0) {
+                return;
+            }
+            if (entries.size() >= maxSize) {
+                evict();
+            }
+            entries.put(key, new Entry(value, entryTtl > 0 ? System.currentTimeMillis() + entryTtl : 0));
+        }
+
+        private void evict() {
+            long now = System.currentTimeMillis();
+            entries.values().removeIf(entry -> {
+                if (entry.expires != 0 && entry.expires <= now) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            });
+            // still full: drop a tenth of the entries to make room for the next ones
+            Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+            for (int count = entries.size() - maxSize * 9 / 10; count > 0 && iterator.hasNext(); count--) {
+                iterator.next();
+                iterator.remove();
+                evictions.increment();
+            }
+        }
+
+        void clear() {
+            entries.clear();
+        }
+    }
+
+    /**
+     * Pool of the connections used for the lookups, opened on demand up to the maximum size.
+     */
+    private class Pool {
+        private final int maxSize;
+        private final Semaphore permits;
+        private final BlockingQueue<DirContext> idle = new LinkedBlockingQueue<>();
+        private final AtomicInteger active = new AtomicInteger();
+        private final LongAdder created = new LongAdder();
+        private final LongAdder waits = new LongAdder();
+
+        Pool(int maxSize) {
+            this.maxSize = maxSize;
+            this.permits = new Semaphore(maxSize, true);
+        }
+
+        DirContext borrow() throws NamingException {
+            if (!permits.tryAcquire()) {
+                waits.increment();
+                try {
+                    permits.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    NamingException ne = new NamingException("Interrupted while waiting for a LDAP connection");
+                    ne.setRootCause(e);
+                    throw ne;
+                }
+            }
+            try {
+                DirContext ctx = idle.poll();
+                if (ctx == null) {
+                    ctx = new InitialDirContext(options.getEnv());
+                    created.increment();
+                }
+                active.incrementAndGet();
+                return ctx;
+            } catch (NamingException | RuntimeException e) {
+                permits.release();
+                throw e;
+            }
+        }
+
+        void release(DirContext ctx, boolean broken) {
+            active.decrementAndGet();
+            if (broken) {
+                close(ctx);
+            } else {
+                idle.offer(ctx);
+            }
+            permits.release();
+        }
+
+        void close() {
+            for (DirContext ctx; (ctx = idle.poll()) != null; ) {
+                close(ctx);
+            }
+        }
+
+        private void close(DirContext ctx) {
+            try {
+                ctx.close();
+            } catch (NamingException e) {
+                // Ignore
+            }
+        }
+    }
 }
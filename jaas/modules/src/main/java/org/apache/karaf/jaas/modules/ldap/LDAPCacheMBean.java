@@ -0,0 +1,79 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package org.apache.karaf.jaas.modules.ldap;
+
+/**
+ * Statistics of a {@link LDAPCache}: the user DN, roles and public keys caches, and the pool of LDAP connections
+ * used for the lookups.
+ */
+public interface LDAPCacheMBean {
+
+    String getConnectionUrl();
+
+    /**
+     * @return The number of entries in the user DN, roles and public keys caches.
+     */
+    int getCacheSize();
+
+    /**
+     * @return The number of lookups answered from the caches, unknown users included.
+     */
+    long getCacheHits();
+
+    /**
+     * @return The number of lookups answered from the caches for unknown users.
+     */
+    long getCacheNegativeHits();
+
+    /**
+     * @return The number of lookups sent to the LDAP server.
+     */
+    long getCacheMisses();
+
+    /**
+     * @return The number of lookups which waited for the same lookup made concurrently by another thread.
+     */
+    long getCacheSharedLookups();
+
+    long getCacheEvictions();
+
+    /**
+     * @return The number of connections currently used for a lookup.
+     */
+    int getPoolActive();
+
+    /**
+     * @return The number of connections kept open for the next lookups.
+     */
+    int getPoolIdle();
+
+    int getPoolMaxSize();
+
+    /**
+     * @return The number of connections opened since the cache was created.
+     */
+    long getPoolCreated();
+
+    /**
+     * @return The number of lookups which had to wait for a free connection.
+     */
+    long getPoolWaits();
+
+    /**
+     * Clear the caches.
+     */
+    void clearCache();
+
+}
@@ -62,7 +62,15 @@ public class LDAPOptions {
     public static final String DEFAULT_INITIAL_CONTEXT_FACTORY = "com.sun.jndi.ldap.LdapCtxFactory";
     public static final String DEFAULT_AUTHENTICATION = "simple";
     public static final String IGNORE_PARTIAL_RESULT_EXCEPTION = "ignorePartialResultException";
+    public static final String CACHE_TTL = "cache.ttl";
+    public static final String CACHE_NEGATIVE_TTL = "cache.negative.ttl";
+    public static final String CACHE_SIZE = "cache.size";
+    public static final String CONNECTION_POOL_SIZE = "connection.pool.size";
     public static final int DEFAULT_SSL_TIMEOUT = 10;
+    public static final long DEFAULT_CACHE_TTL = 600000;
+    public static final long DEFAULT_CACHE_NEGATIVE_TTL = 30000;
+    public static final int DEFAULT_CACHE_SIZE = 1000;
+    public static final int DEFAULT_CONNECTION_POOL_SIZE = 4;
 
     private static Logger LOGGER = LoggerFactory.getLogger(LDAPLoginModule.class);
 
@@ -276,6 +284,45 @@ public class LDAPOptions {
         return object == null || Boolean.parseBoolean((String) object);
     }
 
+    /**
+     * @return The time in milliseconds a found user, its roles or public keys stay cached, 0 for no expiry.
+     */
+    public long getCacheTtl() {
+        return getLong(CACHE_TTL, DEFAULT_CACHE_TTL);
+    }
+
+    /**
+     * @return The time in milliseconds an unknown user stays cached, 0 to not cache unknown users.
+     */
+    public long getCacheNegativeTtl() {
+        return getLong(CACHE_NEGATIVE_TTL, DEFAULT_CACHE_NEGATIVE_TTL);
+    }
+
+    /**
+     * @return The maximum number of entries of each cache (user DNs, roles and public keys).
+     */
+    public int getCacheSize() {
+        return (int) getLong(CACHE_SIZE, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * @return The maximum number of LDAP connections used concurrently for the lookups.
+     */
+    public int getConnectionPoolSize() {
+        return Math.max(1, (int) getLong(CONNECTION_POOL_SIZE, DEFAULT_CONNECTION_POOL_SIZE));
+    }
+
+    private long getLong(String key, long defaultValue) {
+        Object val = options.get(key);
+        if (val instanceof Number) {
+            return ((Number) val).longValue();
+        } else if (val != null) {
+            return Long.parseLong(val.toString().trim());
+        } else {
+            return defaultValue;
+        }
+    }
+
     public boolean getIgnorePartialResultException() {
         return Boolean.parseBoolean((String) options.get(IGNORE_PARTIAL_RESULT_EXCEPTION));
     }
@@ -154,6 +154,9 @@ public class AutoEncryptionSupport implements Runnable, Closeable {
         }
         if (changed) {
             users.save();
+            if (usersFileName != null) {
+                UsersFileIndex.invalidate(new File(usersFileName));
+            }
         }
     }
 
@@ -15,6 +15,8 @@
  */
 package org.apache.karaf.jaas.modules.properties;
 
+import java.io.File;
+import java.io.IOException;
 import java.security.Principal;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -26,6 +28,7 @@ import org.apache.karaf.jaas.boot.principal.GroupPrincipal;
 import org.apache.karaf.jaas.boot.principal.RolePrincipal;
 import org.apache.karaf.jaas.boot.principal.UserPrincipal;
 import org.apache.karaf.jaas.modules.BackingEngine;
+import org.apache.karaf.jaas.modules.cache.AuthenticationCache;
 import org.apache.karaf.jaas.modules.encryption.EncryptionSupport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,15 +38,25 @@ public class PropertiesBackingEngine implements BackingEngine {
     private static final transient Logger LOGGER = LoggerFactory.getLogger(PropertiesBackingEngine.class);
 
     private Properties users;
+    private File usersFile;
     private EncryptionSupport encryptionSupport;
 
     public PropertiesBackingEngine(Properties users) {
-        this.users = users;
-        this.encryptionSupport = EncryptionSupport.noEncryptionSupport();
+        this(users, null, EncryptionSupport.noEncryptionSupport());
     }
 
     public PropertiesBackingEngine(Properties users, EncryptionSupport encryptionSupport) {
+        this(users, null, encryptionSupport);
+    }
+
+    /**
+     * @param users The users properties.
+     * @param usersFile The file the users are saved to, so that only its login index is reloaded after a change.
+     * @param encryptionSupport The password encryption support.
+     */
+    public PropertiesBackingEngine(Properties users, File usersFile, EncryptionSupport encryptionSupport) {
         this.users = users;
+        this.usersFile = usersFile;
         this.encryptionSupport = encryptionSupport;
     }
 
@@ -78,7 +91,8 @@ public class PropertiesBackingEngine implements BackingEngine {
         }
 
         try {
-            users.save();
+            save();
+            invalidate(username);
         } catch (Exception ex) {
             LOGGER.error("Cannot update users file,", ex);
         }
@@ -94,7 +108,8 @@ public class PropertiesBackingEngine implements BackingEngine {
         users.remove(username);
 
         try {
-            users.save();
+            save();
+            invalidate(username);
         } catch (Exception ex) {
             LOGGER.error("Cannot remove users file,", ex);
         }
@@ -175,7 +190,8 @@ public class PropertiesBackingEngine implements BackingEngine {
             users.put(username, newUserInfos);
         }
         try {
-            users.save();
+            save();
+            invalidate(username);
         } catch (Exception ex) {
             LOGGER.error("Cannot update users file,", ex);
         }
@@ -205,7 +221,8 @@ public class PropertiesBackingEngine implements BackingEngine {
         }
 
         try {
-            users.save();
+            save();
+            invalidate(username);
         } catch (Exception ex) {
             LOGGER.error("Cannot update users file,", ex);
         }
@@ -288,4 +305,23 @@ public class PropertiesBackingEngine implements BackingEngine {
         }
     }
 
+    private void save() throws IOException {
+        users.save();
+        // the write may keep the size and modification time of the file, so don't rely on them
+        if (usersFile != null) {
+            UsersFileIndex.invalidate(usersFile);
+        } else {
+            UsersFileIndex.invalidateAll();
+        }
+    }
+
+    private void invalidate(String name) {
+        // a group change may change the roles of any user
+        if (name.startsWith(GROUP_PREFIX)) {
+            AuthenticationCache.getInstance().invalidateAll();
+        } else {
+            AuthenticationCache.getInstance().invalidate(name);
+        }
+    }
+
 }
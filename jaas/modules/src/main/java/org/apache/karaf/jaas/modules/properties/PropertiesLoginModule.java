@@ -29,9 +29,6 @@ import javax.security.auth.callback.UnsupportedCallbackException;
 import javax.security.auth.login.FailedLoginException;
 import javax.security.auth.login.LoginException;
 
-import org.apache.felix.utils.properties.Properties;
-import org.apache.karaf.jaas.boot.principal.GroupPrincipal;
-import org.apache.karaf.jaas.boot.principal.RolePrincipal;
 import org.apache.karaf.jaas.boot.principal.UserPrincipal;
 import org.apache.karaf.jaas.modules.AbstractKarafLoginModule;
 import org.apache.karaf.jaas.modules.JAASUtils;
@@ -45,14 +42,15 @@ public class PropertiesLoginModule extends AbstractKarafLoginModule {
 
     private static final transient Logger LOGGER = LoggerFactory.getLogger(PropertiesLoginModule.class);
 
-    static final String USER_FILE = "users";
+    public static final String USER_FILE = "users";
 
     private String usersFile;
-
+    private boolean encryptionEnabled;
 
     public void initialize(Subject sub, CallbackHandler handler, Map<String, ?> sharedState, Map<String, ?> options) {
         super.initialize(sub,handler,options);
         usersFile = JAASUtils.getString(options, USER_FILE);
+        encryptionEnabled = Boolean.parseBoolean(JAASUtils.getString(options, "encryption.enabled"));
         if (debug) {
             LOGGER.debug("Initialized debug={} usersFile={}", debug, usersFile);
         }
@@ -67,9 +65,9 @@ public class PropertiesLoginModule extends AbstractKarafLoginModule {
             throw new LoginException("Users file not found at " + f);
         }
 
-        Properties users;
+        UsersFileIndex users;
         try {
-            users = new Properties(f);
+            users = UsersFileIndex.get(f);
         } catch (IOException ioe) {
             throw new LoginException("Unable to load user properties file " + f);
         }
@@ -103,15 +101,9 @@ public class PropertiesLoginModule extends AbstractKarafLoginModule {
         }
         String password = new String(((PasswordCallback) callbacks[1]).getPassword());
 
-        // user infos container read from the users properties file
-        String userInfos = null;
-
-        try {
-            userInfos = users.get(user);
-        } catch (NullPointerException e) {
-            //error handled in the next statement
-        }
-        if (userInfos == null) {
+        // user entry read from the users properties file
+        UsersFileIndex.User userEntry = users.getUser(user);
+        if (userEntry == null) {
         	if (!this.detailedLoginExcepion) {
         		throw new FailedLoginException("login failed");
         	} else {
@@ -119,12 +111,11 @@ public class PropertiesLoginModule extends AbstractKarafLoginModule {
         	}
         }
 
-        // the password is in the first position
-        String[] infos = userInfos.split(",");
-        String storedPassword = infos[0];
-
         // check the provided password
-        if (!checkPassword(password, storedPassword)) {
+        boolean passwordMatches = encryptionEnabled
+                ? checkPassword(password, userEntry.getPassword())
+                : userEntry.checkPlainPassword(password);
+        if (!passwordMatches) {
         	if (!this.detailedLoginExcepion) {
         		throw new FailedLoginException("login failed");
         	} else {
@@ -134,24 +125,7 @@ public class PropertiesLoginModule extends AbstractKarafLoginModule {
 
         principals = new HashSet<>();
         principals.add(new UserPrincipal(user));
-        for (int i = 1; i < infos.length; i++) {
-            if (infos[i].trim().startsWith(PropertiesBackingEngine.GROUP_PREFIX)) {
-                // it's a group reference
-                principals.add(new GroupPrincipal(infos[i].trim().substring(PropertiesBackingEngine.GROUP_PREFIX.length())));
-                String groupInfo = users.get(infos[i].trim());
-                if (groupInfo != null) {
-                    String[] roles = groupInfo.split(",");
-                    for (int j = 1; j < roles.length; j++) {
-                        principals.add(new RolePrincipal(roles[j].trim()));
-                    }
-                }
-            } else {
-                // it's an user reference
-                principals.add(new RolePrincipal(infos[i].trim()));
-            }
-        }
-
-        users.clear();
+        principals.addAll(userEntry.getPrincipals());
 
         if (debug) {
             LOGGER.debug("Successfully logged in {}", user);
@@ -0,0 +1,200 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.jaas.modules.properties;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.felix.utils.properties.Properties;
+import org.apache.karaf.jaas.boot.principal.GroupPrincipal;
+import org.apache.karaf.jaas.boot.principal.RolePrincipal;
+
+/**
+ * Immutable index of the users, groups and roles of a users properties file, shared by all the login modules
+ * using the same file.
+ * <p>
+ * The index is reloaded when the modification time, size or identity of the file changes, or when it is
+ * {@link #invalidate(File) invalidated} after the file has been written. The principals of each user are resolved
+ * once at load time, and a digest of the stored password is kept to check plain passwords in constant time.
+ */
+public final class UsersFileIndex {
+
+    private static final ConcurrentMap<String, UsersFileIndex> INDEXES = new ConcurrentHashMap<>();
+
+    private final Object modified;
+    private final long size;
+    private final Object fileKey;
+    private final Map<String, User> users;
+
+    private UsersFileIndex(BasicFileAttributes attributes, Map<String, User> users) {
+        this.modified = attributes.lastModifiedTime();
+        this.size = attributes.size();
+        this.fileKey = attributes.fileKey();
+        this.users = users;
+    }
+
+    /**
+     * Return the index of a users file, loading it if the file changed since the last call.
+     *
+     * @param file The users file.
+     * @return The index.
+     * @throws IOException If the file can't be read.
+     */
+    public static UsersFileIndex get(File file) throws IOException {
+        String path = file.getAbsolutePath();
+        BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        UsersFileIndex index = INDEXES.get(path);
+        if (index != null && index.isCurrent(attributes)) {
+            return index;
+        }
+        synchronized (INDEXES) {
+            index = INDEXES.get(path);
+            if (index == null || !index.isCurrent(attributes)) {
+                index = load(file, attributes);
+                INDEXES.put(path, index);
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Drop the index of a users file, so it is reloaded on the next login.
+     *
+     * @param file The users file.
+     */
+    public static void invalidate(File file) {
+        if (file != null) {
+            INDEXES.remove(file.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Drop the index of all the users files.
+     */
+    public static void invalidateAll() {
+        INDEXES.clear();
+    }
+
+    private boolean isCurrent(BasicFileAttributes attributes) {
+        return modified.equals(attributes.lastModifiedTime())
+                && size == attributes.size()
+                && Objects.equals(fileKey, attributes.fileKey());
+    }
+
+    private static UsersFileIndex load(File file, BasicFileAttributes attributes) throws IOException {
+        Properties properties = new Properties(file);
+        Map<String, User> users = new HashMap<>();
+        for (String name : properties.keySet()) {
+            if (name.startsWith(PropertiesBackingEngine.GROUP_PREFIX)) {
+                continue;
+            }
+            String userInfos = properties.get(name);
+            if (userInfos == null) {
+                continue;
+            }
+            // the password is in the first position
+            String[] infos = userInfos.split(",");
+            List<Principal> principals = new ArrayList<>();
+            for (int i = 1; i < infos.length; i++) {
+                if (infos[i].trim().startsWith(PropertiesBackingEngine.GROUP_PREFIX)) {
+                    // it's a group reference
+                    principals.add(new GroupPrincipal(infos[i].trim().substring(PropertiesBackingEngine.GROUP_PREFIX.length())));
+                    String groupInfo = properties.get(infos[i].trim());
+                    if (groupInfo != null) {
+                        String[] roles = groupInfo.split(",");
+                        for (int j = 1; j < roles.length; j++) {
+                            principals.add(new RolePrincipal(roles[j].trim()));
+                        }
+                    }
+                } else {
+                    // it's an user reference
+                    principals.add(new RolePrincipal(infos[i].trim()));
+                }
+            }
+            users.put(name, new User(infos[0], Collections.unmodifiableList(principals)));
+        }
+        return new UsersFileIndex(attributes, Collections.unmodifiableMap(users));
+    }
+
+    /**
+     * @param name The user name.
+     * @return The user, or {@code null} if the file has no such user. Groups are not users.
+     */
+    public User getUser(String name) {
+        return users.get(name);
+    }
+
+    public static final class User {
+
+        private final String password;
+        private final byte[] passwordDigest;
+        private final List<Principal> principals;
+
+        User(String password, List<Principal> principals) {
+            this.password = password;
+            this.passwordDigest = digest(password);
+            this.principals = principals;
+        }
+
+        /**
+         * @return The password as stored in the file, possibly encrypted.
+         */
+        public String getPassword() {
+            return password;
+        }
+
+        /**
+         * Check a password against the stored one, as plain text.
+         *
+         * @param provided The provided password.
+         * @return {@code True} if the passwords are equal.
+         */
+        public boolean checkPlainPassword(String provided) {
+            return provided != null && MessageDigest.isEqual(passwordDigest, digest(provided));
+        }
+
+        /**
+         * @return The group and role principals of the user.
+         */
+        public List<Principal> getPrincipals() {
+            return principals;
+        }
+
+        private static byte[] digest(String value) {
+            try {
+                return MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.jaas.modules.cache;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.security.auth.Subject;
+import javax.security.auth.login.FailedLoginException;
+
+import org.apache.felix.utils.properties.Properties;
+import org.apache.karaf.jaas.boot.principal.RolePrincipal;
+import org.apache.karaf.jaas.boot.principal.UserPrincipal;
+import org.apache.karaf.jaas.modules.NamePasswordCallbackHandler;
+import org.apache.karaf.jaas.modules.properties.PropertiesBackingEngine;
+import org.apache.karaf.jaas.modules.properties.PropertiesLoginModule;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CachingLoginModuleTest {
+
+    private File usersFile;
+    private PropertiesBackingEngine engine;
+    private Map<String, String> options;
+
+    @Before
+    public void setUp() throws Exception {
+        usersFile = File.createTempFile(getClass().getName(), ".tmp");
+        engine = new PropertiesBackingEngine(new Properties(usersFile));
+        engine.addUser("abc", "xyz");
+        engine.addRole("abc", "myrole");
+
+        options = new HashMap<>();
+        options.put(CachingLoginModule.MODULE, PropertiesLoginModule.class.getName());
+        options.put(CachingLoginModule.REALM, "test");
+        options.put("users", usersFile.getAbsolutePath());
+        AuthenticationCache.getInstance().invalidateAll();
+    }
+
+    @After
+    public void tearDown() {
+        AuthenticationCache.getInstance().invalidateAll();
+        if (!usersFile.delete()) {
+            Assert.fail("Could not delete temporary file: " + usersFile);
+        }
+    }
+
+    @Test
+    public void testCachedLogin() throws Exception {
+        AuthenticationCache cache = AuthenticationCache.getInstance();
+        long hits = cache.getHits();
+
+        Subject subject = login("abc", "xyz");
+        Assert.assertEquals(hits, cache.getHits());
+        Assert.assertEquals(1, cache.getSize());
+
+        // the wrapped module is not called on a cache hit
+        subject = login("abc", "xyz");
+        Assert.assertEquals(hits + 1, cache.getHits());
+        Assert.assertTrue(subject.getPrincipals().contains(new UserPrincipal("abc")));
+        Assert.assertTrue(subject.getPrincipals().contains(new RolePrincipal("myrole")));
+    }
+
+    @Test
+    public void testWrongPasswordIsNotCached() throws Exception {
+        login("abc", "xyz");
+        try {
+            login("abc", "abc");
+            Assert.fail("The login should have failed as the passwords didn't match");
+        } catch (FailedLoginException e) {
+            // good
+        }
+    }
+
+    @Test
+    public void testInvalidatedByBackingEngine() throws Exception {
+        login("abc", "xyz");
+        Assert.assertEquals(1, AuthenticationCache.getInstance().getSize());
+
+        engine.addRole("abc", "otherrole");
+        Assert.assertEquals(0, AuthenticationCache.getInstance().getSize());
+
+        Subject subject = login("abc", "xyz");
+        Assert.assertTrue(subject.getPrincipals().contains(new RolePrincipal("otherrole")));
+    }
+
+    @Test
+    public void testInvalidatedWhenUsersFileEdited() throws Exception {
+        login("abc", "xyz");
+        Assert.assertEquals(1, AuthenticationCache.getInstance().getSize());
+
+        // edited without the backing engine
+        Properties users = new Properties(usersFile);
+        users.put("abc", "changed,myrole");
+        users.save();
+
+        try {
+            login("abc", "xyz");
+            Assert.fail("The login should have failed as the password changed in the users file");
+        } catch (FailedLoginException e) {
+            // good
+        }
+        Assert.assertEquals(0, AuthenticationCache.getInstance().getSize());
+        login("abc", "changed");
+    }
+
+    private Subject login(String user, String password) throws Exception {
+        Subject subject = new Subject();
+        CachingLoginModule module = new CachingLoginModule();
+        module.initialize(subject, new NamePasswordCallbackHandler(user, password), new HashMap<>(), options);
+        Assert.assertTrue(module.login());
+        Assert.assertTrue(module.commit());
+        return subject;
+    }
+
+}
@@ -29,22 +29,33 @@ import org.apache.karaf.jaas.boot.principal.GroupPrincipal;
 import org.apache.karaf.jaas.boot.principal.RolePrincipal;
 import org.apache.karaf.jaas.boot.principal.UserPrincipal;
 import org.apache.karaf.jaas.modules.NamePasswordCallbackHandler;
+import org.easymock.Capture;
 import org.easymock.EasyMock;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.BundleListener;
+import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.ServiceListener;
 import org.osgi.framework.ServiceReference;
 
 import static org.easymock.EasyMock.expect;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 public class JdbcLoginModuleTest {
 
     private EmbeddedDataSource dataSource;
     private Map<String, Object> options;
+    private Bundle bundle;
+    private Capture<BundleListener> bundleListener;
 
     @SuppressWarnings("unchecked")
     @Before
@@ -77,19 +88,39 @@ public class JdbcLoginModuleTest {
         }
 
         BundleContext context = EasyMock.createMock(BundleContext.class);
+        bundle = EasyMock.createMock(Bundle.class);
         ServiceReference<DataSource> reference = EasyMock.createMock(ServiceReference.class);
 
         options = new HashMap<>();
         options.put(JDBCUtils.DATASOURCE, "osgi:" + DataSource.class.getName());
         options.put(BundleContext.class.getName(), context);
 
+        // the datasource is tracked by the JDBCCache
+        String filter = "(objectClass=" + DataSource.class.getName() + ")";
+        expect(context.createFilter(filter)).andReturn(FrameworkUtil.createFilter(filter));
+        context.addServiceListener(EasyMock.anyObject(ServiceListener.class), EasyMock.eq(filter));
+        context.removeServiceListener(EasyMock.anyObject(ServiceListener.class));
+        EasyMock.expectLastCall().anyTimes();
         expect(context.getServiceReferences(DataSource.class.getName(), null)).andReturn(new ServiceReference[] { reference });
         expect(context.getService(reference)).andReturn(dataSource);
-        expect(context.ungetService(reference)).andReturn(true);
+        expect(context.ungetService(reference)).andReturn(true).anyTimes();
+
+        // the JDBCCache is closed when the bundle stops
+        bundleListener = EasyMock.newCapture();
+        context.addBundleListener(EasyMock.capture(bundleListener));
+        EasyMock.expectLastCall().anyTimes();
+        context.removeBundleListener(EasyMock.anyObject(BundleListener.class));
+        EasyMock.expectLastCall().anyTimes();
+        expect(context.getBundle()).andReturn(bundle).anyTimes();
 
         EasyMock.replay(context);
     }
 
+    @After
+    public void tearDown() {
+        JDBCCache.clear();
+    }
+
     @Test
     public void testLoginModule() throws Exception {
         JDBCBackingEngine engine = new JDBCBackingEngine(dataSource);
@@ -132,6 +163,59 @@ public class JdbcLoginModuleTest {
         assertTrue(subject.getPrincipals().contains(new RolePrincipal("role2")));
     }
 
+    @Test
+    public void testLoginQueryAndRoleCache() throws Exception {
+        JDBCBackingEngine engine = new JDBCBackingEngine(dataSource);
+        engine.addGroupRole("group1", "role2");
+        engine.addUser("abc", "xyz");
+        engine.addRole("abc", "role1");
+        engine.addGroup("abc", "group1");
+
+        options.put(JDBCLoginModule.LOGIN_QUERY, "SELECT U.PASSWORD, R.ROLE FROM USERS U LEFT OUTER JOIN ROLES R ON U.USERNAME = R.USERNAME WHERE U.USERNAME = ?");
+        options.put(JDBCLoginModule.ROLE_CACHE_TTL, "60000");
+
+        Subject subject = new Subject();
+        JDBCLoginModule module = new JDBCLoginModule();
+        module.initialize(subject, new NamePasswordCallbackHandler("abc", "xyz"), null, options);
+        module.login();
+        module.commit();
+
+        assertTrue(subject.getPrincipals().contains(new UserPrincipal("abc")));
+        assertTrue(subject.getPrincipals().contains(new GroupPrincipal("group1")));
+        assertTrue(subject.getPrincipals().contains(new RolePrincipal("role1")));
+        assertTrue(subject.getPrincipals().contains(new RolePrincipal("role2")));
+
+        // the user roles come with the login query, the group roles from the cache, which the engine invalidates
+        engine.addRole("abc", "role3");
+        engine.addGroupRole("group1", "role4");
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("INSERT INTO ROLES VALUES('_g_:group1','role5')");
+        }
+
+        subject = new Subject();
+        module = new JDBCLoginModule();
+        module.initialize(subject, new NamePasswordCallbackHandler("abc", "xyz"), null, options);
+        module.login();
+        module.commit();
+
+        assertTrue(subject.getPrincipals().contains(new RolePrincipal("role3")));
+        assertTrue(subject.getPrincipals().contains(new RolePrincipal("role2")));
+        assertTrue(subject.getPrincipals().contains(new RolePrincipal("role4")));
+        assertFalse(subject.getPrincipals().contains(new RolePrincipal("role5")));
+    }
+
+    @Test
+    public void testCacheClosedWhenBundleStops() throws Exception {
+        BundleContext context = (BundleContext) options.get(BundleContext.class.getName());
+        JDBCCache cache = JDBCCache.getCache(context, "osgi:" + DataSource.class.getName());
+        assertSame(dataSource, cache.getDataSource());
+        assertSame(cache, JDBCCache.getCache(context, "osgi:" + DataSource.class.getName()));
+
+        bundleListener.getValue().bundleChanged(new BundleEvent(BundleEvent.STOPPING, bundle));
+        assertNotSame(cache, JDBCCache.getCache(context, "osgi:" + DataSource.class.getName()));
+    }
+
     @Test
     public void testEngine() throws Exception {
         UserPrincipal user = new UserPrincipal("abc");
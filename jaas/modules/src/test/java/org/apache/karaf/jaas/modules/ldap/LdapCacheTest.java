@@ -19,11 +19,19 @@ import static org.apache.karaf.jaas.modules.PrincipalHelper.names;
 import static org.apache.karaf.jaas.modules.ldap.LdapPropsUpdater.ldapProps;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.naming.NamingException;
 import javax.naming.directory.Attribute;
@@ -106,6 +114,106 @@ public class LdapCacheTest extends AbstractLdapTestUnit {
         assertEquals("Postcondition", 3, subject.getPrincipals().size());
     }
 
+    @Test
+    public void testConcurrentLookupsShareRequest() throws Exception {
+        Properties options = ldapLoginModuleOptions();
+        options.put(LDAPOptions.DISABLE_CACHE, "false");
+        AtomicInteger lookups = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        LDAPCache cache = new LDAPCache(new LDAPOptions(options)) {
+            @Override
+            protected String[] doGetUserDnAndNamespace(String user) {
+                lookups.incrementAndGet();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return new String[] { "cn=" + user, "cn=" + user + ",ou=people,dc=example,dc=com" };
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String[]>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(executor.submit(() -> cache.getUserDnAndNamespace("admin")));
+            }
+            // release the lookup once the three other callers joined it
+            long deadline = System.currentTimeMillis() + 10000;
+            while (cache.getCacheSharedLookups() < 3 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+            for (Future<String[]> result : results) {
+                assertEquals("cn=admin", result.get()[0]);
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(1, lookups.get());
+        assertEquals(3, cache.getCacheSharedLookups());
+
+        cache.getUserDnAndNamespace("admin");
+        assertEquals(1, lookups.get());
+        assertEquals(1, cache.getCacheHits());
+    }
+
+    @Test
+    public void testUnknownUserCached() throws Exception {
+        Properties options = ldapLoginModuleOptions();
+        options.put(LDAPOptions.DISABLE_CACHE, "false");
+        options.put(LDAPOptions.CACHE_NEGATIVE_TTL, "100");
+        AtomicInteger lookups = new AtomicInteger();
+        LDAPCache cache = new LDAPCache(new LDAPOptions(options)) {
+            @Override
+            protected String[] doGetUserDnAndNamespace(String user) {
+                lookups.incrementAndGet();
+                return null;
+            }
+        };
+        assertNull(cache.getUserDnAndNamespace("unknown"));
+        assertNull(cache.getUserDnAndNamespace("unknown"));
+        assertEquals(1, lookups.get());
+        assertEquals(1, cache.getCacheNegativeHits());
+
+        Thread.sleep(200);
+        assertNull(cache.getUserDnAndNamespace("unknown"));
+        assertEquals(2, lookups.get());
+    }
+
+    @Test
+    public void testNotCachedWhileDisconnected() throws Exception {
+        Properties options = ldapLoginModuleOptions();
+        options.put(LDAPOptions.DISABLE_CACHE, "false");
+        AtomicInteger lookups = new AtomicInteger();
+        LDAPCache cache = new LDAPCache(new LDAPOptions(options)) {
+            @Override
+            protected String[] doGetUserDnAndNamespace(String user) {
+                lookups.incrementAndGet();
+                return new String[] { "cn=" + user, "cn=" + user + ",ou=people,dc=example,dc=com" };
+            }
+        };
+        try {
+            cache.getUserDnAndNamespace("admin");
+            cache.getUserDnAndNamespace("admin");
+            assertEquals(1, lookups.get());
+
+            // the listening connection is lost: the entries may be stale and nothing is cached anymore
+            cache.namingExceptionThrown(null);
+            cache.getUserDnAndNamespace("admin");
+            cache.getUserDnAndNamespace("admin");
+            assertEquals(3, lookups.get());
+
+            // cached again once the listening connection is back
+            cache.open();
+            cache.getUserDnAndNamespace("admin");
+            cache.getUserDnAndNamespace("admin");
+            assertEquals(4, lookups.get());
+        } finally {
+            cache.close();
+        }
+    }
+
     private void addUserToGroup(DirContext context, String userCn, String group) throws NamingException {
         Attributes entry = new BasicAttributes();
         entry.put(new BasicAttribute("cn", group));
@@ -36,6 +36,7 @@ import org.apache.karaf.jaas.boot.principal.GroupPrincipal;
 import org.apache.karaf.jaas.boot.principal.RolePrincipal;
 import org.apache.karaf.jaas.boot.principal.UserPrincipal;
 import org.apache.karaf.jaas.modules.NamePasswordCallbackHandler;
+import org.apache.karaf.jaas.modules.encryption.EncryptionSupport;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -134,6 +135,46 @@ public class PropertiesLoginModuleTest {
         }
     }
 
+    @Test
+    public void testLoginAfterUsersFileChange() throws Exception {
+        File f = File.createTempFile(getClass().getName(), ".tmp");
+        try {
+            Properties p = new Properties(f);
+            PropertiesBackingEngine pbe = new PropertiesBackingEngine(p, f, EncryptionSupport.noEncryptionSupport());
+            pbe.addUser("abc", "xyz");
+            pbe.addRole("abc", "myrole");
+
+            Map<String, String> options = new HashMap<>();
+            options.put(PropertiesLoginModule.USER_FILE, f.getAbsolutePath());
+            PropertiesLoginModule module = new PropertiesLoginModule();
+            module.initialize(new Subject(), new NamePasswordCallbackHandler("abc", "xyz"), null, options);
+            Assert.assertTrue(module.login());
+
+            // same size, and the modification time may not change on coarse grained file systems
+            pbe.addUser("abc", "uvw");
+
+            module = new PropertiesLoginModule();
+            module.initialize(new Subject(), new NamePasswordCallbackHandler("abc", "xyz"), null, options);
+            try {
+                module.login();
+                Assert.fail("The login should have failed as the password changed");
+            } catch (FailedLoginException fle) {
+                // good
+            }
+
+            Subject subject = new Subject();
+            module = new PropertiesLoginModule();
+            module.initialize(subject, new NamePasswordCallbackHandler("abc", "uvw"), null, options);
+            Assert.assertTrue(module.login());
+            Assert.assertTrue(module.commit());
+            assertThat(names(subject.getPrincipals(RolePrincipal.class)), containsInAnyOrder("myrole"));
+        } finally {
+            if (!f.delete()) {
+                Assert.fail("Could not delete temporary file: " + f);
+            }
+        }
+    }
+
     // This is a fairly important test that ensures that you cannot log in under the name of a
     // group directly.
     @Test
@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.management;
+
+import javax.management.openmbean.*;
+
+/**
+ * <p>Snapshot MBean. This MBean returns, in one call, the values of many attributes of many MBeans, so monitoring
+ * agents don't have to issue one <code>getAttribute</code> per attribute.</p>
+ * <p>The MBeans are selected by ObjectName patterns and their attributes by globs (<code>*</code> and
+ * <code>?</code>). Attributes the current user is not allowed to read are silently left out. Composite values are
+ * flattened as <code>Attribute.key</code> rows, other values are returned as strings.</p>
+ */
+public interface JMXSnapshotMBean {
+
+    /**
+     * The Tabular Type returned by the {@link #getSnapshot(String[], String[])} operation. The rows consist of
+     * {@link #SNAPSHOT_ROW_TYPE} entries. It has a composite key composed by the "ObjectName" and "Attribute" columns.
+     */
+    TabularType SNAPSHOT_TABULAR_TYPE = SnapshotMBeanOpenTypeInitializer.TABULAR_TYPE;
+
+    /**
+     * A row as returned by the {@link #SNAPSHOT_TABULAR_TYPE}. The columns of the row are defined
+     * by {@link #SNAPSHOT_COLUMNS}
+     */
+    CompositeType SNAPSHOT_ROW_TYPE = SnapshotMBeanOpenTypeInitializer.ROW_TYPE;
+
+    /**
+     * The columns contained in a {@link #SNAPSHOT_ROW_TYPE}. The data types for these columns are
+     * as follows:
+     * <ul>
+     *     <li>"ObjectName": {@link SimpleType#STRING}</li>
+     *     <li>"Attribute": {@link SimpleType#STRING}</li>
+     *     <li>"Value": {@link SimpleType#STRING}, {@code null} for a null value</li>
+     *     <li>"Type": {@link SimpleType#STRING}, the class name of the value</li>
+     * </ul>
+     */
+    String[] SNAPSHOT_COLUMNS = SnapshotMBeanOpenTypeInitializer.COLUMNS;
+
+    /**
+     * The Composite Type returned by the {@link #getDelta(String[], String[], String)} operation, with the
+     * "Token" ({@link SimpleType#STRING}) to pass to the next call and the changed "Values"
+     * ({@link #SNAPSHOT_TABULAR_TYPE}).
+     */
+    CompositeType DELTA_TYPE = SnapshotMBeanOpenTypeInitializer.DELTA_TYPE;
+
+    /**
+     * Read the attributes matching the given globs of the MBeans matching the given ObjectName patterns.
+     *
+     * @param objectNames The ObjectName patterns, for instance <code>java.lang:type=Memory</code> or
+     *                    <code>org.apache.karaf:type=bundle,*</code>.
+     * @param attributes The attribute name globs, for instance <code>Heap*</code>. All attributes if {@code null}
+     *                   or empty.
+     * @return A Tabular Data object conforming the structure as defined in {@link #SNAPSHOT_TABULAR_TYPE}.
+     * @throws Exception If an ObjectName pattern is invalid or the ACL can't be checked.
+     */
+    TabularData getSnapshot(String[] objectNames, String[] attributes) throws Exception;
+
+    /**
+     * Same as {@link #getSnapshot(String[], String[])}, but only return the values which changed since the last
+     * call made with the same token.
+     *
+     * @param objectNames The ObjectName patterns.
+     * @param attributes The attribute name globs, all attributes if {@code null} or empty.
+     * @param token The token returned by the previous call, {@code null} or unknown for a full snapshot.
+     * @return A Composite Data object conforming the structure as defined in {@link #DELTA_TYPE}.
+     * @throws Exception If an ObjectName pattern is invalid or the ACL can't be checked.
+     */
+    CompositeData getDelta(String[] objectNames, String[] attributes, String token) throws Exception;
+
+    // a member class is used to initialize final fields, as this needs to do some exception handling...
+    class SnapshotMBeanOpenTypeInitializer {
+
+        private static final String[] COLUMNS = new String[]{ "ObjectName", "Attribute", "Value", "Type" };
+        private static final CompositeType ROW_TYPE;
+        private static final TabularType TABULAR_TYPE;
+        private static final CompositeType DELTA_TYPE;
+
+        static {
+            try {
+                ROW_TYPE = new CompositeType("SnapshotRowType",
+                        "The rows of a SnapshotTabularType table.",
+                        COLUMNS,
+                        new String[]{
+                            "The ObjectName of the MBean.",
+                            "The name of the attribute, or Attribute.key for an item of a composite attribute.",
+                            "The value of the attribute.",
+                            "The class name of the value."
+                        },
+                        new OpenType[] { SimpleType.STRING, SimpleType.STRING, SimpleType.STRING, SimpleType.STRING });
+                TABULAR_TYPE = new TabularType("SnapshotTabularType", "Result of getSnapshot() bulk operation", ROW_TYPE,
+                        new String[] { "ObjectName", "Attribute" });
+                DELTA_TYPE = new CompositeType("SnapshotDeltaType",
+                        "Result of getDelta() bulk operation",
+                        new String[] { "Token", "Values" },
+                        new String[] {
+                            "The token to pass to the next getDelta() call.",
+                            "The values which changed since the previous call."
+                        },
+                        new OpenType[] { SimpleType.STRING, TABULAR_TYPE });
+            } catch (OpenDataException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+    }
+
+}
@@ -19,10 +19,13 @@ package org.apache.karaf.management;
 import org.apache.karaf.management.internal.BulkRequestContext;
 import org.apache.karaf.management.internal.EventAdminLogger;
 import org.apache.karaf.management.internal.EventAdminMBeanServerWrapper;
+import org.apache.karaf.management.internal.JmxAclModel;
 import org.apache.karaf.management.internal.MBeanInvocationHandler;
 import org.apache.karaf.service.guard.tools.ACLConfigurationParser;
 import org.apache.karaf.util.jaas.JaasHelper;
 import org.osgi.service.cm.ConfigurationAdmin;
+import org.osgi.service.cm.ConfigurationEvent;
+import org.osgi.service.cm.ConfigurationListener;
 
 import javax.management.*;
 import java.io.IOException;
@@ -44,7 +47,7 @@ import java.util.regex.Pattern;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class KarafMBeanServerGuard implements InvocationHandler {
+public class KarafMBeanServerGuard implements InvocationHandler, ConfigurationListener {
 
     private static final Logger LOG = LoggerFactory.getLogger(KarafMBeanServerGuard.class);    
 
@@ -65,12 +68,17 @@ public class KarafMBeanServerGuard implements InvocationHandler {
     private ConfigurationAdmin configAdmin;
     private EventAdminLogger logger;
 
+    // compiled jmx.acl* configurations, dropped when one of them changes
+    private volatile JmxAclModel aclModel;
+    private volatile int aclGeneration;
+
     public ConfigurationAdmin getConfigAdmin() {
         return configAdmin;
     }
 
     public void setConfigAdmin(ConfigurationAdmin configAdmin) {
         this.configAdmin = configAdmin;
+        invalidateAclModel();
     }
 
     public EventAdminLogger getLogger() {
@@ -81,6 +89,38 @@ public class KarafMBeanServerGuard implements InvocationHandler {
         this.logger = logger;
     }
 
+    @Override
+    public void configurationEvent(ConfigurationEvent event) {
+        if (event.getPid() != null && event.getPid().startsWith(JMX_ACL_PID_PREFIX)) {
+            invalidateAclModel();
+        }
+    }
+
+    private void invalidateAclModel() {
+        aclGeneration++;
+        aclModel = null;
+    }
+
+    /**
+     * Create a {@link BulkRequestContext} backed by the compiled ACL model, loading the model from
+     * ConfigAdmin if it has been invalidated.
+     *
+     * @return A context for the current subject.
+     * @throws IOException If the ACL configurations can't be read.
+     */
+    public BulkRequestContext newContext() throws IOException {
+        JmxAclModel model = aclModel;
+        if (model == null) {
+            int generation = aclGeneration;
+            model = JmxAclModel.load(configAdmin);
+            // don't keep a model loaded while the configurations were changing
+            if (generation == aclGeneration) {
+                aclModel = model;
+            }
+        }
+        return BulkRequestContext.newContext(model);
+    }
+
     public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
         if (method.getParameterTypes().length == 0)
             return null;
@@ -262,7 +302,7 @@ public class KarafMBeanServerGuard implements InvocationHandler {
 
     private boolean canInvoke(BulkRequestContext context, ObjectName objectName, String methodName, String[] signature) throws IOException {
         if (context == null) {
-            context = BulkRequestContext.newContext(configAdmin);
+            context = newContext();
         }
         if (canBypassRBAC(context, objectName, methodName)) {
             return true;
@@ -319,6 +359,16 @@ public class KarafMBeanServerGuard implements InvocationHandler {
     }
     
     private boolean canBypassRBAC(BulkRequestContext context, ObjectName objectName, String operationName) {
+        JmxAclModel model = context.getModel();
+        if (model != null) {
+            for (String pid : iterateDownPids(context, objectName)) {
+                if (!pid.equals("jmx.acl") && model.isWhitelisted(pid.substring("jmx.acl.".length()), operationName)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
         List<String> allBypassObjectName = new ArrayList<>();
 
         List<Dictionary<String, Object>> configs = context.getWhitelistProperties();
@@ -359,32 +409,50 @@ public class KarafMBeanServerGuard implements InvocationHandler {
         if (mbs != null && mbs.isInstanceOf(objectName, "javax.management.loading.MLet")
             && ("addUrl".equals(operationName) || "getMBeansFromURL".equals(operationName))) {
             SecurityException se = new SecurityException(operationName + " is not allowed to be invoked");
-            if (logger != null) {
+            if (logger != null && logger.isLogged(INVOKE, objectName, se)) {
                 logger.log(INVOKE, INVOKE_SIG, null, se, objectName, operationName, signature, params);
             }
             throw se;
         }
 
         if (context == null) {
-            context = BulkRequestContext.newContext(configAdmin);
-        }
-        if (canBypassRBAC(context, objectName, operationName)) {
-            return;
-        }
-        for (String role : getRequiredRoles(context, objectName, operationName, params, signature)) {
-            if (JaasHelper.currentUserHasRole(role))
+            context = newContext();
+        }
+        JmxAclModel model = context.getModel();
+        // the decision only depends on the roles when there are no arguments to match
+        if (model != null && (params == null || params.length == 0)) {
+            Boolean allowed = model.getDecision(objectName, operationName, signature, context.getPrincipals());
+            if (allowed == null) {
+                allowed = isAllowed(context, objectName, operationName, params, signature);
+                model.putDecision(objectName, operationName, signature, context.getPrincipals(), allowed);
+            }
+            if (allowed) {
                 return;
+            }
+        } else if (isAllowed(context, objectName, operationName, params, signature)) {
+            return;
         }
         if (Boolean.valueOf(System.getProperty(JMX_ACL_DETAILED_MESSAGE, "false"))) {
             printDetailedMessage(context, objectName, operationName, params, signature);
         }
         SecurityException se = new SecurityException("Insufficient roles/credentials for operation");
-        if (logger != null) {
+        if (logger != null && logger.isLogged(INVOKE, objectName, se)) {
             logger.log(INVOKE, INVOKE_SIG, null, se, objectName, operationName, signature, params);
         }
         throw se;
     }
 
+    private boolean isAllowed(BulkRequestContext context, ObjectName objectName, String operationName, Object[] params, String[] signature) throws IOException {
+        if (canBypassRBAC(context, objectName, operationName)) {
+            return true;
+        }
+        for (String role : getRequiredRoles(context, objectName, operationName, params, signature)) {
+            if (JaasHelper.currentUserHasRole(context.getPrincipals(), role))
+                return true;
+        }
+        return false;
+    }
+
     private void printDetailedMessage(BulkRequestContext context, ObjectName objectName,
                                       String operationName, Object[] params, String[] signature) throws IOException {
         StringBuilder expectedRoles = new StringBuilder();
@@ -433,7 +501,7 @@ public class KarafMBeanServerGuard implements InvocationHandler {
     }
 
     List<String> getRequiredRoles(ObjectName objectName, String methodName, String[] signature) throws IOException {
-        return getRequiredRoles(BulkRequestContext.newContext(configAdmin), objectName, methodName, null, signature);
+        return getRequiredRoles(newContext(), objectName, methodName, null, signature);
     }
 
     List<String> getRequiredRoles(BulkRequestContext context, ObjectName objectName, String methodName, String[] signature) throws IOException {
@@ -441,12 +509,12 @@ public class KarafMBeanServerGuard implements InvocationHandler {
     }
 
     List<String> getRequiredRoles(ObjectName objectName, String methodName, Object[] params, String[] signature) throws IOException {
-        return getRequiredRoles(BulkRequestContext.newContext(configAdmin), objectName, methodName, params, signature);
+        return getRequiredRoles(newContext(), objectName, methodName, params, signature);
     }
 
     List<String> getRequiredRoles(BulkRequestContext context, ObjectName objectName, String methodName, Object[] params, String[] signature) throws IOException {
-        for (String pid : iterateDownPids(getNameSegments(objectName))) {
-            String generalPid = getGeneralPid(context.getAllPids(), pid);
+        for (String pid : iterateDownPids(context, objectName)) {
+            String generalPid = getGeneralPid(context, pid);
             if (generalPid.length() > 0) {
                 Dictionary<String, Object> config = context.getConfiguration(generalPid);
                 List<String> roles = new ArrayList<>();
@@ -459,6 +527,19 @@ public class KarafMBeanServerGuard implements InvocationHandler {
         return Collections.emptyList();
     }
 
+    private String getGeneralPid(BulkRequestContext context, String pid) {
+        JmxAclModel model = context.getModel();
+        if (model == null) {
+            return getGeneralPid(context.getAllPids(), pid);
+        }
+        String generalPid = model.getGeneralPids().get(pid);
+        if (generalPid == null) {
+            generalPid = getGeneralPid(model.getAllPids(), pid);
+            model.getGeneralPids().put(pid, generalPid);
+        }
+        return generalPid;
+    }
+
     private String getGeneralPid(List<String> allPids, String pid) {
         String[] pidStrArray = pid.split(Pattern.quote("."));
         Set<String[]> rets = new TreeSet<>(WILDCARD_PID_COMPARATOR);
@@ -517,6 +598,19 @@ public class KarafMBeanServerGuard implements InvocationHandler {
         return segments;
     }
 
+    private List<String> iterateDownPids(BulkRequestContext context, ObjectName objectName) {
+        JmxAclModel model = context.getModel();
+        if (model == null) {
+            return iterateDownPids(getNameSegments(objectName));
+        }
+        List<String> pids = model.getPids().get(objectName);
+        if (pids == null) {
+            pids = Collections.unmodifiableList(iterateDownPids(getNameSegments(objectName)));
+            model.getPids().put(objectName, pids);
+        }
+        return pids;
+    }
+
     /**
      * Given a list of segments, return a list of PIDs that are searched in this order.
      * For example, given the following segments: org.foo, bar, test
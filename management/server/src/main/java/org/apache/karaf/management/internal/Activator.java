@@ -35,6 +35,7 @@ import org.apache.karaf.util.tracker.annotation.RequireService;
 import org.apache.karaf.util.tracker.annotation.Services;
 import org.osgi.framework.ServiceReference;
 import org.osgi.service.cm.ConfigurationAdmin;
+import org.osgi.service.cm.ConfigurationListener;
 import org.osgi.service.cm.ManagedService;
 import org.osgi.util.tracker.ServiceTracker;
 import org.osgi.util.tracker.ServiceTrackerCustomizer;
@@ -46,7 +47,10 @@ import org.slf4j.LoggerFactory;
                 @RequireService(ConfigurationAdmin.class),
                 @RequireService(KeystoreManager.class)
         },
-        provides = @ProvideService(MBeanServer.class)
+        provides = {
+                @ProvideService(MBeanServer.class),
+                @ProvideService(ConfigurationListener.class)
+        }
 )
 @Managed("org.apache.karaf.management")
 public class Activator extends BaseActivator implements ManagedService {
@@ -60,6 +64,8 @@ public class Activator extends BaseActivator implements ManagedService {
 
     private EventAdminLogger eventAdminLogger;
 
+    private HttpMetricsServer httpMetricsServer;
+
     protected void doStart() throws Exception {
         // Verify dependencies
         ConfigurationAdmin configurationAdmin = getTrackedService(ConfigurationAdmin.class);
@@ -75,8 +81,8 @@ public class Activator extends BaseActivator implements ManagedService {
         EventAdminLogger logger = null;
         if (getBoolean("audit.eventadmin.enabled", true)) {
             try {
-                logger = new EventAdminLoggerImpl(bundleContext);
-            } catch (Throwable ignore) {
+                logger = createEventAdminLogger();
+            } catch (NoClassDefFoundError ignore) {
                 // Ignore the listener if EventAdmin package isn't present
             }
         }
@@ -86,6 +92,10 @@ public class Activator extends BaseActivator implements ManagedService {
                 public void close() {
                 }
                 @Override
+                public boolean isLogged(String methodName, ObjectName name, Throwable error) {
+                    return false;
+                }
+                @Override
                 public void log(String methodName, String[] signature, Object result, Throwable error, Object... params) {
                 }
             };
@@ -125,6 +135,8 @@ public class Activator extends BaseActivator implements ManagedService {
         KarafMBeanServerGuard guard = new KarafMBeanServerGuard();
         guard.setLogger(eventAdminLogger);
         guard.setConfigAdmin(configurationAdmin);
+        // refresh the compiled ACLs when a jmx.acl configuration changes
+        register(ConfigurationListener.class, guard);
 
         mbeanServerFactory = new MBeanServerFactory();
         mbeanServerFactory.setLocateExistingServerIfPossible(locateExistingMBeanServerIfPossible);
@@ -182,6 +194,32 @@ public class Activator extends BaseActivator implements ManagedService {
         securityMBean.setGuard(guard);
         registerMBean(securityMBean, "type=security,area=jmx");
 
+        JMXSnapshotMBeanImpl snapshotMBean = new JMXSnapshotMBeanImpl();
+        // read the attributes on the unwrapped server: the snapshot call itself is audited, not each attribute
+        snapshotMBean.setMBeanServer(mbeanServerFactory.getServer());
+        snapshotMBean.setGuard(guard);
+        registerMBean(snapshotMBean, "type=snapshot,area=jmx");
+
+        if (getBoolean("http.enabled", false)) {
+            httpMetricsServer = new HttpMetricsServer(
+                    getString("http.host", "127.0.0.1"),
+                    getInt("http.port", 9180),
+                    getInt("http.workers", 2),
+                    getString("http.objectNames", "java.lang:*;org.apache.karaf:*").split(";"),
+                    getStringArray("http.attributes", null),
+                    jaasAuthenticator,
+                    snapshotMBean);
+            httpMetricsServer.setMaxConnections(getInt("http.maxConnections", 64));
+            httpMetricsServer.setTimeout(getLong("http.timeout", 10000));
+            try {
+                httpMetricsServer.start();
+            } catch (Exception e) {
+                LOG.error("Can't start JMX HTTP endpoint: " + e.getMessage());
+                httpMetricsServer.stop();
+                httpMetricsServer = null;
+            }
+        }
+
         register(MBeanServer.class, mbeanServer);
 
         if (secured) {
@@ -214,8 +252,41 @@ public class Activator extends BaseActivator implements ManagedService {
         }
     }
 
+    private EventAdminLogger createEventAdminLogger() {
+        AuditPolicy policy;
+        try {
+            policy = new AuditPolicy(
+                    getStringArray("audit.eventadmin.methods", null),
+                    getBoolean("audit.eventadmin.reads", true),
+                    getBoolean("audit.eventadmin.writes", true),
+                    getString("audit.eventadmin.objectNames", null),
+                    getString("audit.eventadmin.excludedObjectNames", null));
+        } catch (IllegalArgumentException e) {
+            // audit too much rather than nothing
+            LOG.warn("Invalid JMX audit configuration, auditing all methods: {}", e.getMessage());
+            policy = AuditPolicy.ALL;
+        }
+        long summaryInterval = getLong("audit.eventadmin.summaryInterval", 60000);
+        if (summaryInterval <= 0) {
+            LOG.warn("Invalid audit.eventadmin.summaryInterval {}, using 60000", summaryInterval);
+            summaryInterval = 60000;
+        }
+        int queueSize = getInt("audit.eventadmin.queueSize", 1000);
+        if (queueSize <= 0) {
+            LOG.warn("Invalid audit.eventadmin.queueSize {}, using 1000", queueSize);
+            queueSize = 1000;
+        }
+        return new EventAdminLoggerImpl(bundleContext, policy,
+                getBoolean("audit.eventadmin.aggregateReads", false),
+                summaryInterval, queueSize);
+    }
+
     protected void doStop() {
         super.doStop();
+        if (httpMetricsServer != null) {
+            httpMetricsServer.stop();
+            httpMetricsServer = null;
+        }
         if (connectorServerFactory != null) {
             try {
                 connectorServerFactory.destroy();
@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.management.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+/**
+ * <p>Audit policy of the JMX calls sent to the EventAdmin.</p>
+ * <p>A call is accepted when its method is in the included methods (all if empty), its class (read or write)
+ * is audited and its ObjectName matches one of the included ObjectName patterns (all if empty) and none of the
+ * excluded ones. Calls without an ObjectName are only filtered by method and class.</p>
+ * <p>The policy only works on the method name and ObjectName given by the caller, so rejected calls do not
+ * allocate anything.</p>
+ */
+public class AuditPolicy {
+
+    public static final AuditPolicy ALL = new AuditPolicy(null, true, true, null, null);
+
+    private static final Set<String> READ_METHODS = new HashSet<>(Arrays.asList(
+            "getObjectInstance", "queryMBeans", "queryNames", "isRegistered", "getMBeanCount",
+            "getAttribute", "getAttributes", "getDefaultDomain", "getDomains", "getMBeanInfo",
+            "isInstanceOf", "getClassLoaderFor", "getClassLoader", "getClassLoaderRepository"));
+
+    private final Set<String> methods;
+    private final boolean reads;
+    private final boolean writes;
+    private final ObjectName[] includes;
+    private final ObjectName[] excludes;
+
+    /**
+     * @param methods The audited method names, all if {@code null} or empty.
+     * @param reads Whether the read methods are audited.
+     * @param writes Whether the write methods are audited.
+     * @param includes The audited ObjectName patterns separated by <code>;</code>, all if {@code null} or empty.
+     * @param excludes The ObjectName patterns separated by <code>;</code> which are not audited.
+     */
+    public AuditPolicy(String[] methods, boolean reads, boolean writes, String includes, String excludes) {
+        Set<String> names = new HashSet<>();
+        if (methods != null) {
+            // a blank configuration is split into a single empty entry
+            for (String method : methods) {
+                if (method != null && !method.trim().isEmpty()) {
+                    names.add(method.trim());
+                }
+            }
+        }
+        this.methods = names.isEmpty() ? Collections.emptySet() : names;
+        this.reads = reads;
+        this.writes = writes;
+        this.includes = parse(includes);
+        this.excludes = parse(excludes);
+    }
+
+    /**
+     * Return whether a method only reads the MBean server state.
+     *
+     * @param methodName The MBeanServer method name.
+     * @return {@code True} for a read method, {@code false} for a write method.
+     */
+    public static boolean isRead(String methodName) {
+        return READ_METHODS.contains(methodName);
+    }
+
+    public boolean accept(String methodName, ObjectName name) {
+        if (!(isRead(methodName) ? reads : writes)) {
+            return false;
+        }
+        if (!methods.isEmpty() && !methods.contains(methodName)) {
+            return false;
+        }
+        if (name == null) {
+            return true;
+        }
+        for (ObjectName exclude : excludes) {
+            if (exclude.apply(name)) {
+                return false;
+            }
+        }
+        if (includes.length == 0) {
+            return true;
+        }
+        for (ObjectName include : includes) {
+            if (include.apply(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static ObjectName[] parse(String patterns) {
+        List<ObjectName> names = new ArrayList<>();
+        if (patterns != null) {
+            // ObjectName patterns contain commas, so they are separated by semicolons
+            for (String pattern : patterns.split(";")) {
+                if (pattern.trim().isEmpty()) {
+                    continue;
+                }
+                try {
+                    names.add(new ObjectName(pattern.trim()));
+                } catch (MalformedObjectNameException e) {
+                    throw new IllegalArgumentException("Invalid audit ObjectName pattern: " + pattern, e);
+                }
+            }
+        }
+        return names.toArray(new ObjectName[0]);
+    }
+
+}
@@ -47,6 +47,7 @@ public class BulkRequestContext {
     private List<Dictionary<String, Object>> whiteListProperties = new ArrayList<>();
 
     private ConfigurationAdmin configAdmin;
+    private JmxAclModel model;
 
     // if there's AccessControlContext or subject, we can fail fast
     private boolean anonymous = false;
@@ -61,19 +62,8 @@ public class BulkRequestContext {
     public static BulkRequestContext newContext(ConfigurationAdmin configAdmin) throws IOException {
         BulkRequestContext context = new BulkRequestContext();
         context.configAdmin = configAdmin;
+        context.initSubject();
         try {
-            // check JAAS subject here
-            AccessControlContext acc = AccessController.getContext();
-            if (acc == null) {
-                context.anonymous = true;
-            } else {
-                Subject subject = Subject.getSubject(acc);
-                if (subject == null) {
-                    context.anonymous = true;
-                } else {
-                    context.principals.addAll(subject.getPrincipals());
-                }
-            }
             // list available ACL configs - valid for this instance only
             for (Configuration config : configAdmin.listConfigurations("(service.pid=jmx.acl*)")) {
                 context.allPids.add(config.getPid());
@@ -92,6 +82,36 @@ public class BulkRequestContext {
         return context;
     }
 
+    /**
+     * Create a context backed by a shared {@link JmxAclModel}, so ConfigAdmin is not accessed at all.
+     *
+     * @param model The ACL model.
+     * @return The context.
+     */
+    public static BulkRequestContext newContext(JmxAclModel model) {
+        BulkRequestContext context = new BulkRequestContext();
+        context.model = model;
+        context.allPids = model.getAllPids();
+        context.whiteListProperties = model.getWhitelistProperties();
+        context.initSubject();
+        return context;
+    }
+
+    private void initSubject() {
+        // check JAAS subject here
+        AccessControlContext acc = AccessController.getContext();
+        if (acc == null) {
+            anonymous = true;
+        } else {
+            Subject subject = Subject.getSubject(acc);
+            if (subject == null) {
+                anonymous = true;
+            } else {
+                principals.addAll(subject.getPrincipals());
+            }
+        }
+    }
+
     /**
      * Return list of PIDs related to RBAC/ACL.
      *
@@ -119,12 +139,24 @@ public class BulkRequestContext {
      * @throws IOException If an error ocurrs while retrieving the configuration.
      */
     public Dictionary<String, Object> getConfiguration(String generalPid) throws IOException {
+        if (model != null) {
+            return model.getConfiguration(generalPid);
+        }
         if (!cachedConfigurations.containsKey(generalPid)) {
             cachedConfigurations.put(generalPid, configAdmin.getConfiguration(generalPid, null).getProperties());
         }
         return cachedConfigurations.get(generalPid);
     }
 
+    /**
+     * Return the shared ACL model backing this context, if any.
+     *
+     * @return The model or <code>null</code> if this context reads ConfigAdmin directly.
+     */
+    public JmxAclModel getModel() {
+        return model;
+    }
+
     public boolean isAnonymous() {
         return anonymous;
     }
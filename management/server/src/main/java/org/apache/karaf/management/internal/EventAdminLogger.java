@@ -16,10 +16,23 @@
  */
 package org.apache.karaf.management.internal;
 
+import javax.management.ObjectName;
+
 public interface EventAdminLogger {
 
     void close();
 
+    /**
+     * Check the audit policy for a call, before any of the event data is built.
+     *
+     * @param methodName The MBeanServer method name.
+     * @param name The ObjectName the call applies to, or {@code null}.
+     * @param error The error thrown by the call, or {@code null}.
+     * @return {@code True} if the call must be passed to {@link #log}, {@code false} if it is filtered out or
+     *         only counted in a summary.
+     */
+    boolean isLogged(String methodName, ObjectName name, Throwable error);
+
     void log(String methodName, String[] signature, Object result, Throwable error, Object... params);
 
 }
@@ -20,39 +20,205 @@ import org.osgi.framework.BundleContext;
 import org.osgi.service.event.Event;
 import org.osgi.service.event.EventAdmin;
 import org.osgi.util.tracker.ServiceTracker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import javax.management.ObjectName;
+import javax.security.auth.Subject;
+import java.security.AccessController;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Send the audited JMX calls to the EventAdmin.
+ * <p>
+ * Accepted calls are put in a bounded queue and the events are built and posted by a dedicated thread, so the
+ * JMX caller never waits on the EventAdmin. When the queue is full, the call is dropped and counted. As the
+ * EventAdmin can't find the subject of the caller from the posting thread, it is captured with the call.
+ * <p>
+ * When read aggregation is enabled, the successful read calls are not sent one by one but counted per method
+ * and domain, and a <code>javax/management/MBeanServer/SUMMARY</code> event is posted for each of them every
+ * summary interval.
+ */
 public class EventAdminLoggerImpl implements EventAdminLogger {
 
+    public static final String TOPIC_PREFIX = "javax/management/MBeanServer/";
+    public static final String SUMMARY_TOPIC = TOPIC_PREFIX + "SUMMARY";
+    public static final String DROPPED_TOPIC = TOPIC_PREFIX + "DROPPED";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventAdminLoggerImpl.class);
+
+    private static final String NO_DOMAIN = "";
+
     private final ServiceTracker<EventAdmin, EventAdmin> tracker;
+    private final AuditPolicy policy;
+    private final boolean aggregateReads;
+    private final long summaryInterval;
+    private final BlockingQueue<Entry> queue;
+    // method -> domain -> count, the method names are the constants of the callers
+    private final ConcurrentMap<String, ConcurrentMap<String, LongAdder>> summary = new ConcurrentHashMap<>();
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread thread;
+    private volatile boolean closed;
 
     public EventAdminLoggerImpl(BundleContext context) {
+        this(context, AuditPolicy.ALL, false, 60000, 1000);
+    }
+
+    public EventAdminLoggerImpl(BundleContext context, AuditPolicy policy, boolean aggregateReads, long summaryInterval, int queueSize) {
+        if (summaryInterval <= 0) {
+            throw new IllegalArgumentException("Summary interval must be positive");
+        }
+        if (queueSize <= 0) {
+            throw new IllegalArgumentException("Queue size must be positive");
+        }
+        this.policy = policy;
+        this.aggregateReads = aggregateReads;
+        this.summaryInterval = summaryInterval;
+        this.queue = new ArrayBlockingQueue<>(queueSize);
         this.tracker = new ServiceTracker<>(context, EventAdmin.class.getName(), null);
         this.tracker.open();
+        this.thread = new Thread(this::run, "karaf-jmx-audit");
+        this.thread.setDaemon(true);
+        this.thread.start();
     }
 
     public void close() {
+        closed = true;
+        thread.interrupt();
+        try {
+            thread.join(summaryInterval);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
         this.tracker.close();
     }
 
+    public boolean isLogged(String methodName, ObjectName name, Throwable error) {
+        if (closed || !policy.accept(methodName, name)) {
+            return false;
+        }
+        if (aggregateReads && error == null && AuditPolicy.isRead(methodName)) {
+            ConcurrentMap<String, LongAdder> domains = summary.get(methodName);
+            if (domains == null) {
+                domains = summary.computeIfAbsent(methodName, m -> new ConcurrentHashMap<>());
+            }
+            String domain = name != null ? name.getDomain() : NO_DOMAIN;
+            LongAdder count = domains.get(domain);
+            if (count == null) {
+                count = domains.computeIfAbsent(domain, d -> new LongAdder());
+            }
+            count.increment();
+            return false;
+        }
+        return true;
+    }
+
     public void log(String methodName, String[] signature, Object result, Throwable error, Object... params) {
+        Subject subject = Subject.getSubject(AccessController.getContext());
+        if (!queue.offer(new Entry(subject, methodName, signature, result, error, params))) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    private void run() {
+        long start = System.currentTimeMillis();
+        while (!closed) {
+            try {
+                long wait = start + summaryInterval - System.currentTimeMillis();
+                Entry entry = wait > 0 ? queue.poll(wait, TimeUnit.MILLISECONDS) : null;
+                if (entry != null) {
+                    post(entry.toEvent());
+                }
+            } catch (InterruptedException e) {
+                // closed
+            } catch (Throwable t) {
+                LOGGER.warn("Unable to post JMX audit event", t);
+            }
+            long now = System.currentTimeMillis();
+            if (now >= start + summaryInterval || closed) {
+                flush(start, now);
+                start = now;
+            }
+        }
+        for (Entry entry; (entry = queue.poll()) != null; ) {
+            post(entry.toEvent());
+        }
+    }
+
+    private void flush(long start, long end) {
+        for (Map.Entry<String, ConcurrentMap<String, LongAdder>> method : summary.entrySet()) {
+            for (Map.Entry<String, LongAdder> domain : method.getValue().entrySet()) {
+                long count = domain.getValue().sumThenReset();
+                if (count > 0) {
+                    Map<String, Object> props = new HashMap<>();
+                    props.put("method", method.getKey());
+                    props.put("domain", domain.getKey());
+                    props.put("count", count);
+                    props.put("start", start);
+                    props.put("end", end);
+                    post(new Event(SUMMARY_TOPIC, props));
+                }
+            }
+        }
+        long count = dropped.getAndSet(0);
+        if (count > 0) {
+            LOGGER.warn("{} JMX audit events dropped, the audit queue is full", count);
+            Map<String, Object> props = new HashMap<>();
+            props.put("count", count);
+            props.put("start", start);
+            props.put("end", end);
+            post(new Event(DROPPED_TOPIC, props));
+        }
+    }
+
+    private void post(Event event) {
         EventAdmin admin = tracker.getService();
         if (admin != null) {
+            admin.postEvent(event);
+        }
+    }
+
+    private static class Entry {
+        private final Subject subject;
+        private final String methodName;
+        private final String[] signature;
+        private final Object result;
+        private final Throwable error;
+        private final Object[] params;
+
+        Entry(Subject subject, String methodName, String[] signature, Object result, Throwable error, Object[] params) {
+            this.subject = subject;
+            this.methodName = methodName;
+            this.signature = signature;
+            this.result = result;
+            this.error = error;
+            this.params = params;
+        }
+
+        Event toEvent() {
             Map<String, Object> props = new HashMap<>();
             props.put("method", methodName);
             props.put("signature", signature);
             props.put("params", params);
+            if (subject != null) {
+                props.put("subject", subject);
+            }
             if (result != null) {
                 props.put("result", result);
             }
             if (error != null) {
                 props.put("error", error);
             }
-            Event event = new Event("javax/management/MBeanServer/" + methodName.toUpperCase(Locale.ENGLISH), props);
-            admin.postEvent(event);
+            return new Event(TOPIC_PREFIX + methodName.toUpperCase(Locale.ENGLISH), props);
         }
     }
 
@@ -65,7 +65,7 @@ public class EventAdminMBeanServerWrapper implements MBeanServer {
     private static final String QUERY_MBEANS = "queryMBeans";
     private static final String[] QUERY_MBEANS_SIG = new String[] {ObjectName.class.getName(), QueryExp.class.getName()};
 
-    private static final String QUERY_NAMES = "queryMBeans";
+    private static final String QUERY_NAMES = "queryNames";
     private static final String[] QUERY_NAMES_SIG = QUERY_MBEANS_SIG;
 
     private static final String IS_REGISTERED = "isRegistered";
@@ -99,7 +99,7 @@ public class EventAdminMBeanServerWrapper implements MBeanServer {
     private static final String[] ADD_NOTIFICATION_LISTENER_SIG_1 = new String[] {ObjectName.class.getName(), NotificationListener.class.getName(), NotificationFilter.class.getName(), Object.class.getName()};
     private static final String[] ADD_NOTIFICATION_LISTENER_SIG_2 = new String[] {ObjectName.class.getName(), ObjectName.class.getName(), NotificationFilter.class.getName(), Object.class.getName()};
 
-    private static final String REMOVE_NOTIFICATION_LISTENER  = "addNotificationListener";
+    private static final String REMOVE_NOTIFICATION_LISTENER  = "removeNotificationListener";
     private static final String[] REMOVE_NOTIFICATION_LISTENER_SIG_1 = new String[] {ObjectName.class.getName(), ObjectName.class.getName()};
     private static final String[] REMOVE_NOTIFICATION_LISTENER_SIG_2 = new String[] {ObjectName.class.getName(), ObjectName.class.getName(), NotificationFilter.class.getName(), Object.class.getName()};
     private static final String[] REMOVE_NOTIFICATION_LISTENER_SIG_3 = new String[] {ObjectName.class.getName(), NotificationListener.class.getName()};
@@ -153,7 +153,9 @@ public class EventAdminMBeanServerWrapper implements MBeanServer {
             error = e;
             throw e;
         } finally {
-            log(CREATE_MBEAN, CREATE_MBEAN_SIG_1, result, error, className, name);
+            if (logger.isLogged(CREATE_MBEAN, name, error)) {
+                log(CREATE_MBEAN, CREATE_MBEAN_SIG_1, result, error, className, name);
+            }
         }
     }
 
@@ -167,7 +169,9 @@ public class EventAdminMBeanServerWrapper implements MBeanServer {
             error = e;
             throw e;
         } finally {
-            log(CREATE_MBEAN, CREATE_MBEAN_SIG_2, result, error, className, name, loaderName);
+            if (logger.isLogged(CREATE_MBEAN, name, error)) {
+                log(CREATE_MBEAN, CREATE_MBEAN_SIG_2, result, error, className, name, loaderName);
+            }
         }
     }
 
@@ -181,7 +185,9 @@ public class EventAdminMBeanServerWrapper implements MBeanServer {
             error = e;
             throw e;
         } finally {
-            log(CREATE_MBEAN, CREATE_MBEAN_SIG_3, result, error, className, name, params, signature);
+            if (logger.isLogged(CREATE_MBEAN, name, error)) {
+                log(CREATE_MBEAN, CREATE_MBEAN_SIG_3, result, error, className, name, params, signature);
+            }
         }
     }
 
@@ -195,7 +201,9 @@ public class EventAdminMBeanServerWrapper implements MBeanServer {
             error = e;
             throw e;
         } finally {
-            log(CREATE_MBEAN, CREATE_MBEAN_SIG_4, result, error, className, name, loaderName, params, signature);
+            if (logger.isLogged(CREATE_MBEAN, name, error)) {
+                log(CREATE_MBEAN, CREATE_MBEAN_SIG_4, result, error, className, name, loaderName, params, signature);
+            }
         }
     }
 
@@ -209,7 +217,9 @@ public class EventAdminMBeanServerWrapper implements MBeanServer {
             error = e;
             throw e;
         } finally {
-            log(REGISTER_MBEAN, REGISTER_MBEAN_SIG, result, error, object, name);
+            if (logger.isLogged(REGISTER_MBEAN, name, error)) {
+                log(REGISTER_MBEAN, REGISTER_MBEAN_SIG, result, error, object, name);
+            }
         }
     }
 
@@ -222,7 +232,9 @@ public class EventAdminMBeanServerWrapper implements MBeanServer {
             error = e;
             throw e;
         } finally {
-            log(UNREGISTER_MBEAN, UNREGISTER_MBEAN_SIG, null, error, name);
+            if (logger.isLogged(UNREGISTER_MBEAN, name, error)) {
+                log(UNREGISTER_MBEAN, UNREGISTER_MBEAN_SIG, null, error, name);
+            }
         }
     }
 
@@ -236,7 +248,9 @@ public class EventAdminMBeanServerWrapper implements MBeanServer {
             error = e;
             throw e;
         } finally {
-            log(GET_OBJECT_INSTANCE, GET_OBJECT_INSTANCE_SIG, result, error, name);
+            if (logger.isLogged(GET_OBJECT_INSTANCE, name, error)) {
+                log(GET_OBJECT_INSTANCE, GET_OBJECT_INSTANCE_SIG, result, error, name);
+            }
         }
     }
 
@@ -250,7 +264,9 @@ public class EventAdminMBeanServerWrapper implements MBeanServer {
             error = e;
             throw e;
         } finally {
-            log(QUERY_MBEANS, QUERY_MBEANS_SIG, result, error, name, query);
+            if (logger.isLogged(QUERY_MBEANS, name, error)) {
+                log(QUERY_MBEANS, QUERY_MBEANS_SIG, result, error, name, query);
+            }
         }
     }
 
@@ -264,7 +280,9 @@ public class EventAdminMBeanServerWrapper implements MBeanServer {
             error = e;
             throw e;
         } finally {
-            log(QUERY_NAMES, QUERY_NAMES_SIG, result, error, name, query);
+            if (logger.isLogged(QUERY_NAMES, name, error)) {
+                log(QUERY_NAMES, QUERY_NAMES_SIG, result, error, name, query);
+            }
         }
     }
 
@@ -278,7 +296,9 @@ public class EventAdminMBeanServerWrapper implements MBeanServer {
             error = e;
             throw e;
         } finally {
-            log(IS_REGISTERED, IS_REGISTERED_SIG, result, error, name);
+            if (logger.isLogged(IS_REGISTERED, name, error)) {
+                log(IS_REGISTERED, IS_REGISTERED_SIG, result, error, name);
+            }
         }
     }
 
@@ -292,7 +312,9 @@ public class EventAdminMBeanServerWrapper implements MBeanServer {
             error = e;
             throw e;
         } finally {
-            log(GET_MBEAN_COUNT, GET_MBEAN_COUNT_SIG, result, error);
+            if (logger.isLogged(GET_MBEAN_COUNT, null, error)) {
+                log(GET_MBEAN_COUNT, GET_MBEAN_COUNT_SIG, result, error);
+            }
         }
     }
 
@@ -306,7 +328,9 @@ public class EventAdminMBeanServerWrapper implements MBeanServer {
             error = e;
             throw e;
         } finally {
-            log(GET_ATTRIBUTE, GET_ATTRIBUTE_SIG, result, error, name, attribute);
+            if (logger.isLogged(GET_ATTRIBUTE, name, error)) {
+                log(GET_ATTRIBUTE, GET_ATTRIBUTE_SIG, result, error, name, attribute);
+            }
         }
     }
 
@@ -320,7 +344,9 @@ public class EventAdminMBeanServerWrapper implements MBeanServer {
             error = e;
             throw e;
         } finally {
-            log(GET_ATTRIBUTES, GET_ATTRIBUTES_SIG, result, error, name, attributes);
+            if (logger.isLogged(GET_ATTRIBUTES, name, error)) {
+                log(GET_ATTRIBUTES, GET_ATTRIBUTES_SIG, result, error, name, attributes);
+            }
         }
     }
 
@@ -333,7 +359,9 @@ public class EventAdminMBeanServerWrapper implements MBeanServer {
             error = e;
             throw e;
         } finally {
-            log(SET_ATTRIBUTE, SET_ATTRIBUTE_SIG, null, error, name, attribute);
+            if (logger.isLogged(SET_ATTRIBUTE, name, error)) {
+                log(SET_ATTRIBUTE, SET_ATTRIBUTE_SIG, null, error, name, attribute);
+            }
         }
     }
 
@@ -347,7 +375,9 @@ public class EventAdminMBeanServerWrapper implements MBeanServer {
             error = e;
             throw e;
         } finally {
-            log(SET_ATTRIBUTES, SET_ATTRIBUTES_SIG, result, error, name, attributes);
+            if (logger.isLogged(SET_ATTRIBUTES, name, error)) {
+                log(SET_ATTRIBUTES, SET_ATTRIBUTES_SIG, result, error, name, attributes);
+            }
         }
     }
 
@@ -361,7 +391,9 @@ public class EventAdminMBeanServerWrapper implements MBeanServer {
             error = e;
             throw e;
         } finally {
-            log(INVOKE, INVOKE_SIG, result, error, name, operationName, params, signature);
+            if (logger.isLogged(INVOKE, name, error)) {
+                log(INVOKE, INVOKE_SIG, result, error, name, operationName, params, signature);
+            }
         }
     }
 
@@ -375,7 +407,9 @@ public class EventAdminMBeanServerWrapper implements MBeanServer {
             error = e;
             throw e;
         } finally {
-            log(GET_DEFAULT_DOMAIN, GET_DEFAULT_DOMAIN_SIG, result, error);
+            if (logger.isLogged(GET_DEFAULT_DOMAIN, null, error)) {
+                log(GET_DEFAULT_DOMAIN, GET_DEFAULT_DOMAIN_SIG, result, error);
+            }
         }
     }
 
@@ -389,7 +423,9 @@ public class EventAdminMBeanServerWrapper implements MBeanServer {
             error = e;
             throw e;
         } finally {
-            log(GET_DOMAINS, GET_DOMAINS_SIG, result, error);
+            if (logger.isLogged(GET_DOMAINS, null, error)) {
+                log(GET_DOMAINS, GET_DOMAINS_SIG, result, error);
+            }
         }
     }
 
@@ -402,7 +438,9 @@ public class EventAdminMBeanServerWrapper implements MBeanServer {
             error = e;
             throw e;
         } finally {
-            log(ADD_NOTIFICATION_LISTENER, ADD_NOTIFICATION_LISTENER_SIG_1, null, error, name, listener, filter, handback);
+            if (logger.isLogged(ADD_NOTIFICATION_LISTENER, name, error)) {
+                log(ADD_NOTIFICATION_LISTENER, ADD_NOTIFICATION_LISTENER_SIG_1, null, error, name, listener, filter, handback);
+            }
         }
     }
 
@@ -415,7 +453,9 @@ public class EventAdminMBeanServerWrapper implements MBeanServer {
             error = e;
             throw e;
         } finally {
-            log(ADD_NOTIFICATION_LISTENER, ADD_NOTIFICATION_LISTENER_SIG_2, null, error, name, listener, filter, handback);
+            if (logger.isLogged(ADD_NOTIFICATION_LISTENER, name, error)) {
+                log(ADD_NOTIFICATION_LISTENER, ADD_NOTIFICATION_LISTENER_SIG_2, null, error, name, listener, filter, handback);
+            }
         }
     }
 
@@ -428,7 +468,9 @@ public class EventAdminMBeanServerWrapper implements MBeanServer {
             error = e;
             throw e;
         } finally {
-            log(REMOVE_NOTIFICATION_LISTENER, REMOVE_NOTIFICATION_LISTENER_SIG_1, null, error, name, listener);
+            if (logger.isLogged(REMOVE_NOTIFICATION_LISTENER, name, error)) {
+                log(REMOVE_NOTIFICATION_LISTENER, REMOVE_NOTIFICATION_LISTENER_SIG_1, null, error, name, listener);
+            }
         }
     }
 
@@ -441,7 +483,9 @@ public class EventAdminMBeanServerWrapper implements MBeanServer {
             error = e;
             throw e;
         } finally {
-            log(REMOVE_NOTIFICATION_LISTENER, REMOVE_NOTIFICATION_LISTENER_SIG_2, null, error, name, listener, filter, handback);
+            if (logger.isLogged(REMOVE_NOTIFICATION_LISTENER, name, error)) {
+                log(REMOVE_NOTIFICATION_LISTENER, REMOVE_NOTIFICATION_LISTENER_SIG_2, null, error, name, listener, filter, handback);
+            }
         }
     }
 
@@ -454,7 +498,9 @@ public class EventAdminMBeanServerWrapper implements MBeanServer {
             error = e;
             throw e;
         } finally {
-            log(REMOVE_NOTIFICATION_LISTENER, REMOVE_NOTIFICATION_LISTENER_SIG_3, null, error, name, listener);
+            if (logger.isLogged(REMOVE_NOTIFICATION_LISTENER, name, error)) {
+                log(REMOVE_NOTIFICATION_LISTENER, REMOVE_NOTIFICATION_LISTENER_SIG_3, null, error, name, listener);
+            }
         }
     }
 
@@ -467,7 +513,9 @@ public class EventAdminMBeanServerWrapper implements MBeanServer {
             error = e;
             throw e;
         } finally {
-            log(REMOVE_NOTIFICATION_LISTENER, REMOVE_NOTIFICATION_LISTENER_SIG_4, null, error, name, listener, filter, handback);
+            if (logger.isLogged(REMOVE_NOTIFICATION_LISTENER, name, error)) {
+                log(REMOVE_NOTIFICATION_LISTENER, REMOVE_NOTIFICATION_LISTENER_SIG_4, null, error, name, listener, filter, handback);
+            }
         }
     }
 
@@ -481,7 +529,9 @@ public class EventAdminMBeanServerWrapper implements MBeanServer {
             error = e;
             throw e;
         } finally {
-            log(GET_MBEAN_INFO, GET_MBEAN_INFO_SIG, result, error, name);
+            if (logger.isLogged(GET_MBEAN_INFO, name, error)) {
+                log(GET_MBEAN_INFO, GET_MBEAN_INFO_SIG, result, error, name);
+            }
         }
     }
 
@@ -495,7 +545,9 @@ public class EventAdminMBeanServerWrapper implements MBeanServer {
             error = e;
             throw e;
         } finally {
-            log(IS_INSTANCE_OF, IS_INSTANCE_OF_SIG, result, error, name, className);
+            if (logger.isLogged(IS_INSTANCE_OF, name, error)) {
+                log(IS_INSTANCE_OF, IS_INSTANCE_OF_SIG, result, error, name, className);
+            }
         }
     }
 
@@ -509,7 +561,9 @@ public class EventAdminMBeanServerWrapper implements MBeanServer {
             error = e;
             throw e;
         } finally {
-            log(INSTANTIATE, INSTANTIATE_SIG1, result, error, className);
+            if (logger.isLogged(INSTANTIATE, null, error)) {
+                log(INSTANTIATE, INSTANTIATE_SIG1, result, error, className);
+            }
         }
     }
 
@@ -523,7 +577,9 @@ public class EventAdminMBeanServerWrapper implements MBeanServer {
             error = e;
             throw e;
         } finally {
-            log(INSTANTIATE, INSTANTIATE_SIG2, result, error, className, loaderName);
+            if (logger.isLogged(INSTANTIATE, null, error)) {
+                log(INSTANTIATE, INSTANTIATE_SIG2, result, error, className, loaderName);
+            }
         }
     }
 
@@ -537,7 +593,9 @@ public class EventAdminMBeanServerWrapper implements MBeanServer {
             error = e;
             throw e;
         } finally {
-            log(INSTANTIATE, INSTANTIATE_SIG3, result, error, className, params, signature);
+            if (logger.isLogged(INSTANTIATE, null, error)) {
+                log(INSTANTIATE, INSTANTIATE_SIG3, result, error, className, params, signature);
+            }
         }
     }
 
@@ -551,7 +609,9 @@ public class EventAdminMBeanServerWrapper implements MBeanServer {
             error = e;
             throw e;
         } finally {
-            log(INSTANTIATE, INSTANTIATE_SIG4, result, error, className, loaderName, params, signature);
+            if (logger.isLogged(INSTANTIATE, null, error)) {
+                log(INSTANTIATE, INSTANTIATE_SIG4, result, error, className, loaderName, params, signature);
+            }
         }
     }
 
@@ -566,7 +626,9 @@ public class EventAdminMBeanServerWrapper implements MBeanServer {
             error = e;
             throw e;
         } finally {
-            log(DESERIALIZE, DESERIALIZE_SIG1, result, error, name, data);
+            if (logger.isLogged(DESERIALIZE, name, error)) {
+                log(DESERIALIZE, DESERIALIZE_SIG1, result, error, name, data);
+            }
         }
     }
 
@@ -581,7 +643,9 @@ public class EventAdminMBeanServerWrapper implements MBeanServer {
             error = e;
             throw e;
         } finally {
-            log(DESERIALIZE, DESERIALIZE_SIG2, result, error, className, data);
+            if (logger.isLogged(DESERIALIZE, null, error)) {
+                log(DESERIALIZE, DESERIALIZE_SIG2, result, error, className, data);
+            }
         }
     }
 
@@ -596,7 +660,9 @@ public class EventAdminMBeanServerWrapper implements MBeanServer {
             error = e;
             throw e;
         } finally {
-            log(DESERIALIZE, DESERIALIZE_SIG3, result, error, className, loaderName, data);
+            if (logger.isLogged(DESERIALIZE, null, error)) {
+                log(DESERIALIZE, DESERIALIZE_SIG3, result, error, className, loaderName, data);
+            }
         }
     }
 
@@ -610,7 +676,9 @@ public class EventAdminMBeanServerWrapper implements MBeanServer {
             error = e;
             throw e;
         } finally {
-            log(GET_CLASSLOADER_FOR, GET_CLASSLOADER_FOR_SIG, result, error, mbeanName);
+            if (logger.isLogged(GET_CLASSLOADER_FOR, mbeanName, error)) {
+                log(GET_CLASSLOADER_FOR, GET_CLASSLOADER_FOR_SIG, result, error, mbeanName);
+            }
         }
     }
 
@@ -624,7 +692,9 @@ public class EventAdminMBeanServerWrapper implements MBeanServer {
             error = e;
             throw e;
         } finally {
-            log(GET_CLASSLOADER, GET_CLASSLOADER_SIG, result, error, loaderName);
+            if (logger.isLogged(GET_CLASSLOADER, loaderName, error)) {
+                log(GET_CLASSLOADER, GET_CLASSLOADER_SIG, result, error, loaderName);
+            }
         }
     }
 
@@ -638,7 +708,9 @@ public class EventAdminMBeanServerWrapper implements MBeanServer {
             error = e;
             throw e;
         } finally {
-            log(GET_CLASSLOADER_REPOSITORY, GET_CLASSLOADER_REPOSITORY_SIG, result, error);
+            if (logger.isLogged(GET_CLASSLOADER_REPOSITORY, null, error)) {
+                log(GET_CLASSLOADER_REPOSITORY, GET_CLASSLOADER_REPOSITORY_SIG, result, error);
+            }
         }
     }
 
@@ -0,0 +1,571 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.management.internal;
+
+import org.apache.karaf.management.JaasAuthenticator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.ObjectName;
+import javax.security.auth.Subject;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.PrivilegedActionException;
+import java.security.PrivilegedExceptionAction;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>Embedded HTTP endpoint returning MBean attributes as OpenMetrics text or JSON.</p>
+ * <p>A single selector thread accepts the connections and reads the requests, which are then handled by a small
+ * pool of workers: the user is authenticated with HTTP basic authentication through the {@link JaasAuthenticator},
+ * and the attributes are read as the authenticated subject by the {@link JMXSnapshotMBeanImpl}, so the
+ * {@link org.apache.karaf.management.KarafMBeanServerGuard} ACLs apply once per scrape. The response is written
+ * back by the selector thread and the connection is closed.</p>
+ * <p>At most <code>maxConnections</code> connections are open at the same time, the next ones wait in the accept
+ * backlog, and a connection which doesn't send its request or read its response within <code>timeout</code>
+ * milliseconds is closed, so idle or slow clients can't hold the endpoint.</p>
+ * <p>Requests are <code>GET /metrics</code>, with optional repeated <code>name</code> (ObjectName pattern) and
+ * <code>attr</code> (attribute glob) parameters, and <code>format=json</code> or an <code>Accept:
+ * application/json</code> header for JSON.</p>
+ */
+public class HttpMetricsServer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(HttpMetricsServer.class);
+
+    private static final int MAX_REQUEST_SIZE = 8192;
+    private static final int MAX_PENDING_REQUESTS = 64;
+    private static final int DEFAULT_MAX_CONNECTIONS = 64;
+    private static final long DEFAULT_TIMEOUT = 10000;
+
+    private static final String OPENMETRICS_TYPE = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+    private static final String JSON_TYPE = "application/json; charset=utf-8";
+
+    private static final Set<String> NUMBER_TYPES = new HashSet<>(Arrays.asList(
+            Byte.class.getName(), Short.class.getName(), Integer.class.getName(), Long.class.getName(),
+            Float.class.getName(), Double.class.getName(), "java.math.BigInteger", "java.math.BigDecimal",
+            "java.util.concurrent.atomic.AtomicInteger", "java.util.concurrent.atomic.AtomicLong"));
+
+    private final String host;
+    private final int port;
+    private final int workers;
+    private final String[] objectNames;
+    private final String[] attributes;
+    private final JaasAuthenticator authenticator;
+    private final JMXSnapshotMBeanImpl snapshot;
+    private int maxConnections = DEFAULT_MAX_CONNECTIONS;
+    private long timeout = DEFAULT_TIMEOUT;
+
+    private final Queue<SelectionKey> responses = new ConcurrentLinkedQueue<>();
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private SelectionKey serverKey;
+    // only used by the selector thread
+    private int connections;
+    private ThreadPoolExecutor executor;
+    private Thread thread;
+
+    /**
+     * @param host The host to bind.
+     * @param port The port to bind.
+     * @param workers The number of worker threads.
+     * @param objectNames The default ObjectName patterns.
+     * @param attributes The default attribute globs, all attributes if empty.
+     * @param authenticator The authenticator of the HTTP users.
+     * @param snapshot The snapshot MBean used to read the attributes.
+     */
+    public HttpMetricsServer(String host, int port, int workers, String[] objectNames, String[] attributes,
+                             JaasAuthenticator authenticator, JMXSnapshotMBeanImpl snapshot) {
+        this.host = host;
+        this.port = port;
+        this.workers = workers;
+        this.objectNames = nonEmpty(objectNames);
+        this.attributes = nonEmpty(attributes);
+        this.authenticator = authenticator;
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * @param maxConnections The maximum number of open connections.
+     */
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    /**
+     * @param timeout The time in milliseconds given to a client to send its request and to read the response.
+     */
+    public void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
+
+    public void start() throws IOException {
+        AtomicInteger count = new AtomicInteger();
+        executor = new ThreadPoolExecutor(workers, workers, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(MAX_PENDING_REQUESTS), r -> {
+            Thread t = new Thread(r, "karaf-jmx-http-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.configureBlocking(false);
+        serverChannel.bind(new InetSocketAddress(host, port));
+        serverKey = serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        thread = new Thread(this::run, "karaf-jmx-http");
+        thread.setDaemon(true);
+        thread.start();
+        LOG.info("JMX HTTP endpoint listening on {}:{}", host, getPort());
+    }
+
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    public void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        try {
+            if (selector != null) {
+                selector.close();
+            }
+        } catch (IOException e) {
+            // ignore
+        }
+        try {
+            if (serverChannel != null) {
+                serverChannel.close();
+            }
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    private void run() {
+        try {
+            while (selector.isOpen()) {
+                selector.select(Math.max(1, timeout / 2));
+                long now = System.currentTimeMillis();
+                for (SelectionKey key; (key = responses.poll()) != null; ) {
+                    if (key.isValid()) {
+                        ((Connection) key.attachment()).deadline = now + timeout;
+                        key.interestOps(SelectionKey.OP_WRITE);
+                    }
+                }
+                closeExpired(now);
+                for (SelectionKey key : selector.selectedKeys()) {
+                    try {
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        if (key.isAcceptable()) {
+                            accept();
+                        } else if (key.isReadable()) {
+                            read(key);
+                        } else if (key.isWritable()) {
+                            write(key);
+                        }
+                    } catch (IOException e) {
+                        LOG.debug("JMX HTTP connection error", e);
+                        close(key);
+                    }
+                }
+                selector.selectedKeys().clear();
+            }
+        } catch (ClosedSelectorException e) {
+            // stopped
+        } catch (IOException e) {
+            LOG.warn("JMX HTTP endpoint stopped", e);
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel != null) {
+            channel.configureBlocking(false);
+            Connection connection = new Connection();
+            connection.deadline = System.currentTimeMillis() + timeout;
+            channel.register(selector, SelectionKey.OP_READ, connection);
+            if (++connections >= maxConnections) {
+                // leave the next connections in the backlog until one is closed
+                serverKey.interestOps(0);
+            }
+        }
+    }
+
+    private void closeExpired(long now) {
+        for (SelectionKey key : selector.keys()) {
+            Connection connection = key.attachment() instanceof Connection ? (Connection) key.attachment() : null;
+            if (connection != null && key.isValid() && connection.deadline < now) {
+                LOG.debug("JMX HTTP connection timed out");
+                close(key);
+            }
+        }
+    }
+
+    private void read(SelectionKey key) throws IOException {
+        Connection connection = (Connection) key.attachment();
+        if (((SocketChannel) key.channel()).read(connection.request) < 0) {
+            close(key);
+            return;
+        }
+        String request = connection.headers();
+        if (request == null) {
+            if (!connection.request.hasRemaining()) {
+                key.interestOps(0);
+                respond(key, 431, "text/plain", "Request Header Fields Too Large\n");
+            }
+            return;
+        }
+        key.interestOps(0);
+        // the request is handled, the deadline is set again once the response is ready
+        connection.deadline = Long.MAX_VALUE;
+        try {
+            executor.execute(() -> handle(key, request));
+        } catch (RejectedExecutionException e) {
+            respond(key, 503, "text/plain", "Service Unavailable\n");
+        }
+    }
+
+    private void write(SelectionKey key) throws IOException {
+        Connection connection = (Connection) key.attachment();
+        ((SocketChannel) key.channel()).write(connection.response);
+        if (!connection.response.hasRemaining()) {
+            close(key);
+        }
+    }
+
+    private void close(SelectionKey key) {
+        if (key.isValid() && key.attachment() instanceof Connection) {
+            if (connections-- >= maxConnections && serverKey.isValid()) {
+                serverKey.interestOps(SelectionKey.OP_ACCEPT);
+            }
+        }
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    private void respond(SelectionKey key, int status, String contentType, String body) {
+        byte[] content = body.getBytes(StandardCharsets.UTF_8);
+        StringBuilder head = new StringBuilder();
+        head.append("HTTP/1.1 ").append(status).append(' ').append(reason(status)).append("\r\n");
+        if (status == 401) {
+            head.append("WWW-Authenticate: Basic realm=\"").append(authenticator.getRealm()).append("\"\r\n");
+        }
+        head.append("Content-Type: ").append(contentType).append("\r\n");
+        head.append("Content-Length: ").append(content.length).append("\r\n");
+        head.append("Connection: close\r\n\r\n");
+        byte[] header = head.toString().getBytes(StandardCharsets.ISO_8859_1);
+        ByteBuffer response = ByteBuffer.allocate(header.length + content.length);
+        response.put(header).put(content).flip();
+        ((Connection) key.attachment()).response = response;
+        responses.add(key);
+        selector.wakeup();
+    }
+
+    private void handle(SelectionKey key, String request) {
+        try {
+            String[] lines = request.split("\r\n");
+            String[] requestLine = lines[0].split(" ");
+            if (requestLine.length != 3 || !"GET".equals(requestLine[0])) {
+                respond(key, 405, "text/plain", "Method Not Allowed\n");
+                return;
+            }
+            Map<String, String> headers = new HashMap<>();
+            for (int i = 1; i < lines.length; i++) {
+                int index = lines[i].indexOf(':');
+                if (index > 0) {
+                    headers.put(lines[i].substring(0, index).trim().toLowerCase(Locale.ENGLISH), lines[i].substring(index + 1).trim());
+                }
+            }
+            String uri = requestLine[1];
+            int index = uri.indexOf('?');
+            String path = index < 0 ? uri : uri.substring(0, index);
+            if (!"/metrics".equals(path)) {
+                respond(key, 404, "text/plain", "Not Found\n");
+                return;
+            }
+            Map<String, List<String>> params = parseQuery(index < 0 ? "" : uri.substring(index + 1));
+
+            Subject subject;
+            try {
+                subject = authenticate(headers.get("authorization"));
+            } catch (SecurityException e) {
+                respond(key, 401, "text/plain", "Unauthorized\n");
+                return;
+            }
+
+            String[] names = params.containsKey("name") ? params.get("name").toArray(new String[0]) : objectNames;
+            String[] attrs = params.containsKey("attr") ? params.get("attr").toArray(new String[0]) : attributes;
+            Map<String, Object[]> rows = Subject.doAs(subject, (PrivilegedExceptionAction<Map<String, Object[]>>) () -> snapshot.collect(names, attrs));
+
+            String accept = headers.get("accept");
+            List<String> format = params.get("format");
+            if ((format != null && format.contains("json")) || (format == null && accept != null && accept.contains("application/json"))) {
+                respond(key, 200, JSON_TYPE, toJson(rows));
+            } else {
+                respond(key, 200, OPENMETRICS_TYPE, toOpenMetrics(rows));
+            }
+        } catch (PrivilegedActionException e) {
+            LOG.debug("Unable to read the MBean attributes", e.getException());
+            respond(key, 400, "text/plain", "Bad Request: " + e.getException().getMessage() + "\n");
+        } catch (Exception e) {
+            LOG.debug("Unable to handle JMX HTTP request", e);
+            respond(key, 500, "text/plain", "Internal Server Error\n");
+        }
+    }
+
+    private Subject authenticate(String authorization) {
+        if (authorization == null || !authorization.regionMatches(true, 0, "Basic ", 0, 6)) {
+            throw new SecurityException("Missing credentials");
+        }
+        String credentials;
+        try {
+            credentials = new String(Base64.getDecoder().decode(authorization.substring(6).trim()), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new SecurityException("Invalid credentials");
+        }
+        int index = credentials.indexOf(':');
+        if (index < 0) {
+            throw new SecurityException("Invalid credentials");
+        }
+        return authenticator.authenticate(new String[] { credentials.substring(0, index), credentials.substring(index + 1) });
+    }
+
+    private static String[] nonEmpty(String[] values) {
+        List<String> list = new ArrayList<>();
+        if (values != null) {
+            for (String value : values) {
+                if (!value.trim().isEmpty()) {
+                    list.add(value.trim());
+                }
+            }
+        }
+        return list.toArray(new String[0]);
+    }
+
+    private static Map<String, List<String>> parseQuery(String query) throws UnsupportedEncodingException {
+        Map<String, List<String>> params = new HashMap<>();
+        for (String param : query.split("&")) {
+            if (param.isEmpty()) {
+                continue;
+            }
+            int index = param.indexOf('=');
+            String name = URLDecoder.decode(index < 0 ? param : param.substring(0, index), "UTF-8");
+            String value = index < 0 ? "" : URLDecoder.decode(param.substring(index + 1), "UTF-8");
+            params.computeIfAbsent(name, n -> new ArrayList<>()).add(value);
+        }
+        return params;
+    }
+
+    static String toJson(Map<String, Object[]> rows) {
+        StringBuilder json = new StringBuilder("{");
+        String current = null;
+        for (Object[] row : rows.values()) {
+            if (!row[0].equals(current)) {
+                if (current != null) {
+                    json.append("},");
+                }
+                current = (String) row[0];
+                appendJsonString(json, current).append(":{");
+            } else {
+                json.append(',');
+            }
+            appendJsonString(json, (String) row[1]).append(':');
+            String value = (String) row[2];
+            String type = (String) row[3];
+            if (value == null) {
+                json.append("null");
+            } else if (Boolean.class.getName().equals(type) || (NUMBER_TYPES.contains(type) && isFinite(value))) {
+                json.append(value);
+            } else {
+                appendJsonString(json, value);
+            }
+        }
+        if (current != null) {
+            json.append('}');
+        }
+        return json.append("}\n").toString();
+    }
+
+    private static StringBuilder appendJsonString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': json.append("\\\""); break;
+                case '\\': json.append("\\\\"); break;
+                case '\n': json.append("\\n"); break;
+                case '\r': json.append("\\r"); break;
+                case '\t': json.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        return json.append('"');
+    }
+
+    private static boolean isFinite(String value) {
+        return !value.equals("NaN") && !value.endsWith("Infinity");
+    }
+
+    /**
+     * Numeric and boolean attributes are exposed as gauges named after the domain, the <code>type</code> key
+     * property and the attribute, with all the ObjectName key properties as labels. The samples are grouped by
+     * metric family as OpenMetrics requires.
+     */
+    static String toOpenMetrics(Map<String, Object[]> rows) throws Exception {
+        Map<String, StringBuilder> families = new LinkedHashMap<>();
+        Map<String, String[]> mbeans = new HashMap<>();
+        for (Object[] row : rows.values()) {
+            String value = (String) row[2];
+            String type = (String) row[3];
+            if (value == null) {
+                continue;
+            }
+            if (Boolean.class.getName().equals(type)) {
+                value = Boolean.parseBoolean(value) ? "1" : "0";
+            } else if (NUMBER_TYPES.contains(type)) {
+                if (value.endsWith("Infinity")) {
+                    value = value.startsWith("-") ? "-Inf" : "+Inf";
+                }
+            } else {
+                continue;
+            }
+            // ObjectName -> (metric name prefix, labels)
+            String[] mbean = mbeans.get(row[0]);
+            if (mbean == null) {
+                ObjectName objectName = new ObjectName((String) row[0]);
+                String mbeanType = objectName.getKeyProperty("type");
+                mbean = new String[] {
+                    objectName.getDomain() + (mbeanType != null ? "_" + mbeanType : "") + "_", toLabels(objectName)
+                };
+                mbeans.put((String) row[0], mbean);
+            }
+            String name = toMetricName(mbean[0] + row[1]);
+            families.computeIfAbsent(name, n -> new StringBuilder("# TYPE ").append(n).append(" gauge\n"))
+                    .append(name).append(mbean[1]).append(' ').append(value).append('\n');
+        }
+        StringBuilder metrics = new StringBuilder();
+        for (StringBuilder family : families.values()) {
+            metrics.append(family);
+        }
+        return metrics.append("# EOF\n").toString();
+    }
+
+    private static String toLabels(ObjectName objectName) {
+        StringBuilder labels = new StringBuilder("{");
+        for (Map.Entry<String, String> property : new TreeMap<>(objectName.getKeyPropertyList()).entrySet()) {
+            if (labels.length() > 1) {
+                labels.append(',');
+            }
+            labels.append(toMetricName(property.getKey())).append("=\"");
+            String value = property.getValue();
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '\\' || c == '"') {
+                    labels.append('\\').append(c);
+                } else if (c == '\n') {
+                    labels.append("\\n");
+                } else {
+                    labels.append(c);
+                }
+            }
+            labels.append('"');
+        }
+        return labels.append('}').toString();
+    }
+
+    private static String toMetricName(String name) {
+        StringBuilder metric = new StringBuilder(name.length() + 1);
+        if (name.isEmpty() || Character.isDigit(name.charAt(0))) {
+            metric.append('_');
+        }
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            metric.append((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_' ? c : '_');
+        }
+        return metric.toString();
+    }
+
+    private static String reason(int status) {
+        switch (status) {
+            case 200: return "OK";
+            case 400: return "Bad Request";
+            case 401: return "Unauthorized";
+            case 404: return "Not Found";
+            case 405: return "Method Not Allowed";
+            case 431: return "Request Header Fields Too Large";
+            case 503: return "Service Unavailable";
+            default: return "Internal Server Error";
+        }
+    }
+
+    private static class Connection {
+        private final ByteBuffer request = ByteBuffer.allocate(MAX_REQUEST_SIZE);
+        private ByteBuffer response;
+        // time at which the connection is closed if the client didn't send its request or read the response
+        private long deadline;
+
+        /**
+         * @return The request line and headers once they have been fully read, {@code null} before.
+         */
+        String headers() {
+            byte[] data = request.array();
+            for (int i = 3; i < request.position(); i++) {
+                if (data[i - 3] == '\r' && data[i - 2] == '\n' && data[i - 1] == '\r' && data[i] == '\n') {
+                    return new String(data, 0, i - 3, StandardCharsets.ISO_8859_1);
+                }
+            }
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,231 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.management.internal;
+
+import org.apache.karaf.management.JMXSnapshotMBean;
+import org.apache.karaf.management.KarafMBeanServerGuard;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.InstanceNotFoundException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.NotCompliantMBeanException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.TabularData;
+import javax.management.openmbean.TabularDataSupport;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+
+public class JMXSnapshotMBeanImpl extends StandardMBean implements JMXSnapshotMBean {
+
+    // maximum number of delta clients remembered, the least recently used is forgotten first
+    private static final int MAX_TOKENS = 64;
+
+    private static final String[] NO_SIG = new String[0];
+
+    private MBeanServer mbeanServer;
+    private KarafMBeanServerGuard guard;
+
+    // token -> (ObjectName + attribute -> value) of the last values returned to the client
+    private final Map<String, Map<String, String>> deltas = new LinkedHashMap<String, Map<String, String>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Map<String, String>> eldest) {
+            return size() > MAX_TOKENS;
+        }
+    };
+
+    public JMXSnapshotMBeanImpl() throws NotCompliantMBeanException {
+        super(JMXSnapshotMBean.class);
+    }
+
+    public TabularData getSnapshot(String[] objectNames, String[] attributes) throws Exception {
+        TabularData table = new TabularDataSupport(SNAPSHOT_TABULAR_TYPE);
+        for (Object[] row : collect(objectNames, attributes).values()) {
+            table.put(new CompositeDataSupport(SNAPSHOT_ROW_TYPE, SNAPSHOT_COLUMNS, row));
+        }
+        return table;
+    }
+
+    public CompositeData getDelta(String[] objectNames, String[] attributes, String token) throws Exception {
+        Map<String, Object[]> rows = collect(objectNames, attributes);
+
+        Map<String, String> previous;
+        synchronized (deltas) {
+            previous = token != null ? deltas.get(token) : null;
+            if (previous == null) {
+                token = UUID.randomUUID().toString();
+                previous = new HashMap<>();
+                deltas.put(token, previous);
+            }
+        }
+
+        TabularData table = new TabularDataSupport(SNAPSHOT_TABULAR_TYPE);
+        synchronized (previous) {
+            for (Map.Entry<String, Object[]> entry : rows.entrySet()) {
+                String key = entry.getKey();
+                String value = (String) entry.getValue()[2];
+                if (!previous.containsKey(key) || !Objects.equals(previous.get(key), value)) {
+                    previous.put(key, value);
+                    table.put(new CompositeDataSupport(SNAPSHOT_ROW_TYPE, SNAPSHOT_COLUMNS, entry.getValue()));
+                }
+            }
+            // forget the values which are not there anymore, they'll be sent again if they come back
+            previous.keySet().retainAll(rows.keySet());
+        }
+        return new CompositeDataSupport(DELTA_TYPE, new String[] { "Token", "Values" }, new Object[] { token, table });
+    }
+
+    /**
+     * Read the matching attributes, checking the ACL with a single {@link BulkRequestContext} for the whole batch.
+     *
+     * @return The rows as {@link #SNAPSHOT_COLUMNS} values, keyed by ObjectName and attribute name, grouped by MBean.
+     */
+    Map<String, Object[]> collect(String[] objectNames, String[] attributes) throws Exception {
+        BulkRequestContext context = guard != null ? guard.newContext() : null;
+
+        Set<ObjectName> names = new LinkedHashSet<>();
+        for (String objectName : objectNames) {
+            names.addAll(mbeanServer.queryNames(new ObjectName(objectName), null));
+        }
+
+        Map<String, Object[]> rows = new LinkedHashMap<>();
+        for (ObjectName name : names) {
+            MBeanInfo info;
+            try {
+                info = mbeanServer.getMBeanInfo(name);
+            } catch (InstanceNotFoundException e) {
+                // unregistered in the meantime
+                continue;
+            }
+            List<String> readable = new ArrayList<>();
+            for (MBeanAttributeInfo attr : info.getAttributes()) {
+                if (!attr.isReadable() || !matches(attributes, attr.getName())) {
+                    continue;
+                }
+                if (context != null && !guard.canInvoke(context, mbeanServer, name, (attr.isIs() ? "is" : "get") + attr.getName(), NO_SIG)) {
+                    continue;
+                }
+                readable.add(attr.getName());
+            }
+            if (readable.isEmpty()) {
+                continue;
+            }
+            AttributeList values;
+            try {
+                // attributes which can't be read are left out of the list
+                values = mbeanServer.getAttributes(name, readable.toArray(new String[0]));
+            } catch (InstanceNotFoundException e) {
+                continue;
+            }
+            String objectName = name.toString();
+            for (Attribute attribute : values.asList()) {
+                addRows(rows, objectName, attribute.getName(), attribute.getValue());
+            }
+        }
+        return rows;
+    }
+
+    private static void addRows(Map<String, Object[]> rows, String objectName, String attribute, Object value) {
+        if (value instanceof CompositeData) {
+            CompositeData data = (CompositeData) value;
+            for (String key : data.getCompositeType().keySet()) {
+                addRow(rows, objectName, attribute + "." + key, data.get(key));
+            }
+        } else {
+            addRow(rows, objectName, attribute, value);
+        }
+    }
+
+    private static void addRow(Map<String, Object[]> rows, String objectName, String attribute, Object value) {
+        rows.put(objectName + '\n' + attribute, new Object[] {
+            objectName, attribute, toString(value), value != null ? value.getClass().getName() : null
+        });
+    }
+
+    private static String toString(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value.getClass().isArray()) {
+            String array = Arrays.deepToString(new Object[] { value });
+            return array.substring(1, array.length() - 1);
+        }
+        return value.toString();
+    }
+
+    static boolean matches(String[] globs, String name) {
+        if (globs == null || globs.length == 0) {
+            return true;
+        }
+        for (String glob : globs) {
+            if (matches(glob, 0, name, 0)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean matches(String glob, int g, String name, int n) {
+        while (g < glob.length()) {
+            char c = glob.charAt(g);
+            if (c == '*') {
+                for (int i = n; i <= name.length(); i++) {
+                    if (matches(glob, g + 1, name, i)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            if (n >= name.length() || (c != '?' && c != name.charAt(n))) {
+                return false;
+            }
+            g++;
+            n++;
+        }
+        return n == name.length();
+    }
+
+    public MBeanServer getMBeanServer() {
+        return this.mbeanServer;
+    }
+
+    public void setMBeanServer(MBeanServer mbeanServer) {
+        this.mbeanServer = mbeanServer;
+    }
+
+    public KarafMBeanServerGuard getGuard() {
+        return guard;
+    }
+
+    public void setGuard(KarafMBeanServerGuard guard) {
+        this.guard = guard;
+    }
+
+}
@@ -0,0 +1,209 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.management.internal;
+
+import java.io.IOException;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.management.ObjectName;
+
+import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.service.cm.Configuration;
+import org.osgi.service.cm.ConfigurationAdmin;
+
+/**
+ * <p>Snapshot of the <code>jmx.acl*</code> configurations, built once and shared by all the
+ * {@link BulkRequestContext contexts} until an ACL configuration changes.</p>
+ * <p>Besides the configurations themselves, the model keeps the derived data which would otherwise be
+ * recomputed for each guarded call: the PIDs searched for an ObjectName, the general (wildcard) PID
+ * matching a PID, and the access decisions per (ObjectName, operation, signature, principals).</p>
+ */
+public class JmxAclModel {
+
+    private static final int MAX_DECISIONS = 10000;
+    // the clients may query any number of dynamic MBeans, only the most recently used are kept
+    static final int MAX_PIDS = 10000;
+
+    private final ConfigurationAdmin configAdmin;
+    private final List<String> allPids;
+    private final List<Dictionary<String, Object>> whitelistProperties;
+    // whitelist entries, with and without an operation name
+    private final Set<String> whitelistObjectNames = new HashSet<>();
+    private final Set<String> whitelistOperations = new HashSet<>();
+
+    private final Map<String, Dictionary<String, Object>> configurations = new ConcurrentHashMap<>();
+    private final Map<ObjectName, List<String>> pids = lruCache(MAX_PIDS);
+    private final Map<String, String> generalPids = lruCache(MAX_PIDS);
+    private final Map<DecisionKey, Boolean> decisions = new ConcurrentHashMap<>();
+
+    private JmxAclModel(ConfigurationAdmin configAdmin, List<String> allPids, List<Dictionary<String, Object>> whitelistProperties) {
+        this.configAdmin = configAdmin;
+        this.allPids = Collections.unmodifiableList(allPids);
+        this.whitelistProperties = Collections.unmodifiableList(whitelistProperties);
+        for (Dictionary<String, Object> config : whitelistProperties) {
+            Enumeration<String> keys = config.keys();
+            while (keys.hasMoreElements()) {
+                String element = keys.nextElement();
+                if (element.split(";").length > 1) {
+                    whitelistOperations.add(element);
+                } else {
+                    whitelistObjectNames.add(element);
+                }
+            }
+        }
+    }
+
+    public static JmxAclModel load(ConfigurationAdmin configAdmin) throws IOException {
+        List<String> allPids = new ArrayList<>();
+        List<Dictionary<String, Object>> whitelistProperties = new ArrayList<>();
+        try {
+            Configuration[] configs = configAdmin.listConfigurations("(service.pid=jmx.acl*)");
+            if (configs != null) {
+                for (Configuration config : configs) {
+                    allPids.add(config.getPid());
+                }
+            }
+            configs = configAdmin.listConfigurations("(service.pid=jmx.acl.whitelist)");
+            if (configs != null) {
+                for (Configuration config : configs) {
+                    whitelistProperties.add(config.getProperties());
+                }
+            }
+        } catch (InvalidSyntaxException ise) {
+            throw new RuntimeException(ise);
+        }
+        return new JmxAclModel(configAdmin, allPids, whitelistProperties);
+    }
+
+    public List<String> getAllPids() {
+        return allPids;
+    }
+
+    public List<Dictionary<String, Object>> getWhitelistProperties() {
+        return whitelistProperties;
+    }
+
+    /**
+     * Return whether the whitelist contains the given ObjectName PID (without the <code>jmx.acl.</code>
+     * prefix), either for all operations or for the given one.
+     *
+     * @param objectNamePid The ObjectName PID suffix.
+     * @param operationName The operation name.
+     * @return {@code True} if RBAC can be bypassed.
+     */
+    public boolean isWhitelisted(String objectNamePid, String operationName) {
+        return whitelistObjectNames.contains(objectNamePid)
+                || (!whitelistOperations.isEmpty() && whitelistOperations.contains(objectNamePid + ";" + operationName));
+    }
+
+    public Dictionary<String, Object> getConfiguration(String generalPid) throws IOException {
+        Dictionary<String, Object> config = configurations.get(generalPid);
+        if (config == null) {
+            config = configAdmin.getConfiguration(generalPid, null).getProperties();
+            if (config != null) {
+                configurations.put(generalPid, config);
+            }
+        }
+        return config;
+    }
+
+    /**
+     * @return The cache of the PIDs searched for an ObjectName, most specific first, bounded to the
+     * {@value #MAX_PIDS} most recently used ObjectNames.
+     */
+    public Map<ObjectName, List<String>> getPids() {
+        return pids;
+    }
+
+    /**
+     * @return The cache of the general PID matching a PID, empty if none, bounded to the
+     * {@value #MAX_PIDS} most recently used PIDs.
+     */
+    public Map<String, String> getGeneralPids() {
+        return generalPids;
+    }
+
+    public Boolean getDecision(ObjectName objectName, String operationName, String[] signature, Set<Principal> principals) {
+        return decisions.get(new DecisionKey(objectName, operationName, signature, principals));
+    }
+
+    public void putDecision(ObjectName objectName, String operationName, String[] signature, Set<Principal> principals, boolean allowed) {
+        if (decisions.size() >= MAX_DECISIONS) {
+            decisions.clear();
+        }
+        decisions.put(new DecisionKey(objectName, operationName, signature, principals), allowed);
+    }
+
+    private static <K, V> Map<K, V> lruCache(int maxSize) {
+        return Collections.synchronizedMap(new LinkedHashMap<K, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxSize;
+            }
+        });
+    }
+
+    private static class DecisionKey {
+        private final ObjectName objectName;
+        private final String operationName;
+        private final String[] signature;
+        private final Set<Principal> principals;
+        private final int hash;
+
+        DecisionKey(ObjectName objectName, String operationName, String[] signature, Set<Principal> principals) {
+            this.objectName = objectName;
+            this.operationName = operationName;
+            this.signature = signature;
+            this.principals = principals;
+            this.hash = Objects.hash(objectName, operationName, Arrays.hashCode(signature), principals);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof DecisionKey)) {
+                return false;
+            }
+            DecisionKey that = (DecisionKey) o;
+            return hash == that.hash
+                    && objectName.equals(that.objectName)
+                    && operationName.equals(that.operationName)
+                    && Arrays.equals(signature, that.signature)
+                    && principals.equals(that.principals);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+}
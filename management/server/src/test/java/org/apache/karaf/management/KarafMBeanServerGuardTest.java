@@ -22,8 +22,10 @@ import org.apache.karaf.util.jaas.JaasHelper;
 import org.easymock.EasyMock;
 import org.osgi.framework.Constants;
 import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.framework.ServiceReference;
 import org.osgi.service.cm.Configuration;
 import org.osgi.service.cm.ConfigurationAdmin;
+import org.osgi.service.cm.ConfigurationEvent;
 
 import javax.management.*;
 import javax.security.auth.Subject;
@@ -431,6 +433,80 @@ public class KarafMBeanServerGuardTest extends TestCase {
                 guard.getRequiredRoles(on, "test", new Object[]{Long.valueOf(17)}, new String[]{"java.lang.Long"}));
     }
 
+    @SuppressWarnings("unchecked")
+    public void testAclModelCachedUntilConfigurationEvent() throws Exception {
+        Dictionary<String, Object> configuration = new Hashtable<>();
+        configuration.put(Constants.SERVICE_PID, "jmx.acl.foo.bar.Test");
+        configuration.put("doit", "master");
+        Configuration conf = EasyMock.createMock(Configuration.class);
+        EasyMock.expect(conf.getPid()).andReturn("jmx.acl.foo.bar.Test").anyTimes();
+        EasyMock.expect(conf.getProperties()).andReturn(configuration).anyTimes();
+        EasyMock.replay(conf);
+
+        ConfigurationAdmin ca = EasyMock.createMock(ConfigurationAdmin.class);
+        EasyMock.expect(ca.getConfiguration("jmx.acl.foo.bar.Test", null)).andReturn(conf).anyTimes();
+        // loaded once, then once more after the configuration event
+        EasyMock.expect(ca.listConfigurations(EasyMock.eq("(service.pid=jmx.acl*)"))).andReturn(
+                new Configuration[]{conf}).times(2);
+        EasyMock.expect(ca.listConfigurations(EasyMock.eq("(service.pid=jmx.acl.whitelist)"))).andReturn(
+                null).times(2);
+        EasyMock.replay(ca);
+
+        KarafMBeanServerGuard guard = new KarafMBeanServerGuard();
+        guard.setConfigAdmin(ca);
+
+        ObjectName on = ObjectName.getInstance("foo.bar:type=Test");
+        for (int i = 0; i < 3; i++) {
+            assertEquals(Collections.singletonList("master"),
+                    guard.getRequiredRoles(on, "doit", new Object[]{}, new String[]{}));
+        }
+
+        configuration.put("doit", "admin");
+        ServiceReference<ConfigurationAdmin> reference = EasyMock.createMock(ServiceReference.class);
+        EasyMock.replay(reference);
+        guard.configurationEvent(new ConfigurationEvent(reference, ConfigurationEvent.CM_UPDATED, null, "jmx.acl.foo.bar.Test"));
+        guard.configurationEvent(new ConfigurationEvent(reference, ConfigurationEvent.CM_UPDATED, null, "org.foo.bar"));
+
+        assertEquals(Collections.singletonList("admin"),
+                guard.getRequiredRoles(on, "doit", new Object[]{}, new String[]{}));
+        EasyMock.verify(ca);
+    }
+
+    public void testInvokeDecisionCachedPerPrincipals() throws Throwable {
+        Dictionary<String, Object> configuration = new Hashtable<>();
+        configuration.put("getToast", "viewer");
+        ConfigurationAdmin ca = getMockConfigAdmin(configuration);
+
+        final KarafMBeanServerGuard guard = new KarafMBeanServerGuard();
+        guard.setConfigAdmin(ca);
+
+        final ObjectName on = ObjectName.getInstance("foo.bar:type=Test");
+
+        Subject viewer = loginWithTestRoles("viewer");
+        Subject editor = loginWithTestRoles("editor");
+        for (int i = 0; i < 2; i++) {
+            Subject.doAs(viewer, (PrivilegedAction<Void>) () -> {
+                try {
+                    guard.handleInvoke(null, on, "getToast", new Object[]{}, new String[]{});
+                } catch (Exception e) {
+                    fail("Should have been allowed");
+                }
+                return null;
+            });
+            Subject.doAs(editor, (PrivilegedAction<Void>) () -> {
+                try {
+                    guard.handleInvoke(null, on, "getToast", new Object[]{}, new String[]{});
+                    fail("Should not have been allowed");
+                } catch (SecurityException se) {
+                    // good
+                } catch (Exception e) {
+                    fail("Unexpected exception " + e);
+                }
+                return null;
+            });
+        }
+    }
+
     @SuppressWarnings("unchecked")
     private ConfigurationAdmin getMockConfigAdmin(Dictionary<String, Object> configuration) throws IOException, InvalidSyntaxException {
         configuration.put(Constants.SERVICE_PID, "jmx.acl.foo.bar.Test");
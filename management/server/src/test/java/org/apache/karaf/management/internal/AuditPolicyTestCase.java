@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.management.internal;
+
+import junit.framework.TestCase;
+
+import javax.management.ObjectName;
+
+public class AuditPolicyTestCase extends TestCase {
+
+    public void testAcceptAll() throws Exception {
+        AuditPolicy policy = AuditPolicy.ALL;
+        assertTrue(policy.accept("getAttribute", new ObjectName("java.lang:type=Memory")));
+        assertTrue(policy.accept("invoke", new ObjectName("org.apache.karaf:type=bundle,name=root")));
+        assertTrue(policy.accept("getDomains", null));
+    }
+
+    public void testReadWriteClasses() throws Exception {
+        AuditPolicy policy = new AuditPolicy(null, false, true, null, null);
+        ObjectName name = new ObjectName("java.lang:type=Memory");
+        assertFalse(policy.accept("getAttribute", name));
+        assertFalse(policy.accept("queryNames", null));
+        assertTrue(policy.accept("setAttribute", name));
+        assertTrue(policy.accept("invoke", name));
+    }
+
+    public void testMethods() throws Exception {
+        AuditPolicy policy = new AuditPolicy(new String[] {"invoke"}, true, true, null, null);
+        ObjectName name = new ObjectName("java.lang:type=Memory");
+        assertTrue(policy.accept("invoke", name));
+        assertFalse(policy.accept("setAttribute", name));
+    }
+
+    public void testBlankMethods() throws Exception {
+        // a blank audit.eventadmin.methods is read as a single empty entry
+        AuditPolicy policy = new AuditPolicy(new String[] {""}, true, true, null, null);
+        ObjectName name = new ObjectName("java.lang:type=Memory");
+        assertTrue(policy.accept("invoke", name));
+        assertTrue(policy.accept("setAttribute", name));
+    }
+
+    public void testObjectNamePatterns() throws Exception {
+        AuditPolicy policy = new AuditPolicy(null, true, true,
+                "org.apache.karaf:type=bundle,*; org.apache.karaf:type=config,*", "org.apache.karaf:type=bundle,name=trun,*");
+        assertTrue(policy.accept("invoke", new ObjectName("org.apache.karaf:type=bundle,name=root")));
+        assertTrue(policy.accept("invoke", new ObjectName("org.apache.karaf:type=config,name=root")));
+        assertFalse(policy.accept("invoke", new ObjectName("org.apache.karaf:type=bundle,name=trun")));
+        assertFalse(policy.accept("invoke", new ObjectName("java.lang:type=Memory")));
+        // calls without ObjectName are only filtered by method
+        assertTrue(policy.accept("getDomains", null));
+    }
+
+}
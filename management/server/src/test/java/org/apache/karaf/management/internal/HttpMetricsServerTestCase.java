@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.management.internal;
+
+import junit.framework.TestCase;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class HttpMetricsServerTestCase extends TestCase {
+
+    private static Map<String, Object[]> rows() {
+        Map<String, Object[]> rows = new LinkedHashMap<>();
+        rows.put("1", new Object[] {"java.lang:type=Memory", "Verbose", "true", Boolean.class.getName()});
+        rows.put("2", new Object[] {"java.lang:type=Memory", "HeapMemoryUsage.used", "42", Long.class.getName()});
+        rows.put("3", new Object[] {"java.lang:type=Memory", "ObjectName", "java.lang:type=Memory", "javax.management.ObjectName"});
+        rows.put("4", new Object[] {"java.lang:type=GarbageCollector,name=G1 Young", "CollectionCount", "3", Long.class.getName()});
+        rows.put("5", new Object[] {"java.lang:type=GarbageCollector,name=G1 Old", "CollectionCount", "1", Long.class.getName()});
+        return rows;
+    }
+
+    public void testOpenMetrics() throws Exception {
+        assertEquals("# TYPE java_lang_Memory_Verbose gauge\n"
+                + "java_lang_Memory_Verbose{type=\"Memory\"} 1\n"
+                + "# TYPE java_lang_Memory_HeapMemoryUsage_used gauge\n"
+                + "java_lang_Memory_HeapMemoryUsage_used{type=\"Memory\"} 42\n"
+                + "# TYPE java_lang_GarbageCollector_CollectionCount gauge\n"
+                + "java_lang_GarbageCollector_CollectionCount{name=\"G1 Young\",type=\"GarbageCollector\"} 3\n"
+                + "java_lang_GarbageCollector_CollectionCount{name=\"G1 Old\",type=\"GarbageCollector\"} 1\n"
+                + "# EOF\n", HttpMetricsServer.toOpenMetrics(rows()));
+    }
+
+    public void testJson() {
+        assertEquals("{\"java.lang:type=Memory\":{\"Verbose\":true,\"HeapMemoryUsage.used\":42,\"ObjectName\":\"java.lang:type=Memory\"},"
+                + "\"java.lang:type=GarbageCollector,name=G1 Young\":{\"CollectionCount\":3},"
+                + "\"java.lang:type=GarbageCollector,name=G1 Old\":{\"CollectionCount\":1}}\n", HttpMetricsServer.toJson(rows()));
+    }
+
+    public void testIdleConnectionClosed() throws Exception {
+        HttpMetricsServer server = new HttpMetricsServer("127.0.0.1", 0, 1, null, null, null, null);
+        server.setTimeout(200);
+        server.start();
+        try (Socket socket = new Socket("127.0.0.1", server.getPort())) {
+            socket.setSoTimeout(10000);
+            // the client never sends its request
+            assertEquals(-1, socket.getInputStream().read());
+        } finally {
+            server.stop();
+        }
+    }
+
+    public void testConnectionsBounded() throws Exception {
+        HttpMetricsServer server = new HttpMetricsServer("127.0.0.1", 0, 1, null, null, null, null);
+        server.setMaxConnections(1);
+        server.setTimeout(1000);
+        server.start();
+        try (Socket idle = new Socket("127.0.0.1", server.getPort());
+             Socket waiting = new Socket("127.0.0.1", server.getPort())) {
+            long start = System.currentTimeMillis();
+            OutputStream out = waiting.getOutputStream();
+            out.write("GET /unknown HTTP/1.1\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+            out.flush();
+            // the second connection is only accepted once the idle one timed out
+            waiting.setSoTimeout(300);
+            try {
+                waiting.getInputStream().read();
+                fail("The second connection should wait");
+            } catch (SocketTimeoutException e) {
+                // expected
+            }
+            waiting.setSoTimeout(10000);
+            String response = read(waiting.getInputStream());
+            assertTrue(response, response.startsWith("HTTP/1.1 404 "));
+            assertTrue(System.currentTimeMillis() - start >= 900);
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static String read(InputStream in) throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int c; (c = in.read()) >= 0; ) {
+            sb.append((char) c);
+        }
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.management.internal;
+
+import junit.framework.TestCase;
+
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+import java.lang.management.ManagementFactory;
+
+public class JMXSnapshotMBeanImplTestCase extends TestCase {
+
+    public void testSnapshot() throws Exception {
+        JMXSnapshotMBeanImpl mb = new JMXSnapshotMBeanImpl();
+        mb.setMBeanServer(ManagementFactory.getPlatformMBeanServer());
+
+        TabularData table = mb.getSnapshot(new String[] {"java.lang:type=Memory"}, new String[] {"Verbose", "Heap*"});
+        CompositeData verbose = table.get(new Object[] {"java.lang:type=Memory", "Verbose"});
+        assertNotNull(verbose);
+        assertEquals(Boolean.class.getName(), verbose.get("Type"));
+        // composite attributes are flattened
+        assertNotNull(table.get(new Object[] {"java.lang:type=Memory", "HeapMemoryUsage.used"}));
+        assertNull(table.get(new Object[] {"java.lang:type=Memory", "NonHeapMemoryUsage.used"}));
+    }
+
+    public void testDelta() throws Exception {
+        JMXSnapshotMBeanImpl mb = new JMXSnapshotMBeanImpl();
+        mb.setMBeanServer(ManagementFactory.getPlatformMBeanServer());
+
+        String[] objectNames = new String[] {"java.lang:type=Memory", "java.lang:type=Runtime"};
+        String[] attributes = new String[] {"Verbose", "VmName"};
+        CompositeData first = mb.getDelta(objectNames, attributes, null);
+        assertEquals(2, ((TabularData) first.get("Values")).size());
+
+        CompositeData second = mb.getDelta(objectNames, attributes, (String) first.get("Token"));
+        assertEquals(first.get("Token"), second.get("Token"));
+        assertEquals(0, ((TabularData) second.get("Values")).size());
+
+        CompositeData unknown = mb.getDelta(objectNames, attributes, "unknown");
+        assertFalse("unknown".equals(unknown.get("Token")));
+        assertEquals(2, ((TabularData) unknown.get("Values")).size());
+    }
+
+    public void testGlobs() {
+        assertTrue(JMXSnapshotMBeanImpl.matches(null, "Anything"));
+        assertTrue(JMXSnapshotMBeanImpl.matches(new String[] {"Heap*"}, "HeapMemoryUsage"));
+        assertTrue(JMXSnapshotMBeanImpl.matches(new String[] {"Thread?ount"}, "ThreadCount"));
+        assertTrue(JMXSnapshotMBeanImpl.matches(new String[] {"*Count"}, "ThreadCount"));
+        assertFalse(JMXSnapshotMBeanImpl.matches(new String[] {"Heap*"}, "NonHeapMemoryUsage"));
+        assertFalse(JMXSnapshotMBeanImpl.matches(new String[] {"Thread?ount"}, "ThreadCount2"));
+    }
+
+}
@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.management.internal;
+
+import java.util.Collections;
+import java.util.List;
+
+import javax.management.ObjectName;
+
+import junit.framework.TestCase;
+import org.easymock.EasyMock;
+import org.osgi.service.cm.ConfigurationAdmin;
+
+public class JmxAclModelTest extends TestCase {
+
+    public void testPidsCacheBounded() throws Exception {
+        JmxAclModel model = JmxAclModel.load(createConfigAdmin());
+        List<String> pids = Collections.singletonList("jmx.acl");
+        ObjectName first = new ObjectName("test:type=Dynamic,name=0");
+        model.getPids().put(first, pids);
+        for (int i = 1; i <= 2 * JmxAclModel.MAX_PIDS; i++) {
+            // keep using the first ObjectName
+            assertSame(pids, model.getPids().get(first));
+            model.getPids().put(new ObjectName("test:type=Dynamic,name=" + i), pids);
+        }
+        assertEquals(JmxAclModel.MAX_PIDS, model.getPids().size());
+        assertSame(pids, model.getPids().get(first));
+        assertNull(model.getPids().get(new ObjectName("test:type=Dynamic,name=1")));
+    }
+
+    public void testGeneralPidsCacheBounded() throws Exception {
+        JmxAclModel model = JmxAclModel.load(createConfigAdmin());
+        for (int i = 0; i < 2 * JmxAclModel.MAX_PIDS; i++) {
+            model.getGeneralPids().put("jmx.acl.test." + i, "");
+        }
+        assertEquals(JmxAclModel.MAX_PIDS, model.getGeneralPids().size());
+        assertNull(model.getGeneralPids().get("jmx.acl.test.0"));
+        assertEquals("", model.getGeneralPids().get("jmx.acl.test." + (2 * JmxAclModel.MAX_PIDS - 1)));
+    }
+
+    private static ConfigurationAdmin createConfigAdmin() throws Exception {
+        ConfigurationAdmin configAdmin = EasyMock.createMock(ConfigurationAdmin.class);
+        EasyMock.expect(configAdmin.listConfigurations(EasyMock.isA(String.class))).andReturn(null).anyTimes();
+        EasyMock.replay(configAdmin);
+        return configAdmin;
+    }
+
+}
@@ -54,8 +54,24 @@ public interface ScheduleOptions extends Serializable {
      */
     ScheduleOptions canRunConcurrently(final boolean flag);
 
+    /**
+     * Sets the group of the job.
+     * The thread pool can run the jobs of a group in their own threads, so that they don't delay the other jobs.
+     *
+     * @param group The job group.
+     * @return The {@code ScheduleOptions}.
+     * @since 4.4.0
+     */
+    ScheduleOptions group(final String group);
+
     String name();
 
+    /**
+     * @return The job group, {@code null} if the job has no group.
+     * @since 4.4.0
+     */
+    String group();
+
     boolean canRunConcurrently();
 
     String schedule();
@@ -66,6 +66,14 @@ public interface Scheduler {
     /** Name of the configuration property to define the job name. */
     String PROPERTY_SCHEDULER_NAME = "scheduler.name";
 
+    /**
+     * Name of the configuration property to define the group of a job.
+     * The thread pool can run the jobs of a group in their own threads.
+     *
+     * @since 4.4.0
+     */
+    String PROPERTY_SCHEDULER_GROUP = "scheduler.group";
+
 
     /**
      * Schedule a job based on the options.
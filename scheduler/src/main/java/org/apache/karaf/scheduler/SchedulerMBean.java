@@ -27,4 +27,14 @@ public interface SchedulerMBean {
 
     void unschedule(String name) throws MBeanException;
 
+    /**
+     * Executions, misfires and lateness (delay between the scheduled and the actual start, in milliseconds) of the jobs.
+     *
+     * @return The metrics of the jobs.
+     * @throws MBeanException In case of failure.
+     */
+    TabularData getJobMetrics() throws MBeanException;
+
+    void resetJobMetrics() throws MBeanException;
+
 }
@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.scheduler.core;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.quartz.SchedulerConfigException;
+import org.quartz.spi.ThreadPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Base of the Quartz thread pools provided by Karaf, selected with the <code>org.quartz.threadPool.class</code>
+ * property, and configured with the other <code>org.quartz.threadPool.*</code> properties.
+ * At most <code>threadCount</code> jobs run at the same time (no limit if the count is negative): as with the
+ * Quartz <code>SimpleThreadPool</code>, the scheduler waits for a free slot before acquiring the next triggers.
+ */
+public abstract class AbstractThreadPool implements ThreadPool {
+
+    protected final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private int threadCount = 10;
+    private int threadPriority = Thread.NORM_PRIORITY;
+    private String instanceName = "Karaf";
+    private String instanceId;
+    private ClassLoader contextClassLoader;
+    private Semaphore permits;
+    private volatile boolean shutdown;
+
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    public void setThreadCount(int threadCount) {
+        this.threadCount = threadCount;
+    }
+
+    public int getThreadPriority() {
+        return threadPriority;
+    }
+
+    public void setThreadPriority(int threadPriority) {
+        this.threadPriority = threadPriority;
+    }
+
+    public void setInstanceId(String instanceId) {
+        this.instanceId = instanceId;
+    }
+
+    public void setInstanceName(String instanceName) {
+        this.instanceName = instanceName;
+    }
+
+    public int getPoolSize() {
+        return threadCount;
+    }
+
+    public void initialize() throws SchedulerConfigException {
+        if (threadPriority < Thread.MIN_PRIORITY || threadPriority > Thread.MAX_PRIORITY) {
+            throw new SchedulerConfigException("Thread priority must be between " + Thread.MIN_PRIORITY + " and " + Thread.MAX_PRIORITY);
+        }
+        // like the SimpleThreadPool, the jobs run with the class loader of the thread creating the pool
+        contextClassLoader = Thread.currentThread().getContextClassLoader();
+        permits = new Semaphore(threadCount > 0 ? threadCount : Integer.MAX_VALUE);
+        doInitialize();
+        logger.debug("Initialized {} for scheduler {} ({})", getClass().getSimpleName(), instanceName, instanceId);
+    }
+
+    public boolean runInThread(Runnable runnable) {
+        if (runnable == null || shutdown) {
+            return false;
+        }
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        try {
+            execute(() -> {
+                try {
+                    runnable.run();
+                } finally {
+                    permits.release();
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            logger.error("Unable to run job, the thread pool is shut down", e);
+            return false;
+        }
+    }
+
+    public int blockForAvailableThreads() {
+        try {
+            permits.acquire();
+            permits.release();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return permits.availablePermits();
+    }
+
+    public void shutdown(boolean waitForJobsToComplete) {
+        shutdown = true;
+        doShutdown(waitForJobsToComplete);
+    }
+
+    protected abstract void doInitialize() throws SchedulerConfigException;
+
+    protected abstract void execute(Runnable runnable) throws RejectedExecutionException;
+
+    protected abstract void doShutdown(boolean waitForJobsToComplete);
+
+    protected String getThreadNamePrefix() {
+        return instanceName + "_Worker-";
+    }
+
+    protected ClassLoader getContextClassLoader() {
+        return contextClassLoader;
+    }
+
+    /**
+     * @param prefix The prefix of the thread names.
+     * @return A factory of platform threads, with the configured priority and context class loader.
+     */
+    protected ThreadFactory createThreadFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setPriority(threadPriority);
+            thread.setContextClassLoader(contextClassLoader);
+            return thread;
+        };
+    }
+
+    /**
+     * Shut an executor down, waiting for the running jobs if requested.
+     */
+    protected void shutdown(ExecutorService executor, boolean waitForJobsToComplete) {
+        if (!waitForJobsToComplete) {
+            executor.shutdownNow();
+            return;
+        }
+        executor.shutdown();
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                logger.debug("Waiting for the jobs of scheduler {} to complete", instanceName);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
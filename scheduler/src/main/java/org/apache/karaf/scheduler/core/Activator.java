@@ -53,6 +53,7 @@ public class Activator extends BaseActivator implements ManagedService {
 
         SchedulerMBeanImpl mBean = new SchedulerMBeanImpl();
         mBean.setScheduler(scheduler);
+        mBean.setMetrics(scheduler.getMetrics());
         registerMBean(mBean, "type=scheduler");
     }
 
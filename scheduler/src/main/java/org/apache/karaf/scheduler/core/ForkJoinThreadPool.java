@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.scheduler.core;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.quartz.SchedulerConfigException;
+
+/**
+ * Runs the jobs in a work-stealing {@link ForkJoinPool} of <code>threadCount</code> threads (the number of
+ * processors by default). The tasks forked by the jobs run in the same pool, the idle threads steal them from
+ * the busy ones.
+ */
+public class ForkJoinThreadPool extends AbstractThreadPool {
+
+    private ForkJoinPool pool;
+
+    public ForkJoinThreadPool() {
+        setThreadCount(Runtime.getRuntime().availableProcessors());
+    }
+
+    @Override
+    protected void doInitialize() throws SchedulerConfigException {
+        if (getThreadCount() <= 0) {
+            throw new SchedulerConfigException("Thread count must be > 0");
+        }
+        String prefix = getThreadNamePrefix();
+        pool = new ForkJoinPool(getThreadCount(), p -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            thread.setName(prefix + (thread.getPoolIndex() + 1));
+            thread.setPriority(getThreadPriority());
+            thread.setContextClassLoader(getContextClassLoader());
+            return thread;
+        }, (thread, t) -> logger.error("Uncaught exception in thread " + thread.getName(), t), true);
+    }
+
+    @Override
+    protected void execute(Runnable runnable) throws RejectedExecutionException {
+        pool.execute(runnable);
+    }
+
+    @Override
+    protected void doShutdown(boolean waitForJobsToComplete) {
+        if (pool != null) {
+            shutdown(pool, waitForJobsToComplete);
+        }
+    }
+
+}
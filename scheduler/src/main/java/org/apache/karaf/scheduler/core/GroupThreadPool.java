@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.scheduler.core;
+
+import java.lang.reflect.Field;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.quartz.SchedulerConfigException;
+import org.quartz.core.JobRunShell;
+import org.quartz.spi.TriggerFiredBundle;
+
+/**
+ * Isolates the job groups in their own pool of threads, so that the jobs of a group blocking on I/O don't delay
+ * the jobs of the other groups.
+ * <p>
+ * The groups and their number of threads are defined by the <code>groups</code> property, for instance
+ * <code>org.quartz.threadPool.groups=io:4,reports:1</code>. The jobs without group, or of another group, run
+ * in the default pool of <code>threadCount</code> threads. The group of a job is defined with the
+ * <code>scheduler.group</code> service property or {@link org.apache.karaf.scheduler.ScheduleOptions#group(String)}.
+ * <p>
+ * Each pool queues at most as many jobs as it has threads. The scheduler waits for the default pool only: when the
+ * threads and queue of a group are full, the new fires of its jobs are vetoed and counted as misfires in the job
+ * metrics, instead of delaying the jobs of the other groups.
+ */
+public class GroupThreadPool extends AbstractThreadPool {
+
+    private String groups = "";
+    // quartz doesn't expose the job of a shell, it is only available in this protected field
+    private Field firedTriggerBundle;
+    private ThreadPoolExecutor defaultExecutor;
+    private final Map<String, ThreadPoolExecutor> executors = new HashMap<>();
+
+    public String getGroups() {
+        return groups;
+    }
+
+    public void setGroups(String groups) {
+        this.groups = groups;
+    }
+
+    @Override
+    protected void doInitialize() throws SchedulerConfigException {
+        if (getThreadCount() <= 0) {
+            throw new SchedulerConfigException("Thread count must be > 0");
+        }
+        defaultExecutor = createExecutor(getThreadNamePrefix(), getThreadCount());
+        if (groups != null) {
+            for (String group : groups.split(",")) {
+                if (group.trim().isEmpty()) {
+                    continue;
+                }
+                String[] nameAndCount = group.split(":");
+                int count;
+                try {
+                    count = nameAndCount.length == 2 ? Integer.parseInt(nameAndCount[1].trim()) : 0;
+                } catch (NumberFormatException e) {
+                    count = 0;
+                }
+                if (count <= 0) {
+                    throw new SchedulerConfigException("Invalid thread pool group '" + group + "', expected <group>:<thread count>");
+                }
+                String name = nameAndCount[0].trim();
+                executors.put(name, createExecutor(getThreadNamePrefix() + name + "-", count));
+            }
+        }
+        if (!executors.isEmpty()) {
+            firedTriggerBundle = findFiredTriggerBundleField();
+        }
+    }
+
+    private ThreadPoolExecutor createExecutor(String prefix, int threads) {
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads), createThreadFactory(prefix));
+    }
+
+    @Override
+    public boolean runInThread(Runnable runnable) {
+        if (runnable == null || defaultExecutor == null) {
+            return false;
+        }
+        TriggerFiredBundle bundle = getBundle(runnable);
+        Object group = bundle != null ? bundle.getJobDetail().getJobDataMap().get(QuartzScheduler.DATA_MAP_GROUP) : null;
+        ThreadPoolExecutor executor = group instanceof String ? executors.get(group) : null;
+        if (executor == null) {
+            // the scheduler waits for the threads of the default pool, see blockForAvailableThreads()
+            return super.runInThread(runnable);
+        }
+        try {
+            executor.execute(runnable);
+            return true;
+        } catch (RejectedExecutionException e) {
+            if (executor.isShutdown()) {
+                logger.error("Unable to run job, the thread pool is shut down", e);
+                return false;
+            }
+        }
+        // the group is saturated: the shell completes the trigger right away, vetoed by the job metrics
+        logger.debug("The threads of group {} are busy, job {} misfires", group, bundle.getJobDetail().getKey());
+        bundle.getTrigger().getJobDataMap().put(QuartzScheduler.DATA_MAP_SATURATED, Boolean.TRUE);
+        runnable.run();
+        return true;
+    }
+
+    @Override
+    protected void execute(Runnable runnable) throws RejectedExecutionException {
+        defaultExecutor.execute(runnable);
+    }
+
+    @Override
+    protected void doShutdown(boolean waitForJobsToComplete) {
+        if (defaultExecutor != null) {
+            shutdown(defaultExecutor, waitForJobsToComplete);
+        }
+        for (ThreadPoolExecutor executor : executors.values()) {
+            shutdown(executor, waitForJobsToComplete);
+        }
+    }
+
+    private TriggerFiredBundle getBundle(Runnable runnable) {
+        if (firedTriggerBundle == null || !(runnable instanceof JobRunShell)) {
+            return null;
+        }
+        try {
+            TriggerFiredBundle bundle = (TriggerFiredBundle) firedTriggerBundle.get(runnable);
+            return bundle != null && bundle.getJobDetail() != null && bundle.getTrigger() != null ? bundle : null;
+        } catch (IllegalAccessException e) {
+            logger.error("Unable to get the group of the job, it runs in the default pool", e);
+            return null;
+        }
+    }
+
+    /**
+     * Find the field holding the job of a {@link JobRunShell}. The groups can't work without it, so the pool refuses
+     * to start if a Quartz upgrade removed it.
+     */
+    static Field findFiredTriggerBundleField() throws SchedulerConfigException {
+        try {
+            Field field = JobRunShell.class.getDeclaredField("firedTriggerBundle");
+            if (!TriggerFiredBundle.class.equals(field.getType())) {
+                throw new SchedulerConfigException("The job groups are not supported with this Quartz version: the type of "
+                        + "JobRunShell.firedTriggerBundle is " + field.getType().getName());
+            }
+            field.setAccessible(true);
+            return field;
+        } catch (NoSuchFieldException | SecurityException e) {
+            throw new SchedulerConfigException("The job groups are not supported with this Quartz version: "
+                    + "JobRunShell.firedTriggerBundle is not available", e);
+        }
+    }
+
+}
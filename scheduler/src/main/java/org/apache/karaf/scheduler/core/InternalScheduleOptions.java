@@ -43,6 +43,8 @@ public class InternalScheduleOptions implements ScheduleOptions {
 
     public boolean canRunConcurrently = false;
 
+    public String group;
+
     public Map<String, Serializable> configuration;
 
     public String schedule;
@@ -100,11 +102,24 @@ public class InternalScheduleOptions implements ScheduleOptions {
         return this;
     }
 
+    /**
+     * @see org.apache.karaf.scheduler.ScheduleOptions#group(java.lang.String)
+     */
+    public ScheduleOptions group(final String group) {
+        this.group = group;
+        return this;
+    }
+
     @Override
     public String name() {
         return this.name;
     }
 
+    @Override
+    public String group() {
+        return this.group;
+    }
+
     @Override
     public boolean canRunConcurrently() {
         return this.canRunConcurrently;
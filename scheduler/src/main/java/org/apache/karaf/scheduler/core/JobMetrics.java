@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.scheduler.core;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.quartz.JobExecutionContext;
+import org.quartz.Trigger;
+import org.quartz.listeners.TriggerListenerSupport;
+
+/**
+ * Collects the executions, misfires and lateness of the jobs. The lateness of an execution is the delay between
+ * its scheduled time and the time it actually starts, it grows when the thread pool is saturated.
+ */
+public class JobMetrics extends TriggerListenerSupport {
+
+    private final Map<String, Metrics> metrics = new ConcurrentHashMap<>();
+
+    @Override
+    public String getName() {
+        return "KarafJobMetrics";
+    }
+
+    @Override
+    public void triggerFired(Trigger trigger, JobExecutionContext context) {
+        if (trigger.getJobDataMap().containsKey(QuartzScheduler.DATA_MAP_SATURATED)) {
+            // counted as a misfire when vetoed
+            return;
+        }
+        Date scheduled = context.getScheduledFireTime();
+        long lateness = scheduled != null ? Math.max(0, System.currentTimeMillis() - scheduled.getTime()) : 0;
+        getMetrics(trigger).fired(lateness);
+    }
+
+    @Override
+    public boolean vetoJobExecution(Trigger trigger, JobExecutionContext context) {
+        // the GroupThreadPool doesn't queue more jobs when the threads of their group are busy
+        if (trigger.getJobDataMap().remove(QuartzScheduler.DATA_MAP_SATURATED) == null) {
+            return false;
+        }
+        getMetrics(trigger).misfires.increment();
+        return true;
+    }
+
+    @Override
+    public void triggerMisfired(Trigger trigger) {
+        getMetrics(trigger).misfires.increment();
+    }
+
+    @Override
+    public void triggerComplete(Trigger trigger, JobExecutionContext context,
+                                Trigger.CompletedExecutionInstruction triggerInstructionCode) {
+        getMetrics(trigger).completed(Math.max(0, context.getJobRunTime()));
+    }
+
+    private Metrics getMetrics(Trigger trigger) {
+        return metrics.computeIfAbsent(trigger.getJobKey().getName(), name -> new Metrics());
+    }
+
+    /**
+     * @return The metrics of the jobs, by job name.
+     */
+    public Map<String, Metrics> getMetrics() {
+        return new HashMap<>(metrics);
+    }
+
+    public void remove(String job) {
+        metrics.remove(job);
+    }
+
+    public void reset() {
+        metrics.clear();
+    }
+
+    public static class Metrics {
+
+        private final LongAdder executions = new LongAdder();
+        private final LongAdder misfires = new LongAdder();
+        private final LongAdder lateness = new LongAdder();
+        private final LongAdder completions = new LongAdder();
+        private final LongAdder runTime = new LongAdder();
+        private final LongAccumulator maxLateness = new LongAccumulator(Math::max, 0);
+        private final AtomicLong lastLateness = new AtomicLong();
+
+        void fired(long lateness) {
+            executions.increment();
+            this.lateness.add(lateness);
+            maxLateness.accumulate(lateness);
+            lastLateness.set(lateness);
+        }
+
+        void completed(long runTime) {
+            completions.increment();
+            this.runTime.add(runTime);
+        }
+
+        public long getExecutions() {
+            return executions.sum();
+        }
+
+        public long getMisfires() {
+            return misfires.sum();
+        }
+
+        /**
+         * @return The lateness of the last execution, in milliseconds.
+         */
+        public long getLastLateness() {
+            return lastLateness.get();
+        }
+
+        /**
+         * @return The average lateness of the executions, in milliseconds.
+         */
+        public long getAverageLateness() {
+            long count = executions.sum();
+            return count > 0 ? lateness.sum() / count : 0;
+        }
+
+        /**
+         * @return The maximum lateness of the executions, in milliseconds.
+         */
+        public long getMaxLateness() {
+            return maxLateness.get();
+        }
+
+        /**
+         * @return The average run time of the executions, in milliseconds.
+         */
+        public long getAverageRunTime() {
+            long count = completions.sum();
+            return count > 0 ? runTime.sum() / count : 0;
+        }
+    }
+
+}
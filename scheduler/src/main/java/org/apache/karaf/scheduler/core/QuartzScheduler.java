@@ -53,9 +53,18 @@ public class QuartzScheduler implements Scheduler {
     /** Map key for the logger. */
     static final String DATA_MAP_LOGGER = "QuartzJobScheduler.Logger";
 
+    /** Map key for the job group, used by the thread pool. */
+    static final String DATA_MAP_GROUP = "QuartzJobScheduler.Group";
+
+    /** Trigger map key marking a fire rejected by the saturated group of its job, vetoed as a misfire. */
+    static final String DATA_MAP_SATURATED = "QuartzJobScheduler.Saturated";
+
     /** The quartz scheduler. */
     private volatile org.quartz.Scheduler scheduler;
 
+    /** The metrics of the jobs. */
+    private final JobMetrics metrics = new JobMetrics();
+
     public QuartzScheduler(Properties configuration) {
         // SLING-2261 Prevent Quartz from checking for updates
         System.setProperty("org.terracotta.quartz.skipUpdateCheck", Boolean.TRUE.toString());
@@ -64,6 +73,7 @@ public class QuartzScheduler implements Scheduler {
             Thread.currentThread().setContextClassLoader(QuartzScheduler.class.getClassLoader());
             KarafStdSchedulerFactory factory = new KarafStdSchedulerFactory(configuration);
             scheduler = factory.getScheduler();
+            scheduler.getListenerManager().addTriggerListener(metrics);
             scheduler.start();
         } catch (Throwable t) {
             throw new RuntimeException("Unable to create quartz scheduler", t);
@@ -111,6 +121,9 @@ public class QuartzScheduler implements Scheduler {
         // serializable data
         jobDataMap.put(DATA_MAP_NAME, jobName);
         jobDataMap.put(DATA_MAP_OPTIONS, options);
+        if (options.group != null) {
+            jobDataMap.put(DATA_MAP_GROUP, options.group);
+        }
 
         // non serializable data
         jobContextMap.put(DATA_MAP_OBJECT, job);
@@ -149,6 +162,11 @@ public class QuartzScheduler implements Scheduler {
         return this.scheduler;
     }
 
+    /** Used by the MBean. */
+    JobMetrics getMetrics() {
+        return this.metrics;
+    }
+
     /**
      * @see org.apache.karaf.scheduler.Scheduler#NOW()
      */
@@ -281,6 +299,7 @@ public class QuartzScheduler implements Scheduler {
                 final JobDetail jobdetail = s.getJobDetail(key);
                 if (jobdetail != null) {
                     s.deleteJob(key);
+                    this.metrics.remove(jobName);
                     this.logger.debug("Unscheduling job with name {}", jobName);
                     return true;
                 }
@@ -30,6 +30,7 @@ import java.util.Map;
 public class SchedulerMBeanImpl extends StandardMBean implements SchedulerMBean {
 
     private Scheduler scheduler;
+    private JobMetrics metrics;
 
     public SchedulerMBeanImpl() throws NotCompliantMBeanException {
         super(SchedulerMBean.class);
@@ -80,6 +81,41 @@ public class SchedulerMBeanImpl extends StandardMBean implements SchedulerMBean
         }
     }
 
+    @Override
+    public TabularData getJobMetrics() throws MBeanException {
+        try {
+            CompositeType metricsType = new CompositeType("JobMetrics", "Scheduler job metrics",
+                    new String[]{ "Job", "Executions", "Misfires", "LastLateness", "AverageLateness", "MaxLateness", "AverageRunTime" },
+                    new String[]{ "Job Name", "Number of executions", "Number of misfires", "Lateness of the last execution (ms)",
+                            "Average lateness (ms)", "Maximum lateness (ms)", "Average run time (ms)" },
+                    new OpenType[]{ SimpleType.STRING, SimpleType.LONG, SimpleType.LONG, SimpleType.LONG,
+                            SimpleType.LONG, SimpleType.LONG, SimpleType.LONG });
+            TabularType tableType = new TabularType("JobMetrics", "Tables of all job metrics", metricsType, new String[]{ "Job" });
+            TabularData table = new TabularDataSupport(tableType);
+
+            if (metrics != null) {
+                for (Map.Entry<String, JobMetrics.Metrics> entry : metrics.getMetrics().entrySet()) {
+                    JobMetrics.Metrics job = entry.getValue();
+                    CompositeData data = new CompositeDataSupport(metricsType,
+                            new String[]{ "Job", "Executions", "Misfires", "LastLateness", "AverageLateness", "MaxLateness", "AverageRunTime" },
+                            new Object[]{ entry.getKey(), job.getExecutions(), job.getMisfires(), job.getLastLateness(),
+                                    job.getAverageLateness(), job.getMaxLateness(), job.getAverageRunTime() });
+                    table.put(data);
+                }
+            }
+            return table;
+        } catch (Exception e) {
+            throw new MBeanException(null, e.toString());
+        }
+    }
+
+    @Override
+    public void resetJobMetrics() throws MBeanException {
+        if (metrics != null) {
+            metrics.reset();
+        }
+    }
+
     public Scheduler getScheduler() {
         return scheduler;
     }
@@ -88,4 +124,8 @@ public class SchedulerMBeanImpl extends StandardMBean implements SchedulerMBean
         this.scheduler = scheduler;
     }
 
+    public void setMetrics(JobMetrics metrics) {
+        this.metrics = metrics;
+    }
+
 }
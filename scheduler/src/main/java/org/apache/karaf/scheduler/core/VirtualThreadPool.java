@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.scheduler.core;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Runs each job in a new virtual thread, so that the jobs blocking on I/O don't hold a platform thread.
+ * The number of concurrent jobs is not limited by default (<code>threadCount=-1</code>), and the thread
+ * priority is ignored.
+ * Virtual threads require Java 21: on older versions, the jobs run in new (or idle) platform threads.
+ */
+public class VirtualThreadPool extends AbstractThreadPool {
+
+    private ExecutorService executor;
+
+    public VirtualThreadPool() {
+        setThreadCount(-1);
+    }
+
+    @Override
+    protected void doInitialize() {
+        try {
+            // the Java 21 API is used by reflection as Karaf still runs on Java 8
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, getThreadNamePrefix(), 1L);
+            ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            executor = (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class).invoke(null, factory);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            logger.warn("Virtual threads are not available (Java 21 is required), the jobs run in platform threads");
+            executor = Executors.newCachedThreadPool(createThreadFactory(getThreadNamePrefix()));
+        }
+    }
+
+    @Override
+    protected void execute(Runnable runnable) throws RejectedExecutionException {
+        executor.execute(runnable);
+    }
+
+    @Override
+    protected void doShutdown(boolean waitForJobsToComplete) {
+        if (executor != null) {
+            shutdown(executor, waitForJobsToComplete);
+        }
+    }
+
+}
@@ -108,10 +108,12 @@ public class WhiteboardHandler {
             }
         }
         final String expression = (String) ref.getProperty(Scheduler.PROPERTY_SCHEDULER_EXPRESSION);
+        final String group = (String) ref.getProperty(Scheduler.PROPERTY_SCHEDULER_GROUP);
         try {
             if (expression != null) {
                 this.scheduler.schedule(job, this.scheduler.EXPR(expression)
                         .name(name)
+                        .group(group)
                         .canRunConcurrently(concurrent));
             } else {
                 Integer times = -1;
@@ -156,6 +158,7 @@ public class WhiteboardHandler {
                         }
                         this.scheduler.schedule(job, this.scheduler.AT(date, times, period)
                                 .name(name)
+                                .group(group)
                                 .canRunConcurrently((concurrent != null ? concurrent : true)));
                     }
                 } else {
@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.scheduler.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+import org.quartz.SchedulerConfigException;
+
+public class AbstractThreadPoolTest {
+
+    private final CachedThreadPool pool = new CachedThreadPool();
+
+    @After
+    public void shutdown() {
+        pool.shutdown(false);
+    }
+
+    @Test
+    public void testRunInThreadBoundedByThreadCount() throws Exception {
+        pool.setThreadCount(2);
+        pool.initialize();
+        assertEquals(2, pool.getPoolSize());
+
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(3);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        Runnable job = () -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            started.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            running.decrementAndGet();
+        };
+        assertTrue(pool.runInThread(job));
+        assertTrue(pool.runInThread(job));
+
+        // the third job waits for a free thread, as the scheduler does
+        AtomicBoolean accepted = new AtomicBoolean();
+        Thread scheduler = new Thread(() -> accepted.set(pool.runInThread(job)));
+        scheduler.start();
+        assertFalse(started.await(200, TimeUnit.MILLISECONDS));
+        assertEquals(1, started.getCount());
+        assertTrue(scheduler.isAlive());
+
+        release.countDown();
+        scheduler.join(10000);
+        assertTrue(accepted.get());
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        assertEquals(2, maxRunning.get());
+        assertTrue(pool.blockForAvailableThreads() > 0);
+    }
+
+    @Test
+    public void testPermitReleasedWhenJobFails() throws Exception {
+        pool.setThreadCount(1);
+        pool.initialize();
+
+        assertTrue(pool.runInThread(() -> {
+            throw new IllegalStateException("expected");
+        }));
+        CountDownLatch done = new CountDownLatch(1);
+        assertTrue(pool.runInThread(done::countDown));
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testRunInThreadAfterShutdown() throws Exception {
+        pool.initialize();
+        assertFalse(pool.runInThread(null));
+
+        pool.shutdown(true);
+        assertFalse(pool.runInThread(() -> { }));
+    }
+
+    @Test
+    public void testRejectedJobReleasesPermit() throws Exception {
+        pool.setThreadCount(1);
+        pool.initialize();
+        pool.executor.shutdown();
+
+        assertFalse(pool.runInThread(() -> { }));
+        assertEquals(1, pool.blockForAvailableThreads());
+    }
+
+    @Test
+    public void testInvalidPriority() {
+        pool.setThreadPriority(Thread.MAX_PRIORITY + 1);
+        try {
+            pool.initialize();
+            fail("The priority should be rejected");
+        } catch (SchedulerConfigException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Runs the jobs without limit, only the permits of the base class bound them.
+     */
+    private static class CachedThreadPool extends AbstractThreadPool {
+
+        private ExecutorService executor;
+
+        @Override
+        protected void doInitialize() {
+            executor = Executors.newCachedThreadPool(createThreadFactory(getThreadNamePrefix()));
+        }
+
+        @Override
+        protected void execute(Runnable runnable) throws RejectedExecutionException {
+            executor.execute(runnable);
+        }
+
+        @Override
+        protected void doShutdown(boolean waitForJobsToComplete) {
+            if (executor != null) {
+                shutdown(executor, waitForJobsToComplete);
+            }
+        }
+    }
+
+}
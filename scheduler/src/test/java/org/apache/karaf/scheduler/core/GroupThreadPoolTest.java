@@ -0,0 +1,199 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.scheduler.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Date;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+import org.quartz.JobBuilder;
+import org.quartz.JobDetail;
+import org.quartz.SchedulerConfigException;
+import org.quartz.Trigger;
+import org.quartz.TriggerBuilder;
+import org.quartz.core.JobRunShell;
+import org.quartz.spi.OperableTrigger;
+import org.quartz.spi.TriggerFiredBundle;
+
+public class GroupThreadPoolTest {
+
+    private final GroupThreadPool pool = new GroupThreadPool();
+    private final BlockingQueue<String> threads = new LinkedBlockingQueue<>();
+
+    @After
+    public void shutdown() {
+        pool.shutdown(false);
+    }
+
+    @Test
+    public void testGroupSelection() throws Exception {
+        pool.setInstanceName("Test");
+        pool.setGroups("io:1, reports:2");
+        pool.initialize();
+
+        assertTrue(pool.runInThread(new Shell("io", null)));
+        assertTrue(threads.poll(10, TimeUnit.SECONDS).startsWith("Test_Worker-io-"));
+        assertTrue(pool.runInThread(new Shell("reports", null)));
+        assertTrue(threads.poll(10, TimeUnit.SECONDS).startsWith("Test_Worker-reports-"));
+
+        // the jobs without group, or of an unknown group, run in the default pool
+        assertTrue(pool.runInThread(new Shell(null, null)));
+        assertTrue(threads.poll(10, TimeUnit.SECONDS).matches("Test_Worker-\\d+"));
+        assertTrue(pool.runInThread(new Shell("other", null)));
+        assertTrue(threads.poll(10, TimeUnit.SECONDS).matches("Test_Worker-\\d+"));
+        assertTrue(pool.runInThread(() -> threads.add(Thread.currentThread().getName())));
+        assertTrue(threads.poll(10, TimeUnit.SECONDS).matches("Test_Worker-\\d+"));
+    }
+
+    @Test
+    public void testBusyGroupDoesNotDelayOthers() throws Exception {
+        pool.setThreadCount(1);
+        pool.setGroups("io:1");
+        pool.initialize();
+
+        CountDownLatch release = new CountDownLatch(1);
+        assertTrue(pool.runInThread(new Shell("io", release)));
+        assertNotNull(threads.poll(10, TimeUnit.SECONDS));
+
+        // the job is queued in its group, the default threads are still available
+        assertTrue(pool.runInThread(new Shell("io", null)));
+        assertEquals(1, pool.blockForAvailableThreads());
+        assertTrue(pool.runInThread(new Shell(null, null)));
+        assertTrue(threads.poll(10, TimeUnit.SECONDS).matches("Karaf_Worker-\\d+"));
+        assertEquals(0, threads.size());
+
+        release.countDown();
+        assertTrue(threads.poll(10, TimeUnit.SECONDS).startsWith("Karaf_Worker-io-"));
+    }
+
+    @Test
+    public void testSaturatedGroupMisfires() throws Exception {
+        pool.setGroups("io:1");
+        pool.initialize();
+
+        CountDownLatch release = new CountDownLatch(1);
+        assertTrue(pool.runInThread(new Shell("io", release)));
+        assertNotNull(threads.poll(10, TimeUnit.SECONDS));
+        Shell queued = new Shell("io", null);
+        assertTrue(pool.runInThread(queued));
+
+        // the thread and the queue of the group are full, the shell is run by the scheduler to be vetoed
+        Shell saturated = new Shell("io", null);
+        assertTrue(pool.runInThread(saturated));
+        assertEquals(Thread.currentThread().getName(), threads.poll(10, TimeUnit.SECONDS));
+        assertEquals(Boolean.TRUE, saturated.trigger.getJobDataMap().get(QuartzScheduler.DATA_MAP_SATURATED));
+        assertFalse(queued.trigger.getJobDataMap().containsKey(QuartzScheduler.DATA_MAP_SATURATED));
+
+        release.countDown();
+        assertTrue(threads.poll(10, TimeUnit.SECONDS).startsWith("Karaf_Worker-io-"));
+    }
+
+    @Test
+    public void testSchedulerWaitsForDefaultThreads() throws Exception {
+        pool.setThreadCount(1);
+        pool.initialize();
+
+        CountDownLatch release = new CountDownLatch(1);
+        assertTrue(pool.runInThread(new Shell(null, release)));
+        assertNotNull(threads.poll(10, TimeUnit.SECONDS));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Integer> available = executor.submit(pool::blockForAvailableThreads);
+            Thread.sleep(100);
+            assertFalse(available.isDone());
+            release.countDown();
+            assertEquals(1, (int) available.get(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testInvalidGroups() {
+        for (String groups : new String[] { "io", "io:0", "io:-1", "io:x", "io:1:2" }) {
+            GroupThreadPool invalid = new GroupThreadPool();
+            invalid.setGroups(groups);
+            try {
+                invalid.initialize();
+                fail("The groups '" + groups + "' should be rejected");
+            } catch (SchedulerConfigException e) {
+                // expected
+            } finally {
+                invalid.shutdown(false);
+            }
+        }
+    }
+
+    @Test
+    public void testFiredTriggerBundleField() throws Exception {
+        // the groups rely on this protected field of quartz, check it is still there after an upgrade
+        assertNotNull(GroupThreadPool.findFiredTriggerBundleField());
+    }
+
+    /**
+     * A shell recording the thread running it, instead of running its job.
+     */
+    private class Shell extends JobRunShell {
+
+        private final Trigger trigger;
+        private final CountDownLatch release;
+
+        Shell(String group, CountDownLatch release) {
+            super(null, createBundle(group));
+            this.trigger = firedTriggerBundle.getTrigger();
+            this.release = release;
+        }
+
+        @Override
+        public void run() {
+            threads.add(Thread.currentThread().getName());
+            if (release != null) {
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    private static TriggerFiredBundle createBundle(String group) {
+        JobBuilder builder = JobBuilder.newJob(QuartzJobExecutor.class).withIdentity("job");
+        if (group != null) {
+            builder.usingJobData(QuartzScheduler.DATA_MAP_GROUP, group);
+        }
+        JobDetail job = builder.build();
+        OperableTrigger trigger = (OperableTrigger) TriggerBuilder.newTrigger().forJob(job).build();
+        Date now = new Date();
+        return new TriggerFiredBundle(job, trigger, null, false, now, now, null, null);
+    }
+
+}
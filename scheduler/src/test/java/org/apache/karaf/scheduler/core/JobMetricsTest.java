@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.scheduler.core;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Date;
+
+import org.junit.Test;
+import org.quartz.JobExecutionContext;
+import org.quartz.Trigger;
+import org.quartz.TriggerBuilder;
+
+public class JobMetricsTest {
+
+    private final JobMetrics metrics = new JobMetrics();
+    private final Trigger trigger = TriggerBuilder.newTrigger().forJob("job").build();
+
+    @Test
+    public void testLateness() {
+        long now = System.currentTimeMillis();
+        metrics.triggerFired(trigger, context(new Date(now - 5000), 0));
+        metrics.triggerFired(trigger, context(new Date(now - 1000), 0));
+
+        JobMetrics.Metrics job = metrics.getMetrics().get("job");
+        assertEquals(2, job.getExecutions());
+        assertTrue(job.getMaxLateness() >= 5000);
+        assertTrue(job.getLastLateness() >= 1000 && job.getLastLateness() < 5000);
+        assertTrue(job.getAverageLateness() >= 3000 && job.getAverageLateness() < job.getMaxLateness());
+    }
+
+    @Test
+    public void testNoLatenessBeforeScheduledTime() {
+        metrics.triggerFired(trigger, context(new Date(System.currentTimeMillis() + 60000), 0));
+        metrics.triggerFired(trigger, context(null, 0));
+
+        JobMetrics.Metrics job = metrics.getMetrics().get("job");
+        assertEquals(2, job.getExecutions());
+        assertEquals(0, job.getMaxLateness());
+        assertEquals(0, job.getAverageLateness());
+    }
+
+    @Test
+    public void testMisfiresAndRunTime() {
+        metrics.triggerMisfired(trigger);
+        metrics.triggerMisfired(trigger);
+
+        JobMetrics.Metrics job = metrics.getMetrics().get("job");
+        assertEquals(2, job.getMisfires());
+        assertEquals(0, job.getExecutions());
+        assertEquals(0, job.getAverageLateness());
+        assertEquals(0, job.getAverageRunTime());
+
+        metrics.triggerComplete(trigger, context(null, 100), Trigger.CompletedExecutionInstruction.NOOP);
+        metrics.triggerComplete(trigger, context(null, 300), Trigger.CompletedExecutionInstruction.NOOP);
+        assertEquals(200, job.getAverageRunTime());
+        // the run time is unknown (-1) when the job failed to start
+        metrics.triggerComplete(trigger, context(null, -1), Trigger.CompletedExecutionInstruction.NOOP);
+        assertEquals(133, job.getAverageRunTime());
+    }
+
+    @Test
+    public void testSaturatedFireVetoed() {
+        trigger.getJobDataMap().put(QuartzScheduler.DATA_MAP_SATURATED, Boolean.TRUE);
+        JobExecutionContext context = context(new Date(), 0);
+        metrics.triggerFired(trigger, context);
+        assertTrue(metrics.vetoJobExecution(trigger, context));
+        assertFalse(trigger.getJobDataMap().containsKey(QuartzScheduler.DATA_MAP_SATURATED));
+
+        JobMetrics.Metrics job = metrics.getMetrics().get("job");
+        assertEquals(1, job.getMisfires());
+        assertEquals(0, job.getExecutions());
+
+        metrics.triggerFired(trigger, context);
+        assertFalse(metrics.vetoJobExecution(trigger, context));
+        assertEquals(1, job.getExecutions());
+    }
+
+    @Test
+    public void testRemoveAndReset() {
+        Trigger other = TriggerBuilder.newTrigger().forJob("other").build();
+        metrics.triggerMisfired(trigger);
+        metrics.triggerMisfired(other);
+        assertEquals(2, metrics.getMetrics().size());
+
+        metrics.remove("job");
+        assertEquals(1, metrics.getMetrics().size());
+        assertEquals(1, metrics.getMetrics().get("other").getMisfires());
+
+        metrics.reset();
+        assertTrue(metrics.getMetrics().isEmpty());
+    }
+
+    private static JobExecutionContext context(Date scheduledFireTime, long jobRunTime) {
+        JobExecutionContext context = createMock(JobExecutionContext.class);
+        expect(context.getScheduledFireTime()).andReturn(scheduledFireTime).anyTimes();
+        expect(context.getJobRunTime()).andReturn(jobRunTime).anyTimes();
+        replay(context);
+        return context;
+    }
+
+}
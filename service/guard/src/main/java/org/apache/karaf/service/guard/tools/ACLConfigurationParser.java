@@ -17,6 +17,8 @@
 package org.apache.karaf.service.guard.tools;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
 
 import org.apache.karaf.service.guard.impl.GuardProxyCatalog;
 
@@ -31,6 +33,10 @@ public class ACLConfigurationParser {
         NO_MATCH
     }
 
+    // argument regexes are evaluated on every invocation, compile them only once
+    private static final int MAX_CACHED_PATTERNS = 1024;
+    private static final Map<String, Pattern> PATTERNS = new ConcurrentHashMap<>();
+
     static String compulsoryRoles;
     
     static {
@@ -179,8 +185,19 @@ public class ACLConfigurationParser {
         return Specificity.NO_MATCH;
     }
 
-    private static Dictionary<String, Object> trimKeys(Dictionary<String, Object> properties) {
-        Dictionary<String, Object> d = new Hashtable<>();
+    /**
+     * Return a copy of the configuration with the spaces removed from the keys, as expected by the
+     * lookups. Callers evaluating the same configuration many times can trim it once and pass the
+     * result to {@link #getRolesForInvocation}, which then uses it as is.
+     *
+     * @param properties the configuration to trim.
+     * @return the trimmed configuration.
+     */
+    public static Dictionary<String, Object> trimKeys(Dictionary<String, Object> properties) {
+        if (properties instanceof TrimmedDictionary) {
+            return properties;
+        }
+        Dictionary<String, Object> d = new TrimmedDictionary();
         for (Enumeration<String> e = properties.keys(); e.hasMoreElements(); ) {
             String key = e.nextElement();
             Object value = properties.get(key);
@@ -352,7 +369,7 @@ public class ACLConfigurationParser {
         for (int i = 0; i < regexArgs.size(); i++) {
             if (params[i] == null)
                 return false;
-            if (!params[i].toString().trim().matches(regexArgs.get(i))) {
+            if (!getPattern(regexArgs.get(i)).matcher(params[i].toString().trim()).matches()) {
                 return false;
             }
         }
@@ -360,6 +377,18 @@ public class ACLConfigurationParser {
         return true;
     }
 
+    private static Pattern getPattern(String regex) {
+        Pattern pattern = PATTERNS.get(regex);
+        if (pattern == null) {
+            if (PATTERNS.size() >= MAX_CACHED_PATTERNS) {
+                PATTERNS.clear();
+            }
+            pattern = Pattern.compile(regex);
+            PATTERNS.put(regex, pattern);
+        }
+        return pattern;
+    }
+
     private static List<String> getRegexDecl(String key) {
         List<String> l = new ArrayList<>();
 
@@ -388,4 +417,8 @@ public class ACLConfigurationParser {
         }
         return l;
     }
+
+    private static class TrimmedDictionary extends Hashtable<String, Object> {
+    }
+
 }
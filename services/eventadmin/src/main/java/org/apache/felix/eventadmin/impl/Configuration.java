@@ -27,8 +27,11 @@ import org.apache.felix.eventadmin.impl.adapter.BundleEventAdapter;
 import org.apache.felix.eventadmin.impl.adapter.FrameworkEventAdapter;
 import org.apache.felix.eventadmin.impl.adapter.ServiceEventAdapter;
 import org.apache.felix.eventadmin.impl.handler.EventAdminImpl;
+import org.apache.felix.eventadmin.impl.handler.EventAdminLanes;
+import org.apache.felix.eventadmin.impl.handler.EventAdminLanesMBean;
 import org.apache.felix.eventadmin.impl.security.SecureEventAdminFactory;
 import org.apache.felix.eventadmin.impl.tasks.DefaultThreadPool;
+import org.apache.felix.eventadmin.impl.tasks.LaneDeliverTasks;
 import org.apache.felix.eventadmin.impl.util.LogWrapper;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.Constants;
@@ -88,6 +91,23 @@ import org.osgi.service.metatype.MetaTypeProvider;
  * all handlers in this package and all subpackages are ignored. If the string neither
  * ends with a dot nor with a start, this is assumed to define an exact class name.</p>
  *
+ * <p>
+ *      <code>org.apache.felix.eventadmin.AsyncLanes</code> - Deliver posted events
+ *          through per-handler lanes.
+ * </p>
+ *
+ * <p>The default is <code>false</code>. When enabled, each <code>EventHandler</code>
+ * gets its own bounded queue drained in batches on the asynchronous thread pool,
+ * so a slow handler can't delay the delivery to the other handlers. The lanes are
+ * tuned with <code>org.apache.felix.eventadmin.AsyncLaneCapacity</code> (default 1000
+ * queued events per handler), <code>org.apache.felix.eventadmin.AsyncLaneBatchSize</code>
+ * (default 32 events delivered per pool task),
+ * <code>org.apache.felix.eventadmin.AsyncLaneOverflowPolicy</code> (one of
+ * <code>block</code>, <code>drop_newest</code> or <code>drop_oldest</code>, default
+ * <code>block</code>) and <code>org.apache.felix.eventadmin.AsyncLaneBlacklist</code>
+ * (default <code>false</code>, blacklists a handler exceeding the timeout). The lanes
+ * statistics are exposed through JMX.</p>
+ *
  * <p>These properties are read at startup and serve as a default configuration.
  * If a configuration admin is configured, the event admin can be configured
  * through the config admin.</p>
@@ -108,6 +128,11 @@ public class Configuration
     static final String PROP_LOG_LEVEL = "org.apache.felix.eventadmin.LogLevel";
     static final String PROP_ADD_TIMESTAMP = "org.apache.felix.eventadmin.AddTimestamp";
     static final String PROP_ADD_SUBJECT = "org.apache.felix.eventadmin.AddSubject";
+    static final String PROP_ASYNC_LANES = "org.apache.felix.eventadmin.AsyncLanes";
+    static final String PROP_ASYNC_LANE_CAPACITY = "org.apache.felix.eventadmin.AsyncLaneCapacity";
+    static final String PROP_ASYNC_LANE_BATCH_SIZE = "org.apache.felix.eventadmin.AsyncLaneBatchSize";
+    static final String PROP_ASYNC_LANE_OVERFLOW_POLICY = "org.apache.felix.eventadmin.AsyncLaneOverflowPolicy";
+    static final String PROP_ASYNC_LANE_BLACKLIST = "org.apache.felix.eventadmin.AsyncLaneBlacklist";
 
     /** The bundle context. */
     private final BundleContext m_bundleContext;
@@ -132,6 +157,16 @@ public class Configuration
 
     private boolean m_addSubject;
 
+    private boolean m_asyncLanes;
+
+    private int m_asyncLaneCapacity;
+
+    private int m_asyncLaneBatchSize;
+
+    private LaneDeliverTasks.OverflowPolicy m_asyncLaneOverflowPolicy;
+
+    private boolean m_asyncLaneBlacklist;
+
     // The thread pool used - this is a member because we need to close it on stop
     private volatile DefaultThreadPool m_sync_pool;
 
@@ -146,6 +181,9 @@ public class Configuration
     // The registration of the security decorator factory (i.e., the service)
     private volatile ServiceRegistration m_registration;
 
+    // The registration of the delivery lanes MBean
+    private volatile ServiceRegistration m_lanesMBeanRegistration;
+
     // all adapters
     private AbstractAdapter[] m_adapters;
 
@@ -277,6 +315,16 @@ public class Configuration
                     m_bundleContext.getProperty(PROP_ADD_TIMESTAMP), false);
             m_addSubject = getBooleanProperty(
                     m_bundleContext.getProperty(PROP_ADD_SUBJECT), false);
+            m_asyncLanes = getBooleanProperty(
+                    m_bundleContext.getProperty(PROP_ASYNC_LANES), false);
+            m_asyncLaneCapacity = getIntProperty(PROP_ASYNC_LANE_CAPACITY,
+                    m_bundleContext.getProperty(PROP_ASYNC_LANE_CAPACITY), 1000, 1);
+            m_asyncLaneBatchSize = getIntProperty(PROP_ASYNC_LANE_BATCH_SIZE,
+                    m_bundleContext.getProperty(PROP_ASYNC_LANE_BATCH_SIZE), 32, 1);
+            m_asyncLaneOverflowPolicy = LaneDeliverTasks.OverflowPolicy.parse(
+                    m_bundleContext.getProperty(PROP_ASYNC_LANE_OVERFLOW_POLICY));
+            m_asyncLaneBlacklist = getBooleanProperty(
+                    m_bundleContext.getProperty(PROP_ASYNC_LANE_BLACKLIST), false);
         }
         else
         {
@@ -323,6 +371,17 @@ public class Configuration
                     config.get(PROP_ADD_TIMESTAMP), false);
             m_addSubject = getBooleanProperty(
                     config.get(PROP_ADD_SUBJECT), false);
+            m_asyncLanes = getBooleanProperty(
+                    config.get(PROP_ASYNC_LANES), false);
+            m_asyncLaneCapacity = getIntProperty(PROP_ASYNC_LANE_CAPACITY,
+                    config.get(PROP_ASYNC_LANE_CAPACITY), 1000, 1);
+            m_asyncLaneBatchSize = getIntProperty(PROP_ASYNC_LANE_BATCH_SIZE,
+                    config.get(PROP_ASYNC_LANE_BATCH_SIZE), 32, 1);
+            final Object valueOP = config.get(PROP_ASYNC_LANE_OVERFLOW_POLICY);
+            m_asyncLaneOverflowPolicy = LaneDeliverTasks.OverflowPolicy.parse(
+                    valueOP != null ? valueOP.toString() : null);
+            m_asyncLaneBlacklist = getBooleanProperty(
+                    config.get(PROP_ASYNC_LANE_BLACKLIST), false);
         }
         // a timeout less or equals to 100 means : disable timeout
         if ( m_timeout <= 100 )
@@ -347,6 +406,8 @@ public class Configuration
                 PROP_TIMEOUT + "=" + m_timeout);
         LogWrapper.getLogger().log(LogWrapper.LOG_DEBUG,
                 PROP_REQUIRE_TOPIC + "=" + m_requireTopic);
+        LogWrapper.getLogger().log(LogWrapper.LOG_DEBUG,
+                PROP_ASYNC_LANES + "=" + m_asyncLanes);
 
         // Note that this uses a lazy thread pool that will create new threads on
         // demand - in case none of its cached threads is free - until threadPoolSize
@@ -380,7 +441,12 @@ public class Configuration
                     m_requireTopic,
                     m_ignoreTopics,
                     m_addTimestamp,
-                    m_addSubject);
+                    m_addSubject,
+                    m_asyncLanes,
+                    m_asyncLaneCapacity,
+                    m_asyncLaneBatchSize,
+                    m_asyncLaneOverflowPolicy,
+                    m_asyncLaneBlacklist);
 
             // Finally, adapt the outside events to our kind of events as per spec
             adaptEvents(m_admin);
@@ -390,10 +456,14 @@ public class Configuration
             // appropriated permissions of each calling bundle
             m_registration = m_bundleContext.registerService(EventAdmin.class.getName(),
                     new SecureEventAdminFactory(m_admin), null);
+
+            registerLanesMBean(m_admin);
         }
         else
         {
-            m_admin.update(m_timeout, m_ignoreTimeout, m_requireTopic, m_ignoreTopics, m_addTimestamp, m_addSubject);
+            m_admin.update(m_timeout, m_ignoreTimeout, m_requireTopic, m_ignoreTopics, m_addTimestamp, m_addSubject,
+                    m_asyncLanes, m_asyncLaneCapacity, m_asyncLaneBatchSize, m_asyncLaneOverflowPolicy,
+                    m_asyncLaneBlacklist);
         }
 
     }
@@ -421,6 +491,11 @@ public class Configuration
                 m_managedServiceReg.unregister();
                 m_managedServiceReg = null;
             }
+            if ( m_lanesMBeanRegistration != null )
+            {
+                m_lanesMBeanRegistration.unregister();
+                m_lanesMBeanRegistration = null;
+            }
             // We need to unregister manually
             if ( m_registration != null )
             {
@@ -445,6 +520,27 @@ public class Configuration
         }
     }
 
+    /**
+     * Register the delivery lanes statistics as an MBean service, picked up by the
+     * JMX whiteboard if the management layer is present.
+     */
+    private void registerLanesMBean(final EventAdminImpl admin)
+    {
+        try
+        {
+            final Dictionary<String, Object> props = new Hashtable<>();
+            props.put("jmx.objectname", "org.apache.karaf:type=eventadmin,name="
+                    + m_bundleContext.getProperty("karaf.name"));
+            m_lanesMBeanRegistration = m_bundleContext.registerService(
+                    EventAdminLanesMBean.class.getName(), new EventAdminLanes(admin), props);
+        }
+        catch ( final Throwable t )
+        {
+            LogWrapper.getLogger().log(LogWrapper.LOG_WARNING,
+                    "Unable to register the EventAdmin lanes MBean", t);
+        }
+    }
+
     /**
      * Init the adapters in org.apache.felix.eventadmin.impl.adapter
      */
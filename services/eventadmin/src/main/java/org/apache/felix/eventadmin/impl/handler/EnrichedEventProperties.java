@@ -0,0 +1,193 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.eventadmin.impl.handler;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventConstants;
+import org.osgi.service.event.EventProperties;
+
+/**
+ * Event properties overlaying the timestamp and subject added by the event admin
+ * on top of the properties of the original event.
+ *
+ * <p>The <code>Event</code> constructor does not copy <code>EventProperties</code>,
+ * so wrapping the original event this way avoids copying every property into a new
+ * map on each post. Property lookups are delegated to the original event, and the
+ * key set is only materialized when a handler iterates over the properties.</p>
+ */
+class EnrichedEventProperties extends EventProperties
+{
+    private static final Map<String, Object> EMPTY = Collections.emptyMap();
+
+    private final Event m_event;
+
+    private final Object m_timestamp;
+
+    private final Object m_subject;
+
+    // lazily built view of all properties, topic excluded
+    private volatile Map<String, Object> m_view;
+
+    /**
+     * @param event The original event.
+     * @param timestamp The timestamp to add or <code>null</code>.
+     * @param subject The subject to add or <code>null</code>.
+     */
+    EnrichedEventProperties(final Event event, final Object timestamp, final Object subject)
+    {
+        super(EMPTY);
+        m_event = event;
+        m_timestamp = timestamp;
+        m_subject = subject;
+    }
+
+    /**
+     * Create the enriched event.
+     *
+     * @param event The original event.
+     * @param timestamp The timestamp to add or <code>null</code>.
+     * @param subject The subject to add or <code>null</code>.
+     * @return The new event, sharing the properties of the original one.
+     */
+    static Event enrich(final Event event, final Object timestamp, final Object subject)
+    {
+        return new Event(event.getTopic(), new EnrichedEventProperties(event, timestamp, subject));
+    }
+
+    @Override
+    public Object get(final Object name)
+    {
+        if ( m_timestamp != null && EventConstants.TIMESTAMP.equals(name) )
+        {
+            return m_timestamp;
+        }
+        if ( m_subject != null && EventAdminImpl.SUBJECT.equals(name) )
+        {
+            return m_subject;
+        }
+        if ( name instanceof String && !EventConstants.EVENT_TOPIC.equals(name) )
+        {
+            return m_event.getProperty((String) name);
+        }
+        return null;
+    }
+
+    @Override
+    public boolean containsKey(final Object name)
+    {
+        if ( m_timestamp != null && EventConstants.TIMESTAMP.equals(name) )
+        {
+            return true;
+        }
+        if ( m_subject != null && EventAdminImpl.SUBJECT.equals(name) )
+        {
+            return true;
+        }
+        return name instanceof String && !EventConstants.EVENT_TOPIC.equals(name)
+                && m_event.containsProperty((String) name);
+    }
+
+    @Override
+    public boolean containsValue(final Object value)
+    {
+        return view().containsValue(value);
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet()
+    {
+        return view().entrySet();
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        return view().isEmpty();
+    }
+
+    @Override
+    public Set<String> keySet()
+    {
+        return view().keySet();
+    }
+
+    @Override
+    public int size()
+    {
+        return view().size();
+    }
+
+    @Override
+    public Collection<Object> values()
+    {
+        return view().values();
+    }
+
+    @Override
+    public boolean equals(final Object object)
+    {
+        return object == this || view().equals(object);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return view().hashCode();
+    }
+
+    @Override
+    public String toString()
+    {
+        return view().toString();
+    }
+
+    private Map<String, Object> view()
+    {
+        Map<String, Object> view = m_view;
+        if ( view == null )
+        {
+            final String[] names = m_event.getPropertyNames();
+            final Map<String, Object> map = new HashMap<>(names.length + 2);
+            for ( final String name : names )
+            {
+                if ( !EventConstants.EVENT_TOPIC.equals(name) )
+                {
+                    map.put(name, m_event.getProperty(name));
+                }
+            }
+            if ( m_timestamp != null )
+            {
+                map.put(EventConstants.TIMESTAMP, m_timestamp);
+            }
+            if ( m_subject != null )
+            {
+                map.put(EventAdminImpl.SUBJECT, m_subject);
+            }
+            view = Collections.unmodifiableMap(map);
+            m_view = view;
+        }
+        return view;
+    }
+}
@@ -19,18 +19,27 @@
 package org.apache.felix.eventadmin.impl.handler;
 
 import java.security.AccessController;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 import javax.security.auth.Subject;
 
 import org.apache.felix.eventadmin.impl.tasks.AsyncDeliverTasks;
 import org.apache.felix.eventadmin.impl.tasks.DefaultThreadPool;
+import org.apache.felix.eventadmin.impl.tasks.LaneDeliverTasks;
 import org.apache.felix.eventadmin.impl.tasks.SyncDeliverTasks;
 import org.apache.felix.eventadmin.impl.util.Matchers;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceReference;
 import org.osgi.service.event.Event;
 import org.osgi.service.event.EventAdmin;
 import org.osgi.service.event.EventConstants;
+import org.osgi.service.event.EventHandler;
 
 /**
  * This is the actual implementation of the OSGi R4 Event Admin Service (see the
@@ -53,9 +62,15 @@ public class EventAdminImpl implements EventAdmin
     // The asynchronous event dispatcher
     private final AsyncDeliverTasks m_postManager;
 
+    // The per-handler lanes asynchronous event dispatcher
+    private final LaneDeliverTasks m_laneManager;
+
     // The synchronous event dispatcher
     private final SyncDeliverTasks m_sendManager;
 
+    // true to post events through the per-handler lanes
+    private volatile boolean m_asyncLanes;
+
     // matchers for ignore topics
     private Matchers.Matcher[] m_ignoreTopics;
 
@@ -74,6 +89,11 @@ public class EventAdminImpl implements EventAdmin
      * @param ignoreTopics The array of topics to ignore.
      * @param addTimestamp True to add timestamp to the event, false else.
      * @param addSubject True to add subject to the event, false else.
+     * @param asyncLanes True to post events through per-handler lanes, false else.
+     * @param laneCapacity The maximum number of queued events per handler lane.
+     * @param laneBatchSize The maximum number of events delivered per lane drain.
+     * @param laneOverflowPolicy The policy applied when a lane is full.
+     * @param laneBlacklist True to blacklist handlers exceeding the timeout in a lane.
      */
     public EventAdminImpl(
             final BundleContext bundleContext,
@@ -84,18 +104,36 @@ public class EventAdminImpl implements EventAdmin
             final boolean requireTopic,
             final String[] ignoreTopics,
             final boolean addTimestamp,
-            final boolean addSubject)
+            final boolean addSubject,
+            final boolean asyncLanes,
+            final int laneCapacity,
+            final int laneBatchSize,
+            final LaneDeliverTasks.OverflowPolicy laneOverflowPolicy,
+            final boolean laneBlacklist)
     {
         checkNull(syncPool, "syncPool");
         checkNull(asyncPool, "asyncPool");
 
         this.addTimestamp = addTimestamp;
         this.addSubject = addSubject;
-        this.tracker = new EventHandlerTracker(bundleContext);
-        this.tracker.update(ignoreTimeout, requireTopic);
-        this.tracker.open();
         m_sendManager = new SyncDeliverTasks(syncPool, timeout);
         m_postManager = new AsyncDeliverTasks(asyncPool, m_sendManager);
+        m_laneManager = new LaneDeliverTasks(asyncPool, laneCapacity, laneBatchSize,
+                laneOverflowPolicy, timeout, laneBlacklist);
+        m_asyncLanes = asyncLanes;
+        this.tracker = new EventHandlerTracker(bundleContext)
+        {
+            @Override
+            public void removedService(final ServiceReference<EventHandler> reference,
+                                       final EventHandlerProxy proxy)
+            {
+                super.removedService(reference, proxy);
+                // the proxy is disposed, release its lane
+                m_laneManager.remove(proxy);
+            }
+        };
+        this.tracker.update(ignoreTimeout, requireTopic);
+        this.tracker.open();
         m_ignoreTopics = Matchers.createEventTopicMatchers(ignoreTopics);
     }
 
@@ -138,33 +176,36 @@ public class EventAdminImpl implements EventAdmin
 
     static final String SUBJECT = "subject";
 
-    private Event prepareEvent(Event event) {
-        boolean needTimeStamp = addTimestamp && !event.containsProperty(EventConstants.TIMESTAMP);
-        boolean needSubject = addSubject && !event.containsProperty(SUBJECT);
-        Subject subject = null;
-        if (needSubject) {
-            subject = Subject.getSubject(AccessController.getContext());
-            needSubject = (subject != null);
-        }
-        if (needTimeStamp || needSubject) {
-            String[] names = event.getPropertyNames();
-            HashMap<String, Object> map = new HashMap<>(names.length + 1);
-            for (String name : names) {
-                if (!EventConstants.EVENT_TOPIC.equals(name)) {
-                    map.put(name, event.getProperty(name));
-                }
-            }
-            if (needTimeStamp) {
-                map.put(EventConstants.TIMESTAMP, System.currentTimeMillis());
-            }
-            if (needSubject) {
-                map.put(SUBJECT, subject);
-            }
-            event = new Event(event.getTopic(), map);
+    /**
+     * Add the timestamp and subject properties if configured. The original
+     * properties are not copied, the new event overlays the added ones on top
+     * of the original event.
+     *
+     * @param event The event.
+     * @return The event to deliver.
+     */
+    private Event prepareEvent(final Event event) {
+        final Object timestamp = addTimestamp && !event.containsProperty(EventConstants.TIMESTAMP)
+                ? System.currentTimeMillis() : null;
+        final Object subject = addSubject && !event.containsProperty(SUBJECT)
+                ? getSubject() : null;
+        if (timestamp != null || subject != null) {
+            return EnrichedEventProperties.enrich(event, timestamp, subject);
         }
         return event;
     }
 
+    /**
+     * Get the subject of the calling thread. Looking up the access control
+     * context walks the whole stack, so callers only do it once they know
+     * the event is delivered to at least one handler.
+     *
+     * @return The subject or <code>null</code>.
+     */
+    private static Subject getSubject() {
+        return Subject.getSubject(AccessController.getContext());
+    }
+
     /**
      * Post an asynchronous event.
      *
@@ -177,7 +218,20 @@ public class EventAdminImpl implements EventAdmin
     {
         if ( checkTopic( event ) )
         {
-            m_postManager.execute(this.getTracker().getHandlers(event), prepareEvent(event));
+            final Collection<EventHandlerProxy> handlers = this.getTracker().getHandlers(event);
+            // no need to enrich an event nobody listens to
+            if ( handlers.isEmpty() )
+            {
+                return;
+            }
+            if ( m_asyncLanes )
+            {
+                m_laneManager.execute(handlers, prepareEvent(event));
+            }
+            else
+            {
+                m_postManager.execute(handlers, prepareEvent(event));
+            }
         }
     }
 
@@ -193,7 +247,12 @@ public class EventAdminImpl implements EventAdmin
     {
         if ( checkTopic( event ) )
         {
-            m_sendManager.execute(this.getTracker().getHandlers(event), prepareEvent(event), false);
+            final Collection<EventHandlerProxy> handlers = this.getTracker().getHandlers(event);
+            if ( handlers.isEmpty() )
+            {
+                return;
+            }
+            m_sendManager.execute(handlers, prepareEvent(event), false);
         }
     }
 
@@ -215,23 +274,86 @@ public class EventAdminImpl implements EventAdmin
      * @param ignoreTopics The array of topic to ignore.
      * @param addTimestamp True to add timestamp to the event, false else.
      * @param addSubject True to add subject to the event, false else.
+     * @param asyncLanes True to post events through per-handler lanes, false else.
+     * @param laneCapacity The maximum number of queued events per handler lane.
+     * @param laneBatchSize The maximum number of events delivered per lane drain.
+     * @param laneOverflowPolicy The policy applied when a lane is full.
+     * @param laneBlacklist True to blacklist handlers exceeding the timeout in a lane.
      */
     public void update(final int timeout,
                        final String[] ignoreTimeout,
                        final boolean requireTopic,
                        final String[] ignoreTopics,
                        final boolean addTimestamp,
-                       final boolean addSubject)
+                       final boolean addSubject,
+                       final boolean asyncLanes,
+                       final int laneCapacity,
+                       final int laneBatchSize,
+                       final LaneDeliverTasks.OverflowPolicy laneOverflowPolicy,
+                       final boolean laneBlacklist)
     {
         this.addTimestamp = addTimestamp;
         this.addSubject = addSubject;
         this.tracker.close();
         this.tracker.update(ignoreTimeout, requireTopic);
         this.m_sendManager.update(timeout);
+        this.m_laneManager.update(laneCapacity, laneBatchSize, laneOverflowPolicy, timeout, laneBlacklist);
+        this.m_asyncLanes = asyncLanes;
         this.tracker.open();
         this.m_ignoreTopics = Matchers.createEventTopicMatchers(ignoreTopics);
     }
 
+    /**
+     * Take a snapshot of the per-handler lanes statistics, keyed by a readable
+     * name of the event handler service.
+     *
+     * @return The lanes statistics.
+     */
+    public Map<String, LaneDeliverTasks.LaneStatistics> getLaneStatistics()
+    {
+        final Map<EventHandlerProxy, String> names = new IdentityHashMap<>();
+        final EventHandlerTracker localTracker = tracker;
+        if ( localTracker != null )
+        {
+            final Map<ServiceReference<EventHandler>, EventHandlerProxy> tracked = localTracker.getTracked();
+            for ( final Map.Entry<ServiceReference<EventHandler>, EventHandlerProxy> entry : tracked.entrySet() )
+            {
+                names.put(entry.getValue(), getHandlerName(entry.getKey()));
+            }
+        }
+        final Map<String, LaneDeliverTasks.LaneStatistics> result = new TreeMap<>();
+        final List<LaneDeliverTasks.LaneStatistics> stale = new ArrayList<>();
+        for ( final LaneDeliverTasks.LaneStatistics stats : m_laneManager.getStatistics() )
+        {
+            final String name = names.get(stats.getHandler());
+            if ( name != null )
+            {
+                result.put(name, stats);
+            }
+            else
+            {
+                stale.add(stats);
+            }
+        }
+        // lanes of handlers (un)registered while taking the snapshot
+        for ( int i = 0; i < stale.size(); i++ )
+        {
+            result.put("<untracked handler " + i + ">", stale.get(i));
+        }
+        return result;
+    }
+
+    private static String getHandlerName(final ServiceReference<?> reference)
+    {
+        final StringBuilder sb = new StringBuilder();
+        if ( reference.getBundle() != null )
+        {
+            sb.append(reference.getBundle().getSymbolicName()).append(' ');
+        }
+        sb.append('[').append(reference.getProperty(Constants.SERVICE_ID)).append(']');
+        return sb.toString();
+    }
+
     /**
      * This is a utility method that will throw a <code>NullPointerException</code>
      * in case that the given object is null. The message will be of the form
@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.eventadmin.impl.handler;
+
+import java.util.Map;
+
+import javax.management.MBeanException;
+import javax.management.NotCompliantMBeanException;
+import javax.management.StandardMBean;
+import javax.management.openmbean.ArrayType;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+import javax.management.openmbean.TabularData;
+import javax.management.openmbean.TabularDataSupport;
+import javax.management.openmbean.TabularType;
+
+import org.apache.felix.eventadmin.impl.tasks.LaneDeliverTasks;
+
+/**
+ * Implementation of the {@link EventAdminLanesMBean}.
+ */
+public class EventAdminLanes extends StandardMBean implements EventAdminLanesMBean
+{
+    private static final String[] COLUMNS = new String[] {
+            "Handler", "QueueDepth", "Delivered", "Dropped", "Blacklisted",
+            "LatencyP50", "LatencyP99", "LatencyHistogram" };
+
+    private final EventAdminImpl m_admin;
+
+    public EventAdminLanes(final EventAdminImpl admin) throws NotCompliantMBeanException
+    {
+        super(EventAdminLanesMBean.class);
+        m_admin = admin;
+    }
+
+    @Override
+    public TabularData getLanes() throws MBeanException
+    {
+        try
+        {
+            final CompositeType type = new CompositeType("Lane", "EventAdmin delivery lane",
+                    COLUMNS,
+                    new String[] { "Event handler service", "Number of queued events",
+                            "Number of delivered events", "Number of dropped events",
+                            "True if the handler has been blacklisted",
+                            "Median handler latency in microseconds",
+                            "99th percentile handler latency in microseconds",
+                            "Deliveries per latency bucket, bucket i counts latencies below 2^i microseconds" },
+                    new OpenType[] { SimpleType.STRING, SimpleType.INTEGER, SimpleType.LONG, SimpleType.LONG,
+                            SimpleType.BOOLEAN, SimpleType.LONG, SimpleType.LONG,
+                            ArrayType.getPrimitiveArrayType(long[].class) });
+            final TabularType tableType = new TabularType("Lanes", "EventAdmin delivery lanes",
+                    type, new String[] { "Handler" });
+            final TabularData table = new TabularDataSupport(tableType);
+            for ( final Map.Entry<String, LaneDeliverTasks.LaneStatistics> entry : m_admin.getLaneStatistics().entrySet() )
+            {
+                final LaneDeliverTasks.LaneStatistics stats = entry.getValue();
+                final CompositeData data = new CompositeDataSupport(type, COLUMNS,
+                        new Object[] { entry.getKey(), stats.getQueueDepth(), stats.getDelivered(),
+                                stats.getDropped(), stats.isBlacklisted(),
+                                stats.getLatencyPercentile(50), stats.getLatencyPercentile(99),
+                                stats.getHistogram() });
+                table.put(data);
+            }
+            return table;
+        }
+        catch ( final Exception e )
+        {
+            throw new MBeanException(null, e.toString());
+        }
+    }
+}
@@ -0,0 +1,506 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.eventadmin.impl.tasks;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.felix.eventadmin.impl.handler.EventHandlerProxy;
+import org.apache.felix.eventadmin.impl.util.LogWrapper;
+import org.osgi.service.event.Event;
+
+/**
+ * This class does the actual work of the asynchronous event dispatch when
+ * per-handler delivery lanes are enabled.
+ *
+ * <p>Each <code>EventHandler</code> gets its own lane: a bounded queue that is
+ * drained in batches by a single pool thread at a time. Events are delivered to
+ * a given handler in the order they have been posted, and a slow handler can at
+ * most occupy one thread of the asynchronous pool instead of exhausting it for
+ * every other subscriber.</p>
+ *
+ * <p>When a lane is full, the configured {@link OverflowPolicy} decides whether
+ * the posting thread waits for room or an event is dropped. Optionally, a handler
+ * that exceeds the timeout while processing an event is blacklisted.</p>
+ */
+public class LaneDeliverTasks
+{
+    /**
+     * What to do when an event is posted to a lane that is full.
+     */
+    public enum OverflowPolicy
+    {
+        /** Wait for room in the lane (bounded by the timeout if any), then drop the new event. */
+        BLOCK,
+        /** Drop the event being posted. */
+        DROP_NEWEST,
+        /** Drop the oldest queued event to make room for the new one. */
+        DROP_OLDEST;
+
+        /**
+         * Parse a policy name, case insensitive.
+         *
+         * @param value The policy name.
+         * @return The matching policy or {@link #BLOCK} if the value is unknown.
+         */
+        public static OverflowPolicy parse(final String value)
+        {
+            if ( value != null )
+            {
+                try
+                {
+                    return valueOf(value.trim().toUpperCase(Locale.ENGLISH));
+                }
+                catch ( final IllegalArgumentException e )
+                {
+                    LogWrapper.getLogger().log(LogWrapper.LOG_WARNING,
+                            "Unknown lane overflow policy: " + value + " - Using " + BLOCK);
+                }
+            }
+            return BLOCK;
+        }
+    }
+
+    /** Number of latency histogram buckets, bucket i holds latencies below 2^i microseconds. */
+    public static final int HISTOGRAM_BUCKETS = 24;
+
+    /** The thread pool used to drain the lanes. */
+    private final DefaultThreadPool m_pool;
+
+    /** The lanes, one per event handler. */
+    private final ConcurrentMap<EventHandlerProxy, Lane> m_lanes = new ConcurrentHashMap<>();
+
+    /** The disposed handlers, a post racing with the removal must not create a new lane for them. */
+    private final Set<EventHandlerProxy> m_removed =
+            Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<EventHandlerProxy, Boolean>()));
+
+    private volatile int m_capacity;
+
+    private volatile int m_batchSize;
+
+    private volatile OverflowPolicy m_overflowPolicy;
+
+    private volatile long m_timeoutNanos;
+
+    private volatile boolean m_blacklistOnTimeout;
+
+    /**
+     * Create a new lane dispatcher.
+     *
+     * @param pool The thread pool used to drain the lanes.
+     * @param capacity The maximum number of queued events per handler.
+     * @param batchSize The maximum number of events delivered per pool task.
+     * @param overflowPolicy The policy applied when a lane is full.
+     * @param timeout The handler timeout in milliseconds, 0 to disable.
+     * @param blacklistOnTimeout True to blacklist handlers exceeding the timeout.
+     */
+    public LaneDeliverTasks(final DefaultThreadPool pool,
+                            final int capacity,
+                            final int batchSize,
+                            final OverflowPolicy overflowPolicy,
+                            final int timeout,
+                            final boolean blacklistOnTimeout)
+    {
+        m_pool = pool;
+        update(capacity, batchSize, overflowPolicy, timeout, blacklistOnTimeout);
+    }
+
+    /**
+     * Update the lane configuration. Existing lanes pick up the new values
+     * with their next event.
+     *
+     * @param capacity The maximum number of queued events per handler.
+     * @param batchSize The maximum number of events delivered per pool task.
+     * @param overflowPolicy The policy applied when a lane is full.
+     * @param timeout The handler timeout in milliseconds, 0 to disable.
+     * @param blacklistOnTimeout True to blacklist handlers exceeding the timeout.
+     */
+    public void update(final int capacity,
+                       final int batchSize,
+                       final OverflowPolicy overflowPolicy,
+                       final int timeout,
+                       final boolean blacklistOnTimeout)
+    {
+        m_capacity = Math.max(1, capacity);
+        m_batchSize = Math.max(1, batchSize);
+        m_overflowPolicy = overflowPolicy != null ? overflowPolicy : OverflowPolicy.BLOCK;
+        m_timeoutNanos = timeout > 0 ? TimeUnit.MILLISECONDS.toNanos(timeout) : 0;
+        m_blacklistOnTimeout = blacklistOnTimeout;
+    }
+
+    /**
+     * Queue the event in the lane of each handler.
+     *
+     * @param tasks The event handler dispatch tasks to execute
+     * @param event The event to deliver
+     */
+    public void execute(final Collection<EventHandlerProxy> tasks, final Event event)
+    {
+        for ( final EventHandlerProxy task : tasks )
+        {
+            Lane lane;
+            do
+            {
+                lane = m_lanes.computeIfAbsent(task, this::createLane);
+            }
+            while ( lane != null && !lane.offer(event) );
+        }
+    }
+
+    private Lane createLane(final EventHandlerProxy handler)
+    {
+        return m_removed.contains(handler) ? null : new Lane(handler);
+    }
+
+    /**
+     * Release the lane of a handler that has been disposed. Its pending events
+     * are dropped as the handler can't receive them anymore.
+     *
+     * @param handler The disposed event handler.
+     */
+    public void remove(final EventHandlerProxy handler)
+    {
+        // mark the handler first so that a concurrent post doesn't recreate the lane
+        m_removed.add(handler);
+        final Lane lane = m_lanes.remove(handler);
+        if ( lane != null )
+        {
+            lane.retire();
+        }
+    }
+
+    /**
+     * Take a snapshot of the statistics of all lanes.
+     *
+     * @return The statistics, one entry per lane.
+     */
+    public List<LaneStatistics> getStatistics()
+    {
+        final List<LaneStatistics> result = new ArrayList<>(m_lanes.size());
+        for ( final Lane lane : m_lanes.values() )
+        {
+            result.add(lane.snapshot());
+        }
+        return result;
+    }
+
+    /**
+     * Point in time statistics of a single lane.
+     */
+    public static class LaneStatistics
+    {
+        private final EventHandlerProxy m_handler;
+        private final int m_queueDepth;
+        private final long m_delivered;
+        private final long m_dropped;
+        private final boolean m_blacklisted;
+        private final long[] m_histogram;
+
+        LaneStatistics(final EventHandlerProxy handler, final int queueDepth, final long delivered,
+                       final long dropped, final boolean blacklisted, final long[] histogram)
+        {
+            m_handler = handler;
+            m_queueDepth = queueDepth;
+            m_delivered = delivered;
+            m_dropped = dropped;
+            m_blacklisted = blacklisted;
+            m_histogram = histogram;
+        }
+
+        public EventHandlerProxy getHandler()
+        {
+            return m_handler;
+        }
+
+        public int getQueueDepth()
+        {
+            return m_queueDepth;
+        }
+
+        public long getDelivered()
+        {
+            return m_delivered;
+        }
+
+        public long getDropped()
+        {
+            return m_dropped;
+        }
+
+        public boolean isBlacklisted()
+        {
+            return m_blacklisted;
+        }
+
+        /**
+         * @return The latency histogram, bucket i counts deliveries that took
+         * less than 2^i microseconds, the last bucket counts everything above.
+         */
+        public long[] getHistogram()
+        {
+            return m_histogram.clone();
+        }
+
+        /**
+         * Estimate a latency percentile from the histogram.
+         *
+         * @param percentile The percentile, between 0 and 100.
+         * @return The upper bound in microseconds of the bucket holding the percentile.
+         */
+        public long getLatencyPercentile(final double percentile)
+        {
+            long total = 0;
+            for ( final long count : m_histogram )
+            {
+                total += count;
+            }
+            if ( total == 0 )
+            {
+                return 0;
+            }
+            final long rank = (long) Math.ceil(total * percentile / 100.0);
+            long seen = 0;
+            for ( int i = 0; i < m_histogram.length; i++ )
+            {
+                seen += m_histogram[i];
+                if ( seen >= rank )
+                {
+                    return 1L << i;
+                }
+            }
+            return 1L << (m_histogram.length - 1);
+        }
+    }
+
+    /**
+     * A lane queues the events of one handler and drains them on the pool.
+     */
+    private final class Lane implements Runnable
+    {
+        private final EventHandlerProxy m_handler;
+
+        private final ArrayDeque<Event> m_queue = new ArrayDeque<>();
+
+        private final AtomicLong m_delivered = new AtomicLong();
+
+        private final AtomicLong m_dropped = new AtomicLong();
+
+        private final AtomicLongArray m_histogram = new AtomicLongArray(HISTOGRAM_BUCKETS);
+
+        private volatile boolean m_blacklisted;
+
+        // guarded by this
+        private boolean m_scheduled;
+
+        // guarded by this
+        private boolean m_retired;
+
+        // guarded by this
+        private Thread m_drainer;
+
+        Lane(final EventHandlerProxy handler)
+        {
+            m_handler = handler;
+        }
+
+        /**
+         * Queue an event.
+         *
+         * @return false if the lane has been retired and a new one must be used.
+         */
+        boolean offer(final Event event)
+        {
+            final boolean schedule;
+            synchronized ( this )
+            {
+                if ( m_retired )
+                {
+                    return false;
+                }
+                if ( m_blacklisted )
+                {
+                    m_dropped.incrementAndGet();
+                    return true;
+                }
+                if ( m_queue.size() >= m_capacity && !makeRoom() )
+                {
+                    if ( m_retired )
+                    {
+                        return false;
+                    }
+                    m_dropped.incrementAndGet();
+                    return true;
+                }
+                m_queue.add(event);
+                schedule = !m_scheduled;
+                m_scheduled = true;
+            }
+            if ( schedule )
+            {
+                m_pool.executeTask(this);
+            }
+            return true;
+        }
+
+        /**
+         * Apply the overflow policy on a full lane.
+         *
+         * @return true if the new event can be queued.
+         */
+        private boolean makeRoom()
+        {
+            switch ( m_overflowPolicy )
+            {
+                case DROP_NEWEST:
+                    return false;
+                case DROP_OLDEST:
+                    m_queue.poll();
+                    m_dropped.incrementAndGet();
+                    return true;
+                default:
+                    // a handler posting to itself can't wait for its own lane
+                    if ( m_drainer == Thread.currentThread() )
+                    {
+                        return false;
+                    }
+                    final long timeout = m_timeoutNanos;
+                    final long deadline = System.nanoTime() + timeout;
+                    try
+                    {
+                        while ( m_queue.size() >= m_capacity && !m_retired && !m_blacklisted )
+                        {
+                            if ( timeout == 0 )
+                            {
+                                wait();
+                            }
+                            else
+                            {
+                                final long remaining = deadline - System.nanoTime();
+                                if ( remaining <= 0 )
+                                {
+                                    return false;
+                                }
+                                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                            }
+                        }
+                    }
+                    catch ( final InterruptedException e )
+                    {
+                        Thread.currentThread().interrupt();
+                        return false;
+                    }
+                    return m_queue.size() < m_capacity && !m_retired && !m_blacklisted;
+            }
+        }
+
+        synchronized void retire()
+        {
+            m_retired = true;
+            m_dropped.addAndGet(m_queue.size());
+            m_queue.clear();
+            notifyAll();
+        }
+
+        @Override
+        public void run()
+        {
+            final Event[] batch;
+            synchronized ( this )
+            {
+                batch = new Event[Math.min(m_queue.size(), m_batchSize)];
+                for ( int i = 0; i < batch.length; i++ )
+                {
+                    batch[i] = m_queue.poll();
+                }
+                m_drainer = Thread.currentThread();
+                notifyAll();
+            }
+            for ( final Event event : batch )
+            {
+                if ( m_blacklisted )
+                {
+                    break;
+                }
+                deliver(event);
+            }
+            final boolean more;
+            synchronized ( this )
+            {
+                m_drainer = null;
+                if ( m_blacklisted )
+                {
+                    m_dropped.addAndGet(m_queue.size());
+                    m_queue.clear();
+                    notifyAll();
+                }
+                more = !m_queue.isEmpty();
+                m_scheduled = more;
+            }
+            if ( more )
+            {
+                // resubmit instead of looping so other lanes get their turn
+                m_pool.executeTask(this);
+            }
+        }
+
+        private void deliver(final Event event)
+        {
+            final long start = System.nanoTime();
+            m_handler.sendEvent(event);
+            final long elapsed = System.nanoTime() - start;
+            m_delivered.incrementAndGet();
+            final long micros = TimeUnit.NANOSECONDS.toMicros(elapsed);
+            final int bucket = Math.min(HISTOGRAM_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+            m_histogram.incrementAndGet(bucket);
+            final long timeout = m_timeoutNanos;
+            if ( m_blacklistOnTimeout && timeout > 0 && elapsed > timeout )
+            {
+                m_handler.blackListHandler();
+                m_blacklisted = true;
+            }
+        }
+
+        LaneStatistics snapshot()
+        {
+            final int depth;
+            synchronized ( this )
+            {
+                depth = m_queue.size();
+            }
+            final long[] histogram = new long[HISTOGRAM_BUCKETS];
+            for ( int i = 0; i < histogram.length; i++ )
+            {
+                histogram[i] = m_histogram.get(i);
+            }
+            return new LaneStatistics(m_handler, depth, m_delivered.get(), m_dropped.get(),
+                    m_blacklisted, histogram);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.eventadmin.impl.handler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.security.auth.Subject;
+
+import org.junit.Test;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventConstants;
+
+public class EnrichedEventPropertiesTest
+{
+    private static final String TOPIC = "org/apache/karaf/test";
+
+    @Test
+    public void testLookupsDelegateToOriginalEvent()
+    {
+        final Subject subject = new Subject();
+        final Event event = EnrichedEventProperties.enrich(original(), 42L, subject);
+
+        assertEquals(TOPIC, event.getTopic());
+        assertEquals(1, event.getProperty("a"));
+        assertEquals("x", event.getProperty("b"));
+        assertEquals(42L, event.getProperty(EventConstants.TIMESTAMP));
+        assertSame(subject, event.getProperty(EventAdminImpl.SUBJECT));
+        assertNull(event.getProperty("missing"));
+
+        assertTrue(event.containsProperty("a"));
+        assertTrue(event.containsProperty(EventConstants.TIMESTAMP));
+        assertTrue(event.containsProperty(EventAdminImpl.SUBJECT));
+        assertTrue(event.containsProperty(EventConstants.EVENT_TOPIC));
+        assertFalse(event.containsProperty("missing"));
+    }
+
+    @Test
+    public void testPropertyNames()
+    {
+        final Event event = EnrichedEventProperties.enrich(original(), 42L, new Subject());
+
+        assertEquals(new HashSet<>(Arrays.asList("a", "b", EventConstants.TIMESTAMP, EventAdminImpl.SUBJECT,
+                EventConstants.EVENT_TOPIC)), new HashSet<>(Arrays.asList(event.getPropertyNames())));
+    }
+
+    @Test
+    public void testOnlyAddedPropertiesAreOverlaid()
+    {
+        final Event event = EnrichedEventProperties.enrich(original(), null, "someone");
+
+        assertNull(event.getProperty(EventConstants.TIMESTAMP));
+        assertFalse(event.containsProperty(EventConstants.TIMESTAMP));
+        assertEquals("someone", event.getProperty(EventAdminImpl.SUBJECT));
+        assertEquals(new HashSet<>(Arrays.asList("a", "b", EventAdminImpl.SUBJECT, EventConstants.EVENT_TOPIC)),
+                new HashSet<>(Arrays.asList(event.getPropertyNames())));
+    }
+
+    @Test
+    public void testEqualsEventWithCopiedProperties()
+    {
+        final Event event = EnrichedEventProperties.enrich(original(), 42L, null);
+
+        final Map<String, Object> copy = new HashMap<>();
+        copy.put("a", 1);
+        copy.put("b", "x");
+        copy.put(EventConstants.TIMESTAMP, 42L);
+        assertEquals(new Event(TOPIC, copy), event);
+        assertEquals(new Event(TOPIC, copy).hashCode(), event.hashCode());
+    }
+
+    @Test
+    public void testViewBuiltLazily()
+    {
+        final AtomicInteger iterations = new AtomicInteger();
+        final Event original = new Event(TOPIC, properties())
+        {
+            @Override
+            public String[] getPropertyNames()
+            {
+                iterations.incrementAndGet();
+                return super.getPropertyNames();
+            }
+        };
+        final Event event = EnrichedEventProperties.enrich(original, 42L, null);
+
+        // lookups don't iterate over the properties of the original event
+        assertEquals(1, event.getProperty("a"));
+        assertEquals(42L, event.getProperty(EventConstants.TIMESTAMP));
+        assertTrue(event.containsProperty("b"));
+        assertEquals(0, iterations.get());
+
+        // the view is built once, when a handler iterates
+        assertEquals(4, event.getPropertyNames().length);
+        assertEquals(4, event.getPropertyNames().length);
+        assertEquals(1, iterations.get());
+    }
+
+    private static Event original()
+    {
+        return new Event(TOPIC, properties());
+    }
+
+    private static Map<String, Object> properties()
+    {
+        final Map<String, Object> properties = new HashMap<>();
+        properties.put("a", 1);
+        properties.put("b", "x");
+        return properties;
+    }
+}
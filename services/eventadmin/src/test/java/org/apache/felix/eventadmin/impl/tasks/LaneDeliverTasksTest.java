@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.eventadmin.impl.tasks;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.getCurrentArguments;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.felix.eventadmin.impl.handler.EventHandlerProxy;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.service.event.Event;
+
+public class LaneDeliverTasksTest
+{
+    private static final int EVENTS = 200;
+
+    private ExecutorService m_executor;
+
+    private LaneDeliverTasks m_lanes;
+
+    @Before
+    public void setUp()
+    {
+        m_executor = Executors.newFixedThreadPool(4);
+        final DefaultThreadPool pool = createMock(DefaultThreadPool.class);
+        pool.executeTask(anyObject(Runnable.class));
+        expectLastCall().andAnswer(() -> {
+            m_executor.execute((Runnable) getCurrentArguments()[0]);
+            return null;
+        }).anyTimes();
+        replay(pool);
+        m_lanes = new LaneDeliverTasks(pool, 16, 4, LaneDeliverTasks.OverflowPolicy.BLOCK, 0, false);
+    }
+
+    @After
+    public void tearDown()
+    {
+        m_executor.shutdownNow();
+    }
+
+    @Test
+    public void testPerHandlerOrdering() throws Exception
+    {
+        final CountDownLatch done = new CountDownLatch(2 * EVENTS);
+        final List<Integer> fast = Collections.synchronizedList(new ArrayList<>());
+        final List<Integer> slow = Collections.synchronizedList(new ArrayList<>());
+        final EventHandlerProxy fastHandler = handler(fast, null, null, done, 0);
+        final EventHandlerProxy slowHandler = handler(slow, null, null, done, 1);
+
+        for ( int i = 0; i < EVENTS; i++ )
+        {
+            m_lanes.execute(Arrays.asList(fastHandler, slowHandler), event(i));
+        }
+
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        final List<Integer> expected = new ArrayList<>();
+        for ( int i = 0; i < EVENTS; i++ )
+        {
+            expected.add(i);
+        }
+        assertEquals(expected, fast);
+        assertEquals(expected, slow);
+        assertEquals(2, m_lanes.getStatistics().size());
+        for ( final LaneDeliverTasks.LaneStatistics stats : m_lanes.getStatistics() )
+        {
+            assertEquals(EVENTS, stats.getDelivered());
+            assertEquals(0, stats.getDropped());
+            assertEquals(0, stats.getQueueDepth());
+        }
+    }
+
+    @Test
+    public void testLaneRemovedWithHandler() throws Exception
+    {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch delivered = new CountDownLatch(1);
+        final List<Integer> received = Collections.synchronizedList(new ArrayList<>());
+        final EventHandlerProxy handler = handler(received, started, release, delivered, 0);
+
+        // the handler is busy with the first event while the next ones are queued
+        m_lanes.execute(Collections.singletonList(handler), event(0));
+        assertTrue(started.await(30, TimeUnit.SECONDS));
+        for ( int i = 1; i < 3; i++ )
+        {
+            m_lanes.execute(Collections.singletonList(handler), event(i));
+        }
+        assertEquals(1, m_lanes.getStatistics().size());
+        assertEquals(2, m_lanes.getStatistics().get(0).getQueueDepth());
+
+        m_lanes.remove(handler);
+        assertTrue(m_lanes.getStatistics().isEmpty());
+
+        // a post racing with the removal must not bring the lane back
+        m_lanes.execute(Collections.singletonList(handler), event(3));
+        assertTrue(m_lanes.getStatistics().isEmpty());
+
+        release.countDown();
+        assertTrue(delivered.await(30, TimeUnit.SECONDS));
+        m_executor.shutdown();
+        assertTrue(m_executor.awaitTermination(30, TimeUnit.SECONDS));
+        // only the event already handed to the handler has been delivered
+        assertEquals(Collections.singletonList(0), received);
+    }
+
+    private static Event event(final int index)
+    {
+        return new Event("org/apache/felix/eventadmin/test", Collections.singletonMap("index", index));
+    }
+
+    private static EventHandlerProxy handler(final List<Integer> received,
+                                             final CountDownLatch started,
+                                             final CountDownLatch release,
+                                             final CountDownLatch delivered,
+                                             final long sleep)
+    {
+        final EventHandlerProxy handler = createMock(EventHandlerProxy.class);
+        handler.sendEvent(anyObject(Event.class));
+        expectLastCall().andAnswer(() -> {
+            if ( started != null )
+            {
+                started.countDown();
+                release.await();
+            }
+            if ( sleep > 0 )
+            {
+                Thread.sleep(sleep);
+            }
+            received.add((Integer) ((Event) getCurrentArguments()[0]).getProperty("index"));
+            delivered.countDown();
+            return null;
+        }).anyTimes();
+        replay(handler);
+        return handler;
+    }
+}
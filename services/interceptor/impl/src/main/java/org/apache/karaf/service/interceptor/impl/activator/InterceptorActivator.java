@@ -76,6 +76,7 @@ public class InterceptorActivator implements BundleActivator {
         context.removeServiceListener(interceptedServiceRegistry);
         hooksRegistration.unregister();
         proxiesManager.stop();
+        interceptorRegistry.stop();
     }
 
     private void onServiceAddition(final ServiceReference<?> ref) {
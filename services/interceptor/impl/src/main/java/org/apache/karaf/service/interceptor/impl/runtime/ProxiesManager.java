@@ -27,6 +27,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.stream.Stream;
 
+import org.apache.karaf.service.interceptor.impl.runtime.invoker.ServiceHandle;
 import org.apache.karaf.service.interceptor.impl.runtime.proxy.ProxyFactory;
 import org.apache.karaf.service.interceptor.impl.runtime.registry.InterceptedServiceRegistry;
 import org.apache.karaf.service.interceptor.impl.runtime.registry.InterceptorRegistry;
@@ -42,6 +43,7 @@ public class ProxiesManager {
     private final InterceptedServiceRegistry services;
 
     private final Map<ServiceReference<?>, ServiceRegistration<?>> registrationPerReference = new ConcurrentHashMap<>();
+    private final Map<ServiceReference<?>, ServiceHandle<?>> servicePerReference = new ConcurrentHashMap<>();
     private final Map<ServiceReference<?>, List<Class<?>>> bindingPerReference = new ConcurrentHashMap<>();
     private final Map<Class<?>, Collection<ServiceReference<?>>> referencesPerBinding = new ConcurrentHashMap<>();
 
@@ -71,8 +73,7 @@ public class ProxiesManager {
         ofNullable(referencesPerBinding.get(bindingClass))
                 .ifPresent(references -> references.stream()
                         .filter(registrationPerReference::containsKey)
-                        .forEach(ref -> ofNullable(registrationPerReference.remove(ref))
-                                .ifPresent(ServiceRegistration::unregister)));
+                        .forEach(this::unregisterProxy));
     }
 
     public <T> void onInterceptedInstanceAddition(final ServiceReference<T> ref) {
@@ -93,8 +94,7 @@ public class ProxiesManager {
             }
         });
         bindingPerReference.remove(ref);
-        ofNullable(registrationPerReference.remove(ref))
-                .ifPresent(ServiceRegistration::unregister);
+        unregisterProxy(ref);
     }
 
     private <T> Stream<? extends Class<?>> toBindings(final ServiceReference<T> ref) {
@@ -117,17 +117,28 @@ public class ProxiesManager {
 
         // drop interceptors property to let it be forwarded
         final Hashtable<String, Object> properties = propertiesManager.collectProperties(ref);
+        final ServiceHandle<T> service = new ServiceHandle<>(ref);
+        servicePerReference.put(ref, service);
         final T proxy = proxyFactory.create(
-                ref, classes,
-                interceptors.getInterceptors(bindingPerReference.get(ref)),
-                services.getInterceptorsPerMethod(ref));
+                service, classes,
+                interceptors, services.getInterceptorsPerMethod(ref));
         return context.registerService(classes.stream().map(Class::getName).toArray(String[]::new), proxy, properties);
     }
 
+    // the service is released once the proxy is unregistered to not release it while it is still used
+    private void unregisterProxy(final ServiceReference<?> ref) {
+        ofNullable(registrationPerReference.remove(ref))
+                .ifPresent(ServiceRegistration::unregister);
+        ofNullable(servicePerReference.remove(ref))
+                .ifPresent(ServiceHandle::release);
+    }
+
     public void stop() {
         registrationPerReference.values().forEach(ServiceRegistration::unregister);
+        servicePerReference.values().forEach(ServiceHandle::release);
         bindingPerReference.clear();
         referencesPerBinding.clear();
         registrationPerReference.clear();
+        servicePerReference.clear();
     }
 }
@@ -18,7 +18,6 @@ package org.apache.karaf.service.interceptor.impl.runtime.hook;
 
 import static java.util.stream.Collectors.toList;
 
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.List;
 import java.util.Objects;
@@ -26,25 +25,27 @@ import java.util.stream.Stream;
 
 import org.apache.karaf.service.interceptor.api.AroundInvoke;
 import org.apache.karaf.service.interceptor.api.InvocationContext;
-import org.apache.karaf.service.interceptor.impl.runtime.Exceptions;
 import org.apache.karaf.service.interceptor.impl.runtime.PropertiesManager;
+import org.apache.karaf.service.interceptor.impl.runtime.invoker.MethodInvoker;
+import org.apache.karaf.service.interceptor.impl.runtime.invoker.ServiceHandle;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.Constants;
 import org.osgi.framework.ServiceReference;
 
 public class InterceptorInstance<T> {
-    private final ServiceReference<T> reference;
     private final BundleContext context;
-    private final Method method;
+    private final ServiceHandle<T> service;
+    private final MethodInvoker aroundInvoke;
     private final Class<?> binding;
 
     public InterceptorInstance(final ServiceReference<T> reference, final Class<?> binding, final PropertiesManager propertiesManager) {
-        this.reference = reference;
         this.context = reference.getBundle().getBundleContext();
-        this.method = propertiesManager.unflattenStringValues(reference.getProperty(Constants.OBJECTCLASS))
+        this.service = new ServiceHandle<>(reference);
+        this.aroundInvoke = propertiesManager.unflattenStringValues(reference.getProperty(Constants.OBJECTCLASS))
             .map(this::findAroundInvoke)
             .filter(Objects::nonNull)
             .findFirst()
+            .map(MethodInvoker::new)
             .orElse(null);
         this.binding = binding;
     }
@@ -54,17 +55,14 @@ public class InterceptorInstance<T> {
     }
 
     public Object intercept(final InvocationContext invocationContext) throws Exception {
-        final T service = context.getService(reference);
-        if (service == null) {
-            throw new IllegalStateException("'" + reference + "' no more available");
-        }
-        try {
-            return method == null ? invocationContext.proceed() : method.invoke(service, invocationContext);
-        } catch (final InvocationTargetException ite) {
-            return Exceptions.unwrap(ite);
-        } finally {
-            context.ungetService(reference);
+        if (aroundInvoke == null) {
+            return invocationContext.proceed();
         }
+        return aroundInvoke.invokeWithParameter(service.get(), invocationContext);
+    }
+
+    public void release() {
+        service.release();
     }
 
     private Method findAroundInvoke(final String clazz) {
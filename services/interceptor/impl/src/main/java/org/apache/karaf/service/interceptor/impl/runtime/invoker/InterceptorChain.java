@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.service.interceptor.impl.runtime.invoker;
+
+import java.lang.reflect.Method;
+
+import org.apache.karaf.service.interceptor.impl.runtime.hook.InterceptorInstance;
+
+// interceptors and invoker of a proxied method, resolved once and reused by the invocations
+public class InterceptorChain {
+    static final InterceptorInstance<?>[] NO_INTERCEPTORS = new InterceptorInstance<?>[0];
+
+    private final MethodInvoker invoker;
+    private final InterceptorInstance<?>[] interceptors;
+
+    public InterceptorChain(final Method method) {
+        this(method, NO_INTERCEPTORS);
+    }
+
+    public InterceptorChain(final Method method, final InterceptorInstance<?>[] interceptors) {
+        this(new MethodInvoker(method), interceptors);
+    }
+
+    InterceptorChain(final MethodInvoker invoker, final InterceptorInstance<?>[] interceptors) {
+        this.invoker = invoker;
+        this.interceptors = interceptors;
+    }
+
+    public Method getMethod() {
+        return invoker.getMethod();
+    }
+
+    // a method without interceptor is directly invoked, without allocating an invocation context
+    public <T> Object proceed(final ServiceHandle<T> service, final Object[] parameters) throws Exception {
+        if (interceptors.length == 0) {
+            return invoker.invoke(service.get(), parameters);
+        }
+        return new InterceptorInvocationContext<>(service, this, parameters).proceed();
+    }
+
+    InterceptorInstance<?>[] getInterceptors() {
+        return interceptors;
+    }
+
+    Object invoke(final Object target, final Object[] parameters) throws Exception {
+        return invoker.invoke(target, parameters);
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.service.interceptor.impl.runtime.invoker;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.karaf.service.interceptor.impl.runtime.hook.InterceptorInstance;
+import org.apache.karaf.service.interceptor.impl.runtime.registry.InterceptorRegistry;
+
+// chains of the methods of a proxy: the bindings are resolved once when the proxy is created and the interceptor
+// instances are only resolved again when an interceptor was registered or unregistered
+public class InterceptorChains {
+    private final InterceptorRegistry registry;
+    private final Map<Method, Class<?>[]> bindingsPerMethod;
+    private final Map<Method, MethodInvoker> invokers = new ConcurrentHashMap<>();
+
+    private volatile Resolution resolution = new Resolution(-1);
+
+    public InterceptorChains(final InterceptorRegistry registry, final Map<Method, List<Class<?>>> bindingsPerMethod) {
+        this.registry = registry;
+        this.bindingsPerMethod = new HashMap<>(bindingsPerMethod.size());
+        bindingsPerMethod.forEach((method, bindings) -> this.bindingsPerMethod.put(method, bindings.toArray(new Class<?>[0])));
+    }
+
+    public InterceptorChain get(final Method method) {
+        Resolution current = resolution;
+        final int version = registry.getVersion();
+        if (current.version != version) {
+            current = new Resolution(version);
+            resolution = current;
+        }
+        final InterceptorChain chain = current.chains.get(method);
+        if (chain != null) {
+            return chain;
+        }
+        // computeIfAbsent locks even when the key is there on java 8 so only use it on a miss
+        return current.chains.computeIfAbsent(method, this::resolve);
+    }
+
+    private InterceptorChain resolve(final Method method) {
+        final MethodInvoker invoker = invokers.computeIfAbsent(method, MethodInvoker::new);
+        final Class<?>[] bindings = bindingsPerMethod.get(method);
+        if (bindings == null) {
+            return new InterceptorChain(invoker, InterceptorChain.NO_INTERCEPTORS);
+        }
+        final InterceptorInstance<?>[] interceptors = new InterceptorInstance<?>[bindings.length];
+        for (int i = 0; i < bindings.length; i++) {
+            interceptors[i] = registry.getInterceptor(bindings[i]);
+            if (interceptors[i] == null) { // the proxy is being unregistered
+                throw new IllegalStateException("interceptor " + bindings[i].getName() + " no more available");
+            }
+        }
+        return new InterceptorChain(invoker, interceptors);
+    }
+
+    private static class Resolution {
+        private final int version;
+        private final Map<Method, InterceptorChain> chains = new ConcurrentHashMap<>();
+
+        private Resolution(final int version) {
+            this.version = version;
+        }
+    }
+}
@@ -16,76 +16,53 @@
  */
 package org.apache.karaf.service.interceptor.impl.runtime.invoker;
 
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 import org.apache.karaf.service.interceptor.api.InvocationContext;
-import org.apache.karaf.service.interceptor.impl.runtime.Exceptions;
 import org.apache.karaf.service.interceptor.impl.runtime.hook.InterceptorInstance;
-import org.osgi.framework.BundleContext;
-import org.osgi.framework.ServiceReference;
 
 public class InterceptorInvocationContext<T> implements InvocationContext {
-    private final ServiceReference<T> interceptedReference;
-    private final Method method;
-    private final List<InterceptorInstance<?>> interceptors;
+    private final ServiceHandle<T> service;
+    private final InterceptorChain chain;
 
-    private T target;
     private Map<String, Object> contextData;
     private Object[] parameters;
     private int index;
 
-    public InterceptorInvocationContext(final ServiceReference<T> reference,
-                                        final List<InterceptorInstance<?>> interceptors,
-                                        final Method method, final Object[] parameters) {
-        this.interceptedReference = reference;
-        this.method = method;
+    public InterceptorInvocationContext(final ServiceHandle<T> service,
+                                        final InterceptorChain chain,
+                                        final Object[] parameters) {
+        this.service = service;
+        this.chain = chain;
         this.parameters = parameters;
-        this.interceptors = interceptors;
     }
 
     @Override
     public Object proceed() throws Exception {
-        try {
-            if (index < interceptors.size()) {
-                final InterceptorInstance<?> interceptor = interceptors.get(index++);
-                try {
-                    return interceptor.intercept(this);
-                } catch (final Exception e) {
-                    index--;
-                    throw e;
-                }
-            }
+        final InterceptorInstance<?>[] interceptors = chain.getInterceptors();
+        if (index < interceptors.length) {
+            final InterceptorInstance<?> interceptor = interceptors[index++];
             try {
-                return getMethod().invoke(getTarget(), getParameters());
-            } catch (final InvocationTargetException ite) {
-                return Exceptions.unwrap(ite);
-            }
-        } finally {
-            if (target != null) { // todo: check scope and optimize it?
-                interceptedReference.getBundle().getBundleContext().ungetService(interceptedReference);
+                return interceptor.intercept(this);
+            } catch (final Exception e) {
+                index--;
+                throw e;
             }
         }
+        return chain.invoke(getTarget(), getParameters());
     }
 
     @Override
     public T getTarget() {
-        final BundleContext context = interceptedReference.getBundle().getBundleContext();
-        target = context.getService(interceptedReference);
-        if (target == null) {
-            throw new IllegalStateException("service no more available (" + interceptedReference + ")");
-        }
-        return target;
+        return service.get();
     }
 
     @Override
     public Method getMethod() {
-        return method;
+        return chain.getMethod();
     }
-
     @Override
     public Object[] getParameters() {
         return parameters;
@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.service.interceptor.impl.runtime.invoker;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+import org.apache.karaf.service.interceptor.impl.runtime.Exceptions;
+
+// calls a method through a MethodHandle adapted to (Object, Object[])Object, reflection is only used
+// when the declaring class is not accessible from a public lookup
+public class MethodInvoker {
+    private static final MethodType INVOKER_TYPE = MethodType.methodType(Object.class, Object.class, Object[].class);
+    private static final MethodType SINGLE_PARAMETER_INVOKER_TYPE = MethodType.methodType(Object.class, Object.class, Object.class);
+
+    private final Method method;
+    private final MethodHandle handle;
+    private final MethodHandle singleParameterHandle;
+
+    public MethodInvoker(final Method method) {
+        this.method = method;
+        final MethodHandle direct = findHandle(method);
+        this.handle = direct == null ? null : direct.asSpreader(Object[].class, method.getParameterCount()).asType(INVOKER_TYPE);
+        this.singleParameterHandle = direct == null || method.getParameterCount() != 1 ?
+                null : direct.asType(SINGLE_PARAMETER_INVOKER_TYPE);
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    public Object invoke(final Object target, final Object[] parameters) throws Exception {
+        if (handle == null) {
+            try {
+                return method.invoke(target, parameters);
+            } catch (final InvocationTargetException ite) {
+                return Exceptions.unwrap(ite);
+            }
+        }
+        try {
+            return (Object) handle.invokeExact(target, parameters);
+        } catch (final Exception | Error e) {
+            throw e;
+        } catch (final Throwable throwable) { // quite unlikely
+            throw new IllegalStateException(throwable);
+        }
+    }
+
+    // avoids the parameters array for single parameter methods like @AroundInvoke ones
+    public Object invokeWithParameter(final Object target, final Object parameter) throws Exception {
+        if (singleParameterHandle == null) {
+            return invoke(target, new Object[]{parameter});
+        }
+        try {
+            return (Object) singleParameterHandle.invokeExact(target, parameter);
+        } catch (final Exception | Error e) {
+            throw e;
+        } catch (final Throwable throwable) { // quite unlikely
+            throw new IllegalStateException(throwable);
+        }
+    }
+
+    private static MethodHandle findHandle(final Method method) {
+        try {
+            MethodHandle handle = MethodHandles.publicLookup().unreflect(method).asFixedArity();
+            if (Modifier.isStatic(method.getModifiers())) {
+                handle = MethodHandles.dropArguments(handle, 0, Object.class);
+            }
+            return handle;
+        } catch (final IllegalAccessException iae) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.service.interceptor.impl.runtime.invoker;
+
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
+
+// keeps the service instance for the lifetime of a proxy instead of getting/ungetting it for each call
+public class ServiceHandle<T> {
+    private final ServiceReference<T> reference;
+    private final BundleContext context;
+
+    private volatile T service;
+    private boolean released;
+
+    public ServiceHandle(final ServiceReference<T> reference) {
+        this.reference = reference;
+        this.context = reference.getBundle().getBundleContext();
+    }
+
+    public ServiceReference<T> getReference() {
+        return reference;
+    }
+
+    public T get() {
+        final T current = service;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (service == null) {
+                final T instance = released ? null : context.getService(reference);
+                if (instance == null) {
+                    throw new IllegalStateException("service no more available (" + reference + ")");
+                }
+                service = instance;
+            }
+            return service;
+        }
+    }
+
+    public synchronized void release() {
+        released = true;
+        if (service != null) {
+            service = null;
+            try {
+                context.ungetService(reference);
+            } catch (final IllegalStateException ise) {
+                // bundle context no more valid, the framework already released the service
+            }
+        }
+    }
+}
@@ -16,11 +16,8 @@
  */
 package org.apache.karaf.service.interceptor.impl.runtime.proxy;
 
-import static java.util.Collections.emptyList;
 import static java.util.Optional.ofNullable;
 import static java.util.stream.Collectors.joining;
-import static java.util.stream.Collectors.toList;
-import static java.util.stream.Collectors.toMap;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -35,8 +32,9 @@ import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Stream;
 
-import org.apache.karaf.service.interceptor.impl.runtime.hook.InterceptorInstance;
-import org.apache.karaf.service.interceptor.impl.runtime.invoker.InterceptorInvocationContext;
+import org.apache.karaf.service.interceptor.impl.runtime.invoker.InterceptorChains;
+import org.apache.karaf.service.interceptor.impl.runtime.invoker.ServiceHandle;
+import org.apache.karaf.service.interceptor.impl.runtime.registry.InterceptorRegistry;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.ServiceReference;
 
@@ -44,24 +42,22 @@ public class ProxyFactory {
 
     private static final Class<?>[] EMPTY_CLASSES = new Class<?>[0];
 
-    public <T> T create(final ServiceReference<T> ref, final List<Class<?>> classes,
-                        final List<InterceptorInstance<?>> interceptors,
+    public <T> T create(final ServiceHandle<T> service, final List<Class<?>> classes,
+                        final InterceptorRegistry interceptors,
                         final Map<Method, List<Class<?>>> interceptorsPerMethod) {
+        final ServiceReference<T> ref = service.getReference();
         if (classes.isEmpty()) {
             throw new IllegalArgumentException("Can't proxy an empty list of type: " + ref);
         }
 
-        final Map<Method, List<InterceptorInstance<?>>> interceptorInstancePerMethod = interceptorsPerMethod.entrySet().stream()
-            .collect(toMap(Map.Entry::getKey, m -> m.getValue().stream()
-                    .map(binding -> interceptors.stream().filter(i -> i.getBinding() == binding).findFirst().orElse(null))
-                    .collect(toList())));
+        final InterceptorChains chains = new InterceptorChains(interceptors, interceptorsPerMethod);
 
         final ProxyClassLoader loader = new ProxyClassLoader(Thread.currentThread().getContextClassLoader(), ref.getBundle());
         if (classes.stream().allMatch(Class::isInterface)) {
             final Object proxyInstance = Proxy.newProxyInstance(
                     loader,
                     classes.toArray(EMPTY_CLASSES),
-                    (proxy, method, args) -> doInvoke(ref, method, args, interceptorInstancePerMethod));
+                    (proxy, method, args) -> doInvoke(service, method, args, chains));
             return (T) proxyInstance;
         }
         final AsmProxyFactory asm = new AsmProxyFactory();
@@ -70,14 +66,13 @@ public class ProxyFactory {
                 getProxyClassName(classes),
                 classes.stream().sorted(this::compareClasses).toArray(Class<?>[]::new),
                 findInterceptedMethods(classes));
-        return asm.create(proxyClass, (method, args) -> doInvoke(ref, method, args, interceptorInstancePerMethod));
+        return asm.create(proxyClass, (method, args) -> doInvoke(service, method, args, chains));
     }
 
-    private <T> Object doInvoke(final ServiceReference<T> ref,
+    private <T> Object doInvoke(final ServiceHandle<T> service,
                                 final Method method, final Object[] args,
-                                final Map<Method, List<InterceptorInstance<?>>> interceptorsPerMethod) throws Exception {
-        final List<InterceptorInstance<?>> methodInterceptors = interceptorsPerMethod.getOrDefault(method, emptyList());
-        return new InterceptorInvocationContext<>(ref, methodInterceptors, method, args).proceed();
+                                final InterceptorChains chains) throws Exception {
+        return chains.get(method).proceed(service, args);
     }
 
     private int compareClasses(final Class<?> c1, final Class<?> c2) {
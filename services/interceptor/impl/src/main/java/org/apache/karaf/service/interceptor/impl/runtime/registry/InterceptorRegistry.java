@@ -16,12 +16,14 @@
  */
 package org.apache.karaf.service.interceptor.impl.runtime.registry;
 
+import static java.util.Optional.ofNullable;
 import static java.util.stream.Collectors.toList;
 
 import java.lang.annotation.Annotation;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.stream.Stream;
 
@@ -37,6 +39,7 @@ public class InterceptorRegistry implements ServiceListener {
     private final Consumer<Class<?>> onRemoval;
     private final PropertiesManager propertiesManager;
     private final Map<Class<?>, InterceptorInstance<?>> interceptors = new ConcurrentHashMap<>();
+    private final AtomicInteger version = new AtomicInteger();
 
     public InterceptorRegistry(final Consumer<Class<?>> onAddition,
                                final Consumer<Class<?>> onRemoval,
@@ -50,8 +53,14 @@ public class InterceptorRegistry implements ServiceListener {
         return bindings.allMatch(binding -> binding != null && interceptors.containsKey(binding));
     }
 
-    public List<InterceptorInstance<?>> getInterceptors(final List<Class<?>> bindings) {
-        return bindings.stream().map(interceptors::get).distinct().collect(toList());
+    public InterceptorInstance<?> getInterceptor(final Class<?> binding) {
+        return interceptors.get(binding);
+    }
+
+    // changes each time an interceptor is added or removed, incremented after the change so a reader
+    // seeing a version sees at least the interceptors of this version
+    public int getVersion() {
+        return version.get();
     }
 
     @Override
@@ -59,15 +68,21 @@ public class InterceptorRegistry implements ServiceListener {
         final Class<? extends Annotation> bindingClass = getInterceptorBinding(serviceEvent);
         switch (serviceEvent.getType()) {
             case ServiceEvent.REGISTERED: {
-                interceptors.put(bindingClass, new InterceptorInstance<>(
-                        serviceEvent.getServiceReference(), bindingClass, propertiesManager));
+                ofNullable(interceptors.put(bindingClass, new InterceptorInstance<>(
+                        serviceEvent.getServiceReference(), bindingClass, propertiesManager)))
+                        .ifPresent(InterceptorInstance::release);
+                version.incrementAndGet();
                 onAddition.accept(bindingClass);
                 break;
             }
             case ServiceEvent.MODIFIED_ENDMATCH:
             case ServiceEvent.UNREGISTERING: {
-                interceptors.remove(bindingClass);
+                final InterceptorInstance<?> removed = interceptors.remove(bindingClass);
+                version.incrementAndGet();
                 onRemoval.accept(bindingClass);
+                if (removed != null) { // proxies are unregistered so no new call can use it
+                    removed.release();
+                }
                 break;
             }
             case ServiceEvent.MODIFIED:
@@ -75,6 +90,11 @@ public class InterceptorRegistry implements ServiceListener {
         }
     }
 
+    public void stop() {
+        interceptors.values().forEach(InterceptorInstance::release);
+        interceptors.clear();
+    }
+
     private Class<? extends Annotation> getInterceptorBinding(final ServiceEvent serviceEvent) {
         final List<Annotation> bindings = propertiesManager.unflattenStringValues(serviceEvent.getServiceReference().getProperty(Constants.OBJECTCLASS))
                 .map(it -> {
@@ -0,0 +1,242 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.service.interceptor.impl.runtime.invoker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+import static java.util.Collections.singletonList;
+import static java.util.Collections.singletonMap;
+
+import java.io.IOException;
+import java.lang.annotation.Retention;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.karaf.service.interceptor.api.AroundInvoke;
+import org.apache.karaf.service.interceptor.api.InterceptorBinding;
+import org.apache.karaf.service.interceptor.api.InvocationContext;
+import org.apache.karaf.service.interceptor.impl.runtime.PropertiesManager;
+import org.apache.karaf.service.interceptor.impl.runtime.hook.InterceptorInstance;
+import org.apache.karaf.service.interceptor.impl.runtime.registry.InterceptorRegistry;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceEvent;
+import org.osgi.framework.ServiceReference;
+
+public class InterceptorInvocationContextTest {
+    private final AtomicInteger gets = new AtomicInteger();
+    private final AtomicInteger ungets = new AtomicInteger();
+
+    @Test
+    public void serviceIsAcquiredOnce() throws Exception {
+        final ServiceHandle<Service> service = new ServiceHandle<>(reference(new Service(), Service.class));
+        final InterceptorChain chain = new InterceptorChain(Service.class.getMethod("concat", String.class, int.class));
+        for (int i = 0; i < 3; i++) {
+            assertEquals("a3", new InterceptorInvocationContext<>(service, chain, new Object[]{"a", 3}).proceed());
+        }
+        assertEquals(1, gets.get());
+        assertEquals(0, ungets.get());
+
+        service.release();
+        assertEquals(1, ungets.get());
+        try {
+            service.get();
+            fail();
+        } catch (final IllegalStateException ise) {
+            // expected, the proxy was discarded
+        }
+        assertEquals(1, gets.get());
+    }
+
+    @Test
+    public void invoke() throws Exception {
+        final ServiceHandle<Service> service = new ServiceHandle<>(reference(new Service(), Service.class));
+        assertNull(proceed(service, Service.class.getMethod("noop"), null));
+        assertEquals(5L, proceed(service, Service.class.getMethod("add", long.class, long.class), new Object[]{2L, 3L}));
+        assertEquals("static", proceed(service, Service.class.getMethod("constant"), new Object[0]));
+        try {
+            proceed(service, Service.class.getMethod("fail"), new Object[0]);
+            fail();
+        } catch (final IOException ioe) {
+            assertEquals("checked", ioe.getMessage());
+        }
+    }
+
+    @Test
+    public void intercept() throws Exception {
+        final ServiceHandle<Service> service = new ServiceHandle<>(reference(new Service(), Service.class));
+        final InterceptorInstance<?> interceptor = new InterceptorInstance<>(
+                reference(new Suffixing(), Suffixing.class), Suffixing.class, new PropertiesManager());
+        final InterceptorChain chain = new InterceptorChain(
+                Service.class.getMethod("concat", String.class, int.class),
+                new InterceptorInstance<?>[]{interceptor, interceptor});
+        assertEquals("b1(suffixed)(suffixed)", new InterceptorInvocationContext<>(service, chain, new Object[]{"a", 1}).proceed());
+        assertEquals("b2(suffixed)(suffixed)", new InterceptorInvocationContext<>(service, chain, new Object[]{"a", 2}).proceed());
+        // one for the interceptor, one for the intercepted service
+        assertEquals(2, gets.get());
+
+        interceptor.release();
+        assertEquals(1, ungets.get());
+    }
+
+    @Test
+    public void chainsAreResolvedOnce() throws Exception {
+        final InterceptorRegistry registry = new InterceptorRegistry(b -> {}, b -> {}, new PropertiesManager());
+        registry.serviceChanged(new ServiceEvent(ServiceEvent.REGISTERED, reference(new Suffixing(), Suffixing.class)));
+        final Method concat = Service.class.getMethod("concat", String.class, int.class);
+        final InterceptorChains chains = new InterceptorChains(registry, singletonMap(concat, singletonList(Suffixed.class)));
+        final ServiceHandle<Service> service = new ServiceHandle<>(reference(new Service(), Service.class));
+
+        final InterceptorChain chain = chains.get(concat);
+        assertSame(chain, chains.get(concat));
+        assertEquals("b1(suffixed)", chain.proceed(service, new Object[]{"a", 1}));
+
+        final Method noop = Service.class.getMethod("noop");
+        assertSame(chains.get(noop), chains.get(noop));
+        assertEquals(0, chains.get(noop).getInterceptors().length);
+        assertNull(chains.get(noop).proceed(service, null));
+    }
+
+    @Test
+    public void chainsFollowInterceptorChanges() throws Exception {
+        final InterceptorRegistry registry = new InterceptorRegistry(b -> {}, b -> {}, new PropertiesManager());
+        registry.serviceChanged(new ServiceEvent(ServiceEvent.REGISTERED, reference(new Suffixing(), Suffixing.class)));
+        final Method concat = Service.class.getMethod("concat", String.class, int.class);
+        final InterceptorChains chains = new InterceptorChains(registry, singletonMap(concat, singletonList(Suffixed.class)));
+        final ServiceHandle<Service> service = new ServiceHandle<>(reference(new Service(), Service.class));
+        final InterceptorChain chain = chains.get(concat);
+        assertEquals("b1(suffixed)", chain.proceed(service, new Object[]{"a", 1}));
+
+        // a new interceptor for the same binding replaces the previous one in the existing proxies
+        final ServiceReference<Replacing> replacing = reference(new Replacing(), Replacing.class);
+        registry.serviceChanged(new ServiceEvent(ServiceEvent.REGISTERED, replacing));
+        assertEquals(1, ungets.get());
+        assertNotSame(chain, chains.get(concat));
+        assertEquals("a1(replaced)", chains.get(concat).proceed(service, new Object[]{"a", 1}));
+
+        registry.serviceChanged(new ServiceEvent(ServiceEvent.UNREGISTERING, replacing));
+        assertEquals(2, ungets.get());
+        try {
+            chains.get(concat);
+            fail();
+        } catch (final IllegalStateException ise) {
+            // expected, the proxy is unregistered
+        }
+    }
+
+    private Object proceed(final ServiceHandle<?> service, final Method method, final Object[] parameters) throws Exception {
+        return new InterceptorInvocationContext<>(service, new InterceptorChain(method), parameters).proceed();
+    }
+
+    private <T> ServiceReference<T> reference(final T instance, final Class<T> type) {
+        final AtomicReference<Bundle> bundle = new AtomicReference<>();
+        final BundleContext context = BundleContext.class.cast(Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[]{BundleContext.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getService":
+                            gets.incrementAndGet();
+                            return instance;
+                        case "ungetService":
+                            ungets.incrementAndGet();
+                            return true;
+                        case "getBundle":
+                            return bundle.get();
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                }));
+        bundle.set(Bundle.class.cast(Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[]{Bundle.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getBundleContext":
+                            return context;
+                        case "loadClass":
+                            return getClass().getClassLoader().loadClass(String.class.cast(args[0]));
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                })));
+        return ServiceReference.class.cast(Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[]{ServiceReference.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getBundle":
+                            return bundle.get();
+                        case "getProperty":
+                            return Constants.OBJECTCLASS.equals(args[0]) ? new String[]{type.getName()} : null;
+                        case "toString":
+                            return "ServiceReference[" + type.getName() + "]";
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                }));
+    }
+
+    public static class Service {
+        public String concat(final String value, final int count) {
+            return value + count;
+        }
+
+        public long add(final long a, final long b) {
+            return a + b;
+        }
+
+        public void noop() {
+            // no-op
+        }
+
+        public static String constant() {
+            return "static";
+        }
+
+        public String fail() throws IOException {
+            throw new IOException("checked");
+        }
+    }
+
+    @Retention(RUNTIME)
+    @InterceptorBinding
+    public @interface Suffixed {
+    }
+
+    @Suffixed
+    public static class Suffixing {
+        @AroundInvoke
+        public Object around(final InvocationContext context) throws Exception {
+            if ("a".equals(context.getParameters()[0])) {
+                context.setParameters(new Object[]{"b", context.getParameters()[1]});
+            }
+            return context.proceed() + "(suffixed)";
+        }
+    }
+
+    @Suffixed
+    public static class Replacing {
+        @AroundInvoke
+        public Object around(final InvocationContext context) throws Exception {
+            return context.proceed() + "(replaced)";
+        }
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.karaf.shell.impl.action.command;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.karaf.shell.api.action.Argument;
+import org.apache.karaf.shell.api.action.Command;
+import org.apache.karaf.shell.api.action.Option;
+
+/**
+ * Immutable options and arguments of an action class, computed once per class.
+ * The fields are set through method handles instead of reflection.
+ */
+public final class ActionMetaData {
+
+    private static final ClassValue<ActionMetaData> CACHE = new ClassValue<ActionMetaData>() {
+        @Override
+        protected ActionMetaData computeValue(Class<?> type) {
+            return new ActionMetaData(type);
+        }
+    };
+
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private static final MethodHandle SET;
+
+    static {
+        try {
+            SET = MethodHandles.lookup().findVirtual(Field.class, "set",
+                    MethodType.methodType(void.class, Object.class, Object.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final Command command;
+    private final Map<Option, Field> options;
+    private final Map<Argument, Field> arguments;
+    private final List<Argument> orderedArguments;
+    private final Map<String, Option> optionsByName;
+    private final Map<Field, MethodHandle> setters;
+
+    public static ActionMetaData get(Class<?> actionClass) {
+        return CACHE.get(actionClass);
+    }
+
+    private ActionMetaData(Class<?> actionClass) {
+        Map<Option, Field> options = new HashMap<>();
+        Map<Argument, Field> arguments = new HashMap<>();
+        List<Argument> orderedArguments = new ArrayList<>();
+        Map<String, Option> optionsByName = new HashMap<>();
+        Map<Field, MethodHandle> setters = new HashMap<>();
+
+        for (Class<?> type = actionClass; type != null; type = type.getSuperclass()) {
+            for (Field field : type.getDeclaredFields()) {
+                Option option = field.getAnnotation(Option.class);
+                if (option != null) {
+                    options.put(option, field);
+                    // the first declared option with a given name wins, as in the sub class
+                    optionsByName.putIfAbsent(option.name(), option);
+                    for (String alias : option.aliases()) {
+                        optionsByName.putIfAbsent(alias, option);
+                    }
+                    setters.put(field, setter(field));
+                }
+
+                Argument argument = field.getAnnotation(Argument.class);
+                if (argument != null) {
+                    argument = replaceDefaultArgument(field, argument);
+                    arguments.put(argument, field);
+                    int index = argument.index();
+                    while (orderedArguments.size() <= index) {
+                        orderedArguments.add(null);
+                    }
+                    if (orderedArguments.get(index) != null) {
+                        throw new IllegalArgumentException("Duplicate argument index: " + index + " on Action " + actionClass.getName());
+                    }
+                    orderedArguments.set(index, argument);
+                    setters.put(field, setter(field));
+                }
+            }
+        }
+        for (int i = 0; i < orderedArguments.size(); i++) {
+            if (orderedArguments.get(i) == null) {
+                throw new IllegalArgumentException("Missing argument for index: " + i + " on Action " + actionClass.getName());
+            }
+        }
+
+        this.command = actionClass.getAnnotation(Command.class);
+        this.options = Collections.unmodifiableMap(options);
+        this.arguments = Collections.unmodifiableMap(arguments);
+        this.orderedArguments = Collections.unmodifiableList(orderedArguments);
+        this.optionsByName = optionsByName;
+        this.setters = setters;
+    }
+
+    public Command getCommand() {
+        return command;
+    }
+
+    public Map<Option, Field> getOptions() {
+        return options;
+    }
+
+    public Map<Argument, Field> getArguments() {
+        return arguments;
+    }
+
+    public List<Argument> getOrderedArguments() {
+        return orderedArguments;
+    }
+
+    /**
+     * @param name The option name or alias.
+     * @return The option, or {@code null} if the action has no such option.
+     */
+    public Option getOption(String name) {
+        return optionsByName.get(name);
+    }
+
+    /**
+     * Set the value of an option or argument field.
+     *
+     * @param action The action.
+     * @param field The option or argument field.
+     * @param value The converted value.
+     * @throws Exception If the field can't be set.
+     */
+    public void set(Object action, Field field, Object value) throws Exception {
+        try {
+            setters.get(field).invokeExact(action, value);
+        } catch (Exception | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    static MethodHandle setter(Field field) {
+        field.setAccessible(true);
+        try {
+            return MethodHandles.lookup().unreflectSetter(field).asType(SETTER_TYPE);
+        } catch (IllegalAccessException e) {
+            // final fields can't be set through a method handle
+            return SET.bindTo(field);
+        }
+    }
+
+    private static Argument replaceDefaultArgument(Field field, Argument argument) {
+        if (Argument.DEFAULT.equals(argument.name())) {
+            final Argument delegate = argument;
+            final String name = field.getName();
+            argument = new Argument() {
+                public String name() {
+                    return name;
+                }
+
+                public String description() {
+                    return delegate.description();
+                }
+
+                public boolean required() {
+                    return delegate.required();
+                }
+
+                public int index() {
+                    return delegate.index();
+                }
+
+                public boolean multiValued() {
+                    return delegate.multiValued();
+                }
+
+                public String valueToShowInHelp() {
+                    return delegate.valueToShowInHelp();
+                }
+
+                public Class<? extends Annotation> annotationType() {
+                    return delegate.annotationType();
+                }
+
+                @Override
+                public boolean censor() {
+                    return delegate.censor();
+                }
+
+                @Override
+                public char mask() {
+                    return delegate.mask();
+                }
+            };
+        }
+        return argument;
+    }
+
+}
@@ -24,11 +24,9 @@ import java.io.InputStreamReader;
 import java.io.PrintStream;
 import java.io.Reader;
 import java.io.StringWriter;
-import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -59,34 +57,11 @@ public class DefaultActionPreparator {
 
     public boolean prepare(Action action, Session session, List<Object> params) throws Exception {
 
-        Command command = action.getClass().getAnnotation(Command.class);
-        Map<Option, Field> options = new HashMap<>();
-        Map<Argument, Field> arguments = new HashMap<>();
-        List<Argument> orderedArguments = new ArrayList<>();
-
-        for (Class<?> type = action.getClass(); type != null; type = type.getSuperclass()) {
-            for (Field field : type.getDeclaredFields()) {
-                Option option = field.getAnnotation(Option.class);
-                if (option != null) {
-                    options.put(option, field);
-                }
-
-                Argument argument = field.getAnnotation(Argument.class);
-                if (argument != null) {
-                    argument = replaceDefaultArgument(field, argument);
-                    arguments.put(argument, field);
-                    int index = argument.index();
-                    while (orderedArguments.size() <= index) {
-                        orderedArguments.add(null);
-                    }
-                    if (orderedArguments.get(index) != null) {
-                        throw new IllegalArgumentException("Duplicate argument index: " + index + " on Action " + action.getClass().getName());
-                    }
-                    orderedArguments.set(index, argument);
-                }
-            }
-        }
-        assertIndexesAreCorrect(action.getClass(), orderedArguments);
+        ActionMetaData metadata = ActionMetaData.get(action.getClass());
+        Command command = metadata.getCommand();
+        Map<Option, Field> options = metadata.getOptions();
+        Map<Argument, Field> arguments = metadata.getArguments();
+        List<Argument> orderedArguments = metadata.getOrderedArguments();
 
         String commandErrorSt = COLOR_RED + "Error executing command " + command.scope() + ":" + INTENSITY_BOLD + command.name() + INTENSITY_NORMAL + COLOR_DEFAULT + ": ";
         for (Object param : params) {
@@ -127,13 +102,7 @@ public class DefaultActionPreparator {
                 } else {
                     name = paramValue;
                 }
-                Option option = null;
-                for (Option opt : options.keySet()) {
-                    if (name.equals(opt.name()) || Arrays.asList(opt.aliases()).contains(name)) {
-                        option = opt;
-                        break;
-                    }
-                }
+                Option option = metadata.getOption(name);
                 if (option == null) {
                     throw new CommandException(commandErrorSt
                                 + "undefined option " + INTENSITY_BOLD + paramValue + INTENSITY_NORMAL + "\n"
@@ -222,8 +191,7 @@ public class DefaultActionPreparator {
                             e
                     );
             }
-            field.setAccessible(true);
-            field.set(action, value);
+            metadata.set(action, field, value);
         }
         for (Map.Entry<Argument, Object> entry : argumentValues.entrySet()) {
             Field field = arguments.get(entry.getKey());
@@ -239,8 +207,7 @@ public class DefaultActionPreparator {
                             e
                     );
             }
-            field.setAccessible(true);
-            field.set(action, value);
+            metadata.set(action, field, value);
         }
         return true;
     }
@@ -252,61 +219,6 @@ public class DefaultActionPreparator {
         return new DefaultConverter(action.getClass().getClassLoader()).convert(value, toType);
     }
 
-    private Argument replaceDefaultArgument(Field field, Argument argument) {
-        if (Argument.DEFAULT.equals(argument.name())) {
-            final Argument delegate = argument;
-            final String name = field.getName();
-            argument = new Argument() {
-                public String name() {
-                    return name;
-                }
-
-                public String description() {
-                    return delegate.description();
-                }
-
-                public boolean required() {
-                    return delegate.required();
-                }
-
-                public int index() {
-                    return delegate.index();
-                }
-
-                public boolean multiValued() {
-                    return delegate.multiValued();
-                }
-
-                public String valueToShowInHelp() {
-                    return delegate.valueToShowInHelp();
-                }
-
-                public Class<? extends Annotation> annotationType() {
-                    return delegate.annotationType();
-                }
-
-                @Override
-                public boolean censor() {
-                    return delegate.censor();
-                }
-
-                @Override
-                public char mask() {
-                    return delegate.mask();
-                }
-            };
-        }
-        return argument;
-    }
-
-    private void assertIndexesAreCorrect(Class<? extends Action> actionClass, List<Argument> orderedArguments) {
-        for (int i = 0; i < orderedArguments.size(); i++) {
-            if (orderedArguments.get(i) == null) {
-                throw new IllegalArgumentException("Missing argument for index: " + i + " on Action " + actionClass.getName());
-            }
-        }
-    }
-
     public void printUsage(Action action, Map<Option, Field> options, Map<Argument, Field> arguments, PrintStream out, boolean globalScope, int termWidth) {
         Command command = action.getClass().getAnnotation(Command.class);
         if (command != null) {
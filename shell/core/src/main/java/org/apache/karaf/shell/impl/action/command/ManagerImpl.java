@@ -18,9 +18,11 @@
  */
 package org.apache.karaf.shell.impl.action.command;
 
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -41,6 +43,13 @@ import org.apache.karaf.shell.support.converter.GenericType;
 
 public class ManagerImpl implements Manager {
 
+    private static final ClassValue<Injections> INJECTIONS = new ClassValue<Injections>() {
+        @Override
+        protected Injections computeValue(Class<?> type) {
+            return new Injections(type);
+        }
+    };
+
     private final Registry dependencies;
     private final Registry registrations;
     private final Map<Class<?>, Object> instances = new HashMap<>();
@@ -68,40 +77,31 @@ public class ManagerImpl implements Manager {
             }
         }
         T instance = clazz.newInstance();
+        Injections injections = INJECTIONS.get(clazz);
         // Inject services
-        for (Class<?> cl = clazz; cl != Object.class; cl = cl.getSuperclass()) {
-            for (Field field : cl.getDeclaredFields()) {
-                Reference ref = field.getAnnotation(Reference.class);
-                if (ref != null) {
-                    GenericType type = new GenericType(field.getGenericType());
-                    Object value;
-                    if (type.getRawClass() == List.class) {
-                        Set<Object> set =
-                            new HashSet<>(registry.getServices(type.getActualTypeArgument(0).getRawClass()));
-                        if (registry != this.dependencies) {
-                            set.addAll(this.dependencies.getServices(type.getActualTypeArgument(0).getRawClass()));
-                        }
-                        value = new ArrayList<>(set);
-                    } else {
-                        value = registry.getService(type.getRawClass());
-                        if (value == null && registry != this.dependencies) {
-                            value = this.dependencies.getService(type.getRawClass());
-                        }
-                    }
-                    if (!allowCustomServices && value == null && !ref.optional()) {
-                        throw new IllegalStateException("No service matching " + field.getType().getName());
-                    }
-                    field.setAccessible(true);
-                    field.set(instance, value);
+        for (Injection injection : injections.references) {
+            GenericType type = injection.type;
+            Object value;
+            if (type.getRawClass() == List.class) {
+                Set<Object> set =
+                    new HashSet<>(registry.getServices(type.getActualTypeArgument(0).getRawClass()));
+                if (registry != this.dependencies) {
+                    set.addAll(this.dependencies.getServices(type.getActualTypeArgument(0).getRawClass()));
+                }
+                value = new ArrayList<>(set);
+            } else {
+                value = registry.getService(type.getRawClass());
+                if (value == null && registry != this.dependencies) {
+                    value = this.dependencies.getService(type.getRawClass());
                 }
             }
-        }
-        for (Method method : clazz.getDeclaredMethods()) {
-            Init ann = method.getAnnotation(Init.class);
-            if (ann != null && method.getParameterTypes().length == 0 && method.getReturnType() == void.class) {
-                method.setAccessible(true);
-                method.invoke(instance);
+            if (!allowCustomServices && value == null && !injection.reference.optional()) {
+                throw new IllegalStateException("No service matching " + injection.field.getType().getName());
             }
+            injection.set(instance, value);
+        }
+        for (Method method : injections.inits) {
+            method.invoke(instance);
         }
         return instance;
     }
@@ -114,12 +114,8 @@ public class ManagerImpl implements Manager {
                 throw new IllegalArgumentException("Class " + clazz.getName() + " is not annotated with @Service");
             }
         }
-        for (Method method : clazz.getDeclaredMethods()) {
-            Destroy ann = method.getAnnotation(Destroy.class);
-            if (ann != null && method.getParameterTypes().length == 0 && method.getReturnType() == void.class) {
-                method.setAccessible(true);
-                method.invoke(instance);
-            }
+        for (Method method : INJECTIONS.get(clazz).destroys) {
+            method.invoke(instance);
         }
     }
 
@@ -178,4 +174,64 @@ public class ManagerImpl implements Manager {
             }
         }
     }
+
+    /**
+     * The injection points and lifecycle methods of a class, computed once per class.
+     */
+    private static class Injections {
+
+        private final List<Injection> references = new ArrayList<>();
+        private final List<Method> inits;
+        private final List<Method> destroys;
+
+        Injections(Class<?> clazz) {
+            for (Class<?> cl = clazz; cl != Object.class && cl != null; cl = cl.getSuperclass()) {
+                for (Field field : cl.getDeclaredFields()) {
+                    Reference ref = field.getAnnotation(Reference.class);
+                    if (ref != null) {
+                        references.add(new Injection(field, ref));
+                    }
+                }
+            }
+            inits = getLifecycleMethods(clazz, Init.class);
+            destroys = getLifecycleMethods(clazz, Destroy.class);
+        }
+
+        private static List<Method> getLifecycleMethods(Class<?> clazz, Class<? extends java.lang.annotation.Annotation> annotation) {
+            List<Method> methods = new ArrayList<>();
+            for (Method method : clazz.getDeclaredMethods()) {
+                if (method.getAnnotation(annotation) != null && method.getParameterTypes().length == 0 && method.getReturnType() == void.class) {
+                    method.setAccessible(true);
+                    methods.add(method);
+                }
+            }
+            return methods.isEmpty() ? Collections.emptyList() : methods;
+        }
+    }
+
+    private static class Injection {
+
+        private final Field field;
+        private final Reference reference;
+        private final GenericType type;
+        private final MethodHandle setter;
+
+        Injection(Field field, Reference reference) {
+            this.field = field;
+            this.reference = reference;
+            this.type = new GenericType(field.getGenericType());
+            this.setter = ActionMetaData.setter(field);
+        }
+
+        void set(Object instance, Object value) throws Exception {
+            try {
+                setter.invokeExact(instance, value);
+            } catch (Exception | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new IllegalStateException(t);
+            }
+        }
+    }
+
 }
@@ -0,0 +1,233 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.karaf.shell.impl.console;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.karaf.shell.api.console.Command;
+import org.apache.karaf.shell.api.console.Completer;
+import org.apache.karaf.shell.api.console.Session;
+
+/**
+ * <p>Prefix trie of the registered commands, used by the completion.</p>
+ * <p>Each command is indexed under its name and, when it is not in the global scope, under its scoped name.
+ * The trie is case insensitive, like the command name completion. It is updated incrementally when commands
+ * are registered or unregistered, so completing a command name only visits the matching commands.</p>
+ */
+public class CommandIndex {
+
+    private final Node root = new Node();
+    private final Map<Command, Entry> entries = new IdentityHashMap<>();
+    private long version;
+
+    public synchronized void add(Command command) {
+        if (entries.containsKey(command)) {
+            return;
+        }
+        Entry entry = new Entry(command);
+        entries.put(command, entry);
+        for (String name : entry.names) {
+            root.add(name.toLowerCase(), 0, entry);
+        }
+        version++;
+    }
+
+    public synchronized void remove(Command command) {
+        Entry entry = entries.remove(command);
+        if (entry == null) {
+            return;
+        }
+        for (String name : entry.names) {
+            root.remove(name.toLowerCase(), 0, entry);
+        }
+        version++;
+    }
+
+    /**
+     * @return A number changing each time a command is added or removed.
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Return the commands having a name or a scoped name starting with the given prefix, ignoring the case.
+     *
+     * @param prefix The prefix.
+     * @return The matching commands.
+     */
+    public synchronized List<Entry> findByPrefix(String prefix) {
+        Node node = root.find(prefix.toLowerCase());
+        if (node == null) {
+            return Collections.emptyList();
+        }
+        Set<Entry> result = new LinkedHashSet<>();
+        node.collect(result);
+        return new ArrayList<>(result);
+    }
+
+    /**
+     * Return the commands having exactly the given name or scoped name.
+     *
+     * @param name The name.
+     * @return The matching commands.
+     */
+    public synchronized List<Entry> findByName(String name) {
+        Node node = root.find(name.toLowerCase());
+        if (node == null || node.entries == null) {
+            return Collections.emptyList();
+        }
+        List<Entry> result = new ArrayList<>();
+        for (Entry entry : node.entries) {
+            if (entry.names.contains(name)) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+
+    public synchronized List<Entry> getAll() {
+        return new ArrayList<>(entries.values());
+    }
+
+    /**
+     * An indexed command, with its completers created on first use.
+     */
+    public static class Entry {
+
+        private final Command command;
+        private final String key;
+        private final List<String> names;
+        private volatile Completer globalCompleter;
+        private volatile Completer localCompleter;
+
+        Entry(Command command) {
+            this.command = command;
+            this.key = command.getScope() + ":" + command.getName();
+            if (Session.SCOPE_GLOBAL.equals(command.getScope())) {
+                this.names = Collections.singletonList(command.getName());
+            } else {
+                this.names = Arrays.asList(key, command.getName());
+            }
+        }
+
+        public Command getCommand() {
+            return command;
+        }
+
+        /**
+         * @return The scoped name of the command.
+         */
+        public String getKey() {
+            return key;
+        }
+
+        public Completer getCompleter(boolean scoped) {
+            Completer completer = scoped ? localCompleter : globalCompleter;
+            if (completer == null) {
+                completer = command.getCompleter(scoped);
+                if (completer == null) {
+                    completer = new CommandsCompleter.FixedSimpleCommandCompleter(
+                            scoped ? Collections.singletonList(command.getName()) : names);
+                }
+                if (scoped) {
+                    localCompleter = completer;
+                } else {
+                    globalCompleter = completer;
+                }
+            }
+            return completer;
+        }
+    }
+
+    private static class Node {
+
+        private Map<Character, Node> children;
+        private List<Entry> entries;
+
+        void add(String name, int index, Entry entry) {
+            if (index == name.length()) {
+                if (entries == null) {
+                    entries = new ArrayList<>(1);
+                }
+                entries.add(entry);
+                return;
+            }
+            if (children == null) {
+                children = new TreeMap<>();
+            }
+            children.computeIfAbsent(name.charAt(index), c -> new Node()).add(name, index + 1, entry);
+        }
+
+        /**
+         * @return {@code True} if this node is now empty and can be pruned.
+         */
+        boolean remove(String name, int index, Entry entry) {
+            if (index == name.length()) {
+                if (entries != null) {
+                    entries.remove(entry);
+                    if (entries.isEmpty()) {
+                        entries = null;
+                    }
+                }
+            } else if (children != null) {
+                Node child = children.get(name.charAt(index));
+                if (child != null && child.remove(name, index + 1, entry)) {
+                    children.remove(name.charAt(index));
+                    if (children.isEmpty()) {
+                        children = null;
+                    }
+                }
+            }
+            return entries == null && children == null;
+        }
+
+        Node find(String prefix) {
+            Node node = this;
+            for (int i = 0; i < prefix.length() && node != null; i++) {
+                node = node.children != null ? node.children.get(prefix.charAt(i)) : null;
+            }
+            return node;
+        }
+
+        void collect(Set<Entry> result) {
+            if (entries != null) {
+                result.addAll(entries);
+            }
+            if (children != null) {
+                for (Node child : children.values()) {
+                    child.collect(result);
+                }
+            }
+        }
+    }
+
+}
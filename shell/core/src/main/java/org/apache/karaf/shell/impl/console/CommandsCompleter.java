@@ -34,6 +34,7 @@ import org.apache.karaf.shell.api.console.Candidate;
 import org.apache.karaf.shell.api.console.Command;
 import org.apache.karaf.shell.api.console.CommandLine;
 import org.apache.karaf.shell.api.console.Completer;
+import org.apache.karaf.shell.api.console.Registry;
 import org.apache.karaf.shell.api.console.Session;
 import org.apache.karaf.shell.api.console.SessionFactory;
 import org.apache.karaf.shell.impl.console.osgi.secured.SecuredCommand;
@@ -50,15 +51,22 @@ public class CommandsCompleter extends org.apache.karaf.shell.support.completers
 
     private final SessionFactory factory;
     private final Session session;
-    private final Map<String, Completer> globalCompleters = new HashMap<>();
-    private final Map<String, Completer> localCompleters = new HashMap<>();
     private final Completer aliasesCompleter = new SimpleCommandCompleter() {
         @Override
         protected Collection<String> getNames(Session session) {
             return getAliases(session);
         }
     };
+    // index of the commands when the registry does not provide one
     private final List<Command> commands = new ArrayList<>();
+    private CommandIndex commandIndex = new CommandIndex();
+    // per session overlay: visibility of the commands and aliases for the session user
+    private final Map<Command, Boolean> visibleCommands = new HashMap<>();
+    private long indexVersion = -1;
+    private long aclVersion = -1;
+    private Map<String, Object> aliasClosures = Collections.emptyMap();
+    private Set<String> aliases = Collections.emptySet();
+    private long aliasAclVersion = -1;
 
     public CommandsCompleter(SessionFactory factory, Session session) {
         this.factory = factory;
@@ -81,7 +89,7 @@ public class CommandsCompleter extends org.apache.karaf.shell.support.completers
     }
 
     public void completeCandidates(Session session, CommandLine commandLine, List<Candidate> candidates) {
-        Map<String, Completer>[] allCompleters = checkData();
+        Map<String, Completer>[] allCompleters = checkData(commandLine);
 
         List<String> scopes = getCurrentScopes(session);
         sort(allCompleters, scopes);
@@ -211,102 +219,144 @@ public class CommandsCompleter extends org.apache.karaf.shell.support.completers
         return completion;
     }
 
+    /**
+     * Return the global and local completers of the commands which may complete the command line.
+     * When completing the command name, only the commands starting with the typed prefix are returned,
+     * otherwise only the commands named by the first argument. If no command matches, all the commands
+     * are returned so that the line reader can still apply its own matching (typos, ...).
+     */
     @SuppressWarnings("unchecked")
-    protected Map<String, Completer>[] checkData() {
+    protected Map<String, Completer>[] checkData(CommandLine commandLine) {
+        CommandIndex index = getCommandIndex();
+        String[] args = commandLine.getArguments();
+        List<CommandIndex.Entry> entries;
+        if (commandLine.getCursorArgumentIndex() <= 0 || args.length == 0) {
+            String prefix = commandLine.getCursorArgument();
+            if (prefix == null) {
+                prefix = "";
+            } else {
+                prefix = prefix.substring(0, Math.min(prefix.length(), commandLine.getArgumentPosition()));
+            }
+            entries = getVisible(index, index.findByPrefix(prefix));
+        } else {
+            entries = getVisible(index, index.findByName(args[0]));
+        }
+        if (entries.isEmpty()) {
+            entries = getVisible(index, index.getAll());
+        }
+        Map<String, Completer> global = new HashMap<>();
+        Map<String, Completer> local = new HashMap<>();
+        for (CommandIndex.Entry entry : entries) {
+            global.put(entry.getKey(), entry.getCompleter(false));
+            local.put(entry.getKey(), entry.getCompleter(true));
+        }
+        return new Map[] { global, local };
+    }
+
+    private CommandIndex getCommandIndex() {
+        Registry registry = factory.getRegistry();
+        if (registry instanceof RegistryImpl && ((RegistryImpl) registry).parent == null) {
+            return ((RegistryImpl) registry).getCommandIndex();
+        }
         // Copy the set to avoid concurrent modification exceptions
         // TODO: fix that in gogo instead
-        Collection<Command> commands;
-        boolean update;
         synchronized (this) {
-            commands = factory.getRegistry().getCommands();
-            update = !commands.equals(this.commands);
-        }
-        if (update) {
-            // get command aliases
-            Map<String, Completer> global = new HashMap<>();
-            Map<String, Completer> local = new HashMap<>();
-
-            // add argument completers for each command
-            for (Command command : commands) {
-                String key = command.getScope() + ":" + command.getName();
-                Completer cg = command.getCompleter(false);
-                Completer cl = command.getCompleter(true);
-                if (cg == null) {
-                    if (Session.SCOPE_GLOBAL.equals(command.getScope())) {
-                        cg = new FixedSimpleCommandCompleter(Collections.singletonList(command.getName()));
-                    } else {
-                        cg = new FixedSimpleCommandCompleter(Arrays.asList(key, command.getName()));
-                    }
-                }
-                if (cl == null) {
-                    cl = new FixedSimpleCommandCompleter(Collections.singletonList(command.getName()));
-                }
-                global.put(key, cg);
-                local.put(key, cl);
-            }
-
-            synchronized (this) {
+            Collection<Command> commands = registry.getCommands();
+            if (!commands.equals(this.commands)) {
+                CommandIndex index = new CommandIndex();
+                commands.forEach(index::add);
                 this.commands.clear();
-                this.globalCompleters.clear();
-                this.localCompleters.clear();
                 this.commands.addAll(commands);
-                this.globalCompleters.putAll(global);
-                this.localCompleters.putAll(local);
+                this.commandIndex = index;
             }
+            return this.commandIndex;
         }
-        synchronized (this) {
-            return new Map[] {
-                    new HashMap<>(this.globalCompleters),
-                    new HashMap<>(this.localCompleters)
-            };
+    }
+
+    /**
+     * Filter the commands visible by the session user. The visibility of each command is computed once,
+     * until a command is registered or unregistered, or the command ACLs change.
+     */
+    private synchronized List<CommandIndex.Entry> getVisible(CommandIndex index, List<CommandIndex.Entry> entries) {
+        Registry registry = factory.getRegistry();
+        if (!(registry instanceof RegistryImpl)) {
+            return entries;
         }
+        long version = index.getVersion();
+        long acl = getAclVersion();
+        if (version != indexVersion || acl != aclVersion) {
+            visibleCommands.clear();
+            indexVersion = version;
+            aclVersion = acl;
+        }
+        List<CommandIndex.Entry> visible = new ArrayList<>(entries.size());
+        for (CommandIndex.Entry entry : entries) {
+            if (visibleCommands.computeIfAbsent(entry.getCommand(), ((RegistryImpl) registry)::isVisible)) {
+                visible.add(entry);
+            }
+        }
+        return visible;
+    }
+
+    private long getAclVersion() {
+        return factory instanceof SecuredSessionFactoryImpl ? ((SecuredSessionFactoryImpl) factory).getAclVersion() : 0;
     }
 
     /**
-     * Get the aliases defined in the console session.
+     * Get the aliases defined in the console session. The visibility of the aliases is only checked again
+     * when the aliases defined in the session or the command ACLs change.
      *
      * @return the aliases set
      */
     @SuppressWarnings("unchecked")
-    private Set<String> getAliases(Session session) {
+    private synchronized Set<String> getAliases(Session session) {
         Set<String> vars = ((Set<String>) session.get(null));
-        Set<String> aliases = new HashSet<>();
+        Map<String, Object> closures = new HashMap<>();
         for (String var : vars) {
             Object content = session.get(var);
             if (content != null && "org.apache.felix.gogo.runtime.Closure".equals(content.getClass().getName())) {
-
-                //check both acl for alias and original cmd to determine if it should be visible
-                int index = var.indexOf(":");
-                if (index > 0 && (factory instanceof SecuredSessionFactoryImpl)) {
-                    String scope = var.substring(0, index);
-                    String command = var.substring(index + 1);
-                    String originalCmd = content.toString();
-                    index = originalCmd.indexOf(" ");
-                    Object securityCmd = null;
-                    if (index > 0) {
-                        securityCmd = ((org.apache.felix.gogo.runtime.Closure)content).
-                            get(originalCmd.substring(0, index));
-                    }
-                    if (securityCmd instanceof SecuredCommand) {
-                        if (((SecuredSessionFactoryImpl)factory).isAliasVisible(scope, command)
-                            && ((SecuredSessionFactoryImpl)factory).isVisible(((SecuredCommand)securityCmd).getScope(),
-                                                                              ((SecuredCommand)securityCmd).getName())) {
-                            aliases.add(var);
-                        }
-                    } else {
-                        if (((SecuredSessionFactoryImpl)factory).isVisible(scope, command)) {
-                            aliases.add(var);
-                        }
-                    }
-                    
-                } else {
-                    aliases.add(var);
+                closures.put(var, content);
+            }
+        }
+        long acl = getAclVersion();
+        if (!closures.equals(aliasClosures) || acl != aliasAclVersion) {
+            Set<String> aliases = new HashSet<>();
+            for (Map.Entry<String, Object> closure : closures.entrySet()) {
+                if (isAliasVisible(closure.getKey(), closure.getValue())) {
+                    aliases.add(closure.getKey());
                 }
             }
+            this.aliasClosures = closures;
+            this.aliases = aliases;
+            this.aliasAclVersion = acl;
         }
         return aliases;
     }
 
+    private boolean isAliasVisible(String var, Object content) {
+        //check both acl for alias and original cmd to determine if it should be visible
+        int index = var.indexOf(":");
+        if (index > 0 && (factory instanceof SecuredSessionFactoryImpl)) {
+            String scope = var.substring(0, index);
+            String command = var.substring(index + 1);
+            String originalCmd = content.toString();
+            index = originalCmd.indexOf(" ");
+            Object securityCmd = null;
+            if (index > 0) {
+                securityCmd = ((org.apache.felix.gogo.runtime.Closure)content).
+                    get(originalCmd.substring(0, index));
+            }
+            if (securityCmd instanceof SecuredCommand) {
+                return ((SecuredSessionFactoryImpl)factory).isAliasVisible(scope, command)
+                    && ((SecuredSessionFactoryImpl)factory).isVisible(((SecuredCommand)securityCmd).getScope(),
+                                                                      ((SecuredCommand)securityCmd).getName());
+            } else {
+                return ((SecuredSessionFactoryImpl)factory).isVisible(scope, command);
+            }
+        }
+        return true;
+    }
+
     static abstract class SimpleCommandCompleter implements Completer {
 
         @Override
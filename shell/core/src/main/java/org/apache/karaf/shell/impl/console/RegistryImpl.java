@@ -35,6 +35,7 @@ public class RegistryImpl implements Registry {
     protected final Map<Object, Object> services = new LinkedHashMap<>();
     protected Session session;
     private final Map<String, List<Command>> commands = new HashMap<>();
+    private final CommandIndex commandIndex = new CommandIndex();
 
     public RegistryImpl(Registry parent) {
         this.parent = parent;
@@ -67,6 +68,13 @@ public class RegistryImpl implements Registry {
         return null;
     }
 
+    /**
+     * @return The completion index of the commands registered in this registry, not including its parent.
+     */
+    public CommandIndex getCommandIndex() {
+        return commandIndex;
+    }
+
     @Override
     public <T> void register(Callable<T> factory, Class<T> clazz) {
         synchronized (services) {
@@ -82,6 +90,7 @@ public class RegistryImpl implements Registry {
                 Command cmd = (Command) service;
                 String key = cmd.getScope() + ":" + cmd.getName();
                 commands.computeIfAbsent(key, k -> new ArrayList<>()).add(cmd);
+                commandIndex.add(cmd);
             }
         }
     }
@@ -100,6 +109,7 @@ public class RegistryImpl implements Registry {
                         commands.remove(key);
                     }
                 }
+                commandIndex.remove(cmd);
             }
         }
     }
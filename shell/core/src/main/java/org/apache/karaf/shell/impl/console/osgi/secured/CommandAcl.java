@@ -0,0 +1,212 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.karaf.shell.impl.console.osgi.secured;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.karaf.jaas.boot.principal.RolePrincipal;
+import org.apache.karaf.service.guard.tools.ACLConfigurationParser;
+import org.apache.karaf.service.guard.tools.ACLConfigurationParser.Specificity;
+
+/**
+ * <p>Compiled ACL of a command scope, built once per <code>org.apache.karaf.command.acl.*</code> configuration.</p>
+ * <p>The configuration keys are trimmed once, the roles of each command are resolved on first use, and the
+ * decisions are cached per (command, role set). Only the invocations of commands having argument based rules
+ * are evaluated against the configuration each time, as their outcome depends on the argument values.</p>
+ */
+class CommandAcl {
+
+    private static final int MAX_DECISIONS = 10000;
+    private static final String ROLE_PRINCIPAL_PREFIX = RolePrincipal.class.getName() + ":";
+
+    private final Dictionary<String, Object> config;
+    private final Set<String> argumentCommands;
+    private final Map<String, Rule> invokeRules = new ConcurrentHashMap<>();
+    private final Map<String, Rule> aliasInvokeRules = new ConcurrentHashMap<>();
+    private final Map<String, List<String>> visibleRoles = new ConcurrentHashMap<>();
+    private final Map<String, List<String>> aliasVisibleRoles = new ConcurrentHashMap<>();
+    private final Map<DecisionKey, Boolean> decisions = new ConcurrentHashMap<>();
+
+    CommandAcl(Dictionary<String, Object> config) {
+        this.config = ACLConfigurationParser.trimKeys(config);
+        Set<String> commands = new HashSet<>();
+        for (Enumeration<String> e = this.config.keys(); e.hasMoreElements(); ) {
+            String key = e.nextElement();
+            int index = key.indexOf('[');
+            if (index > 0 && key.endsWith("]")) {
+                commands.add(key.substring(0, index));
+            }
+        }
+        this.argumentCommands = Collections.unmodifiableSet(commands);
+    }
+
+    /**
+     * Return whether a command (or an alias) may be seen by a user, i.e. whether the user has one of
+     * the roles which can potentially invoke it.
+     *
+     * @param name The command name.
+     * @param alias Whether the command is an alias.
+     * @param userRoles The keys of the user roles, see {@link #getRoleKey}.
+     * @return {@code True} if the command is visible.
+     */
+    boolean isVisible(String name, boolean alias, Set<String> userRoles) {
+        DecisionKey key = new DecisionKey(name, alias ? Kind.ALIAS_VISIBLE : Kind.VISIBLE, userRoles);
+        Boolean decision = decisions.get(key);
+        if (decision == null) {
+            List<String> roles = (alias ? aliasVisibleRoles : visibleRoles).computeIfAbsent(name, n -> {
+                List<String> r = new ArrayList<>();
+                if (alias) {
+                    ACLConfigurationParser.getRolesForInvocationForAlias(n, null, null, config, r);
+                } else {
+                    ACLConfigurationParser.getRolesForInvocation(n, null, null, config, r);
+                }
+                return r;
+            });
+            decision = roles.isEmpty() || hasAnyRole(roles, userRoles);
+            putDecision(key, decision);
+        }
+        return decision;
+    }
+
+    /**
+     * Return whether a command (or an alias) may be invoked with the given arguments by a user.
+     *
+     * @param name The command name.
+     * @param alias Whether the command is an alias.
+     * @param arguments The invocation arguments.
+     * @param userRoles The keys of the user roles, see {@link #getRoleKey}.
+     * @return {@code True} if the invocation is allowed.
+     */
+    boolean canInvoke(String name, boolean alias, List<Object> arguments, Set<String> userRoles) {
+        if (argumentCommands.contains(name)) {
+            List<String> roles = new ArrayList<>();
+            Specificity s = alias
+                    ? ACLConfigurationParser.getRolesForInvocationForAlias(name, new Object[] { arguments.toString() }, null, config, roles)
+                    : ACLConfigurationParser.getRolesForInvocation(name, new Object[] { arguments.toString() }, null, config, roles);
+            return s == Specificity.NO_MATCH || hasAnyRole(roles, userRoles);
+        }
+        DecisionKey key = new DecisionKey(name, alias ? Kind.ALIAS_INVOKE : Kind.INVOKE, userRoles);
+        Boolean decision = decisions.get(key);
+        if (decision == null) {
+            // without argument rules, the outcome does not depend on the argument values
+            Rule rule = (alias ? aliasInvokeRules : invokeRules).computeIfAbsent(name, n -> {
+                List<String> r = new ArrayList<>();
+                Specificity s = alias
+                        ? ACLConfigurationParser.getRolesForInvocationForAlias(n, new Object[] { "" }, null, config, r)
+                        : ACLConfigurationParser.getRolesForInvocation(n, new Object[] { "" }, null, config, r);
+                return new Rule(s, r);
+            });
+            decision = rule.specificity == Specificity.NO_MATCH || hasAnyRole(rule.roles, userRoles);
+            putDecision(key, decision);
+        }
+        return decision;
+    }
+
+    /**
+     * Return the key identifying a role in the set returned by
+     * {@link SecuredSessionFactoryImpl#getCurrentUserRoles()}.
+     *
+     * @param requestedRole The role, optionally prefixed by the principal class name and a colon.
+     * @return The role key.
+     */
+    static String getRoleKey(String requestedRole) {
+        int index = requestedRole.indexOf(':');
+        if (index > 0) {
+            return requestedRole;
+        }
+        return ROLE_PRINCIPAL_PREFIX + requestedRole;
+    }
+
+    static boolean hasAnyRole(List<String> roles, Set<String> userRoles) {
+        if (userRoles.isEmpty()) {
+            return false;
+        }
+        for (String role : roles) {
+            if (userRoles.contains(getRoleKey(role))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void putDecision(DecisionKey key, boolean decision) {
+        if (decisions.size() >= MAX_DECISIONS) {
+            decisions.clear();
+        }
+        decisions.put(key, decision);
+    }
+
+    private enum Kind {
+        VISIBLE, ALIAS_VISIBLE, INVOKE, ALIAS_INVOKE
+    }
+
+    private static class Rule {
+        private final Specificity specificity;
+        private final List<String> roles;
+
+        Rule(Specificity specificity, List<String> roles) {
+            this.specificity = specificity;
+            this.roles = roles;
+        }
+    }
+
+    private static class DecisionKey {
+        private final String name;
+        private final Kind kind;
+        private final Set<String> roles;
+        private final int hash;
+
+        DecisionKey(String name, Kind kind, Set<String> roles) {
+            this.name = name;
+            this.kind = kind;
+            this.roles = roles;
+            this.hash = Objects.hash(name, kind, roles);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof DecisionKey)) {
+                return false;
+            }
+            DecisionKey that = (DecisionKey) o;
+            return hash == that.hash
+                    && kind == that.kind
+                    && name.equals(that.name)
+                    && roles.equals(that.roles);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+}
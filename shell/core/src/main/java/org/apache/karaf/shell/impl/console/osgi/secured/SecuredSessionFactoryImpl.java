@@ -24,13 +24,13 @@ import java.security.AccessController;
 import java.security.Principal;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Dictionary;
-import java.util.HashMap;
-import java.util.Iterator;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.security.auth.Subject;
 
@@ -38,7 +38,6 @@ import org.apache.felix.gogo.runtime.CommandNotFoundException;
 import org.apache.felix.gogo.runtime.CommandSessionImpl;
 import org.apache.felix.service.command.Function;
 import org.apache.felix.service.threadio.ThreadIO;
-import org.apache.karaf.jaas.boot.principal.RolePrincipal;
 import org.apache.karaf.service.guard.tools.ACLConfigurationParser;
 import org.apache.karaf.shell.api.console.Command;
 import org.apache.karaf.shell.impl.console.SessionFactoryImpl;
@@ -65,12 +64,15 @@ public class SecuredSessionFactoryImpl extends SessionFactoryImpl implements Con
 
     private static final Logger LOGGER = LoggerFactory.getLogger(SecuredSessionFactoryImpl.class);
 
+    private static final int MAX_VISIBLE_SERVICES = 10000;
+
     private BundleContext bundleContext;
-    private Map<String, Dictionary<String, Object>> scopes = new HashMap<>();
+    private Map<String, CommandAcl> scopes = new ConcurrentHashMap<>();
     private SingleServiceTracker<ConfigurationAdmin> configAdminTracker;
     private ServiceRegistration<ConfigurationListener> registration;
-    private ThreadLocal<Map<Object, Boolean>> serviceVisibleMap = new ThreadLocal<>();
-    private Map<Thread, Map<Object, Boolean>> serviceVisibleMapForAllThreads = new WeakHashMap<>();
+    // visibility of the registered services per (service, role set)
+    private Map<List<Object>, Boolean> serviceVisibleMap = new ConcurrentHashMap<>();
+    private final AtomicLong aclVersion = new AtomicLong();
 
     public SecuredSessionFactoryImpl(BundleContext bundleContext, ThreadIO threadIO) throws InvalidSyntaxException {
         super(threadIO);
@@ -105,67 +107,48 @@ public class SecuredSessionFactoryImpl extends SessionFactoryImpl implements Con
 
     @Override
     protected boolean isVisible(Object service) {
-        if (this.serviceVisibleMap.get() == null) {
-            this.serviceVisibleMap.set(new HashMap<>());
-            Thread cur = Thread.currentThread();
-            this.serviceVisibleMapForAllThreads.put(cur, this.serviceVisibleMap.get());
-        }
-        if (this.serviceVisibleMap.get().get(service) != null) {
-            return this.serviceVisibleMap.get().get(service);
-        }
-        if (service instanceof Command) {
-            Command cmd = (Command) service;
-            boolean ret = isVisible(cmd.getScope(), cmd.getName());
-            this.serviceVisibleMap.get().put(service, ret);
-            return ret;
-        } else {
-            boolean ret = super.isVisible(service);
-            this.serviceVisibleMap.get().put(service, ret);
-            return ret;
+        Set<String> roles = getCurrentUserRoles();
+        List<Object> key = Arrays.asList(service, roles);
+        Boolean visible = this.serviceVisibleMap.get(key);
+        if (visible == null) {
+            if (service instanceof Command) {
+                Command cmd = (Command) service;
+                visible = isVisible(cmd.getScope(), cmd.getName(), roles);
+            } else {
+                visible = super.isVisible(service);
+            }
+            if (this.serviceVisibleMap.size() >= MAX_VISIBLE_SERVICES) {
+                this.serviceVisibleMap.clear();
+            }
+            this.serviceVisibleMap.put(key, visible);
         }
+        return visible;
     }
 
     public boolean isVisible(String scope, String name) {
+        return isVisible(scope, name, getCurrentUserRoles());
+    }
+
+    private boolean isVisible(String scope, String name, Set<String> roles) {
         boolean visible = true;
-        Dictionary<String, Object> config = getScopeConfig(scope);
-        if (config != null) {
-            visible = false;
-            List<String> roles = new ArrayList<>();
-            ACLConfigurationParser.getRolesForInvocation(name, null, null, config, roles);
-            if (roles.isEmpty()) {
-                visible = true;
-            } else {
-                for (String role : roles) {
-                    if (currentUserHasRole(role)) {
-                        visible = true;
-                    }
-                }
-            }
-        } 
+        CommandAcl acl = getScopeConfig(scope);
+        if (acl != null) {
+            visible = acl.isVisible(name, false, roles);
+        }
         AliasCommand aliasCommand = findAlias(scope, name);
         if (aliasCommand != null) {
-            visible = visible && isAliasVisible(aliasCommand.getScope(), aliasCommand.getName());
+            visible = visible && isAliasVisible(aliasCommand.getScope(), aliasCommand.getName(), roles);
         }
         return visible;
     }
 
     public boolean isAliasVisible(String scope, String name) {
-        Dictionary<String, Object> config = getScopeConfig(scope);
-        if (config != null) {
-            List<String> roles = new ArrayList<>();
-            ACLConfigurationParser.getRolesForInvocationForAlias(name, null, null, config, roles);
-            if (roles.isEmpty()) {
-                return true;
-            } else {
-                for (String role : roles) {
-                    if (currentUserHasRole(role)) {
-                        return true;
-                    }
-                }
-                return false;
-            }
-        } 
-        return true;
+        return isAliasVisible(scope, name, getCurrentUserRoles());
+    }
+
+    private boolean isAliasVisible(String scope, String name, Set<String> roles) {
+        CommandAcl acl = getScopeConfig(scope);
+        return acl == null || acl.isVisible(name, true, roles);
     }
        
     private AliasCommand findAlias(String scope, String name) {
@@ -204,94 +187,55 @@ public class SecuredSessionFactoryImpl extends SessionFactoryImpl implements Con
     
     
     void checkSecurity(String scope, String name, List<Object> arguments) {
-       
-        Dictionary<String, Object> config = getScopeConfig(scope);
-        boolean passCheck = false;
-        if (config != null) {
-            if (!isVisible(scope, name)) {
+        CommandAcl acl = getScopeConfig(scope);
+        Set<String> roles = getCurrentUserRoles();
+        if (acl != null) {
+            if (!isVisible(scope, name, roles)) {
                 throw new CommandNotFoundException(scope + ":" + name);
             }
-            List<String> roles = new ArrayList<>();
-            ACLConfigurationParser.Specificity s = ACLConfigurationParser.getRolesForInvocation(name, new Object[] { arguments.toString() }, null, config, roles);
-            if (s == ACLConfigurationParser.Specificity.NO_MATCH) {
-                passCheck = true;
-            }
-            for (String role : roles) {
-                if (currentUserHasRole(role)) {
-                    passCheck = true;
-                }
-            }
-            if (!passCheck) {
+            if (!acl.canInvoke(name, false, arguments, roles)) {
                 throw new SecurityException("Insufficient credentials.");
             }
         } else {
-            List<String> roles = new ArrayList<>();
-            ACLConfigurationParser.getCompulsoryRoles(roles);
-            if (roles.size() == 0) {
-                passCheck = true;
-            }
-            for (String role : roles) {
-                if (currentUserHasRole(role)) {
-                    passCheck = true;
-                }
-            }
-            if (!passCheck) {
+            List<String> compulsoryRoles = new ArrayList<>();
+            ACLConfigurationParser.getCompulsoryRoles(compulsoryRoles);
+            if (!compulsoryRoles.isEmpty() && !CommandAcl.hasAnyRole(compulsoryRoles, roles)) {
                 throw new SecurityException("Insufficient credentials.");
             }
         }
-        AliasCommand aliasCommand = findAlias(scope, name); 
+        AliasCommand aliasCommand = findAlias(scope, name);
         if (aliasCommand != null) {
             //this is the alias
-            if (config != null) {
-                if (!isAliasVisible(aliasCommand.getScope(), aliasCommand.getName())) {
+            if (acl != null) {
+                if (!isAliasVisible(aliasCommand.getScope(), aliasCommand.getName(), roles)) {
                     throw new CommandNotFoundException(aliasCommand.getScope() + ":" + aliasCommand.getName());
                 }
-                List<String> roles = new ArrayList<>();
-                ACLConfigurationParser.Specificity s = ACLConfigurationParser.getRolesForInvocationForAlias(aliasCommand.getName(), new Object[] { arguments.toString() }, null, config, roles);
-                if (s == ACLConfigurationParser.Specificity.NO_MATCH) {
-                    return;
-                }
-                for (String role : roles) {
-                    if (currentUserHasRole(role)) {
-                        return;
-                    }
+                if (!acl.canInvoke(aliasCommand.getName(), true, arguments, roles)) {
+                    throw new SecurityException("Insufficient credentials.");
                 }
-                throw new SecurityException("Insufficient credentials.");
             }
         }
-               
     }
 
-
-    static boolean currentUserHasRole(String requestedRole) {
-        String clazz;
-        String role;
-        int index = requestedRole.indexOf(':');
-        if (index > 0) {
-            clazz = requestedRole.substring(0, index);
-            role = requestedRole.substring(index + 1);
-        } else {
-            clazz = RolePrincipal.class.getName();
-            role = requestedRole;
-        }
-
+    /**
+     * Return the roles of the current user, as <code>principalClass:name</code> keys.
+     *
+     * @return The roles, empty if there is no authenticated subject.
+     */
+    static Set<String> getCurrentUserRoles() {
         AccessControlContext acc = AccessController.getContext();
         if (acc == null) {
-            return false;
+            return Collections.emptySet();
         }
         Subject subject = Subject.getSubject(acc);
-
         if (subject == null) {
-            return false;
+            return Collections.emptySet();
         }
-
+        Set<String> roles = new HashSet<>();
         for (Principal p : subject.getPrincipals()) {
-            if (clazz.equals(p.getClass().getName()) && role.equals(p.getName())) {
-                return true;
-            }
+            roles.add(p.getClass().getName() + ":" + p.getName());
         }
-
-        return false;
+        return roles;
     }
 
     @Override
@@ -300,11 +244,7 @@ public class SecuredSessionFactoryImpl extends SessionFactoryImpl implements Con
             return;
 
         try {
-            synchronized(this.serviceVisibleMap) {
-                if (this.serviceVisibleMap.get() != null) {
-                    this.serviceVisibleMap.get().clear();
-                }
-            }
+            this.serviceVisibleMap.clear();
             switch (event.getType()) {
                 case ConfigurationEvent.CM_DELETED:
                     removeScopeConfig(event.getPid().substring(PROXY_COMMAND_ACL_PID_PREFIX.length()));
@@ -332,13 +272,7 @@ public class SecuredSessionFactoryImpl extends SessionFactoryImpl implements Con
     }
 
     private void removeUnregisteredSeriveForAllShell(Object service) {
-        synchronized (this.serviceVisibleMapForAllThreads) {
-            for (final Iterator<Map<Object, Boolean>> iterator = this.serviceVisibleMapForAllThreads.values().iterator();
-                iterator.hasNext();) {
-                Map<Object, Boolean> serviceMap = iterator.next();
-                serviceMap.remove(service);
-            }
-        }
+        this.serviceVisibleMap.keySet().removeIf(key -> key.get(0) == service);
     }
 
     private void addScopeConfig(Configuration config) {
@@ -352,27 +286,32 @@ public class SecuredSessionFactoryImpl extends SessionFactoryImpl implements Con
             return;
         }
         scope = scope.trim();
-        synchronized (scopes) {
-            if (scope.endsWith("*")) {
-                scope = "star";
-            }
-            scopes.put(scope, config.getProcessedProperties(null));
+        if (scope.endsWith("*")) {
+            scope = "star";
         }
+        scopes.put(scope, new CommandAcl(config.getProcessedProperties(null)));
+        this.serviceVisibleMap.clear();
+        this.aclVersion.incrementAndGet();
     }
 
     private void removeScopeConfig(String scope) {
-        synchronized (scopes) {
-            scopes.remove(scope);
-        }
+        scopes.remove(scope);
+        this.serviceVisibleMap.clear();
+        this.aclVersion.incrementAndGet();
     }
 
-    private Dictionary<String, Object> getScopeConfig(String scope) {
-        synchronized (scopes) {
-            if (scope.equals("*")) {
-                scope = "star";
-            }
-            return scopes.get(scope);
+    /**
+     * @return A number changing each time a command ACL configuration is added, updated or removed.
+     */
+    public long getAclVersion() {
+        return aclVersion.get();
+    }
+
+    private CommandAcl getScopeConfig(String scope) {
+        if (scope.equals("*")) {
+            scope = "star";
         }
+        return scopes.get(scope);
     }
 
     protected void update(ConfigurationAdmin prev, ConfigurationAdmin configAdmin) {
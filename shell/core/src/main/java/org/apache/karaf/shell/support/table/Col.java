@@ -52,6 +52,11 @@ public class Col {
     boolean bold;
     boolean cyan;
 
+    /**
+     * Set while a table is streamed, once the size has been computed.
+     */
+    boolean frozen;
+
 
     /**
      * Alignment
@@ -149,7 +154,9 @@ public class Col {
             return "";
         }
         String finalContent = cut(fullContent, getClippedSize(fullContent.length()));
-        updateSize(finalContent.length());
+        if (!frozen) {
+            updateSize(finalContent.length());
+        }
         return finalContent;
     }
 
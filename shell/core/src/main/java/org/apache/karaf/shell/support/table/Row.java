@@ -43,6 +43,10 @@ public class Row {
         data.addAll(Arrays.asList(cellDataAr));
     }
     
+    List<Object> getData() {
+        return data;
+    }
+
     void formatContent(List<Col> cols) {
         content.clear();
         int c = 0;
@@ -43,6 +43,30 @@ public class ShellTable {
     private static final String DEFAULT_SEPARATOR_ASCII = " " + SEP_VERTICAL_ASCII + " ";
     private static final String DEFAULT_SEPARATOR_NO_FORMAT = "\t";
 
+    /**
+     * Default number of rows used to compute the column sizes of a streamed table.
+     */
+    public static final int DEFAULT_SAMPLE_SIZE = 100;
+
+    /**
+     * Rendering of the table.
+     */
+    public enum Mode {
+        /**
+         * Aligned columns, with headers and borders.
+         */
+        TABLE,
+        /**
+         * One line per row with the raw cell values separated by tabs, headers on the first line.
+         * Tabs, new lines and backslashes in the values are escaped with a backslash.
+         */
+        TSV,
+        /**
+         * One JSON object per row, with the column headers as keys.
+         */
+        JSON
+    }
+
     private List<Col> cols = new ArrayList<>();
     private List<Row> rows = new ArrayList<>();
     private boolean showHeaders = true;
@@ -50,6 +74,15 @@ public class ShellTable {
     private int size;
     private String emptyTableText;
     private boolean forceAscii;
+    private Mode mode = Mode.TABLE;
+    private int sampleSize = DEFAULT_SAMPLE_SIZE;
+
+    // streaming state
+    private PrintStream streamOut;
+    private boolean streamFormat;
+    private boolean streamUnicode;
+    private boolean streamStarted;
+    private int streamedRows;
 
     public ShellTable() {
 
@@ -82,10 +115,68 @@ public class ShellTable {
     }
 
     public Row addRow() {
+        if (streamOut != null) {
+            // the previous rows are complete
+            flushRows(false);
+        }
         Row row = new Row();
         rows.add(row);
         return row;
     }
+
+    /**
+     * Set the rendering of the table, {@link Mode#TABLE} by default.
+     *
+     * @param mode the rendering mode.
+     * @return the shell table.
+     */
+    public ShellTable mode(Mode mode) {
+        this.mode = mode;
+        return this;
+    }
+
+    /**
+     * Set the number of rows used to compute the column sizes when the table is streamed. The rows
+     * coming later are cut or wrapped to these sizes. With 0, the sizes are the headers sizes grown
+     * to the declared {@link Col#maxSize(int) maximum sizes}.
+     *
+     * @param sampleSize the number of rows.
+     * @return the shell table.
+     */
+    public ShellTable sampleSize(int sampleSize) {
+        this.sampleSize = Math.max(0, sampleSize);
+        return this;
+    }
+
+    /**
+     * Print the rows while they are added instead of buffering the whole table. The column sizes are
+     * computed from the first {@link #sampleSize(int) rows}, and each row is printed once the next one
+     * is added. The remaining rows are printed by {@link #print(PrintStream)} to its stream, which must still
+     * be called.
+     *
+     * @param out the stream to print the table to.
+     * @return the shell table.
+     */
+    public ShellTable stream(PrintStream out) {
+        return stream(out, true);
+    }
+
+    /**
+     * Print the rows while they are added instead of buffering the whole table.
+     *
+     * @param out the stream to print the table to.
+     * @param format false to disable the headers and borders.
+     * @return the shell table.
+     * @see #stream(PrintStream)
+     */
+    public ShellTable stream(PrintStream out, boolean format) {
+        this.streamOut = out;
+        this.streamFormat = format;
+        this.streamUnicode = supportsUnicode(out, null);
+        this.streamStarted = false;
+        this.streamedRows = 0;
+        return this;
+    }
     
     public ShellTable forceAscii() {
         forceAscii = true;
@@ -112,6 +203,19 @@ public class ShellTable {
     }
 
     public void print(PrintStream out, Charset charset, boolean format)  {
+        if (streamOut != null) {
+            streamOut = out;
+            flushRows(true);
+            streamOut = null;
+            for (Col col : cols) {
+                col.frozen = false;
+            }
+            return;
+        }
+        if (mode != Mode.TABLE) {
+            printRaw(out, rows, showHeaders);
+            return;
+        }
         boolean unicode = supportsUnicode(out, charset);
         String separator = unicode ? this.separator : DEFAULT_SEPARATOR_ASCII;
 
@@ -127,33 +231,186 @@ public class ShellTable {
         }
 
         if (format && showHeaders) {
-            String headerLine = headerRow.getContent(cols, separator);
-            out.println(headerLine);
-            int iCol = 0;
-            for (Col col : cols) {
-                if (iCol++ == 0) {
-                    out.print(underline(col.getSize(), false, unicode));
-                } else {
-                    out.print(underline(col.getSize() + 3, true, unicode));
+            printHeader(out, headerRow, separator, unicode);
+        }
+
+        for (Row row : rows) {
+            printRow(out, row, separator, format);
+        }
+
+        if (format && rows.size() == 0 && emptyTableText != null) {
+            out.println(emptyTableText);
+        }
+    }
+
+    /**
+     * Print the complete rows of a streamed table.
+     *
+     * @param last true when the table is complete.
+     */
+    private void flushRows(boolean last) {
+        if (mode != Mode.TABLE) {
+            printRaw(streamOut, rows, showHeaders && !streamStarted);
+            streamStarted = true;
+            streamedRows += rows.size();
+            rows.clear();
+            return;
+        }
+        String separator = streamUnicode ? this.separator : DEFAULT_SEPARATOR_ASCII;
+        if (!streamStarted) {
+            if (!last && rows.size() < sampleSize) {
+                // still sampling the column sizes
+                return;
+            }
+            Row headerRow = new Row(cols);
+            headerRow.formatContent(cols);
+            for (Row row : rows) {
+                row.formatContent(cols);
+            }
+            if (sampleSize == 0) {
+                for (Col col : cols) {
+                    if (col.maxSize > 0) {
+                        col.size = Math.max(col.size, col.maxSize);
+                    }
                 }
-                iCol++;
             }
-            out.println();
+            if (size > 0) {
+                adjustSize();
+            }
+            // the sizes are now fixed, later rows are cut or wrapped
+            for (Col col : cols) {
+                col.frozen = true;
+            }
+            if (streamFormat && showHeaders) {
+                printHeader(streamOut, headerRow, separator, streamUnicode);
+            }
+            streamStarted = true;
+        } else {
+            for (Row row : rows) {
+                row.formatContent(cols);
+            }
+        }
+        for (Row row : rows) {
+            printRow(streamOut, row, separator, streamFormat);
+        }
+        streamedRows += rows.size();
+        rows.clear();
+        streamOut.flush();
+        if (last && streamFormat && streamedRows == 0 && emptyTableText != null) {
+            streamOut.println(emptyTableText);
+        }
+    }
+
+    private void printHeader(PrintStream out, Row headerRow, String separator, boolean unicode) {
+        out.println(headerRow.getContent(cols, separator));
+        int iCol = 0;
+        for (Col col : cols) {
+            if (iCol++ == 0) {
+                out.print(underline(col.getSize(), false, unicode));
+            } else {
+                out.print(underline(col.getSize() + 3, true, unicode));
+            }
+            iCol++;
+        }
+        out.println();
+    }
+
+    private void printRow(PrintStream out, Row row, String separator, boolean format) {
+        if (!format && (separator == null || separator.equals(DEFAULT_SEPARATOR))) {
+            out.println(row.getContent(cols, DEFAULT_SEPARATOR_NO_FORMAT));
+        } else {
+            out.println(row.getContent(cols, separator));
         }
+    }
 
+    private void printRaw(PrintStream out, List<Row> rows, boolean headers) {
+        StringBuilder sb = new StringBuilder();
+        if (mode == Mode.TSV && headers) {
+            for (int i = 0; i < cols.size(); i++) {
+                if (i > 0) {
+                    sb.append('\t');
+                }
+                escapeTsv(sb, cols.get(i).getHeader());
+            }
+            out.println(sb);
+        }
         for (Row row : rows) {
-            if (!format) {
-                if (separator == null || separator.equals(DEFAULT_SEPARATOR))
-                    out.println(row.getContent(cols, DEFAULT_SEPARATOR_NO_FORMAT));
-                else out.println(row.getContent(cols, separator));
+            sb.setLength(0);
+            List<Object> data = row.getData();
+            if (mode == Mode.TSV) {
+                for (int i = 0; i < cols.size(); i++) {
+                    if (i > 0) {
+                        sb.append('\t');
+                    }
+                    Object value = i < data.size() ? data.get(i) : null;
+                    if (value != null) {
+                        escapeTsv(sb, value.toString());
+                    }
+                }
             } else {
-                out.println(row.getContent(cols, separator));
+                sb.append('{');
+                for (int i = 0; i < cols.size(); i++) {
+                    if (i > 0) {
+                        sb.append(',');
+                    }
+                    appendJson(sb, cols.get(i).getHeader());
+                    sb.append(':');
+                    Object value = i < data.size() ? data.get(i) : null;
+                    if (value == null) {
+                        sb.append("null");
+                    } else if (isJsonLiteral(value)) {
+                        sb.append(value);
+                    } else {
+                        appendJson(sb, value.toString());
+                    }
+                }
+                sb.append('}');
             }
+            out.println(sb);
         }
+    }
 
-        if (format && rows.size() == 0 && emptyTableText != null) {
-            out.println(emptyTableText);
+    private static boolean isJsonLiteral(Object value) {
+        if (value instanceof Double || value instanceof Float) {
+            double d = ((Number) value).doubleValue();
+            return !Double.isNaN(d) && !Double.isInfinite(d);
+        }
+        return value instanceof Boolean || value instanceof Integer || value instanceof Long
+                || value instanceof Short || value instanceof Byte;
+    }
+
+    private static void escapeTsv(StringBuilder sb, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\t': sb.append("\\t"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\\': sb.append("\\\\"); break;
+                default: sb.append(c);
+            }
+        }
+    }
+
+    private static void appendJson(StringBuilder sb, String value) {
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
         }
+        sb.append('"');
     }
 
     private boolean supportsUnicode(PrintStream out, Charset charset) {
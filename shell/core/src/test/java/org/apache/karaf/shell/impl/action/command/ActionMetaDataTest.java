@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.karaf.shell.impl.action.command;
+
+import org.apache.karaf.shell.api.action.Action;
+import org.apache.karaf.shell.api.action.Argument;
+import org.apache.karaf.shell.api.action.Command;
+import org.apache.karaf.shell.api.action.Option;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ActionMetaDataTest {
+
+    @Test
+    public void testMetaData() throws Exception {
+        ActionMetaData metadata = ActionMetaData.get(MyAction.class);
+        assertSame(metadata, ActionMetaData.get(MyAction.class));
+        assertEquals("test", metadata.getCommand().name());
+        assertEquals(2, metadata.getOptions().size());
+        assertEquals("--verbose", metadata.getOption("-v").name());
+        assertEquals("--verbose", metadata.getOption("--verbose").name());
+        assertNull(metadata.getOption("--unknown"));
+        assertEquals("first", metadata.getOrderedArguments().get(0).name());
+        assertEquals("others", metadata.getOrderedArguments().get(1).name());
+
+        MyAction action = new MyAction();
+        metadata.set(action, BaseAction.class.getDeclaredField("verbose"), true);
+        metadata.set(action, MyAction.class.getDeclaredField("first"), "value");
+        assertTrue(action.verbose);
+        assertEquals("value", action.first);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDuplicateIndex() {
+        ActionMetaData.get(DuplicateAction.class);
+    }
+
+    public abstract static class BaseAction implements Action {
+        @Option(name = "--verbose", aliases = "-v")
+        boolean verbose;
+    }
+
+    @Command(scope = "test", name = "test")
+    public static class MyAction extends BaseAction {
+        @Option(name = "--size")
+        private int size;
+
+        @Argument(index = 0)
+        private String first;
+
+        @Argument(index = 1, multiValued = true)
+        private List<String> others;
+
+        @Override
+        public Object execute() throws Exception {
+            return null;
+        }
+    }
+
+    @Command(scope = "test", name = "duplicate")
+    public static class DuplicateAction implements Action {
+        @Argument(index = 0)
+        private String first;
+
+        @Argument(index = 0)
+        private String second;
+
+        @Override
+        public Object execute() throws Exception {
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.karaf.shell.impl.console;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.felix.gogo.runtime.threadio.ThreadIOImpl;
+import org.apache.karaf.shell.api.action.Action;
+import org.apache.karaf.shell.api.action.Command;
+import org.apache.karaf.shell.impl.action.command.ActionCommand;
+import org.apache.karaf.shell.impl.action.command.ManagerImpl;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CommandIndexTest {
+
+    @Test
+    public void testIncrementalIndex() {
+        SessionFactoryImpl sessionFactory = new SessionFactoryImpl(new ThreadIOImpl());
+        ManagerImpl manager = new ManagerImpl(sessionFactory, sessionFactory);
+        ActionCommand foo = new ActionCommand(manager, FooCommand.class);
+        ActionCommand bar = new ActionCommand(manager, BarCommand.class);
+        ActionCommand otherFoo = new ActionCommand(manager, OtherFooCommand.class);
+        CommandIndex index = sessionFactory.getCommandIndex();
+
+        long version = index.getVersion();
+        sessionFactory.getRegistry().register(foo);
+        sessionFactory.getRegistry().register(bar);
+        sessionFactory.getRegistry().register(otherFoo);
+        assertNotEquals(version, index.getVersion());
+
+        assertEquals(keys(foo, bar), keys(index.findByPrefix("scope:")));
+        assertEquals(keys(foo, bar), keys(index.findByPrefix("SCOPE:")));
+        assertTrue(keys(index.findByPrefix("fo")).containsAll(keys(foo, otherFoo)));
+        assertEquals(keys(foo, otherFoo), keys(index.findByName("foo")));
+        assertEquals(keys(foo), keys(index.findByName("scope:foo")));
+        assertTrue(index.findByName("scope:").isEmpty());
+        assertTrue(index.findByPrefix("unknown").isEmpty());
+
+        CommandIndex.Entry entry = index.findByName("scope:foo").get(0);
+        assertSame(entry.getCompleter(false), entry.getCompleter(false));
+
+        sessionFactory.getRegistry().unregister(foo);
+        assertEquals(keys(bar), keys(index.findByPrefix("scope:")));
+        assertEquals(keys(otherFoo), keys(index.findByName("foo")));
+    }
+
+    private static List<String> keys(ActionCommand... commands) {
+        List<String> keys = new ArrayList<>();
+        for (ActionCommand command : commands) {
+            keys.add(command.getScope() + ":" + command.getName());
+        }
+        keys.sort(String::compareTo);
+        return keys;
+    }
+
+    private static List<String> keys(List<CommandIndex.Entry> entries) {
+        List<String> keys = new ArrayList<>();
+        for (CommandIndex.Entry entry : entries) {
+            keys.add(entry.getKey());
+        }
+        keys.sort(String::compareTo);
+        return keys;
+    }
+
+    @Command(scope = "scope", name = "foo")
+    static class FooCommand implements Action {
+        @Override
+        public Object execute() throws Exception {
+            return null;
+        }
+    }
+
+    @Command(scope = "scope", name = "bar")
+    static class BarCommand implements Action {
+        @Override
+        public Object execute() throws Exception {
+            return null;
+        }
+    }
+
+    @Command(scope = "other", name = "foo")
+    static class OtherFooCommand implements Action {
+        @Override
+        public Object execute() throws Exception {
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.karaf.shell.impl.console.osgi.secured;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.karaf.service.guard.tools.ACLConfigurationParser;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CommandAclTest {
+
+    private static final Set<String> ADMIN = roles("admin");
+    private static final Set<String> MANAGER = roles("manager");
+    private static final Set<String> VIEWER = roles("viewer");
+    private static final Set<String> NONE = Collections.emptySet();
+
+    @Test
+    public void testVisibility() {
+        CommandAcl acl = new CommandAcl(config(
+                "install", "admin",
+                " list ", "viewer, admin",
+                "restart", ""));
+
+        assertTrue(acl.isVisible("install", false, ADMIN));
+        assertFalse(acl.isVisible("install", false, VIEWER));
+        assertFalse(acl.isVisible("install", false, NONE));
+        // the keys are trimmed
+        assertTrue(acl.isVisible("list", false, VIEWER));
+        assertTrue(acl.isVisible("list", false, ADMIN));
+        assertFalse(acl.isVisible("list", false, MANAGER));
+        // commands without rules are visible and can be invoked by anyone
+        assertTrue(acl.isVisible("status", false, VIEWER));
+        assertTrue(acl.canInvoke("status", false, args(), VIEWER));
+        // no role can invoke a command with an empty rule
+        assertTrue(acl.isVisible("restart", false, ADMIN));
+        assertFalse(acl.canInvoke("restart", false, args(), ADMIN));
+
+        // the cached decisions are per role set
+        assertTrue(acl.isVisible("install", false, ADMIN));
+        assertFalse(acl.isVisible("install", false, VIEWER));
+        assertTrue(acl.isVisible("install", false, roles("viewer", "admin")));
+        assertTrue(acl.canInvoke("install", false, args("mvn:foo/bar"), ADMIN));
+        assertFalse(acl.canInvoke("install", false, args("mvn:foo/bar"), VIEWER));
+    }
+
+    @Test
+    public void testArgumentRules() {
+        CommandAcl acl = new CommandAcl(config(
+                "install[/.*foo.*/]", "admin",
+                "install", "manager, admin",
+                "list", "viewer"));
+
+        // the command is visible to the roles which may invoke it with some arguments
+        assertTrue(acl.isVisible("install", false, MANAGER));
+        assertTrue(acl.isVisible("install", false, ADMIN));
+        assertFalse(acl.isVisible("install", false, VIEWER));
+
+        // the argument rules are evaluated for each invocation, a decision is never reused for other arguments
+        for (int i = 0; i < 2; i++) {
+            assertFalse(acl.canInvoke("install", false, args("mvn:foo/bar"), MANAGER));
+            assertTrue(acl.canInvoke("install", false, args("mvn:foo/bar"), ADMIN));
+            assertTrue(acl.canInvoke("install", false, args("mvn:baz/bar"), MANAGER));
+            assertFalse(acl.canInvoke("install", false, args("mvn:baz/bar"), VIEWER));
+        }
+
+        // the other commands of the scope don't depend on the arguments
+        assertTrue(acl.canInvoke("list", false, args("foo"), VIEWER));
+        assertFalse(acl.canInvoke("list", false, args("foo"), ADMIN));
+    }
+
+    @Test
+    public void testAliases() {
+        CommandAcl acl = new CommandAcl(config(
+                "ll", "admin",
+                "ll[/.*secret.*/]", "root"));
+
+        assertTrue(acl.isVisible("ll", true, ADMIN));
+        assertFalse(acl.isVisible("ll", true, VIEWER));
+        assertTrue(acl.canInvoke("ll", true, args("etc"), ADMIN));
+        assertFalse(acl.canInvoke("ll", true, args("secret"), ADMIN));
+        assertTrue(acl.canInvoke("ll", true, args("secret"), roles("root")));
+        assertFalse(acl.canInvoke("ll", true, args("etc"), VIEWER));
+        // the alias and command decisions are kept apart
+        assertTrue(acl.isVisible("ll", true, ADMIN));
+        assertTrue(acl.isVisible("other", true, VIEWER));
+    }
+
+    @Test
+    public void testCompulsoryRoles() throws Exception {
+        String previous = setCompulsoryRoles("admin");
+        try {
+            CommandAcl acl = new CommandAcl(config("list", "viewer"));
+
+            // the commands without rules require one of the compulsory roles
+            assertTrue(acl.isVisible("status", false, ADMIN));
+            assertFalse(acl.isVisible("status", false, VIEWER));
+            assertTrue(acl.canInvoke("status", false, args(), ADMIN));
+            assertFalse(acl.canInvoke("status", false, args(), VIEWER));
+            // but not the commands having a rule
+            assertTrue(acl.canInvoke("list", false, args(), VIEWER));
+            assertFalse(acl.canInvoke("list", false, args(), ADMIN));
+            // nor the aliases
+            assertTrue(acl.isVisible("status", true, VIEWER));
+            assertTrue(acl.canInvoke("status", true, args(), VIEWER));
+        } finally {
+            setCompulsoryRoles(previous);
+        }
+    }
+
+    @Test
+    public void testRoleKey() {
+        assertTrue(CommandAcl.hasAnyRole(Arrays.asList("viewer", "admin"), ADMIN));
+        assertFalse(CommandAcl.hasAnyRole(Arrays.asList("viewer", "admin"), NONE));
+        // roles may be qualified by their principal class
+        assertTrue(CommandAcl.hasAnyRole(Collections.singletonList("org.example.Group:admin"),
+                Collections.singleton("org.example.Group:admin")));
+        assertFalse(CommandAcl.hasAnyRole(Collections.singletonList("org.example.Group:admin"), ADMIN));
+    }
+
+    static Dictionary<String, Object> config(String... entries) {
+        Dictionary<String, Object> config = new Hashtable<>();
+        config.put("service.pid", "org.apache.karaf.command.acl.test");
+        for (int i = 0; i < entries.length; i += 2) {
+            config.put(entries[i], entries[i + 1]);
+        }
+        return config;
+    }
+
+    static Set<String> roles(String... roles) {
+        Set<String> keys = new HashSet<>();
+        for (String role : roles) {
+            keys.add(CommandAcl.getRoleKey(role));
+        }
+        return keys;
+    }
+
+    private static List<Object> args(Object... args) {
+        return Arrays.asList(args);
+    }
+
+    private static String setCompulsoryRoles(String roles) throws Exception {
+        // read from a system property when the parser class is loaded
+        Field field = ACLConfigurationParser.class.getDeclaredField("compulsoryRoles");
+        field.setAccessible(true);
+        String previous = (String) field.get(null);
+        field.set(null, roles);
+        return previous;
+    }
+
+}
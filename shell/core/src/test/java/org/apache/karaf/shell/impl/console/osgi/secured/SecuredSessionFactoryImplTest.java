@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.karaf.shell.impl.console.osgi.secured;
+
+import java.security.PrivilegedActionException;
+import java.security.PrivilegedExceptionAction;
+import java.util.Arrays;
+import java.util.Dictionary;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.security.auth.Subject;
+
+import org.apache.felix.gogo.runtime.CommandNotFoundException;
+import org.apache.felix.gogo.runtime.threadio.ThreadIOImpl;
+import org.apache.karaf.jaas.boot.principal.RolePrincipal;
+import org.apache.karaf.shell.api.console.Command;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
+import org.osgi.service.cm.Configuration;
+import org.osgi.service.cm.ConfigurationAdmin;
+import org.osgi.service.cm.ConfigurationEvent;
+
+import static org.easymock.EasyMock.anyString;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.getCurrentArguments;
+import static org.easymock.EasyMock.isNull;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SecuredSessionFactoryImplTest {
+
+    private static final String PID_PREFIX = "org.apache.karaf.command.acl.";
+
+    private final Map<String, Dictionary<String, Object>> configs = new HashMap<>();
+    private ServiceReference<ConfigurationAdmin> reference;
+    private SecuredSessionFactoryImpl factory;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception {
+        ConfigurationAdmin configAdmin = createMock(ConfigurationAdmin.class);
+        expect(configAdmin.getConfiguration(anyString(), isNull()))
+                .andAnswer(() -> configuration((String) getCurrentArguments()[0])).anyTimes();
+        reference = createMock(ServiceReference.class);
+        BundleContext bundleContext = createNiceMock(BundleContext.class);
+        expect(bundleContext.getService(reference)).andReturn(configAdmin).anyTimes();
+        replay(configAdmin, reference, bundleContext);
+        factory = new SecuredSessionFactoryImpl(bundleContext, new ThreadIOImpl());
+    }
+
+    @Test
+    public void testVisibilityAfterConfigurationChange() throws Exception {
+        Command install = command("bundle", "install");
+        assertTrue(as("viewer", () -> factory.isVisible(install)));
+        assertTrue(as("admin", () -> factory.isVisible(install)));
+
+        long version = factory.getAclVersion();
+        update("bundle", "install", "admin");
+        assertTrue(factory.getAclVersion() != version);
+        assertFalse(as("viewer", () -> factory.isVisible(install)));
+        assertTrue(as("admin", () -> factory.isVisible(install)));
+
+        // the cached visibility is dropped on update
+        update("bundle", "install", "viewer");
+        assertTrue(as("viewer", () -> factory.isVisible(install)));
+        assertFalse(as("admin", () -> factory.isVisible(install)));
+
+        // and on delete
+        delete("bundle");
+        assertTrue(as("viewer", () -> factory.isVisible(install)));
+        assertTrue(as("admin", () -> factory.isVisible(install)));
+    }
+
+    @Test
+    public void testInvocationAfterConfigurationChange() throws Exception {
+        List<Object> foo = Arrays.asList("mvn:foo/bar");
+        List<Object> baz = Arrays.asList("mvn:baz/bar");
+        assertEquals("ok", as("viewer", () -> check("bundle", "install", foo)));
+
+        update("bundle", "install", "admin");
+        try {
+            as("viewer", () -> check("bundle", "install", foo));
+            fail("The command should be hidden");
+        } catch (CommandNotFoundException e) {
+            // good
+        }
+        assertEquals("ok", as("admin", () -> check("bundle", "install", foo)));
+
+        update("bundle", "install", "viewer, admin", "install[/.*foo.*/]", "admin");
+        assertEquals("ok", as("viewer", () -> check("bundle", "install", baz)));
+        try {
+            as("viewer", () -> check("bundle", "install", foo));
+            fail("The arguments should be denied");
+        } catch (SecurityException e) {
+            // good
+        }
+        assertEquals("ok", as("admin", () -> check("bundle", "install", foo)));
+
+        delete("bundle");
+        assertEquals("ok", as("viewer", () -> check("bundle", "install", foo)));
+    }
+
+    private String check(String scope, String name, List<Object> arguments) {
+        factory.checkSecurity(scope, name, arguments);
+        return "ok";
+    }
+
+    private void update(String scope, String... entries) {
+        configs.put(PID_PREFIX + scope, CommandAclTest.config(entries));
+        factory.configurationEvent(new ConfigurationEvent(reference, ConfigurationEvent.CM_UPDATED, null, PID_PREFIX + scope));
+    }
+
+    private void delete(String scope) {
+        configs.remove(PID_PREFIX + scope);
+        factory.configurationEvent(new ConfigurationEvent(reference, ConfigurationEvent.CM_DELETED, null, PID_PREFIX + scope));
+    }
+
+    private Configuration configuration(String pid) {
+        Configuration configuration = createMock(Configuration.class);
+        expect(configuration.getPid()).andReturn(pid).anyTimes();
+        expect(configuration.getProcessedProperties(null)).andReturn(configs.get(pid)).anyTimes();
+        replay(configuration);
+        return configuration;
+    }
+
+    private static Command command(String scope, String name) {
+        Command command = createNiceMock(Command.class);
+        expect(command.getScope()).andReturn(scope).anyTimes();
+        expect(command.getName()).andReturn(name).anyTimes();
+        replay(command);
+        return command;
+    }
+
+    private static <T> T as(String role, PrivilegedExceptionAction<T> action) throws Exception {
+        Subject subject = new Subject();
+        subject.getPrincipals().add(new RolePrincipal(role));
+        try {
+            return Subject.doAs(subject, action);
+        } catch (PrivilegedActionException e) {
+            throw e.getException();
+        }
+    }
+
+}
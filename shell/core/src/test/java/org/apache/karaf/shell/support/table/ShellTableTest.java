@@ -134,6 +134,89 @@ public class ShellTableTest {
         		"[33mThis is Resolved[39m | Yellow color\n", baos.toString());
     }
 
+    @Test
+    public void testStreaming() {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ShellTable table = new ShellTable().forceAscii().sampleSize(2);
+        table.column("ID").alignRight();
+        table.column("Name");
+        PrintStream out = new PrintStream(baos);
+        table.stream(out);
+        table.addRow().addContent(1, "first");
+        table.addRow().addContent(2, "second");
+        assertEquals("", getString(baos));
+        // the sample is complete once the third row starts
+        table.addRow().addContent(3, "the longest name");
+        assertEquals(
+                "ID | Name\n" +
+                "---+-------\n" +
+                " 1 | first\n" +
+                " 2 | second\n",
+                getString(baos));
+        table.print(out);
+        assertEquals(
+                "ID | Name\n" +
+                "---+-------\n" +
+                " 1 | first\n" +
+                " 2 | second\n" +
+                " 3 | the l\n",
+                getString(baos));
+    }
+
+    @Test
+    public void testStreamingEmpty() {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ShellTable table = new ShellTable().forceAscii().emptyTableText("No rows");
+        table.column("ID");
+        PrintStream out = new PrintStream(baos);
+        table.stream(out);
+        table.print(out);
+        assertEquals("ID\n--\nNo rows\n", getString(baos));
+    }
+
+    @Test
+    public void testStreamingRemainingRowsToPrintStream() {
+        ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        ShellTable table = new ShellTable().mode(ShellTable.Mode.TSV);
+        table.column("ID");
+        table.stream(new PrintStream(streamed));
+        table.addRow().addContent(1);
+        table.addRow().addContent(2);
+        table.print(new PrintStream(printed));
+        assertEquals("ID\n1\n", getString(streamed));
+        assertEquals("2\n", getString(printed));
+    }
+
+    @Test
+    public void testTsv() {
+        ShellTable table = new ShellTable().mode(ShellTable.Mode.TSV);
+        table.column("ID");
+        table.column("Name").maxSize(3);
+        table.addRow().addContent(1, "tab\there");
+        table.addRow().addContent(2, null);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        table.print(new PrintStream(baos));
+        assertEquals("ID\tName\n1\ttab\\there\n2\t\n", getString(baos));
+    }
+
+    @Test
+    public void testJsonLines() {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ShellTable table = new ShellTable().mode(ShellTable.Mode.JSON);
+        table.column("ID");
+        table.column("Name");
+        table.column("Active");
+        PrintStream out = new PrintStream(baos);
+        table.stream(out);
+        table.addRow().addContent(1L, "say \"hi\"", true);
+        table.addRow().addContent(2L, null, false);
+        assertEquals("{\"ID\":1,\"Name\":\"say \\\"hi\\\"\",\"Active\":true}\n", getString(baos));
+        table.print(out);
+        assertEquals("{\"ID\":1,\"Name\":\"say \\\"hi\\\"\",\"Active\":true}\n"
+                + "{\"ID\":2,\"Name\":null,\"Active\":false}\n", getString(baos));
+    }
+
     private String getString(ByteArrayOutputStream stream) {
         return stream.toString().replace("\r\n", "\n");
     }
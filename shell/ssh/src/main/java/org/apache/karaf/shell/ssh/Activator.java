@@ -23,6 +23,8 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Collections;
 
+import javax.management.NotCompliantMBeanException;
+
 import org.apache.karaf.shell.api.action.lifecycle.Manager;
 import org.apache.karaf.shell.api.console.CommandLoggingFilter;
 import org.apache.karaf.shell.api.console.Session;
@@ -59,6 +61,8 @@ public class Activator extends BaseActivator implements ManagedService {
     ServiceTracker<Session, Session> sessionTracker;
     SessionFactory sessionFactory;
     SshServer server;
+    SessionExecutor executor;
+    SshMBeanImpl sshMBean;
 
     @Override
     protected void doOpen() throws Exception {
@@ -120,6 +124,9 @@ public class Activator extends BaseActivator implements ManagedService {
         if (server == null) {
             return; // can result from bad specification.
         }
+        if (sshMBean != null) {
+            registerMBean(sshMBean, "type=ssh");
+        }
         ClassLoader originalClassLoader = Thread.currentThread().getContextClassLoader();
         try {
             Thread.currentThread().setContextClassLoader(SshServer.class.getClassLoader());
@@ -145,6 +152,11 @@ public class Activator extends BaseActivator implements ManagedService {
             }
             server = null;
         }
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+        sshMBean = null;
         super.doStop();
     }
 
@@ -152,8 +164,10 @@ public class Activator extends BaseActivator implements ManagedService {
         int sshPort                 = getInt("sshPort", 8101);
         String sshHost              = getString("sshHost", "0.0.0.0");
         long sshIdleTimeout         = getLong("sshIdleTimeout", 1800000);
-        int nioWorkers              = getInt("nio-workers", 2);
+        int nioWorkers              = getInt("nio-workers", 0);
         int maxConcurrentSessions  = getInt("max-concurrent-sessions", -1);
+        int maxConcurrentCommands   = getInt("max-concurrent-commands", -1);
+        boolean virtualThreads      = getBoolean("virtual-threads", true);
         String sshRealm             = getString("sshRealm", "karaf");
         Class<?>[] roleClasses      = getClassesArray("sshRoleTypes", "org.apache.karaf.jaas.boot.principal.RolePrincipal");
         String sshRole              = getString("sshRole", null);
@@ -177,20 +191,34 @@ public class Activator extends BaseActivator implements ManagedService {
         UserAuthFactoriesFactory authFactoriesFactory = new UserAuthFactoriesFactory();
         authFactoriesFactory.setAuthMethods(authMethods);
 
+        if (nioWorkers <= 0) {
+            nioWorkers = SessionExecutor.getDefaultNioWorkers();
+        }
+        executor = new SessionExecutor(maxConcurrentCommands, virtualThreads);
+        try {
+            sshMBean = new SshMBeanImpl(executor);
+        } catch (NotCompliantMBeanException e) {
+            LOGGER.warn("Unable to create the SSH MBean", e);
+        }
+
         SshServer server = SshServer.setUpDefaultServer();
         server.setPort(sshPort);
         server.setHost(sshHost);
         server.setMacFactories(SshUtils.buildMacs(macs));
         server.setCipherFactories(SshUtils.buildCiphers(ciphers));
         server.setKeyExchangeFactories(SshUtils.buildKexAlgorithms(kexAlgorithms));
-        server.setShellFactory(new ShellFactoryImpl(sessionFactory));
+        server.setShellFactory(new ShellFactoryImpl(sessionFactory, executor));
+        if (sshMBean != null) {
+            server.addSessionListener(sshMBean.getSessionListener());
+        }
 
+        SessionExecutor sessionExecutor = this.executor;
         if (sftpEnabled) {
-            server.setCommandFactory(new ScpCommandFactory.Builder().withDelegate((channel, cmd) -> new ShellCommand(sessionFactory, cmd)).build());
+            server.setCommandFactory(new ScpCommandFactory.Builder().withDelegate((channel, cmd) -> new ShellCommand(sessionFactory, cmd, sessionExecutor)).build());
             server.setSubsystemFactories(Collections.singletonList(new SftpSubsystemFactory()));
             server.setFileSystemFactory(new VirtualFileSystemFactory(Paths.get(System.getProperty("karaf.base"))));
         } else {
-            server.setCommandFactory((channel, cmd) -> new ShellCommand(sessionFactory, cmd));
+            server.setCommandFactory((channel, cmd) -> new ShellCommand(sessionFactory, cmd, sessionExecutor));
         }
         server.setKeyPairProvider(keyPairProvider);
         server.setPasswordAuthenticator(authenticator);
@@ -0,0 +1,182 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.karaf.shell.ssh;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Executes the SSH shell sessions and the exec commands.
+ * <p>
+ * Interactive shells run until the user logs out, so they are not bounded here (the number of sessions is
+ * bounded by <code>max-concurrent-sessions</code>), but their threads are reused between sessions.
+ * Exec commands are bounded: once <code>maxCommands</code> commands are running, the next ones wait in a queue.
+ * When virtual threads are requested and the JVM provides them, each task runs in its own virtual thread and the
+ * commands bound is enforced with a semaphore.
+ */
+public class SessionExecutor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SessionExecutor.class);
+
+    private final ExecutorService shellExecutor;
+    private final ExecutorService commandExecutor;
+    private final Semaphore commandPermits;
+    private final int maxCommands;
+    private final AtomicInteger activeCommands = new AtomicInteger();
+    private final AtomicInteger queuedCommands = new AtomicInteger();
+
+    public SessionExecutor(int maxCommands, boolean virtualThreads) {
+        this.maxCommands = maxCommands > 0 ? maxCommands : getDefaultMaxCommands();
+        ExecutorService virtual = virtualThreads ? newVirtualThreadExecutor() : null;
+        if (virtual != null) {
+            this.shellExecutor = virtual;
+            this.commandExecutor = virtual;
+            this.commandPermits = new Semaphore(this.maxCommands);
+        } else {
+            this.shellExecutor = Executors.newCachedThreadPool(new SessionThreadFactory("Karaf ssh console"));
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(this.maxCommands, this.maxCommands,
+                    60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new SessionThreadFactory("Karaf ssh command"));
+            executor.allowCoreThreadTimeOut(true);
+            this.commandExecutor = executor;
+            this.commandPermits = null;
+        }
+    }
+
+    /**
+     * @return The default number of concurrent exec commands, four per available processor.
+     */
+    public static int getDefaultMaxCommands() {
+        return 4 * Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * @return The default number of NIO workers, one more than the number of available processors.
+     */
+    public static int getDefaultNioWorkers() {
+        return Runtime.getRuntime().availableProcessors() + 1;
+    }
+
+    public boolean isVirtual() {
+        return commandPermits != null;
+    }
+
+    public int getMaxCommands() {
+        return maxCommands;
+    }
+
+    public int getActiveCommands() {
+        return activeCommands.get();
+    }
+
+    public int getQueuedCommands() {
+        return queuedCommands.get();
+    }
+
+    /**
+     * Run an interactive shell session.
+     *
+     * @param name The name given to the thread while it runs the session.
+     * @param shell The session.
+     */
+    public void executeShell(String name, Runnable shell) {
+        shellExecutor.execute(() -> {
+            Thread thread = Thread.currentThread();
+            String oldName = thread.getName();
+            thread.setName(name);
+            try {
+                shell.run();
+            } finally {
+                thread.setName(oldName);
+            }
+        });
+    }
+
+    /**
+     * Run an exec command, waiting for a free slot if too many commands are already running.
+     *
+     * @param command The command.
+     */
+    public void executeCommand(Runnable command) {
+        queuedCommands.incrementAndGet();
+        commandExecutor.execute(() -> {
+            boolean acquired = false;
+            try {
+                if (commandPermits != null) {
+                    commandPermits.acquire();
+                    acquired = true;
+                }
+                queuedCommands.decrementAndGet();
+                activeCommands.incrementAndGet();
+                try {
+                    command.run();
+                } finally {
+                    activeCommands.decrementAndGet();
+                }
+            } catch (InterruptedException e) {
+                queuedCommands.decrementAndGet();
+                Thread.currentThread().interrupt();
+            } finally {
+                if (acquired) {
+                    commandPermits.release();
+                }
+            }
+        });
+    }
+
+    public void shutdown() {
+        shellExecutor.shutdownNow();
+        commandExecutor.shutdownNow();
+    }
+
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            // Executors.newVirtualThreadPerTaskExecutor() is only available on recent JVMs
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (Throwable t) {
+            LOGGER.debug("Virtual threads are not available, using platform threads for the SSH sessions");
+            return null;
+        }
+    }
+
+    private static class SessionThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger counter = new AtomicInteger();
+
+        SessionThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, prefix + " " + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+}
@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.karaf.shell.ssh;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.sshd.common.session.Session;
+
+/**
+ * Throughput counters of a SSH session (connection), shared by all its shell and exec channels.
+ */
+public class SessionMetrics {
+
+    public static final Session.AttributeKey<SessionMetrics> METRICS_ATTRIBUTE_KEY = new Session.AttributeKey<>();
+
+    private final long id;
+    private final long created = System.currentTimeMillis();
+    private final AtomicInteger channels = new AtomicInteger();
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    private final AtomicLong commands = new AtomicLong();
+    private final AtomicLong failedCommands = new AtomicLong();
+    private final LongAdder commandTime = new LongAdder();
+    private final AtomicLong maxCommandTime = new AtomicLong();
+
+    public SessionMetrics(long id) {
+        this.id = id;
+    }
+
+    /**
+     * @param session The SSH session.
+     * @return The metrics of the session, or {@code null} if they are not collected.
+     */
+    public static SessionMetrics get(Session session) {
+        return session != null ? session.getAttribute(METRICS_ATTRIBUTE_KEY) : null;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public long getCreated() {
+        return created;
+    }
+
+    public int getChannels() {
+        return channels.get();
+    }
+
+    public long getBytesIn() {
+        return bytesIn.sum();
+    }
+
+    public long getBytesOut() {
+        return bytesOut.sum();
+    }
+
+    public long getCommands() {
+        return commands.get();
+    }
+
+    public long getFailedCommands() {
+        return failedCommands.get();
+    }
+
+    /**
+     * @return The total time spent in exec commands, in milliseconds.
+     */
+    public long getCommandTime() {
+        return TimeUnit.NANOSECONDS.toMillis(commandTime.sum());
+    }
+
+    /**
+     * @return The longest exec command, in milliseconds.
+     */
+    public long getMaxCommandTime() {
+        return TimeUnit.NANOSECONDS.toMillis(maxCommandTime.get());
+    }
+
+    public void channelOpened() {
+        channels.incrementAndGet();
+    }
+
+    public void channelClosed() {
+        channels.decrementAndGet();
+    }
+
+    /**
+     * Record an exec command.
+     *
+     * @param nanos The command duration, in nanoseconds.
+     * @param failed Whether the command failed.
+     */
+    public void commandExecuted(long nanos, boolean failed) {
+        commands.incrementAndGet();
+        if (failed) {
+            failedCommands.incrementAndGet();
+        }
+        commandTime.add(nanos);
+        maxCommandTime.accumulateAndGet(nanos, Math::max);
+    }
+
+    public InputStream count(InputStream in) {
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) {
+                    bytesIn.increment();
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int nb = super.read(b, off, len);
+                if (nb > 0) {
+                    bytesIn.add(nb);
+                }
+                return nb;
+            }
+        };
+    }
+
+    public OutputStream count(OutputStream out) {
+        return new FilterOutputStream(out) {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                bytesOut.increment();
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+                bytesOut.add(len);
+            }
+        };
+    }
+
+}
@@ -65,10 +65,22 @@ public class ShellCommand implements Command {
     private ServerSession session;
     private SessionFactory sessionFactory;
     private Environment env;
+    private SessionExecutor executor;
+    private SessionMetrics metrics;
 
     public ShellCommand(SessionFactory sessionFactory, String command) {
+        this(sessionFactory, command, null);
+    }
+
+    /**
+     * @param sessionFactory The factory of the shell sessions.
+     * @param command The command to execute.
+     * @param executor The executor running the command, or {@code null} to start a new thread.
+     */
+    public ShellCommand(SessionFactory sessionFactory, String command, SessionExecutor executor) {
         this.sessionFactory = sessionFactory;
         this.command = command;
+        this.executor = executor;
     }
 
     public void setInputStream(InputStream in) {
@@ -91,11 +103,24 @@ public class ShellCommand implements Command {
     public void start(ChannelSession channelSession, Environment environment) throws IOException {
         this.session = channelSession.getServerSession();
         this.env = environment;
-        new Thread(this::run).start();
+        this.metrics = SessionMetrics.get(session);
+        if (metrics != null) {
+            metrics.channelOpened();
+            OutputStream countedOut = metrics.count(out);
+            err = err == out ? countedOut : metrics.count(err);
+            out = countedOut;
+            in = metrics.count(in);
+        }
+        if (executor != null) {
+            executor.executeCommand(this::run);
+        } else {
+            new Thread(this::run).start();
+        }
     }
 
     public void run() {
         int exitStatus = 0;
+        long start = System.nanoTime();
         try {
             final Session session = sessionFactory.create(in, new PrintStream(out), new PrintStream(err));
             for (Map.Entry<String,String> e : env.getEnv().entrySet()) {
@@ -143,6 +168,10 @@ public class ShellCommand implements Command {
             exitStatus = 1;
             LOGGER.error("Unable to start shell", e);
         } finally {
+            if (metrics != null) {
+                metrics.commandExecuted(System.nanoTime() - start, exitStatus != 0);
+                metrics.channelClosed();
+            }
             StreamUtils.close(in, out, err);
             callback.onExit(exitStatus);
         }
@@ -24,6 +24,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PrintStream;
 import java.nio.charset.Charset;
+import java.security.PrivilegedAction;
 import java.util.Map;
 
 import javax.security.auth.Subject;
@@ -47,8 +48,19 @@ public class ShellFactoryImpl implements ShellFactory {
 
     private SessionFactory sessionFactory;
 
+    private SessionExecutor executor;
+
     public ShellFactoryImpl(SessionFactory sessionFactory) {
+        this(sessionFactory, null);
+    }
+
+    /**
+     * @param sessionFactory The factory of the shell sessions.
+     * @param executor The executor running the shell sessions, or {@code null} to start a new thread per session.
+     */
+    public ShellFactoryImpl(SessionFactory sessionFactory, SessionExecutor executor) {
         this.sessionFactory = sessionFactory;
+        this.executor = executor;
     }
 
     @Override
@@ -71,6 +83,8 @@ public class ShellFactoryImpl implements ShellFactory {
 
         private SshTerminal terminal;
 
+        private SessionMetrics metrics;
+
         private boolean closed;
 
         @Override
@@ -96,6 +110,14 @@ public class ShellFactoryImpl implements ShellFactory {
         @Override
         public void start(ChannelSession channelSession, Environment environment) throws IOException {
             this.session = channelSession.getServerSession();
+            this.metrics = SessionMetrics.get(session);
+            if (metrics != null) {
+                metrics.channelOpened();
+                OutputStream countedOut = metrics.count(out);
+                err = err == out ? countedOut : metrics.count(err);
+                out = countedOut;
+                in = metrics.count(in);
+            }
             try {
                 final Subject subject = session.getAttribute(KarafJaasAuthenticator.SUBJECT_ATTRIBUTE_KEY);
                 String encoding = getEncoding(environment);
@@ -108,8 +130,15 @@ public class ShellFactoryImpl implements ShellFactory {
                 for (Map.Entry<String, String> e : environment.getEnv().entrySet()) {
                     shell.put(e.getKey(), e.getValue());
                 }
-                JaasHelper.runAs(subject, () ->
-                        new Thread(shell, "Karaf ssh console user " + ShellUtil.getCurrentUserName()).start());
+                if (executor != null) {
+                    String name = JaasHelper.doAs(subject, (PrivilegedAction<String>) () ->
+                            "Karaf ssh console user " + ShellUtil.getCurrentUserName());
+                    // pooled threads do not inherit the access control context, so run the shell as the user
+                    executor.executeShell(name, () -> JaasHelper.runAs(subject, shell));
+                } else {
+                    JaasHelper.runAs(subject, () ->
+                            new Thread(shell, "Karaf ssh console user " + ShellUtil.getCurrentUserName()).start());
+                }
             } catch (Exception e) {
                 throw new IOException("Unable to start shell", e);
             }
@@ -118,6 +147,9 @@ public class ShellFactoryImpl implements ShellFactory {
         public void destroy() {
             if (!closed) {
                 closed = true;
+                if (metrics != null) {
+                    metrics.channelClosed();
+                }
                 callback.onExit(0);
             }
         }
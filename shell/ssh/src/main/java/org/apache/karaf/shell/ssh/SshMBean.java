@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.karaf.shell.ssh;
+
+import javax.management.MBeanException;
+import javax.management.openmbean.TabularData;
+
+/**
+ * Execution state and throughput of the SSH server sessions.
+ */
+public interface SshMBean {
+
+    /**
+     * Get the open SSH sessions with their counters: channels, bytes received and sent,
+     * exec commands and their execution time.
+     *
+     * @return The sessions table, one row per SSH session.
+     * @throws MBeanException In case of failure.
+     */
+    TabularData getSessions() throws MBeanException;
+
+    /**
+     * @return The number of open SSH sessions.
+     */
+    int getSessionCount();
+
+    /**
+     * @return The maximum number of exec commands running at the same time.
+     */
+    int getMaxCommands();
+
+    /**
+     * @return The number of exec commands currently running.
+     */
+    int getActiveCommands();
+
+    /**
+     * @return The number of exec commands waiting for a free slot.
+     */
+    int getQueuedCommands();
+
+    /**
+     * @return The number of exec commands run since the server started.
+     */
+    long getTotalCommands();
+
+    /**
+     * @return The number of bytes received by all the sessions since the server started.
+     */
+    long getTotalBytesIn();
+
+    /**
+     * @return The number of bytes sent to all the sessions since the server started.
+     */
+    long getTotalBytesOut();
+
+    /**
+     * @return {@code True} if the sessions run in virtual threads.
+     */
+    boolean isVirtualThreads();
+
+}
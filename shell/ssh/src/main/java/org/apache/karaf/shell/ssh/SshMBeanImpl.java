@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.karaf.shell.ssh;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.MBeanException;
+import javax.management.NotCompliantMBeanException;
+import javax.management.StandardMBean;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+import javax.management.openmbean.TabularData;
+import javax.management.openmbean.TabularDataSupport;
+import javax.management.openmbean.TabularType;
+
+import org.apache.sshd.common.session.Session;
+import org.apache.sshd.common.session.SessionListener;
+
+/**
+ * Implementation of the {@link SshMBean}, tracking the sessions of a SSH server.
+ */
+public class SshMBeanImpl extends StandardMBean implements SshMBean {
+
+    private static final String[] COLUMNS = new String[] {
+            "Id", "User", "RemoteAddress", "Created", "Channels", "BytesIn", "BytesOut",
+            "Commands", "FailedCommands", "CommandTime", "MaxCommandTime" };
+
+    private final SessionExecutor executor;
+    private final Map<Session, SessionMetrics> sessions = new ConcurrentHashMap<>();
+    private final AtomicLong ids = new AtomicLong();
+    // counters of the closed sessions
+    private final LongAdder closedCommands = new LongAdder();
+    private final LongAdder closedBytesIn = new LongAdder();
+    private final LongAdder closedBytesOut = new LongAdder();
+
+    private final SessionListener listener = new SessionListener() {
+        @Override
+        public void sessionCreated(Session session) {
+            SessionMetrics metrics = new SessionMetrics(ids.incrementAndGet());
+            session.setAttribute(SessionMetrics.METRICS_ATTRIBUTE_KEY, metrics);
+            sessions.put(session, metrics);
+        }
+
+        @Override
+        public void sessionClosed(Session session) {
+            SessionMetrics metrics = sessions.remove(session);
+            if (metrics != null) {
+                closedCommands.add(metrics.getCommands());
+                closedBytesIn.add(metrics.getBytesIn());
+                closedBytesOut.add(metrics.getBytesOut());
+            }
+        }
+    };
+
+    public SshMBeanImpl(SessionExecutor executor) throws NotCompliantMBeanException {
+        super(SshMBean.class);
+        this.executor = executor;
+    }
+
+    /**
+     * @return The listener to add to the SSH server, which creates the metrics of each session.
+     */
+    public SessionListener getSessionListener() {
+        return listener;
+    }
+
+    @Override
+    public TabularData getSessions() throws MBeanException {
+        try {
+            CompositeType type = new CompositeType("Session", "SSH session",
+                    COLUMNS,
+                    new String[] { "Session identifier", "Authenticated user name", "Remote address",
+                            "Creation time in milliseconds since the epoch", "Number of open channels",
+                            "Number of bytes received", "Number of bytes sent",
+                            "Number of exec commands", "Number of failed exec commands",
+                            "Total exec commands time in milliseconds", "Longest exec command time in milliseconds" },
+                    new OpenType[] { SimpleType.LONG, SimpleType.STRING, SimpleType.STRING, SimpleType.LONG,
+                            SimpleType.INTEGER, SimpleType.LONG, SimpleType.LONG, SimpleType.LONG,
+                            SimpleType.LONG, SimpleType.LONG, SimpleType.LONG });
+            TabularType tableType = new TabularType("Sessions", "SSH sessions", type, new String[] { "Id" });
+            TabularData table = new TabularDataSupport(tableType);
+            for (Map.Entry<Session, SessionMetrics> entry : sessions.entrySet()) {
+                Session session = entry.getKey();
+                SessionMetrics metrics = entry.getValue();
+                String user = session.getUsername();
+                Object address = session.getIoSession() != null ? session.getIoSession().getRemoteAddress() : null;
+                CompositeData data = new CompositeDataSupport(type, COLUMNS,
+                        new Object[] { metrics.getId(), user != null ? user : "",
+                                address != null ? address.toString() : "", metrics.getCreated(),
+                                metrics.getChannels(), metrics.getBytesIn(), metrics.getBytesOut(),
+                                metrics.getCommands(), metrics.getFailedCommands(),
+                                metrics.getCommandTime(), metrics.getMaxCommandTime() });
+                table.put(data);
+            }
+            return table;
+        } catch (Exception e) {
+            throw new MBeanException(null, e.toString());
+        }
+    }
+
+    @Override
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    @Override
+    public int getMaxCommands() {
+        return executor.getMaxCommands();
+    }
+
+    @Override
+    public int getActiveCommands() {
+        return executor.getActiveCommands();
+    }
+
+    @Override
+    public int getQueuedCommands() {
+        return executor.getQueuedCommands();
+    }
+
+    @Override
+    public long getTotalCommands() {
+        long total = closedCommands.sum();
+        for (SessionMetrics metrics : sessions.values()) {
+            total += metrics.getCommands();
+        }
+        return total;
+    }
+
+    @Override
+    public long getTotalBytesIn() {
+        long total = closedBytesIn.sum();
+        for (SessionMetrics metrics : sessions.values()) {
+            total += metrics.getBytesIn();
+        }
+        return total;
+    }
+
+    @Override
+    public long getTotalBytesOut() {
+        long total = closedBytesOut.sum();
+        for (SessionMetrics metrics : sessions.values()) {
+            total += metrics.getBytesOut();
+        }
+        return total;
+    }
+
+    @Override
+    public boolean isVirtualThreads() {
+        return executor.isVirtual();
+    }
+
+}
@@ -42,8 +42,8 @@ public class SshServerAction implements Action
     @Option(name = "-i", aliases = { "--idle-timeout" }, description = "The session idle timeout in milliseconds", required = false, multiValued = false)
     private long idleTimeout = 1800000;
     
-    @Option(name = "-n", aliases = { "--nio-workers" }, description = "The number of NIO worker threads to use", required = false, multiValued = false)
-    private int nioWorkers = 2;
+    @Option(name = "-n", aliases = { "--nio-workers" }, description = "The number of NIO worker threads to use (defaults to the number of processors plus one)", required = false, multiValued = false)
+    private int nioWorkers = SessionExecutor.getDefaultNioWorkers();
 
     @Option(name = "-c", aliases = { "--max-concurrent-sessions" }, description = "The maximum number of concurrent sessions opened on the ssh server", required = false, multiValued = false)
     private int maxConcurrentSessions = -1;
@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.karaf.shell.ssh;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.junit.Test;
+
+public class SessionExecutorTest {
+
+    @Test
+    public void testDefaultMaxCommands() {
+        SessionExecutor executor = new SessionExecutor(0, false);
+        try {
+            assertEquals(SessionExecutor.getDefaultMaxCommands(), executor.getMaxCommands());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testCommandsBounded() throws Exception {
+        checkCommandsBounded(false);
+    }
+
+    @Test
+    public void testVirtualCommandsBounded() throws Exception {
+        // falls back to platform threads on JVMs without virtual threads
+        checkCommandsBounded(true);
+    }
+
+    private void checkCommandsBounded(boolean virtual) throws Exception {
+        SessionExecutor executor = new SessionExecutor(2, virtual);
+        try {
+            CountDownLatch release = new CountDownLatch(1);
+            CountDownLatch done = new CountDownLatch(5);
+            AtomicInteger running = new AtomicInteger();
+            AtomicInteger maxRunning = new AtomicInteger();
+            for (int i = 0; i < 5; i++) {
+                executor.executeCommand(() -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        running.decrementAndGet();
+                        done.countDown();
+                    }
+                });
+            }
+
+            waitFor(() -> executor.getActiveCommands() == 2 && executor.getQueuedCommands() == 3);
+            assertEquals(2, executor.getActiveCommands());
+            assertEquals(3, executor.getQueuedCommands());
+            assertEquals(2, running.get());
+
+            release.countDown();
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+            waitFor(() -> executor.getActiveCommands() == 0);
+            assertEquals(0, executor.getActiveCommands());
+            assertEquals(0, executor.getQueuedCommands());
+            assertEquals(2, maxRunning.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testShellsNotBounded() throws Exception {
+        SessionExecutor executor = new SessionExecutor(1, false);
+        try {
+            CountDownLatch started = new CountDownLatch(2);
+            CountDownLatch release = new CountDownLatch(1);
+            String[] names = new String[2];
+            for (int i = 0; i < 2; i++) {
+                int index = i;
+                executor.executeShell("shell " + i, () -> {
+                    names[index] = Thread.currentThread().getName();
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+            // both shells run although only one command may run at a time
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            release.countDown();
+            assertEquals("shell 0", names[0]);
+            assertEquals("shell 1", names[1]);
+            assertEquals(0, executor.getActiveCommands());
+
+            // the thread gets its name back once the shell exits
+            CountDownLatch done = new CountDownLatch(1);
+            Thread[] thread = new Thread[1];
+            executor.executeShell("shell 2", () -> {
+                thread[0] = Thread.currentThread();
+                done.countDown();
+            });
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+            waitFor(() -> !"shell 2".equals(thread[0].getName()));
+            assertNotEquals("shell 2", thread[0].getName());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+}
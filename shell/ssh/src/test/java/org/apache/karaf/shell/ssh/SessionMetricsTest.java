@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.karaf.shell.ssh;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class SessionMetricsTest {
+
+    @Test
+    public void testBytesIn() throws Exception {
+        SessionMetrics metrics = new SessionMetrics(1);
+        InputStream in = metrics.count(new ByteArrayInputStream("hello world".getBytes(StandardCharsets.UTF_8)));
+        assertEquals('h', in.read());
+        assertEquals(1, metrics.getBytesIn());
+        byte[] buffer = new byte[4];
+        assertEquals(4, in.read(buffer));
+        assertEquals(5, metrics.getBytesIn());
+        assertEquals(6, in.read(new byte[16], 0, 16));
+        assertEquals(11, metrics.getBytesIn());
+        // the end of the stream is not counted
+        assertEquals(-1, in.read());
+        assertEquals(-1, in.read(buffer));
+        assertEquals(11, metrics.getBytesIn());
+        assertEquals(0, metrics.getBytesOut());
+    }
+
+    @Test
+    public void testBytesOut() throws Exception {
+        SessionMetrics metrics = new SessionMetrics(1);
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        OutputStream out = metrics.count(target);
+        out.write('a');
+        out.write("bcd".getBytes(StandardCharsets.UTF_8));
+        out.write("xefx".getBytes(StandardCharsets.UTF_8), 1, 2);
+        out.flush();
+        assertEquals("abcdef", new String(target.toByteArray(), StandardCharsets.UTF_8));
+        assertEquals(6, metrics.getBytesOut());
+        assertEquals(0, metrics.getBytesIn());
+
+        // the streams of all the channels of a session add up
+        metrics.count(new ByteArrayOutputStream()).write(new byte[10]);
+        assertEquals(16, metrics.getBytesOut());
+    }
+
+    @Test
+    public void testCommands() {
+        SessionMetrics metrics = new SessionMetrics(1);
+        metrics.channelOpened();
+        metrics.channelOpened();
+        assertEquals(2, metrics.getChannels());
+        metrics.commandExecuted(TimeUnit.MILLISECONDS.toNanos(30), false);
+        metrics.commandExecuted(TimeUnit.MILLISECONDS.toNanos(50), true);
+        metrics.commandExecuted(TimeUnit.MILLISECONDS.toNanos(20), false);
+        metrics.channelClosed();
+        assertEquals(1, metrics.getChannels());
+        assertEquals(3, metrics.getCommands());
+        assertEquals(1, metrics.getFailedCommands());
+        assertEquals(100, metrics.getCommandTime());
+        assertEquals(50, metrics.getMaxCommandTime());
+    }
+
+    @Test
+    public void testNoSession() {
+        assertNull(SessionMetrics.get(null));
+    }
+
+}
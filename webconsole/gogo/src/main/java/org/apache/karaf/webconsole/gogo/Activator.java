@@ -24,19 +24,34 @@ import org.apache.karaf.shell.api.console.SessionFactory;
 import org.apache.karaf.util.tracker.BaseActivator;
 import org.apache.karaf.util.tracker.annotation.RequireService;
 import org.apache.karaf.util.tracker.annotation.Services;
+import org.osgi.service.http.HttpService;
 
 @Services(
-        requires = @RequireService(SessionFactory.class)
+        requires = {
+                @RequireService(SessionFactory.class),
+                @RequireService(value = HttpService.class, optional = true)
+        }
 )
 public class Activator extends BaseActivator {
 
     private GogoPlugin gogoPlugin;
+    private HttpService httpService;
 
     @Override
     protected void doStart() throws Exception {
         gogoPlugin = new GogoPlugin();
         gogoPlugin.setBundleContext(bundleContext);
         gogoPlugin.setSessionFactory(getTrackedService(SessionFactory.class));
+        HttpService http = getTrackedService(HttpService.class);
+        if (http != null && isWebSocketAvailable()) {
+            try {
+                WebSocketTerminalServlet.register(http, gogoPlugin);
+                httpService = http;
+                gogoPlugin.setWebSocketPath(WebSocketTerminalServlet.ALIAS);
+            } catch (Exception e) {
+                logger.warn("Unable to register the web console WebSocket terminal, using HTTP requests", e);
+            }
+        }
         gogoPlugin.start();
 
         Dictionary<String, String> props = new Hashtable<>();
@@ -44,9 +59,27 @@ public class Activator extends BaseActivator {
         register(Servlet.class, gogoPlugin, props);
     }
 
+    private static boolean isWebSocketAvailable() {
+        // the Jetty WebSocket API is an optional import
+        try {
+            Class.forName("org.eclipse.jetty.websocket.servlet.WebSocketServlet", false, Activator.class.getClassLoader());
+            return true;
+        } catch (Throwable t) {
+            return false;
+        }
+    }
+
     @Override
     protected void doStop() {
         super.doStop();
+        if (httpService != null) {
+            try {
+                httpService.unregister(WebSocketTerminalServlet.ALIAS);
+            } catch (Exception e) {
+                // Ignore
+            }
+            httpService = null;
+        }
         if (gogoPlugin != null) {
             gogoPlugin.stop();
             gogoPlugin = null;
@@ -32,8 +32,19 @@ import java.io.PipedOutputStream;
 import java.io.PrintStream;
 import java.io.PrintWriter;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.security.AccessControlContext;
 import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.security.SecureRandom;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.GZIPOutputStream;
 
 import javax.security.auth.Subject;
@@ -61,8 +72,17 @@ public class GogoPlugin extends AbstractWebConsolePlugin {
     public static final int TERM_WIDTH = 120;
     public static final int TERM_HEIGHT = 39;
 
+    static final long TOKEN_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+
     private BundleContext bundleContext;
     private SessionFactory sessionFactory;
+    private ExecutorService executor;
+    // closes the terminals whose token is never used
+    private ScheduledExecutorService sweeper;
+    private String webSocketPath;
+    // terminals created for a WebSocket connection which is not opened yet, per token
+    private final Map<String, PendingTerminal> pendingTerminals = new ConcurrentHashMap<>();
+    private final SecureRandom random = new SecureRandom();
 
     @Override
     protected boolean isHtmlRequest(HttpServletRequest request) {
@@ -77,7 +97,27 @@ public class GogoPlugin extends AbstractWebConsolePlugin {
         this.sessionFactory = sessionFactory;
     }
 
+    /**
+     * @param webSocketPath The path of the WebSocket terminal servlet, or {@code null} to only use HTTP requests.
+     */
+    public void setWebSocketPath(String webSocketPath) {
+        this.webSocketPath = webSocketPath;
+    }
+
     public void start() {
+        AtomicInteger counter = new AtomicInteger();
+        executor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "Karaf web console " + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "Karaf web console terminal sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(() -> expirePendingTerminals(System.currentTimeMillis()),
+                TOKEN_TIMEOUT, TOKEN_TIMEOUT, TimeUnit.MILLISECONDS);
         super.activate(bundleContext);
         this.logger.info(LABEL + " plugin activated");
     }
@@ -85,6 +125,75 @@ public class GogoPlugin extends AbstractWebConsolePlugin {
     public void stop() {
         this.logger.info(LABEL + " plugin deactivated");
         super.deactivate();
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+            sweeper = null;
+        }
+        for (PendingTerminal pending : pendingTerminals.values()) {
+            pending.terminal.close();
+        }
+        pendingTerminals.clear();
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /**
+     * @return The executor shared by the sessions of all the web console users.
+     */
+    ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Return the terminal created for a WebSocket connection. A token can only be used once.
+     *
+     * @param token The token returned to the client when the terminal was created.
+     * @return The terminal, or {@code null} if the token is unknown or expired.
+     */
+    SessionTerminal takeTerminal(String token) {
+        return takeTerminal(token, System.currentTimeMillis());
+    }
+
+    SessionTerminal takeTerminal(String token, long now) {
+        PendingTerminal pending = token != null ? pendingTerminals.remove(token) : null;
+        if (pending == null) {
+            return null;
+        }
+        if (now - pending.created > TOKEN_TIMEOUT) {
+            pending.terminal.close();
+            return null;
+        }
+        return pending.terminal;
+    }
+
+    /**
+     * Close the terminals whose token has not been used in time.
+     *
+     * @param now The current time.
+     */
+    void expirePendingTerminals(long now) {
+        for (Iterator<PendingTerminal> it = pendingTerminals.values().iterator(); it.hasNext(); ) {
+            PendingTerminal pending = it.next();
+            if (now - pending.created > TOKEN_TIMEOUT) {
+                it.remove();
+                pending.terminal.close();
+            }
+        }
+    }
+
+    String addPendingTerminal(SessionTerminal terminal) {
+        long now = System.currentTimeMillis();
+        expirePendingTerminals(now);
+        byte[] bytes = new byte[16];
+        random.nextBytes(bytes);
+        StringBuilder token = new StringBuilder();
+        for (byte b : bytes) {
+            token.append(String.format("%02x", b));
+        }
+        pendingTerminals.put(token.toString(), new PendingTerminal(terminal, now));
+        return token.toString();
     }
 
     @Override
@@ -106,7 +215,8 @@ public class GogoPlugin extends AbstractWebConsolePlugin {
         pw.println("<script src=\"" + appRoot + "/gogo/res/ui/gogo.js\" type=\"text/javascript\"></script>");
         pw.println("<div id='console'><div id='term'></div></div>");
         pw.println("<script type=\"text/javascript\"><!--");
-        pw.println("window.onload = function() { gogo.Terminal(document.getElementById(\"term\"), " + TERM_WIDTH + ", " + TERM_HEIGHT + "); }");
+        String ws = webSocketPath != null ? "\"" + webSocketPath + "\"" : "null";
+        pw.println("window.onload = function() { gogo.Terminal(document.getElementById(\"term\"), " + TERM_WIDTH + ", " + TERM_HEIGHT + ", " + ws + "); }");
         pw.println("--></script>");
     }
 
@@ -142,6 +252,19 @@ public class GogoPlugin extends AbstractWebConsolePlugin {
 
     @Override
     protected void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        if (request.getParameter("ws") != null) {
+            // the WebSocket connection is not authenticated by the web console, so the terminal is created
+            // here for the authenticated user, and the connection retrieves it with a one time token
+            if (webSocketPath == null) {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
+            String token = addPendingTerminal(new SessionTerminal());
+            response.setHeader("Content-Type", "text/plain");
+            response.setHeader("Cache-Control", "no-store");
+            response.getOutputStream().write(token.getBytes(StandardCharsets.UTF_8));
+            return;
+        }
         String encoding = request.getHeader("Accept-Encoding");
         boolean supportsGzip = (encoding != null && encoding.toLowerCase().contains("gzip"));
         SessionTerminal st = (SessionTerminal) request.getSession(true).getAttribute("terminal");
@@ -171,12 +294,23 @@ public class GogoPlugin extends AbstractWebConsolePlugin {
         }
     }
 
+    private static class PendingTerminal {
+        private final SessionTerminal terminal;
+        private final long created;
+
+        PendingTerminal(SessionTerminal terminal, long created) {
+            this.terminal = terminal;
+            this.created = created;
+        }
+    }
+
     public class SessionTerminal implements Runnable {
 
         private Terminal terminal;
         private PipedOutputStream in;
         private PipedInputStream out;
-        private boolean closed;
+        private volatile boolean closed;
+        private volatile Runnable listener;
 
         public SessionTerminal() throws IOException {
             try {
@@ -196,7 +330,22 @@ public class GogoPlugin extends AbstractWebConsolePlugin {
                         new WebTerminal(TERM_WIDTH, TERM_HEIGHT, input, pipedOut),
                         null,
                         null);
-                new Thread(session, "Karaf web console user " + getCurrentUserName()).start();
+                // pooled threads do not inherit the context of the creating thread, so run with the user one
+                AccessControlContext acc = AccessController.getContext();
+                String name = "Karaf web console user " + getCurrentUserName();
+                executor.execute(() -> {
+                    Thread thread = Thread.currentThread();
+                    String oldName = thread.getName();
+                    thread.setName(name);
+                    try {
+                        AccessController.doPrivileged((PrivilegedAction<Object>) () -> {
+                            session.run();
+                            return null;
+                        }, acc);
+                    } finally {
+                        thread.setName(oldName);
+                    }
+                });
             } catch (IOException e) {
                 e.printStackTrace();
                 throw e;
@@ -204,7 +353,7 @@ public class GogoPlugin extends AbstractWebConsolePlugin {
                 e.printStackTrace();
                 throw new IOException(e);
             }
-            new Thread(this).start();
+            executor.execute(this);
         }
         
         private String getCurrentUserName() {
@@ -221,7 +370,23 @@ public class GogoPlugin extends AbstractWebConsolePlugin {
             return closed;
         }
 
-        public String handle(String str, boolean forceDump) throws IOException {
+        public Terminal getTerminal() {
+            return terminal;
+        }
+
+        /**
+         * @param listener Notified each time the session output has been written to the terminal.
+         */
+        public void setListener(Runnable listener) {
+            this.listener = listener;
+        }
+
+        /**
+         * Send keys typed by the user to the session.
+         *
+         * @param str The keys.
+         */
+        public void write(String str) throws IOException {
             try {
                 if (str != null && str.length() > 0) {
                     String d = terminal.pipe(str);
@@ -234,6 +399,24 @@ public class GogoPlugin extends AbstractWebConsolePlugin {
                 closed = true;
                 throw e;
             }
+        }
+
+        public void close() {
+            closed = true;
+            try {
+                in.close();
+            } catch (IOException e) {
+                // Ignore
+            }
+            try {
+                out.close();
+            } catch (IOException e) {
+                // Ignore
+            }
+        }
+
+        public String handle(String str, boolean forceDump) throws IOException {
+            write(str);
             try {
                 return terminal.dump(10, forceDump);
             } catch (InterruptedException e) {
@@ -246,6 +429,10 @@ public class GogoPlugin extends AbstractWebConsolePlugin {
                 for (; ; ) {
                     byte[] buf = new byte[8192];
                     int l = out.read(buf);
+                    if (l < 0) {
+                        closed = true;
+                        break;
+                    }
                     InputStreamReader r = new InputStreamReader(new ByteArrayInputStream(buf, 0, l));
                     StringBuilder sb = new StringBuilder();
                     for (; ; ) {
@@ -264,10 +451,21 @@ public class GogoPlugin extends AbstractWebConsolePlugin {
                             in.write(b);
                         }
                     }
+                    Runnable notify = listener;
+                    if (notify != null) {
+                        notify.run();
+                    }
                 }
             } catch (IOException e) {
-                closed = true;
-                e.printStackTrace();
+                if (!closed) {
+                    closed = true;
+                    e.printStackTrace();
+                }
+            }
+            // let the listener see that the session is closed
+            Runnable notify = listener;
+            if (notify != null) {
+                notify.run();
             }
         }
 
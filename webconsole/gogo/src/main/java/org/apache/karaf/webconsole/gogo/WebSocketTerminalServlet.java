@@ -0,0 +1,255 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.webconsole.gogo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.StatusCode;
+import org.eclipse.jetty.websocket.api.WebSocketListener;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.eclipse.jetty.websocket.servlet.WebSocketServlet;
+import org.eclipse.jetty.websocket.servlet.WebSocketServletFactory;
+import org.osgi.service.http.HttpService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>WebSocket transport of the {@link GogoPlugin} terminal.</p>
+ * <p>Instead of polling a full screen dump, the client receives the modified lines of the screen as soon as the
+ * session writes, in binary frames:</p>
+ * <ul>
+ *     <li>screen update: <code>'S'</code>, height (short), count (short), then for each modified line its index
+ *     (short), length (int) and HTML in UTF-8,</li>
+ *     <li>end of session: <code>'E'</code>.</li>
+ * </ul>
+ * <p>The client sends the typed keys as <code>'K'</code> followed by the keys in UTF-8, <code>'F'</code> to
+ * request the full screen and <code>'P'</code> every minute to keep the connection alive. A connection idle for
+ * {@link #IDLE_TIMEOUT} milliseconds is closed with its session.</p>
+ * <p>At most one frame per client is being written: the modifications done meanwhile are merged in the next frame,
+ * so slow clients skip intermediate screens instead of buffering them. The frames are built on the executor
+ * shared by the sessions.</p>
+ * <p>This servlet is only registered when the Jetty WebSocket API is available. The connections are not
+ * authenticated by the web console, they must give the token returned by the plugin for a terminal created by
+ * an authenticated request.</p>
+ */
+public class WebSocketTerminalServlet extends WebSocketServlet {
+
+    public static final String ALIAS = "/gogo-terminal";
+
+    static final long IDLE_TIMEOUT = TimeUnit.MINUTES.toMillis(5);
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WebSocketTerminalServlet.class);
+
+    private static final byte FRAME_SCREEN = 'S';
+    private static final byte FRAME_END = 'E';
+    private static final byte FRAME_KEYS = 'K';
+    private static final byte FRAME_FULL = 'F';
+
+    private final GogoPlugin plugin;
+
+    public WebSocketTerminalServlet(GogoPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Register the servlet, this class must only be loaded when the Jetty WebSocket API is available.
+     *
+     * @param httpService The HTTP service.
+     * @param plugin The plugin creating the terminals.
+     */
+    public static void register(HttpService httpService, GogoPlugin plugin) throws Exception {
+        httpService.registerServlet(ALIAS, new WebSocketTerminalServlet(plugin), null, null);
+    }
+
+    @Override
+    public void configure(WebSocketServletFactory factory) {
+        factory.setCreator((request, response) -> {
+            List<String> tokens = request.getParameterMap().get("t");
+            GogoPlugin.SessionTerminal terminal = tokens != null && !tokens.isEmpty() ? plugin.takeTerminal(tokens.get(0)) : null;
+            if (terminal == null) {
+                try {
+                    response.sendForbidden("Invalid terminal token");
+                } catch (IOException e) {
+                    // Ignore
+                }
+                return null;
+            }
+            return new TerminalSocket(terminal, plugin.getExecutor());
+        });
+    }
+
+    static class TerminalSocket implements WebSocketListener {
+
+        private final GogoPlugin.SessionTerminal terminal;
+        private final Executor executor;
+        private final AtomicBoolean dirty = new AtomicBoolean(true);
+        private final AtomicBoolean sending = new AtomicBoolean();
+        private volatile Session session;
+        private volatile boolean full = true;
+        // lines last sent to the client, only used by the thread sending a frame
+        private String[] lines;
+
+        TerminalSocket(GogoPlugin.SessionTerminal terminal, Executor executor) {
+            this.terminal = terminal;
+            this.executor = executor;
+        }
+
+        @Override
+        public void onWebSocketConnect(Session session) {
+            this.session = session;
+            session.setIdleTimeout(IDLE_TIMEOUT);
+            terminal.setListener(this::changed);
+            changed();
+        }
+
+        @Override
+        public void onWebSocketBinary(byte[] payload, int offset, int len) {
+            if (len == 0) {
+                return;
+            }
+            try {
+                if (payload[offset] == FRAME_KEYS) {
+                    terminal.write(new String(payload, offset + 1, len - 1, StandardCharsets.UTF_8));
+                } else if (payload[offset] == FRAME_FULL) {
+                    full = true;
+                    changed();
+                }
+            } catch (IOException e) {
+                session.close(StatusCode.NORMAL, "Session closed");
+            }
+        }
+
+        @Override
+        public void onWebSocketText(String message) {
+            // the client only sends binary frames
+        }
+
+        @Override
+        public void onWebSocketClose(int statusCode, String reason) {
+            terminal.setListener(null);
+            terminal.close();
+        }
+
+        @Override
+        public void onWebSocketError(Throwable cause) {
+            LOGGER.debug("Web console terminal connection error", cause);
+            terminal.setListener(null);
+            terminal.close();
+        }
+
+        private void changed() {
+            dirty.set(true);
+            flush();
+        }
+
+        private void flush() {
+            if (dirty.get() && sending.compareAndSet(false, true)) {
+                executor.execute(this::send);
+            }
+        }
+
+        private void sent() {
+            sending.set(false);
+            // modifications done while the frame was written
+            flush();
+        }
+
+        private void send() {
+            Session session = this.session;
+            if (session == null || !session.isOpen()) {
+                sending.set(false);
+                return;
+            }
+            dirty.set(false);
+            boolean end = terminal.isClosed();
+            ByteBuffer frame;
+            try {
+                frame = end ? ByteBuffer.wrap(new byte[] { FRAME_END }) : buildScreenFrame();
+            } catch (IOException e) {
+                frame = null;
+            }
+            if (frame == null) {
+                sent();
+                return;
+            }
+            session.getRemote().sendBytes(frame, new WriteCallback() {
+                @Override
+                public void writeFailed(Throwable x) {
+                    session.close(StatusCode.ABNORMAL, null);
+                }
+
+                @Override
+                public void writeSuccess() {
+                    if (end) {
+                        session.close(StatusCode.NORMAL, "Session closed");
+                    } else {
+                        sent();
+                    }
+                }
+            });
+        }
+
+        private ByteBuffer buildScreenFrame() throws IOException {
+            return buildScreenFrame(terminal.getTerminal().dumpLines());
+        }
+
+        /**
+         * Build the frame of the lines modified since the last frame, or all of them when the full screen is
+         * requested or the height changed.
+         *
+         * @param current The lines of the screen.
+         * @return The frame, or {@code null} if no line changed.
+         */
+        ByteBuffer buildScreenFrame(String[] current) throws IOException {
+            boolean all = full || lines == null || lines.length != current.length;
+            full = false;
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            DataOutputStream dos = new DataOutputStream(baos);
+            int count = 0;
+            for (int y = 0; y < current.length; y++) {
+                if (all || !current[y].equals(lines[y])) {
+                    byte[] html = current[y].getBytes(StandardCharsets.UTF_8);
+                    dos.writeShort(y);
+                    dos.writeInt(html.length);
+                    dos.write(html);
+                    count++;
+                }
+            }
+            lines = current;
+            if (count == 0) {
+                return null;
+            }
+            ByteBuffer frame = ByteBuffer.allocate(5 + baos.size());
+            frame.put(FRAME_SCREEN);
+            frame.putShort((short) current.length);
+            frame.putShort((short) count);
+            frame.put(baos.toByteArray());
+            frame.flip();
+            return frame;
+        }
+    }
+
+}
@@ -22,7 +22,7 @@
 
 gogo = { };
 
-gogo.Terminal_ctor = function(div, width, height) {
+gogo.Terminal_ctor = function(div, width, height, wsPath) {
 
    var query0 = "w=" + width + "&h=" + height;
    var query1 = query0 + "&k=";
@@ -33,6 +33,8 @@ gogo.Terminal_ctor = function(div, width, height) {
    var sending = 0;
    var rmax = 1;
    var force = 1;
+   var ws = null;
+   var rows = [];
 
    var dstat = document.createElement('pre');
    var sled = document.createElement('span');
@@ -55,7 +57,7 @@ gogo.Terminal_ctor = function(div, width, height) {
            var r = new XMLHttpRequest();
            var send = "";
            while (keybuf.length > 0) {
-               send += keybuf.pop();
+               send += encodeURIComponent(keybuf.pop());
            }
            var query = query1 + send;
            if (force) {
@@ -90,6 +92,10 @@ gogo.Terminal_ctor = function(div, width, height) {
    }
 
    function queue(s) {
+       if (ws != null) {
+           ws.send(frame('K', s));
+           return;
+       }
        keybuf.unshift(s);
        if (sending == 0) {
            window.clearTimeout(timeout);
@@ -187,7 +193,7 @@ gogo.Terminal_ctor = function(div, width, height) {
 //              "ev.which=" + ev.which + ", ev.ctrlKey=" + ev.ctrlKey + ", " +
 //              "kc=" + kc + ", k=" + k);
 
-        queue(encodeURIComponent(k));
+        queue(k);
 
         ev.cancelBubble = true;
         if (ev.stopPropagation) ev.stopPropagation();
@@ -206,6 +212,92 @@ gogo.Terminal_ctor = function(div, width, height) {
            }
    }
 
+   //
+   // WebSocket transport: the server only sends the modified lines
+   //
+
+   function frame(type, s) {
+       var data = new TextEncoder().encode(s);
+       var f = new Uint8Array(data.length + 1);
+       f[0] = type.charCodeAt(0);
+       f.set(data, 1);
+       return f.buffer;
+   }
+
+   function screen(data) {
+       var view = new DataView(data);
+       var type = String.fromCharCode(view.getUint8(0));
+       if (type == 'E') {
+           sled.className = 'off';
+           debug("Session closed");
+           return;
+       }
+       if (type != 'S') {
+           return;
+       }
+       var height = view.getUint16(1);
+       var count = view.getUint16(3);
+       if (rows.length != height) {
+           var pre = document.createElement('pre');
+           pre.className = 'term';
+           rows = [];
+           for (var i = 0; i < height; i++) {
+               rows.push(pre.appendChild(document.createElement('span')));
+           }
+           dterm.innerHTML = '';
+           dterm.appendChild(document.createElement('div')).appendChild(pre);
+       }
+       var decoder = new TextDecoder('utf-8');
+       var pos = 5;
+       for (var j = 0; j < count; j++) {
+           var y = view.getUint16(pos);
+           var len = view.getUint32(pos + 2);
+           rows[y].innerHTML = decoder.decode(new Uint8Array(data, pos + 6, len)) + '\n';
+           pos += 6 + len;
+       }
+   }
+
+   function connect() {
+       var r = new XMLHttpRequest();
+       r.open("POST", "gogo", true);
+       r.setRequestHeader('Content-Type', 'application/x-www-form-urlencoded');
+       r.onreadystatechange = function () {
+           if (r.readyState == 4) {
+               if (r.status != 200) {
+                   timeout = window.setTimeout(update, 100);
+                   return;
+               }
+               var opened = false;
+               var ping = null;
+               var url = (location.protocol == 'https:' ? 'wss://' : 'ws://') + location.host + wsPath + '?t=' + r.responseText;
+               var socket = new WebSocket(url);
+               socket.binaryType = 'arraybuffer';
+               socket.onopen = function() {
+                   opened = true;
+                   ws = socket;
+                   sled.className = 'on';
+                   // keep the connection alive while the user doesn't type
+                   ping = window.setInterval(function() { socket.send(frame('P', '')); }, 60000);
+               };
+               socket.onmessage = function(ev) {
+                   screen(ev.data);
+               };
+               socket.onclose = function() {
+                   if (ping != null) {
+                       window.clearInterval(ping);
+                   }
+                   ws = null;
+                   sled.className = 'off';
+                   if (!opened) {
+                       // WebSocket not usable, fall back to the HTTP requests
+                       timeout = window.setTimeout(update, 100);
+                   }
+               };
+           }
+       };
+       r.send("ws=1");
+   }
+
    function init() {
        if (typeof(XMLHttpRequest) == "undefined") {
          XMLHttpRequest = function() {
@@ -232,14 +324,19 @@ gogo.Terminal_ctor = function(div, width, height) {
        div.appendChild(d);
        document.onkeypress = keypress;
        document.onkeydown = keydown;
-       timeout = window.setTimeout(update, 100);
+       if (wsPath && typeof(WebSocket) != "undefined" && typeof(TextDecoder) != "undefined"
+               && typeof(TextEncoder) != "undefined") {
+           connect();
+       } else {
+           timeout = window.setTimeout(update, 100);
+       }
    }
 
    init();
 
 }
 
-gogo.Terminal = function(div, width, height) {
-   return new this.Terminal_ctor(div, width, height);
+gogo.Terminal = function(div, width, height, wsPath) {
+   return new this.Terminal_ctor(div, width, height, wsPath);
 }
 
@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.webconsole.gogo;
+
+import junit.framework.TestCase;
+
+import org.apache.karaf.shell.api.console.Session;
+import org.apache.karaf.shell.api.console.SessionFactory;
+import org.easymock.EasyMock;
+
+public class GogoPluginTest extends TestCase {
+
+    private GogoPlugin plugin;
+
+    @Override
+    protected void setUp() throws Exception {
+        Session session = EasyMock.createNiceMock(Session.class);
+        SessionFactory sessionFactory = EasyMock.createNiceMock(SessionFactory.class);
+        EasyMock.expect(sessionFactory.create(EasyMock.anyObject(), EasyMock.anyObject(), EasyMock.anyObject(),
+                EasyMock.anyObject(), EasyMock.anyObject(), EasyMock.anyObject())).andReturn(session).anyTimes();
+        EasyMock.replay(session, sessionFactory);
+        plugin = new GogoPlugin();
+        plugin.setSessionFactory(sessionFactory);
+        plugin.start();
+    }
+
+    @Override
+    protected void tearDown() {
+        plugin.stop();
+    }
+
+    public void testTokenUsedOnce() throws Exception {
+        GogoPlugin.SessionTerminal terminal = plugin.new SessionTerminal();
+        String token = plugin.addPendingTerminal(terminal);
+        assertNull(plugin.takeTerminal("unknown"));
+        assertNull(plugin.takeTerminal(null));
+        assertSame(terminal, plugin.takeTerminal(token));
+        assertNull(plugin.takeTerminal(token));
+        assertFalse(terminal.isClosed());
+        terminal.close();
+    }
+
+    public void testExpiredToken() throws Exception {
+        GogoPlugin.SessionTerminal terminal = plugin.new SessionTerminal();
+        String token = plugin.addPendingTerminal(terminal);
+        assertNull(plugin.takeTerminal(token, System.currentTimeMillis() + GogoPlugin.TOKEN_TIMEOUT + 1));
+        assertTrue(terminal.isClosed());
+    }
+
+    public void testUnusedTokensExpire() throws Exception {
+        GogoPlugin.SessionTerminal used = plugin.new SessionTerminal();
+        GogoPlugin.SessionTerminal unused = plugin.new SessionTerminal();
+        String usedToken = plugin.addPendingTerminal(used);
+        String unusedToken = plugin.addPendingTerminal(unused);
+        assertSame(used, plugin.takeTerminal(usedToken));
+
+        plugin.expirePendingTerminals(System.currentTimeMillis() + GogoPlugin.TOKEN_TIMEOUT + 1);
+        assertTrue(unused.isClosed());
+        assertFalse(used.isClosed());
+        assertNull(plugin.takeTerminal(unusedToken));
+        used.close();
+    }
+
+}
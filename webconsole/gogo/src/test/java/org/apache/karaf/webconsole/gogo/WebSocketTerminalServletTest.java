@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.webconsole.gogo;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+
+import junit.framework.TestCase;
+
+public class WebSocketTerminalServletTest extends TestCase {
+
+    public void testModifiedLinesOnly() throws Exception {
+        WebSocketTerminalServlet.TerminalSocket socket = new WebSocketTerminalServlet.TerminalSocket(null, Runnable::run);
+
+        // the first frame has the full screen
+        Map<Integer, String> lines = parse(socket.buildScreenFrame(new String[] { "a", "b", "c" }), 3);
+        assertEquals(3, lines.size());
+        assertEquals("b", lines.get(1));
+
+        // no frame when nothing changed
+        assertNull(socket.buildScreenFrame(new String[] { "a", "b", "c" }));
+
+        lines = parse(socket.buildScreenFrame(new String[] { "a", "x", "c" }), 3);
+        assertEquals(1, lines.size());
+        assertEquals("x", lines.get(1));
+
+        // a new height resends all the lines
+        lines = parse(socket.buildScreenFrame(new String[] { "a", "x", "c", "d" }), 4);
+        assertEquals(4, lines.size());
+    }
+
+    public void testFullScreenRequested() throws Exception {
+        WebSocketTerminalServlet.TerminalSocket socket = new WebSocketTerminalServlet.TerminalSocket(null, Runnable::run);
+        socket.buildScreenFrame(new String[] { "a", "b" });
+
+        socket.onWebSocketBinary(new byte[] { 'F' }, 0, 1);
+        Map<Integer, String> lines = parse(socket.buildScreenFrame(new String[] { "a", "b" }), 2);
+        assertEquals(2, lines.size());
+        assertEquals("a", lines.get(0));
+    }
+
+    private Map<Integer, String> parse(ByteBuffer frame, int height) {
+        assertNotNull(frame);
+        assertEquals('S', frame.get());
+        assertEquals(height, frame.getShort());
+        int count = frame.getShort();
+        Map<Integer, String> lines = new TreeMap<>();
+        for (int i = 0; i < count; i++) {
+            int y = frame.getShort();
+            byte[] html = new byte[frame.getInt()];
+            frame.get(html);
+            lines.put(y, new String(html, StandardCharsets.UTF_8));
+        }
+        assertFalse(frame.hasRemaining());
+        return lines;
+    }
+
+}